@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 
@@ -28,8 +29,9 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 @EntityScan("com.example.apiprotegida.model")
 @EnableJpaRepositories("com.example.apiprotegida.repository")
 @EnableCaching
+@EnableScheduling
 @EnableWebSecurity
-@EnableMethodSecurity(prePostEnabled = true)
+@EnableMethodSecurity(prePostEnabled = false)
 public class ApiProtegidaApplication {
 
     public static void main(String[] args) {
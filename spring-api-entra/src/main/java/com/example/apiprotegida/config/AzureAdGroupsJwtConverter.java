@@ -1,12 +1,15 @@
 package com.example.apiprotegida.config;
 
-import com.example.apiprotegida.model.Perfil;
-import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.security.authz.AuthorityCache;
+import com.example.apiprotegida.security.authz.AuthorityRegistry;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
 import com.example.apiprotegida.service.PerfilService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Component;
 import org.springframework.lang.NonNull;
@@ -16,50 +19,86 @@ import java.util.stream.Collectors;
 
 /**
  * Convertidor personalizado para extraer grupos de Azure AD desde el JWT
- * y convertirlos en authorities de Spring Security basado en perfiles de la base de datos
+ * y convertirlos en authorities de Spring Security basado en perfiles de la base de datos.
+ * Los perfiles y permisos se leen del grafo de permisos en memoria, sin consultas JPA por petición,
+ * y el resultado se guarda en {@link AuthorityCache} por combinación de grupos. Las authorities
+ * son instancias compartidas de {@link AuthorityRegistry}.
  */
 @Component
+@Slf4j
 public class AzureAdGroupsJwtConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
 
+    /** Versión de caché usada cuando las authorities se calculan desde la base de datos */
+    private static final long VERSION_BASE_DE_DATOS = 0L;
+
+    @Autowired
+    private PermissionGraph permissionGraph;
+
+    @Autowired
+    private AuthorityCache authorityCache;
+
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+
     @Autowired
     private PerfilService perfilService;
 
+    /** Si es false, los perfiles se consultan en lote a la base de datos en lugar de usar el grafo */
+    @Value("${authz.permission-graph.enabled:true}")
+    private boolean permissionGraphEnabled = true;
+
     @Override
     public Collection<GrantedAuthority> convert(@NonNull Jwt jwt) {
-      Collection<GrantedAuthority> authorities = new ArrayList<>();
-
       // Extraer grupos de Azure AD del token
       List<String> azureGroups = getAzureGroups(jwt);
 
       String userEmail = getUserEmail(jwt);
-      // Agregar grupos como authorities para que puedan ser procesados por el AuthorizationService
-      for (String groupId : azureGroups) {
-        authorities.add(new SimpleGrantedAuthority("GROUP_" + groupId));
-
-        // Buscar perfil asociado al grupo y agregar como rol
-        try {
-          Optional<Perfil> perfil = perfilService.obtenerPerfilPorAzureGroupIdConPermisos(groupId);
-          if (perfil.isPresent()) {
-            String roleName = getRoleName(perfil.get().getAzureGroupName());
-            authorities.add(new SimpleGrantedAuthority(roleName));
-
-            Set<Permiso> permisos = perfil.get().getPermisos();
-            permisos.stream().filter(Permiso::getActivo).forEach( permiso -> authorities.add(new SimpleGrantedAuthority(permiso.getNombre())));
-          } else {
-            System.out.println("❌ [AzureAdGroupsJwtConverter] NO se encontró perfil para grupo ID: " + groupId);
-          }
-        } catch (Exception e) {
-          System.out.println("⚠️ [AzureAdGroupsJwtConverter] Error al buscar perfil para grupo " + groupId + ": " + e.getMessage());
-          e.printStackTrace();
+      if (azureGroups.isEmpty()) {
+        return new ArrayList<>();
+      }
+
+      // Los usuarios con la misma combinación de grupos comparten las authorities calculadas
+      try {
+        if (permissionGraphEnabled) {
+          PermissionSnapshot grafo = permissionGraph.snapshot();
+          return authorityCache.obtener(grafo.getVersion(), azureGroups, grupos -> buildAuthorities(grafo, grupos));
         }
+        return authorityCache.obtener(VERSION_BASE_DE_DATOS, azureGroups,
+            grupos -> buildAuthorities(loadProfilesSnapshot(grupos), grupos));
+      } catch (Exception e) {
+        log.warn("⚠️ [AzureAdGroupsJwtConverter] Error al buscar perfiles para grupos {}: {}", azureGroups, e.getMessage(), e);
+        return groupAuthorities(azureGroups);
       }
+    }
 
-      return authorities;
+    /**
+     * Carga los perfiles de todos los grupos en lote (fetch join) y los compila en una foto temporal
+     */
+    private PermissionSnapshot loadProfilesSnapshot(List<String> azureGroups) {
+      return PermissionSnapshot.compilar(VERSION_BASE_DE_DATOS, perfilService.obtenerPerfilesPorAzureGroupIdsConPermisos(azureGroups));
+    }
+
+    /**
+     * Construye las authorities de un conjunto de grupos a partir del grafo en memoria
+     */
+    private Collection<GrantedAuthority> buildAuthorities(PermissionSnapshot grafo, List<String> azureGroups) {
+      if (log.isDebugEnabled()) {
+        for (String groupId : azureGroups) {
+          if (grafo.indicePerfilPorGrupo(groupId) < 0) {
+            log.debug("❌ [AzureAdGroupsJwtConverter] NO se encontró perfil para grupo ID: {}", groupId);
+          }
+        }
+      }
+      // Grupos, rol del perfil y permisos, con las listas precalculadas por grupo
+      return authorityRegistry.deGrupos(grafo, azureGroups);
     }
 
-  private String getRoleName(String group){
-    return "ROLE_"+group.toUpperCase().replace(" ", "_");
-  }
+    /**
+     * Authorities mínimas (solo grupos) cuando no se puede consultar el grafo de permisos
+     */
+    private Collection<GrantedAuthority> groupAuthorities(List<String> azureGroups) {
+      return authorityRegistry.soloGrupos(azureGroups);
+    }
 
     /**
      * Extrae los grupos de Azure AD del token JWT
@@ -1,30 +1,57 @@
 package com.example.apiprotegida.config;
 
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
+import org.springframework.security.authorization.method.AuthorizationManagerAfterMethodInterceptor;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.authorization.method.PostAuthorizeAuthorizationManager;
+import org.springframework.security.authorization.method.PostFilterAuthorizationMethodInterceptor;
+import org.springframework.security.authorization.method.PreFilterAuthorizationMethodInterceptor;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
 import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.util.function.SingletonSupplier;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import com.example.apiprotegida.security.CachingJwtDecoder;
+import com.example.apiprotegida.security.authz.CompiledPreAuthorizeManager;
+import com.example.apiprotegida.security.authz.PermissionAuthorizationManager;
+import com.example.apiprotegida.service.AuthorizationService;
 import com.example.apiprotegida.security.filter.DualAuthenticationFilter;
+import com.example.apiprotegida.security.jwks.CachedJwkSource;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import java.util.Arrays;
+import java.util.function.Supplier;
 
 /**
  * Configuración de seguridad para la API protegida
@@ -37,7 +64,7 @@ import java.util.Arrays;
  */
 @Configuration
 @EnableWebSecurity
-@EnableMethodSecurity(prePostEnabled = true)
+@EnableMethodSecurity(prePostEnabled = false)
 public class SecurityConfig {
 
     @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
@@ -52,6 +79,21 @@ public class SecurityConfig {
     @Autowired
     private DualAuthenticationFilter dualAuthenticationFilter;
 
+    @Autowired
+    private CachedJwkSource cachedJwkSource;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${azure.jwt.decoded-cache.enabled:false}")
+    private boolean decodedJwtCacheEnabled;
+
+    @Value("${azure.jwt.decoded-cache.max-entries:10000}")
+    private int decodedJwtCacheMaxEntries;
+
+    @Value("${azure.jwt.decoded-cache.max-bytes:67108864}")
+    private long decodedJwtCacheMaxBytes;
+
     /**
      * Configuración principal de seguridad
      */
@@ -66,6 +108,10 @@ public class SecurityConfig {
             
             // Configurar autorización de requests
             .authorizeHttpRequests(authz -> authz
+                // Despacho asíncrono de respuestas ya autorizadas (SSE de /autorizacion/eventos);
+                // en modo stateless no hay contexto de seguridad que restaurar en ese despacho
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                
                 // Endpoints públicos
                 .requestMatchers(
                     "/actuator/**",
@@ -104,6 +150,73 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Evaluación de @PreAuthorize con predicados precompilados (ver CompiledPreAuthorizeManager);
+     * sustituye al interceptor por defecto, por eso prePostEnabled = false. Se aplica a
+     * cualquier bean: las reglas de los controladores se compilan al arrancar y las del
+     * resto en su primera llamada. @PreFilter, @PostAuthorize y @PostFilter se registran
+     * abajo con los interceptores estándar de Spring
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static CompiledPreAuthorizeManager compiledPreAuthorizeManager(ApplicationContext applicationContext) {
+        return new CompiledPreAuthorizeManager(applicationContext);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor preAuthorizeAdvisor(CompiledPreAuthorizeManager compiledPreAuthorizeManager) {
+        return AuthorizationManagerBeforeMethodInterceptor.preAuthorize(compiledPreAuthorizeManager);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor preFilterAdvisor(ApplicationContext applicationContext) {
+        PreFilterAuthorizationMethodInterceptor interceptor = new PreFilterAuthorizationMethodInterceptor();
+        interceptor.setExpressionHandler(methodSecurityExpressionHandler(applicationContext));
+        return interceptor;
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor postAuthorizeAdvisor(ApplicationContext applicationContext) {
+        PostAuthorizeAuthorizationManager manager = new PostAuthorizeAuthorizationManager();
+        manager.setExpressionHandler(methodSecurityExpressionHandler(applicationContext));
+        return AuthorizationManagerAfterMethodInterceptor.postAuthorize(manager);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor postFilterAdvisor(ApplicationContext applicationContext) {
+        PostFilterAuthorizationMethodInterceptor interceptor = new PostFilterAuthorizationMethodInterceptor();
+        interceptor.setExpressionHandler(methodSecurityExpressionHandler(applicationContext));
+        return interceptor;
+    }
+
+    /**
+     * Manejador de SpEL como el de @EnableMethodSecurity, con acceso a los beans (@bean en las expresiones)
+     */
+    private static MethodSecurityExpressionHandler methodSecurityExpressionHandler(ApplicationContext applicationContext) {
+        DefaultMethodSecurityExpressionHandler expressionHandler = new DefaultMethodSecurityExpressionHandler();
+        expressionHandler.setApplicationContext(applicationContext);
+        return expressionHandler;
+    }
+
+    /**
+     * Interceptor de @RequierePermiso; el AuthorizationService se obtiene al primer uso
+     * para no crearlo antes que los proxies transaccionales
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor requierePermisoAdvisor(ObjectProvider<AuthorizationService> authorizationService) {
+        Supplier<AuthorizationService> servicio = SingletonSupplier.of(authorizationService::getObject);
+        AuthorizationManagerBeforeMethodInterceptor interceptor = new AuthorizationManagerBeforeMethodInterceptor(
+                PermissionAuthorizationManager.POINTCUT,
+                new PermissionAuthorizationManager(autenticacion -> servicio.get().resolverPrincipal(autenticacion)));
+        interceptor.setOrder(AuthorizationInterceptorsOrder.PRE_AUTHORIZE.getOrder() + 1);
+        return interceptor;
+    }
+
     /**
      * Configuración de CORS para permitir requests desde Angular
      */
@@ -124,7 +237,7 @@ public class SecurityConfig {
         configuration.setAllowCredentials(true);
         
         // Headers expuestos al cliente
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "ETag", "Location"));
         
         // Aplicar configuración a todas las rutas
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -149,10 +262,26 @@ public class SecurityConfig {
 
     /**
      * Decoder para JWT tokens de Microsoft Entra ID
+     * Las claves se resuelven desde CachedJwkSource (memoria + copia en disco opcional), sin
+     * descubrimiento OIDC al arrancar. Solo un token con un kid desconocido descarga el JWKS
+     * en el hilo de la petición (una descarga compartida, como máximo una vez por intervalo mínimo).
+     * Con azure.jwt.decoded-cache.enabled=true los Jwt ya validados se reutilizan hasta su expiración.
      */
     @Bean
     public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withIssuerLocation(issuerUri).build();
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, cachedJwkSource));
+        // La validación de claims la hacen los validadores de Spring (exp, nbf, iss)
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+
+        if (!decodedJwtCacheEnabled) {
+            return decoder;
+        }
+        return new CachingJwtDecoder(decoder, decodedJwtCacheMaxEntries, decodedJwtCacheMaxBytes)
+                .registrarMetricas(meterRegistry);
     }
 
     /**
@@ -1,12 +1,18 @@
 package com.example.apiprotegida.controller;
 
 import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.security.authz.PermissionChangeNotifier;
 import com.example.apiprotegida.service.AuthorizationService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -17,45 +23,71 @@ import java.util.Set;
  */
 @RestController
 @RequestMapping("/autorizacion")
-@CrossOrigin(origins = {"http://localhost:4200", "https://localhost:4200", "http://localhost:4201", "https://localhost:4201"})
+@CrossOrigin(origins = {"http://localhost:4200", "https://localhost:4200", "http://localhost:4201", "https://localhost:4201"}, exposedHeaders = "ETag")
+@Slf4j
 public class AuthorizationController {
 
     @Autowired
     private AuthorizationService authorizationService;
 
+    @Autowired
+    private PermissionChangeNotifier permissionChangeNotifier;
+
     /**
      * Obtiene la información completa del usuario autenticado incluyendo permisos
+     * Responde 304 si el If-None-Match coincide con el ETag, sin construir ni serializar la respuesta
      */
     @GetMapping("/informacion-usuario")
-    public ResponseEntity<Map<String, Object>> obtenerInformacionUsuario(Authentication authentication) {
-        System.out.println("🔍 [AuthorizationController] Solicitud de información de usuario recibida");
-        
+    public ResponseEntity<Map<String, Object>> obtenerInformacionUsuario(Authentication authentication, WebRequest webRequest) {
         // Verificar que la autenticación no sea null
         if (authentication == null || !authentication.isAuthenticated()) {
-            System.err.println("❌ [AuthorizationController] Usuario no autenticado");
+            log.debug("❌ [AuthorizationController] Usuario no autenticado");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                                 .body(createMap("error", "Usuario no autenticado"));
         }
         
-        System.out.println("👤 [AuthorizationController] Usuario autenticado: " + authentication.getName());
-        System.out.println("🔐 [AuthorizationController] Authorities: " + authentication.getAuthorities());
-        
         try {
+            String etag = authorizationService.calcularEtagInformacionUsuario(authentication);
+            if (webRequest.checkNotModified(etag)) {
+                log.debug("♻️ [AuthorizationController] Información de {} sin cambios (304)", authentication.getName());
+                return null;
+            }
+            
             Map<String, Object> informacionUsuario = authorizationService.obtenerInformacionCompleteUsuario(authentication);
-            System.out.println("✅ [AuthorizationController] Información de usuario obtenida exitosamente");
-            System.out.println("📊 [AuthorizationController] Perfiles encontrados: " + 
-                ((List<?>) informacionUsuario.get("perfiles")).size());
-            System.out.println("🔑 [AuthorizationController] Permisos encontrados: " + 
-                ((List<?>) informacionUsuario.get("permisos")).size());
-            return ResponseEntity.ok(informacionUsuario);
+            if (log.isDebugEnabled()) {
+                log.debug("✅ [AuthorizationController] Información de {}: {} perfiles, {} permisos",
+                        authentication.getName(),
+                        ((List<?>) informacionUsuario.get("perfiles")).size(),
+                        ((List<?>) informacionUsuario.get("permisos")).size());
+            }
+            return ResponseEntity.ok()
+                                 .eTag(etag)
+                                 .cacheControl(CacheControl.noCache().cachePrivate())
+                                 .body(informacionUsuario);
         } catch (Exception e) {
-            System.err.println("❌ [AuthorizationController] Error al obtener información del usuario: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ [AuthorizationController] Error al obtener información del usuario: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                                 .body(createMap("error", "Error al obtener información del usuario"));
         }
     }
 
+    /**
+     * Flujo SSE que avisa con el evento "permisos-cambiados" cuando cambian los
+     * perfiles o permisos del usuario; el cliente vuelve a pedir su información entonces
+     */
+    @GetMapping(value = "/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> suscribirCambiosPermisos(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        SseEmitter emisor = permissionChangeNotifier.suscribir(authorizationService.resolverPrincipal(authentication));
+        return ResponseEntity.ok()
+                             .header("Cache-Control", "no-cache")
+                             .header("X-Accel-Buffering", "no")
+                             .body(emisor);
+    }
+
     /**
      * Obtiene solo los permisos del usuario autenticado
      */
@@ -75,16 +107,25 @@ public class AuthorizationController {
 
     /**
      * Obtiene solo los códigos de permisos del usuario autenticado
+     * Responde 304 si el If-None-Match coincide con el ETag
      */
     @GetMapping("/codigos-permisos")
-    public ResponseEntity<Set<String>> obtenerCodigosPermisos(Authentication authentication) {
+    public ResponseEntity<Set<String>> obtenerCodigosPermisos(Authentication authentication, WebRequest webRequest) {
         if (authentication == null || !authentication.isAuthenticated()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         
         try {
+            String etag = authorizationService.calcularEtagCodigosPermisos(authentication);
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            
             Set<String> codigosPermisos = authorizationService.obtenerCodigosPermisosUsuario(authentication);
-            return ResponseEntity.ok(codigosPermisos);
+            return ResponseEntity.ok()
+                                 .eTag(etag)
+                                 .cacheControl(CacheControl.noCache().cachePrivate())
+                                 .body(codigosPermisos);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
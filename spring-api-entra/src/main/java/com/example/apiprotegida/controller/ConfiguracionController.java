@@ -2,6 +2,7 @@ package com.example.apiprotegida.controller;
 
 import com.example.apiprotegida.exceptions.InvalidAuthConfigurationException;
 import com.example.apiprotegida.model.ConfiguracionSistema;
+import com.example.apiprotegida.security.RequierePermiso;
 import com.example.apiprotegida.service.ConfiguracionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -108,7 +109,7 @@ public class ConfiguracionController {
      * Solo administradores
      */
     @GetMapping("/auth/all")
-    @PreAuthorize("hasAnyAuthority('SCOPE_access_as_user', 'ADMIN', 'USUARIOS_LEER')")
+    @RequierePermiso(modulo = "USUARIOS", accion = "LEER", oAuthority = {"SCOPE_access_as_user", "ADMIN"})
     public ResponseEntity<List<ConfiguracionSistema>> obtenerConfiguracionesAutenticacion() {
         log.info("📋 Consultando todas las configuraciones de autenticación");
         return ResponseEntity.ok(configuracionService.obtenerConfiguracionesAutenticacion());
@@ -119,7 +120,7 @@ public class ConfiguracionController {
      * Solo administradores
      */
     @GetMapping("/all")
-    @PreAuthorize("hasAnyAuthority('SCOPE_access_as_user', 'ADMIN', 'USUARIOS_LEER')")
+    @RequierePermiso(modulo = "USUARIOS", accion = "LEER", oAuthority = {"SCOPE_access_as_user", "ADMIN"})
     public ResponseEntity<List<ConfiguracionSistema>> obtenerTodasLasConfiguraciones() {
         log.info("📋 Consultando todas las configuraciones del sistema");
         return ResponseEntity.ok(configuracionService.obtenerTodasActivas());
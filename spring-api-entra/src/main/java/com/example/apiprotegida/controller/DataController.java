@@ -1,13 +1,21 @@
 package com.example.apiprotegida.controller;
 
+import com.example.apiprotegida.security.RequierePermiso;
 import com.example.apiprotegida.security.RoleAnnotations;
+import com.example.apiprotegida.service.ProcesoLentoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,9 +28,15 @@ import java.util.stream.Collectors;
  */
 @RestController
 @RequestMapping("/data")
-@CrossOrigin(origins = {"http://localhost:4200", "https://localhost:4200"})
+@CrossOrigin(origins = {"http://localhost:4200", "https://localhost:4200"}, exposedHeaders = "Location")
 public class DataController {
 
+    @Autowired
+    private ProcesoLentoService procesoLentoService;
+
+    @Value("${procesos.lento.espera-resultado-ms:30000}")
+    private long esperaResultadoMs = 30_000;
+
     /**
      * Obtiene datos básicos protegidos
      * @param authentication Información del usuario autenticado
@@ -58,7 +72,7 @@ public class DataController {
      * @return Datos para un dashboard
      */
     @GetMapping("/dashboard")
-    @PreAuthorize("hasAnyAuthority('SCOPE_access_as_user', 'ADMIN', 'PERFILES_LEER')")
+    @RequierePermiso(modulo = "PERFILES", accion = "LEER", oAuthority = {"SCOPE_access_as_user", "ADMIN"})
     public ResponseEntity<Map<String, Object>> getDashboardData() {
         Map<String, Object> dashboard = new HashMap<>();
 
@@ -96,25 +110,89 @@ public class DataController {
 
     /**
      * Simula una operación que requiere tiempo de procesamiento
+     *
+     * Mantiene la respuesta de siempre, pero el proceso corre en el pool de
+     * {@link ProcesoLentoService} y el hilo de la petición se libera mientras tanto.
+     * Cambio de comportamiento: la petición cuenta para el límite de
+     * {@code procesos.lento.max-por-usuario} trabajos sin terminar, así que un GET que
+     * lo supera recibe 429 con Retry-After en lugar de esperar (503 si la cola está
+     * llena). Si el proceso no termina antes de {@code procesos.lento.espera-resultado-ms},
+     * o el cliente se desconecta, el trabajo se cancela para liberar el cupo y se
+     * responde 503.
      * @return Resultado de la operación
      */
     @GetMapping("/proceso-lento")
-    public ResponseEntity<Map<String, Object>> procesoLento() throws InterruptedException {
-        // Simular procesamiento
-        Thread.sleep(2000); // 2 segundos
-
-        Map<String, Object> resultado = new HashMap<>();
-        resultado.put("message", "Proceso completado exitosamente");
-        resultado.put("duracion", "2 segundos");
-        resultado.put("timestamp", LocalDateTime.now());
-        resultado.put("resultado", Map.of(
-            "procesados", 1000,
-            "exitosos", 987,
-            "errores", 13,
-            "porcentaje_exito", 98.7
-        ));
+    public DeferredResult<ResponseEntity<Map<String, Object>>> procesoLento(Authentication authentication) {
+        ProcesoLentoService.Trabajo trabajo = procesoLentoService.enviar(authentication.getName());
+        DeferredResult<ResponseEntity<Map<String, Object>>> diferido = esperarResultado(trabajo);
+        // Nadie volverá a consultar el trabajo de este GET: si se abandona, se cancela
+        diferido.onTimeout(() -> {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "El proceso no terminó a tiempo y se canceló");
+            error.put("id", trabajo.getId());
+            diferido.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error));
+            procesoLentoService.cancelar(trabajo);
+        });
+        diferido.onError(error -> procesoLentoService.cancelar(trabajo));
+        return diferido;
+    }
+
+    /**
+     * Envía el proceso lento como trabajo en segundo plano
+     * @return 202 con el id del trabajo y la URL para consultarlo
+     */
+    @PostMapping("/proceso-lento")
+    public ResponseEntity<Map<String, Object>> enviarProcesoLento(Authentication authentication) {
+        ProcesoLentoService.Trabajo trabajo = procesoLentoService.enviar(authentication.getName());
+        return ResponseEntity.accepted()
+                .location(urlTrabajo(trabajo))
+                .body(estadoTrabajo(trabajo));
+    }
+
+    /**
+     * Consulta el estado de un trabajo (y su resultado si ya terminó)
+     * @param id Id devuelto al enviar el trabajo
+     */
+    @GetMapping("/proceso-lento/{id}")
+    public ResponseEntity<Map<String, Object>> consultarProcesoLento(@PathVariable String id,
+                                                                     Authentication authentication) {
+        return procesoLentoService.buscar(id, authentication.getName())
+                .map(trabajo -> ResponseEntity.ok(estadoTrabajo(trabajo)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Espera el resultado de un trabajo sin ocupar el hilo de la petición
+     * @param id Id devuelto al enviar el trabajo
+     * @return 200 con el resultado, 202 si sigue en curso al agotar la espera,
+     *         409 si se canceló o 500 si falló
+     */
+    @GetMapping("/proceso-lento/{id}/resultado")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> resultadoProcesoLento(@PathVariable String id,
+                                                                                     Authentication authentication) {
+        Optional<ProcesoLentoService.Trabajo> trabajo = procesoLentoService.buscar(id, authentication.getName());
+        if (trabajo.isEmpty()) {
+            DeferredResult<ResponseEntity<Map<String, Object>>> noEncontrado = new DeferredResult<>();
+            noEncontrado.setResult(ResponseEntity.notFound().build());
+            return noEncontrado;
+        }
+        return esperarResultado(trabajo.get());
+    }
 
-        return ResponseEntity.ok(resultado);
+    /**
+     * Cancela un trabajo en cola o en ejecución
+     * @param id Id devuelto al enviar el trabajo
+     * @return 200 si se canceló, 409 si ya había terminado
+     */
+    @DeleteMapping("/proceso-lento/{id}")
+    public ResponseEntity<Map<String, Object>> cancelarProcesoLento(@PathVariable String id,
+                                                                    Authentication authentication) {
+        Optional<ProcesoLentoService.Trabajo> trabajo = procesoLentoService.buscar(id, authentication.getName());
+        if (trabajo.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean cancelado = procesoLentoService.cancelar(trabajo.get());
+        return ResponseEntity.status(cancelado ? HttpStatus.OK : HttpStatus.CONFLICT).body(estadoTrabajo(trabajo.get()));
     }
 
     /**
@@ -388,4 +466,39 @@ public class DataController {
 
         return ResponseEntity.ok(data);
     }
+
+    private DeferredResult<ResponseEntity<Map<String, Object>>> esperarResultado(ProcesoLentoService.Trabajo trabajo) {
+        URI url = urlTrabajo(trabajo);
+        DeferredResult<ResponseEntity<Map<String, Object>>> diferido = new DeferredResult<>(esperaResultadoMs,
+                () -> ResponseEntity.accepted().location(url).body(estadoTrabajo(trabajo)));
+        trabajo.getResultado().whenComplete((resultado, error) -> diferido.setResult(
+                switch (trabajo.getEstado()) {
+                    case COMPLETADO -> ResponseEntity.ok(resultado);
+                    case CANCELADO -> ResponseEntity.status(HttpStatus.CONFLICT).body(estadoTrabajo(trabajo));
+                    default -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(estadoTrabajo(trabajo));
+                }));
+        return diferido;
+    }
+
+    private static URI urlTrabajo(ProcesoLentoService.Trabajo trabajo) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/data/proceso-lento/{id}")
+                .buildAndExpand(trabajo.getId())
+                .toUri();
+    }
+
+    private static Map<String, Object> estadoTrabajo(ProcesoLentoService.Trabajo trabajo) {
+        Map<String, Object> estado = new HashMap<>();
+        estado.put("id", trabajo.getId());
+        estado.put("estado", trabajo.getEstado());
+        estado.put("creado", trabajo.getCreado());
+        if (trabajo.getFinalizado() != null) {
+            estado.put("finalizado", trabajo.getFinalizado());
+        }
+        Map<String, Object> resultado = trabajo.resultadoSiCompletado();
+        if (resultado != null) {
+            estado.put("resultado", resultado);
+        }
+        return estado;
+    }
 }
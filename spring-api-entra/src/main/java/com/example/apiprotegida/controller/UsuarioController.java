@@ -2,11 +2,12 @@ package com.example.apiprotegida.controller;
 
 import com.example.apiprotegida.model.Usuario;
 import com.example.apiprotegida.repository.UsuarioRepository;
+import com.example.apiprotegida.security.RequierePermiso;
+import com.example.apiprotegida.service.AuthorizationService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
@@ -30,13 +31,16 @@ public class UsuarioController {
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    @Autowired
+    private AuthorizationService authorizationService;
+
     /**
      * Obtiene todos los usuarios
      * Acepta tanto tokens de Azure AD como JWT locales
      * @return Lista de todos los usuarios
      */
     @GetMapping
-    @PreAuthorize("hasAuthority('SCOPE_access_as_user') or hasAuthority('USUARIOS_LEER')")
+    @RequierePermiso(modulo = "USUARIOS", accion = "LEER", oAuthority = "SCOPE_access_as_user")
     public ResponseEntity<List<Usuario>> getAllUsuarios() {
         List<Usuario> usuarios = usuarioRepository.findAll();
         return ResponseEntity.ok(usuarios);
@@ -74,6 +78,7 @@ public class UsuarioController {
         }
         
         Usuario nuevoUsuario = usuarioRepository.save(usuario);
+        authorizationService.olvidarPerfilesUsuario(nuevoUsuario.getEmail());
         return ResponseEntity.status(HttpStatus.CREATED).body(nuevoUsuario);
     }
 
@@ -88,13 +93,17 @@ public class UsuarioController {
                                                @Valid @RequestBody Usuario usuarioActualizado) {
         return usuarioRepository.findById(id)
                 .map(usuario -> {
+                    // Los perfiles cacheados van por email: se olvidan con el email anterior y el nuevo
+                    authorizationService.olvidarPerfilesUsuario(usuario.getEmail());
                     usuario.setNombre(usuarioActualizado.getNombre());
                     usuario.setEmail(usuarioActualizado.getEmail());
                     usuario.setDepartamento(usuarioActualizado.getDepartamento());
                     usuario.setCargo(usuarioActualizado.getCargo());
                     usuario.setActivo(usuarioActualizado.getActivo());
                     
-                    return ResponseEntity.ok(usuarioRepository.save(usuario));
+                    Usuario guardado = usuarioRepository.save(usuario);
+                    authorizationService.olvidarPerfilesUsuario(guardado.getEmail());
+                    return ResponseEntity.ok(guardado);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -109,6 +118,7 @@ public class UsuarioController {
         return usuarioRepository.findById(id)
                 .map(usuario -> {
                     usuarioRepository.delete(usuario);
+                    authorizationService.olvidarPerfilesUsuario(usuario.getEmail());
                     return ResponseEntity.noContent().<Void>build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -215,20 +225,25 @@ public class UsuarioController {
             if (usuarioExistente.isPresent()) {
                 // Actualizar usuario existente
                 Usuario usuarioActual = usuarioExistente.get();
+                authorizationService.olvidarPerfilesUsuario(usuarioActual.getEmail());
                 usuarioActual.setNombre(usuario.getNombre() != null ? usuario.getNombre() : nombre);
                 usuarioActual.setEmail(usuario.getEmail() != null ? usuario.getEmail() : email);
                 usuarioActual.setDepartamento(usuario.getDepartamento());
                 usuarioActual.setCargo(usuario.getCargo());
                 usuarioActual.setActivo(usuario.getActivo());
                 
-                return ResponseEntity.ok(usuarioRepository.save(usuarioActual));
+                Usuario guardado = usuarioRepository.save(usuarioActual);
+                authorizationService.olvidarPerfilesUsuario(guardado.getEmail());
+                return ResponseEntity.ok(guardado);
             } else {
                 // Crear nuevo usuario
                 usuario.setAzureObjectId(azureObjectId);
                 if (usuario.getNombre() == null) usuario.setNombre(nombre);
                 if (usuario.getEmail() == null) usuario.setEmail(email);
                 
-                return ResponseEntity.status(HttpStatus.CREATED).body(usuarioRepository.save(usuario));
+                Usuario creado = usuarioRepository.save(usuario);
+                authorizationService.olvidarPerfilesUsuario(creado.getEmail());
+                return ResponseEntity.status(HttpStatus.CREATED).body(creado);
             }
         }
         
@@ -1,6 +1,7 @@
 package com.example.apiprotegida.exceptions;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -75,6 +76,27 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
     
+    /**
+     * Maneja trabajos en segundo plano rechazados por límite del usuario o saturación
+     */
+    @ExceptionHandler(TrabajoRechazadoException.class)
+    public ResponseEntity<Map<String, Object>> handleTrabajoRechazadoException(
+            TrabajoRechazadoException ex) {
+        
+        log.warn("⏳ [EXCEPTION] TrabajoRechazadoException: {}", ex.getMessage());
+        
+        HttpStatus status = ex.isLimiteUsuario() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Trabajo rechazado");
+        errorResponse.put("mensaje", ex.getMessage());
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        errorResponse.put("status", status.value());
+        
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(errorResponse);
+    }
+    
     /**
      * Maneja cualquier otra excepción no capturada
      */
@@ -0,0 +1,22 @@
+package com.example.apiprotegida.exceptions;
+
+/**
+ * Excepción lanzada cuando no se admite un trabajo en segundo plano, porque el usuario
+ * ya tiene el máximo de trabajos activos o porque la cola del ejecutor está llena.
+ */
+public class TrabajoRechazadoException extends RuntimeException {
+
+    private final boolean limiteUsuario;
+
+    public TrabajoRechazadoException(String message, boolean limiteUsuario) {
+        super(message);
+        this.limiteUsuario = limiteUsuario;
+    }
+
+    /**
+     * true si se alcanzó el límite del usuario (429); false si el servidor está saturado (503)
+     */
+    public boolean isLimiteUsuario() {
+        return limiteUsuario;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.apiprotegida.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Versión global de la configuración del sistema
+ * Una única fila cuyo contador se incrementa en la misma transacción que cada
+ * cambio de configuración; el bloqueo de la fila ordena los cambios concurrentes
+ * de distintos nodos, de modo que la versión confirmada crece de forma monótona.
+ */
+@Entity
+@Table(name = "configuracion_version")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfiguracionVersion {
+
+    public static final Long ID_UNICO = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
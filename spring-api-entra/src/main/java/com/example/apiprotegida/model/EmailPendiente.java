@@ -0,0 +1,81 @@
+package com.example.apiprotegida.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email en la bandeja de salida (patrón outbox)
+ * Se guarda en la misma transacción que la operación que lo origina y lo envía
+ * después, en segundo plano, EmailOutboxDispatcher. {@code proximoIntento} indica
+ * cuándo puede volver a tomarse: tras un fallo es el momento del reintento y
+ * mientras se envía es el fin de la reserva del nodo que lo tomó. {@code version}
+ * cambia con cada reserva y cada guardado, de modo que solo un nodo reserva cada
+ * lectura y un nodo cuya reserva caducó no pisa al que lo retomó. Los emails de
+ * recuperación guardan su token para no enviarlo si ya se usó o expiró.
+ */
+@Entity
+@Table(name = "emails_pendientes", indexes = {
+    @Index(name = "idx_emails_pendientes_estado", columnList = "estado, proximo_intento")
+})
+@Data
+@NoArgsConstructor
+public class EmailPendiente {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "remitente", nullable = false, length = 255)
+    private String remitente;
+
+    @Column(name = "destinatario", nullable = false, length = 255)
+    private String destinatario;
+
+    @Column(name = "asunto", nullable = false, length = 255)
+    private String asunto;
+
+    @Column(name = "cuerpo", nullable = false, length = 4000)
+    private String cuerpo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private EstadoEmail estado = EstadoEmail.PENDIENTE;
+
+    @Column(name = "intentos", nullable = false)
+    private Integer intentos = 0;
+
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    @Column(name = "fecha_creacion", nullable = false, updatable = false)
+    private LocalDateTime fechaCreacion;
+
+    @Column(name = "fecha_envio")
+    private LocalDateTime fechaEnvio;
+
+    @Column(name = "token_recuperacion", length = 64)
+    private String tokenRecuperacion;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    public EmailPendiente(String remitente, String destinatario, String asunto, String cuerpo) {
+        this.remitente = remitente;
+        this.destinatario = destinatario;
+        this.asunto = asunto;
+        this.cuerpo = cuerpo;
+        this.fechaCreacion = LocalDateTime.now();
+        this.proximoIntento = this.fechaCreacion;
+    }
+
+    public enum EstadoEmail {
+        PENDIENTE, EN_ENVIO, ENVIADO, FALLIDO
+    }
+}
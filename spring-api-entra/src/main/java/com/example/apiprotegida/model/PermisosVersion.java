@@ -0,0 +1,28 @@
+package com.example.apiprotegida.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Versión global de perfiles y permisos
+ * Una única fila cuyo contador se incrementa en la misma transacción que cada
+ * cambio de perfiles, permisos o sus asignaciones; todos los nodos la sondean
+ * para recargar su grafo de permisos cuando otro nodo hizo un cambio.
+ */
+@Entity
+@Table(name = "permisos_version")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PermisosVersion {
+
+    public static final Long ID_UNICO = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+}
@@ -0,0 +1,29 @@
+package com.example.apiprotegida.repository;
+
+import com.example.apiprotegida.model.ConfiguracionVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repositorio para la versión global de la configuración
+ */
+@Repository
+public interface ConfiguracionVersionRepository extends JpaRepository<ConfiguracionVersion, Long> {
+
+    /**
+     * Incrementa la versión (bloquea la fila hasta el fin de la transacción)
+     * @return Filas actualizadas (0 si la fila aún no existe)
+     */
+    @Modifying
+    @Query("UPDATE ConfiguracionVersion v SET v.version = v.version + 1 WHERE v.id = :id")
+    int incrementar(@Param("id") Long id);
+
+    /**
+     * Versión confirmada más reciente; consulta barata pensada para sondeo periódico
+     */
+    @Query("SELECT MAX(v.version) FROM ConfiguracionVersion v")
+    Long versionActual();
+}
@@ -0,0 +1,61 @@
+package com.example.apiprotegida.repository;
+
+import com.example.apiprotegida.model.EmailPendiente;
+import com.example.apiprotegida.model.EmailPendiente.EstadoEmail;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio para la bandeja de salida de emails
+ */
+@Repository
+public interface EmailPendienteRepository extends JpaRepository<EmailPendiente, Long> {
+
+    /**
+     * Emails que pueden tomarse ya: pendientes cuyo reintento venció o en envío cuya reserva caducó
+     */
+    @Query("SELECT e FROM EmailPendiente e WHERE e.estado IN :estados AND e.proximoIntento <= :ahora ORDER BY e.proximoIntento")
+    List<EmailPendiente> buscarListos(@Param("estados") Collection<EstadoEmail> estados,
+                                      @Param("ahora") LocalDateTime ahora,
+                                      Pageable pagina);
+
+    /**
+     * Reserva un email para este nodo hasta {@code hasta}; solo uno de los nodos que
+     * lo leyeron con la misma {@code versionLeida} consigue actualizar la fila, y la
+     * reserva incrementa la versión
+     * @return 1 si se reservó, 0 si otro nodo se adelantó
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailPendiente e SET e.estado = :estado, e.proximoIntento = :hasta, e.version = e.version + 1 " +
+           "WHERE e.id = :id AND e.version = :versionLeida")
+    int reservar(@Param("id") Long id,
+                 @Param("versionLeida") Long versionLeida,
+                 @Param("estado") EstadoEmail estado,
+                 @Param("hasta") LocalDateTime hasta);
+
+    /**
+     * Elimina los emails ya enviados antes de la fecha indicada
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailPendiente e WHERE e.estado = :estado AND e.fechaEnvio < :limite")
+    int eliminarEnviadosAntesDe(@Param("estado") EstadoEmail estado, @Param("limite") LocalDateTime limite);
+
+    /**
+     * Elimina los emails fallidos creados antes de la fecha indicada (no tienen fecha de envío)
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailPendiente e WHERE e.estado = :estado AND e.fechaCreacion < :limite")
+    int eliminarFallidosAntesDe(@Param("estado") EstadoEmail estado, @Param("limite") LocalDateTime limite);
+}
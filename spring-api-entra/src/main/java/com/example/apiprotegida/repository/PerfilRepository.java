@@ -41,6 +41,12 @@ public interface PerfilRepository extends JpaRepository<Perfil, Long> {
     @Query("SELECT p FROM Perfil p WHERE p.azureGroupId IN :azureGroupIds AND p.activo = true")
     List<Perfil> findByAzureGroupIds(@Param("azureGroupIds") List<String> azureGroupIds);
     
+    /**
+     * Busca perfiles por múltiples IDs de grupos de Azure AD con sus permisos cargados (una sola consulta)
+     */
+    @Query("SELECT DISTINCT p FROM Perfil p LEFT JOIN FETCH p.permisos WHERE p.azureGroupId IN :azureGroupIds AND p.activo = true")
+    List<Perfil> findByAzureGroupIdsWithPermisos(@Param("azureGroupIds") List<String> azureGroupIds);
+    
     /**
      * Busca perfiles con sus permisos cargados
      */
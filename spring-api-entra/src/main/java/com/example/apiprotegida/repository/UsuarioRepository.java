@@ -36,6 +36,14 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
            "WHERE u.email = :email")
     Optional<Usuario> findByEmailWithPerfiles(@Param("email") String email);
     
+    /**
+     * Obtiene los IDs de los perfiles asignados a un usuario (autorización de usuarios locales)
+     * @param email El email del usuario
+     * @return IDs de sus perfiles; vacío si no existe o no tiene perfiles
+     */
+    @Query("SELECT p.id FROM Usuario u JOIN u.perfiles p WHERE u.email = :email")
+    List<Long> findPerfilIdsByEmail(@Param("email") String email);
+    
     /**
      * Busca un usuario por su Azure Object ID
      * @param azureObjectId El Object ID de Azure AD
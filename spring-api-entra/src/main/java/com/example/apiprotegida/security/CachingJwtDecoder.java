@@ -0,0 +1,221 @@
+package com.example.apiprotegida.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JwtDecoder que reutiliza el Jwt ya validado de un token de Microsoft Entra ID
+ *
+ * El mismo access token se presenta durante hasta una hora; en lugar de volver a
+ * parsearlo y verificar su firma RS256 en cada petición, se guarda el Jwt validado
+ * indexado por el hash SHA-256 del token hasta su claim "exp". Solo se guardan
+ * tokens que el decoder delegado aceptó. Los aciertos no toman ningún candado.
+ * La caché está acotada por número de entradas y por bytes estimados: al superar
+ * un límite, un único hilo descarta en lote los expirados y los menos usados (LRU
+ * aproximado) hasta dejar un 10 % de margen; además los expirados se purgan
+ * periódicamente. Publica {@code cache.gets},
+ * {@code cache.evictions} y {@code cache.size} con la etiqueta {@code cache=azure-jwt}.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private static final String NOMBRE = "azure-jwt";
+
+    private final JwtDecoder delegate;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Clock clock;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+    private final AtomicLong bytesActuales = new AtomicLong();
+
+    /** Solo un hilo recorta la caché a la vez; los demás siguen sin esperar */
+    private final AtomicBoolean recortando = new AtomicBoolean();
+
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxEntries, long maxBytes) {
+        this(delegate, maxEntries, maxBytes, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, int maxEntries, long maxBytes, Clock clock) {
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    /**
+     * Publica las estadísticas de la caché en Actuator
+     */
+    public CachingJwtDecoder registrarMetricas(MeterRegistry meterRegistry) {
+        if (meterRegistry == null) {
+            return this;
+        }
+        FunctionCounter.builder("cache.gets", aciertos, AtomicLong::get)
+                .tag("cache", NOMBRE).tag("result", "hit")
+                .description("Tokens de Azure AD resueltos sin volver a verificar la firma")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", fallos, AtomicLong::get)
+                .tag("cache", NOMBRE).tag("result", "miss")
+                .description("Tokens de Azure AD decodificados y verificados")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", expulsiones, AtomicLong::get)
+                .tag("cache", NOMBRE)
+                .description("Entradas expulsadas por tamaño o expiración")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, CachingJwtDecoder::tamano)
+                .tag("cache", NOMBRE)
+                .register(meterRegistry);
+        return this;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String clave = hashToken(token);
+        Instant ahora = clock.instant();
+
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null) {
+            if (ahora.isBefore(entrada.jwt.getExpiresAt())) {
+                entrada.ultimoAcceso = System.nanoTime();
+                aciertos.incrementAndGet();
+                return entrada.jwt;
+            }
+            quitar(clave, entrada);
+        }
+
+        fallos.incrementAndGet();
+        Jwt jwt = delegate.decode(token);
+        if (jwt.getExpiresAt() == null || !ahora.isBefore(jwt.getExpiresAt())) {
+            return jwt;
+        }
+
+        Entrada nueva = new Entrada(jwt, estimarBytes(jwt));
+        if (nueva.bytes > maxBytes) {
+            return jwt;
+        }
+        Entrada anterior = entradas.put(clave, nueva);
+        long bytes = bytesActuales.addAndGet(anterior == null ? nueva.bytes : nueva.bytes - anterior.bytes);
+        if (entradas.size() > maxEntries || bytes > maxBytes) {
+            recortar(ahora);
+        }
+        return jwt;
+    }
+
+    public int tamano() {
+        return entradas.size();
+    }
+
+    public long bytes() {
+        return bytesActuales.get();
+    }
+
+    /**
+     * Purga periódica de los tokens ya expirados, para que no ocupen memoria
+     * hasta que la caché se llene
+     */
+    @Scheduled(fixedDelayString = "${azure.jwt.decoded-cache.purge-interval-ms:60000}",
+               initialDelayString = "${azure.jwt.decoded-cache.purge-interval-ms:60000}")
+    public void purgarExpirados() {
+        Instant ahora = clock.instant();
+        for (Map.Entry<String, Entrada> actual : entradas.entrySet()) {
+            if (!ahora.isBefore(actual.getValue().jwt.getExpiresAt())) {
+                quitar(actual.getKey(), actual.getValue());
+            }
+        }
+    }
+
+    /**
+     * Descarta primero los tokens expirados y después los menos usados hasta
+     * quedar un 10 % por debajo de los límites de entradas y bytes, de modo que
+     * el recorrido se amortiza entre muchas inserciones. Si otro hilo ya está
+     * recortando, no hace nada.
+     */
+    private void recortar(Instant ahora) {
+        if (!recortando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<String, Entrada>> vigentes = new ArrayList<>(entradas.size());
+            for (Map.Entry<String, Entrada> actual : entradas.entrySet()) {
+                if (!ahora.isBefore(actual.getValue().jwt.getExpiresAt())) {
+                    quitar(actual.getKey(), actual.getValue());
+                } else {
+                    vigentes.add(actual);
+                }
+            }
+            int objetivoEntradas = maxEntries - Math.max(1, maxEntries / 10);
+            long objetivoBytes = maxBytes - maxBytes / 10;
+            if (entradas.size() <= objetivoEntradas && bytesActuales.get() <= objetivoBytes) {
+                return;
+            }
+            vigentes.sort(Comparator.comparingLong(actual -> actual.getValue().ultimoAcceso));
+            for (Map.Entry<String, Entrada> menosUsada : vigentes) {
+                if (entradas.size() <= objetivoEntradas && bytesActuales.get() <= objetivoBytes) {
+                    break;
+                }
+                quitar(menosUsada.getKey(), menosUsada.getValue());
+            }
+        } finally {
+            recortando.set(false);
+        }
+    }
+
+    private void quitar(String clave, Entrada entrada) {
+        if (entradas.remove(clave, entrada)) {
+            bytesActuales.addAndGet(-entrada.bytes);
+            expulsiones.incrementAndGet();
+        }
+    }
+
+    /**
+     * Aproximación del tamaño en memoria: el texto del token más sus headers y
+     * claims ya decodificados, que ocupan algo más que el propio payload
+     */
+    private static long estimarBytes(Jwt jwt) {
+        return jwt.getTokenValue().length() * 3L;
+    }
+
+    private static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static final class Entrada {
+
+        private final Jwt jwt;
+        private final long bytes;
+        /** Último acierto (System.nanoTime); se escribe sin sincronizar, basta un valor aproximado */
+        private volatile long ultimoAcceso = System.nanoTime();
+
+        private Entrada(Jwt jwt, long bytes) {
+            this.jwt = jwt;
+            this.bytes = bytes;
+        }
+    }
+}
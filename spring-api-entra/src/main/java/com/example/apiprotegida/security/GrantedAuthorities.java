@@ -0,0 +1,52 @@
+package com.example.apiprotegida.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registro global (flyweight) de authorities
+ *
+ * Cada authority conocida por el grafo de permisos (grupos con perfil, roles,
+ * permisos y roles del JWT local) tiene una única instancia inmutable
+ * compartida, de modo que construir las authorities de una petición no crea
+ * objetos nuevos. Los nombres que no están registrados (p. ej. un grupo de
+ * Azure AD cualquiera que llega en el token) se crean por petición y no se
+ * retienen, así que el registro no crece con datos que controla el cliente.
+ */
+public final class GrantedAuthorities {
+
+    private static volatile Map<String, GrantedAuthority> instancias = Map.of();
+
+    private GrantedAuthorities() {
+    }
+
+    /**
+     * Devuelve la instancia canónica de la authority si está registrada, o una nueva si no
+     */
+    public static GrantedAuthority of(String authority) {
+        GrantedAuthority registrada = instancias.get(authority);
+        return registrada != null ? registrada : new SimpleGrantedAuthority(authority);
+    }
+
+    /**
+     * Sustituye las authorities registradas por las dadas, conservando la instancia
+     * de las que ya estaban; las que desaparecen del grafo dejan de retenerse
+     */
+    public static synchronized void registrar(Collection<String> nombres) {
+        Map<String, GrantedAuthority> anteriores = instancias;
+        Map<String, GrantedAuthority> nuevas = new HashMap<>();
+        for (String nombre : nombres) {
+            GrantedAuthority existente = anteriores.get(nombre);
+            nuevas.put(nombre, existente != null ? existente : new SimpleGrantedAuthority(nombre));
+        }
+        instancias = Map.copyOf(nuevas);
+    }
+
+    public static int size() {
+        return instancias.size();
+    }
+}
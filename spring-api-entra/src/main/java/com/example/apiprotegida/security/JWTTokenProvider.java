@@ -4,12 +4,15 @@ import com.example.apiprotegida.model.Usuario;
 import com.example.apiprotegida.model.Perfil;
 import com.example.apiprotegida.model.Permiso;
 import com.example.apiprotegida.repository.UsuarioRepository;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,14 +20,25 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static com.example.apiprotegida.security.SecurityConstant.*;
@@ -33,6 +47,16 @@ import static java.util.Arrays.stream;
 /**
  * Proveedor de tokens JWT para autenticación local
  * Compatible con el sistema de permisos existente
+ *
+ * Con {@code jwt.compact.enabled=true} los tokens nuevos solo llevan los IDs de
+ * perfil ("prf") y la versión del grafo de permisos al emitirlos ("pv"); las
+ * authorities se expanden en el servidor desde {@link PermissionGraph} y se
+ * recalculan cuando cambia la versión del grafo, así un cambio o revocación de
+ * permisos se aplica de inmediato. Los tokens completos se siguen aceptando.
+ *
+ * Con {@code jwt.authorities-bitmap.enabled=true} los tokens completos llevan los
+ * permisos en el claim "pbm" ({@link PermissionBitmap}) y en "authorities" solo los
+ * roles. Todas las authorities salen del registro compartido {@link GrantedAuthorities}.
  */
 @Component
 @Slf4j
@@ -41,16 +65,72 @@ public class JWTTokenProvider {
     @Value("${jwt.secret:defaultSecretKeyForJWTTokenGeneration123456789}")
     private String secret;
 
+    /** Identificador (header "kid") de la clave con la que se firman los tokens nuevos */
+    @Value("${jwt.key-id:default}")
+    private String keyId = "default";
+
+    /** Claves anteriores aceptadas solo para verificar, en formato kid:secreto separadas por comas */
+    @Value("${jwt.previous-keys:}")
+    private String previousKeys = "";
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private int maxVerifiedTokens = 10_000;
+
+    /** Emitir tokens compactos (IDs de perfil + versión del grafo) en lugar de la lista de authorities */
+    @Value("${jwt.compact.enabled:false}")
+    private boolean compactTokens = false;
+
+    /** Codificar los permisos de los tokens completos como mapa de bits (claim "pbm") */
+    @Value("${jwt.authorities-bitmap.enabled:false}")
+    private boolean authoritiesBitmap = false;
+
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    @Autowired
+    private PermissionGraph permissionGraph;
+
+    /** Algoritmo de firma con la clave vigente, creado una sola vez (es thread-safe) */
+    private Algorithm signingAlgorithm;
+
+    /** Verificadores por "kid"; los tokens sin kid se verifican con la clave vigente */
+    private Map<String, JWTVerifier> verifiersByKeyId = Map.of();
+
+    /** Tokens ya verificados, indexados por el hash SHA-256 del token, hasta su expiración */
+    private final ConcurrentHashMap<String, VerifiedLocalToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    /** Solo un hilo recorta la caché de tokens verificados a la vez */
+    private final AtomicBoolean recortandoVerificados = new AtomicBoolean();
+
+    /**
+     * Construye una sola vez el algoritmo de firma y los verificadores de cada clave
+     */
+    @PostConstruct
+    public void init() {
+        signingAlgorithm = Algorithm.HMAC512(secret.getBytes(StandardCharsets.UTF_8));
+
+        Map<String, JWTVerifier> verifiers = new HashMap<>();
+        verifiers.put(keyId, buildVerifier(signingAlgorithm));
+        if (previousKeys != null && !previousKeys.isBlank()) {
+            for (String entry : previousKeys.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                    throw new IllegalStateException("Formato inválido en jwt.previous-keys, se esperaba kid:secreto");
+                }
+                verifiers.putIfAbsent(parts[0].trim(), buildVerifier(Algorithm.HMAC512(parts[1].trim().getBytes(StandardCharsets.UTF_8))));
+            }
+        }
+        verifiersByKeyId = Map.copyOf(verifiers);
+        log.info("🔑 [JWTTokenProvider] Claves JWT locales cargadas: vigente '{}', total {}", keyId, verifiersByKeyId.size());
+    }
+
     /**
      * Genera un token JWT para un usuario
      * @param usuario El usuario para el cual generar el token
      * @return Token JWT con prefijo Bearer
      */
     public String generateJwtToken(Usuario usuario) {
-        log.info("🔑 [JWTTokenProvider] Generando token para usuario: {}", usuario.getEmail());
+        log.debug("🔑 [JWTTokenProvider] Generando token para usuario: {}", usuario.getEmail());
         
         // Recargar el usuario con sus perfiles y permisos desde la base de datos
         Usuario usuarioConPerfiles = usuarioRepository.findByEmailWithPerfiles(usuario.getEmail())
@@ -61,62 +141,246 @@ public class JWTTokenProvider {
         String nombrePerfil = perfiles.isEmpty() ? "Usuario Básico" : 
                               perfiles.iterator().next().getNombre();
         
-        log.info("📋 [JWTTokenProvider] Perfiles del usuario: {}", 
-                perfiles.stream().map(Perfil::getNombre).collect(Collectors.joining(", ")));
+        // Argumento diferido: el join solo se ejecuta si DEBUG está activo
+        log.atDebug().setMessage("📋 [JWTTokenProvider] Perfiles del usuario: {}")
+                .addArgument(() -> perfiles.stream().map(Perfil::getNombre).collect(Collectors.joining(", ")))
+                .log();
         
-        // Construir lista de authorities (roles + permisos)
-        List<String> authorities = new ArrayList<>();
-        
-        // Siempre agregar rol USER para que Spring Security lo reconozca
-        authorities.add("ROLE_USER");
+        if (compactTokens) {
+            Long[] perfilIds = perfiles.stream().map(Perfil::getId).filter(Objects::nonNull).toArray(Long[]::new);
+            long version = permissionGraph.snapshot().getVersion();
+            log.debug("🔑 [JWTTokenProvider] Token compacto: perfiles {} con versión de permisos {}", perfilIds, version);
+            
+            return TOKEN_PREFIX + JWT.create()
+                    .withKeyId(keyId)
+                    .withIssuer(API_TYC)
+                    .withSubject(usuario.getEmail())
+                    .withClaim("perfil", nombrePerfil)
+                    .withArrayClaim(PERFIL_IDS, perfilIds)
+                    .withClaim(PERMISSIONS_VERSION, version)
+                    .withIssuedAt(new Date())
+                    .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                    .sign(signingAlgorithm);
+        }
         
-        // Agregar permisos de todos los perfiles del usuario
+        List<Permiso> permisos = new ArrayList<>();
         for (Perfil perfil : perfiles) {
-            for (Permiso permiso : perfil.getPermisos()) {
-                if (permiso.getActivo()) {
-                    authorities.add(permiso.getCodigo());
-                }
-            }
+            permisos.addAll(perfil.getPermisos());
         }
+        List<Long> permisoIds = !authoritiesBitmap ? List.of() : permisos.stream()
+                .filter(permiso -> Boolean.TRUE.equals(permiso.getActivo()))
+                .map(Permiso::getId)
+                .distinct()
+                .collect(Collectors.toList());
         
-        // Si el usuario es admin (tiene perfil de Administrador), agregar ROLE_ADMIN
-        boolean isAdmin = perfiles.stream()
-                .anyMatch(p -> p.getNombre().equalsIgnoreCase("Administrador") || 
-                              p.getNombre().equalsIgnoreCase("Admin"));
-        if (isAdmin) {
-            authorities.add("ROLE_ADMIN");
+        if (authoritiesBitmap && PermissionBitmap.codificable(permisoIds)) {
+            List<String> roles = construirRoles(perfiles);
+            String bitmap = PermissionBitmap.codificar(permisoIds);
+            log.debug("🔑 [JWTTokenProvider] Roles {} y {} permisos en mapa de bits", roles, permisoIds.size());
+            
+            return TOKEN_PREFIX + JWT.create()
+                    .withKeyId(keyId)
+                    .withIssuer(API_TYC)
+                    .withSubject(usuario.getEmail())
+                    .withClaim("perfil", nombrePerfil)
+                    .withArrayClaim(AUTHORITIES, roles.toArray(new String[0]))
+                    .withClaim(PERMISSIONS_BITMAP, bitmap)
+                    .withIssuedAt(new Date())
+                    .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                    .sign(signingAlgorithm);
         }
         
-        // Si el usuario es manager/gestor, agregar ROLE_MANAGER
-        boolean isManager = perfiles.stream()
-                .anyMatch(p -> p.getNombre().equalsIgnoreCase("Gestor") || 
-                              p.getNombre().equalsIgnoreCase("Manager"));
-        if (isManager) {
-            authorities.add("ROLE_MANAGER");
-        }
+        List<String> authorities = construirAuthorities(perfiles, permisos);
         
-        log.info("🔑 [JWTTokenProvider] Authorities generadas: {}", authorities);
+        log.debug("🔑 [JWTTokenProvider] Authorities generadas: {}", authorities);
         
         return TOKEN_PREFIX + JWT.create()
+                .withKeyId(keyId)
                 .withIssuer(API_TYC)
                 .withSubject(usuario.getEmail())
                 .withClaim("perfil", nombrePerfil)
                 .withArrayClaim(AUTHORITIES, authorities.toArray(new String[0]))
                 .withIssuedAt(new Date())
                 .withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .sign(Algorithm.HMAC512(secret.getBytes()));
+                .sign(signingAlgorithm);
     }
 
     /**
      * Extrae las autoridades del token JWT
      * @param token El token JWT
-     * @return Lista de autoridades
+     * @return Lista inmutable de autoridades (compartida con la caché de tokens verificados)
      */
     public List<GrantedAuthority> getAuthorities(String token) {
-        String[] claims = getClaimsFromToken(token);
-        return stream(claims)
-                .map(SimpleGrantedAuthority::new)
+        return verify(token).getAuthorities();
+    }
+
+    /**
+     * Verifica la firma y expiración de un token una sola vez y cachea el resultado
+     * hasta que expire. Las siguientes peticiones con el mismo token no repiten la
+     * verificación HMAC.
+     * @param token El token JWT
+     * @return Datos verificados del token
+     * @throws JWTVerificationException si el token es inválido o está expirado
+     */
+    public VerifiedLocalToken verify(String token) {
+        String tokenHash = hashToken(token);
+        VerifiedLocalToken cached = verifiedTokens.get(tokenHash);
+        if (cached != null) {
+            if (!cached.isExpired(Instant.now())) {
+                return cached.dependeDelGrafo() ? vigente(tokenHash, cached) : cached;
+            }
+            // Expirado: se descarta y se vuelve a verificar para lanzar la excepción correspondiente
+            verifiedTokens.remove(tokenHash, cached);
+        }
+
+        DecodedJWT decoded = JWT.decode(token);
+        getJWTVerifier(decoded.getKeyId()).verify(decoded);
+        Long[] perfilIds = decoded.getClaim(PERFIL_IDS).asArray(Long.class);
+        if (perfilIds != null) {
+            VerifiedLocalToken compacto = expandir(new VerifiedLocalToken(
+                    decoded.getSubject(),
+                    decoded.getClaim("perfil").asString(),
+                    List.of(),
+                    decoded.getExpiresAtAsInstant(),
+                    List.of(perfilIds),
+                    VerifiedLocalToken.SIN_VERSION));
+            if (compacto.getExpiresAt() != null) {
+                ensureCapacity();
+                verifiedTokens.put(tokenHash, compacto);
+            }
+            return compacto;
+        }
+
+        String[] claims = decoded.getClaim(AUTHORITIES).asArray(String.class);
+        List<GrantedAuthority> authorities = claims == null ? new ArrayList<>() : stream(claims)
+                .map(GrantedAuthorities::of)
                 .collect(Collectors.toList());
+        String bitmap = decoded.getClaim(PERMISSIONS_BITMAP).asString();
+        VerifiedLocalToken verified = bitmap == null
+                ? new VerifiedLocalToken(
+                        decoded.getSubject(),
+                        decoded.getClaim("perfil").asString(),
+                        authorities,
+                        decoded.getExpiresAtAsInstant())
+                : expandir(new VerifiedLocalToken(
+                        decoded.getSubject(),
+                        decoded.getClaim("perfil").asString(),
+                        authorities,
+                        decoded.getExpiresAtAsInstant(),
+                        decodificarMapa(bitmap)));
+
+        if (verified.getExpiresAt() != null) {
+            ensureCapacity();
+            verifiedTokens.put(tokenHash, verified);
+        }
+        return verified;
+    }
+
+    /**
+     * Devuelve el token compacto o con mapa de bits con authorities de la versión
+     * vigente del grafo, recalculándolas (y actualizando la caché) solo si la versión cambió
+     */
+    private VerifiedLocalToken vigente(String tokenHash, VerifiedLocalToken cached) {
+        if (cached.getVersionPermisos() == permissionGraph.snapshot().getVersion()) {
+            return cached;
+        }
+        VerifiedLocalToken actualizado = expandir(cached);
+        verifiedTokens.replace(tokenHash, cached, actualizado);
+        return actualizado;
+    }
+
+    /**
+     * Calcula las authorities de un token compacto o con mapa de bits con la foto
+     * vigente del grafo; los perfiles eliminados o desactivados y los permisos que ya
+     * no están activos no aportan authorities
+     */
+    private VerifiedLocalToken expandir(VerifiedLocalToken token) {
+        PermissionSnapshot grafo = permissionGraph.snapshot();
+        List<GrantedAuthority> authorities;
+        if (token.isCompacto()) {
+            int[] indices = grafo.indicesPerfilesPorId(token.getPerfilIds());
+            authorities = construirAuthorities(grafo.perfiles(indices), grafo.permisosEfectivos(indices)).stream()
+                    .map(GrantedAuthorities::of)
+                    .collect(Collectors.toList());
+        } else {
+            authorities = new ArrayList<>(token.getRolesDelToken());
+            authorities.addAll(permisosDelMapa(token.getPermisoIds(), grafo));
+        }
+        return token.conAuthorities(authorities, grafo.getVersion());
+    }
+
+    /**
+     * Decodifica el claim "pbm" a IDs de permiso
+     * @throws JWTVerificationException si el mapa de bits está mal formado
+     */
+    private static long[] decodificarMapa(String bitmap) {
+        try {
+            return PermissionBitmap.decodificar(bitmap);
+        } catch (IllegalArgumentException e) {
+            throw new JWTVerificationException(TOKEN_NO_SE_PUEDE_VERIFICAR, e);
+        }
+    }
+
+    /**
+     * Traduce los IDs del mapa de bits a authorities de permiso con una foto del
+     * grafo; los IDs que ya no corresponden a un permiso activo se ignoran
+     */
+    private static List<GrantedAuthority> permisosDelMapa(long[] permisoIds, PermissionSnapshot grafo) {
+        List<GrantedAuthority> authorities = new ArrayList<>(permisoIds.length);
+        for (long permisoId : permisoIds) {
+            Permiso permiso = grafo.getPermisoPorId(permisoId);
+            if (permiso != null) {
+                authorities.add(GrantedAuthorities.of(permiso.getCodigo()));
+            }
+        }
+        return authorities;
+    }
+
+    /**
+     * Construye la lista de authorities (roles + permisos activos) de un conjunto de perfiles
+     * @param perfiles Perfiles del usuario
+     * @param permisos Permisos de esos perfiles (los inactivos se descartan)
+     * @return Roles del usuario seguidos de los códigos de permiso, sin repetidos
+     */
+    private static List<String> construirAuthorities(Collection<Perfil> perfiles, Collection<Permiso> permisos) {
+        List<String> authorities = construirRoles(perfiles);
+        
+        // Agregar permisos de todos los perfiles del usuario
+        for (Permiso permiso : permisos) {
+            if (Boolean.TRUE.equals(permiso.getActivo()) && !authorities.contains(permiso.getCodigo())) {
+                authorities.add(permiso.getCodigo());
+            }
+        }
+        return authorities;
+    }
+
+    /**
+     * Roles del usuario según el nombre de sus perfiles
+     * @param perfiles Perfiles del usuario
+     * @return ROLE_USER y, si corresponde, ROLE_ADMIN y ROLE_MANAGER
+     */
+    private static List<String> construirRoles(Collection<Perfil> perfiles) {
+        List<String> roles = new ArrayList<>();
+        
+        // Siempre agregar rol USER para que Spring Security lo reconozca
+        roles.add("ROLE_USER");
+        
+        // Si el usuario es admin (tiene perfil de Administrador), agregar ROLE_ADMIN
+        boolean isAdmin = perfiles.stream()
+                .anyMatch(p -> p.getNombre().equalsIgnoreCase("Administrador") || 
+                              p.getNombre().equalsIgnoreCase("Admin"));
+        if (isAdmin) {
+            roles.add("ROLE_ADMIN");
+        }
+        
+        // Si el usuario es manager/gestor, agregar ROLE_MANAGER
+        boolean isManager = perfiles.stream()
+                .anyMatch(p -> p.getNombre().equalsIgnoreCase("Gestor") || 
+                              p.getNombre().equalsIgnoreCase("Manager"));
+        if (isManager) {
+            roles.add("ROLE_MANAGER");
+        }
+        return roles;
     }
 
     /**
@@ -134,14 +398,28 @@ public class JWTTokenProvider {
         return userPasswordAuthToken;
     }
 
+    /**
+     * Crea el objeto de autenticación de un token ya verificado; conserva los IDs de
+     * perfil de los tokens compactos para la autorización
+     * @param verified Datos verificados del token
+     * @param request Petición HTTP
+     * @return Objeto de autenticación
+     */
+    public Authentication getAuthentication(VerifiedLocalToken verified, HttpServletRequest request) {
+        LocalJwtAuthenticationToken authentication = new LocalJwtAuthenticationToken(
+                verified.getSubject(), verified.getAuthorities(), verified.getPerfilIds());
+
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        return authentication;
+    }
+
     /**
      * Extrae el sujeto (email) del token
      * @param token El token JWT
      * @return Email del usuario
      */
     public String getSubject(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getSubject();
+        return verify(token).getSubject();
     }
 
     /**
@@ -150,12 +428,9 @@ public class JWTTokenProvider {
      * @return true si es válido, false en caso contrario
      */
     public boolean isTokenValid(String token) {
-        JWTVerifier verifier = getJWTVerifier();
         boolean isValid = false;
         try {
-            DecodedJWT jwtClaims = verifier.verify(token);
-            Date expiration = jwtClaims.getExpiresAt();
-            isValid = !isTokenExpired(expiration);
+            isValid = !verify(token).isExpired(Instant.now());
         } catch (TokenExpiredException e) {
             log.error("El token se encuentra expirado: {}", e.getMessage());
         } catch (JWTVerificationException e) {
@@ -170,40 +445,71 @@ public class JWTTokenProvider {
      * @return Nombre del perfil
      */
     public String getPerfilFromToken(String token) {
-        return getJWTVerifier().verify(token).getClaim("perfil").asString();
+        return verify(token).getPerfil();
     }
 
     /**
-     * Verifica si un token está expirado
-     * @param expiration Fecha de expiración
-     * @return true si está expirado
+     * Mantiene acotada la caché de tokens verificados: al llenarse, un único hilo
+     * descarta los expirados y, si no basta, los que expiran antes hasta dejar un
+     * 10 % de margen, de modo que el recorrido se amortiza entre muchas inserciones
      */
-    private boolean isTokenExpired(Date expiration) {
-        return expiration.before(new Date());
+    private void ensureCapacity() {
+        if (verifiedTokens.size() < maxVerifiedTokens || !recortandoVerificados.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Instant ahora = Instant.now();
+            verifiedTokens.values().removeIf(verified -> verified.isExpired(ahora));
+            int objetivo = maxVerifiedTokens - Math.max(1, maxVerifiedTokens / 10);
+            int sobrantes = verifiedTokens.size() - objetivo;
+            if (sobrantes <= 0) {
+                return;
+            }
+            List<Map.Entry<String, VerifiedLocalToken>> porExpiracion = new ArrayList<>(verifiedTokens.entrySet());
+            porExpiracion.sort(Comparator.comparing(entrada -> entrada.getValue().getExpiresAt()));
+            for (int i = 0; i < sobrantes && i < porExpiracion.size(); i++) {
+                Map.Entry<String, VerifiedLocalToken> entrada = porExpiracion.get(i);
+                verifiedTokens.remove(entrada.getKey(), entrada.getValue());
+            }
+            log.debug("Caché de tokens verificados llena, {} entradas expulsadas", sobrantes);
+        } finally {
+            recortandoVerificados.set(false);
+        }
     }
 
     /**
-     * Extrae los claims de autoridades del token
+     * Calcula el hash SHA-256 del token para no guardar tokens en claro como clave
      * @param token El token JWT
-     * @return Array de autoridades
+     * @return Hash en hexadecimal
      */
-    private String[] getClaimsFromToken(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getClaim(AUTHORITIES).asArray(String.class);
+    private static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 
     /**
-     * Crea un verificador JWT
+     * Obtiene el verificador de la clave indicada en el header "kid" del token
+     * @param tokenKeyId kid del token, o null para tokens emitidos sin kid
      * @return Verificador JWT configurado
      */
-    private JWTVerifier getJWTVerifier() {
-        JWTVerifier verifier;
-        try {
-            Algorithm algorithm = Algorithm.HMAC512(secret);
-            verifier = JWT.require(algorithm).withIssuer(API_TYC).build();
-        } catch (JWTVerificationException ex) {
+    private JWTVerifier getJWTVerifier(String tokenKeyId) {
+        JWTVerifier verifier = verifiersByKeyId.get(tokenKeyId != null ? tokenKeyId : keyId);
+        if (verifier == null) {
             throw new JWTVerificationException(TOKEN_NO_SE_PUEDE_VERIFICAR);
         }
         return verifier;
     }
+
+    /**
+     * Crea un verificador JWT para un algoritmo (los verificadores son thread-safe y se reutilizan)
+     * @param algorithm Algoritmo con la clave de verificación
+     * @return Verificador JWT configurado
+     */
+    private static JWTVerifier buildVerifier(Algorithm algorithm) {
+        return JWT.require(algorithm).withIssuer(API_TYC).build();
+    }
 }
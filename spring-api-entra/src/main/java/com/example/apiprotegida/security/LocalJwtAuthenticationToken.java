@@ -0,0 +1,31 @@
+package com.example.apiprotegida.security;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Autenticación de un JWT local ya verificado
+ *
+ * El principal sigue siendo el email del usuario; además conserva los IDs de
+ * perfil del token compacto ("prf") para que la autorización resuelva los
+ * perfiles del usuario sin consultar la base de datos.
+ */
+public class LocalJwtAuthenticationToken extends UsernamePasswordAuthenticationToken {
+
+    private final List<Long> perfilIds;
+
+    public LocalJwtAuthenticationToken(String email, Collection<? extends GrantedAuthority> authorities, List<Long> perfilIds) {
+        super(email, null, authorities);
+        this.perfilIds = perfilIds;
+    }
+
+    /**
+     * IDs de perfil del token compacto, o null si el token trae sus authorities
+     */
+    public List<Long> getPerfilIds() {
+        return perfilIds;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.apiprotegida.security;
+
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Codificación compacta de un conjunto de permisos para el claim "pbm" del JWT local
+ *
+ * Cada permiso es un bit cuya posición es su ID de base de datos (estable entre
+ * nodos y reinicios, a diferencia del ordinal de una foto del grafo). El mapa de
+ * bits se serializa en little-endian y base64url sin relleno: decenas de códigos
+ * de permiso ocupan unos pocos caracteres.
+ */
+public final class PermissionBitmap {
+
+    /** Mayor ID de permiso representable; con IDs mayores se usa la lista de códigos */
+    public static final long MAX_ID = 65_535;
+
+    private PermissionBitmap() {
+    }
+
+    /**
+     * Indica si todos los IDs se pueden representar en el mapa de bits
+     */
+    public static boolean codificable(Collection<Long> permisoIds) {
+        for (Long id : permisoIds) {
+            if (id == null || id < 0 || id > MAX_ID) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param permisoIds IDs de permiso (ver {@link #codificable})
+     * @return Mapa de bits en base64url sin relleno
+     */
+    public static String codificar(Collection<Long> permisoIds) {
+        BitSet bits = new BitSet();
+        for (Long id : permisoIds) {
+            bits.set(Math.toIntExact(id));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bits.toByteArray());
+    }
+
+    /**
+     * @param valor Mapa de bits en base64url
+     * @return IDs de permiso en orden ascendente
+     * @throws IllegalArgumentException si el valor no es base64url válido
+     */
+    public static long[] decodificar(String valor) {
+        BitSet bits = BitSet.valueOf(Base64.getUrlDecoder().decode(valor));
+        long[] ids = new long[bits.cardinality()];
+        int posicion = 0;
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            ids[posicion++] = id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.apiprotegida.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Exige que el usuario tenga algún permiso activo de la acción indicada en el módulo
+ *
+ * Se resuelve contra el grafo de permisos (perfiles de la BD), no contra cadenas de
+ * authorities, por lo que vale igual para tokens de Azure AD y JWT locales. Lo evalúa
+ * {@link com.example.apiprotegida.security.authz.PermissionAuthorizationManager}.
+ */
+@Target({ElementType.METHOD, ElementType.ANNOTATION_TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequierePermiso {
+
+    /**
+     * Módulo del permiso, p. ej. "USUARIOS"
+     */
+    String modulo();
+
+    /**
+     * Acción del permiso dentro del módulo, p. ej. "LEER"
+     */
+    String accion();
+
+    /**
+     * Authorities que conceden acceso sin consultar el grafo (p. ej. "SCOPE_access_as_user")
+     */
+    String[] oAuthority() default {};
+}
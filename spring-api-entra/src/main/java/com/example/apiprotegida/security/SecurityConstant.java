@@ -19,6 +19,15 @@ public class SecurityConstant {
     /** Clave para el claim de autoridades en el JWT */
     public static final String AUTHORITIES = "authorities";
     
+    /** Clave para el claim con los IDs de perfil de un token compacto */
+    public static final String PERFIL_IDS = "prf";
+    
+    /** Clave para el claim con la versión del grafo de permisos al emitir un token compacto */
+    public static final String PERMISSIONS_VERSION = "pv";
+    
+    /** Clave para el claim con los permisos codificados como mapa de bits (ver PermissionBitmap) */
+    public static final String PERMISSIONS_BITMAP = "pbm";
+    
     /** Tiempo de expiración del token JWT en milisegundos (24 horas) */
     public static final long EXPIRATION_TIME = 24 * 60 * 60 * 1000; // 24 horas
     
@@ -0,0 +1,130 @@
+package com.example.apiprotegida.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Resultado de verificar un token JWT local
+ *
+ * Contiene los datos que el filtro necesita para autenticar la petición,
+ * de modo que la firma del token solo se verifica una vez. En un token
+ * compacto las authorities no vienen en el token: se expanden desde el grafo
+ * de permisos y se guarda la versión del grafo con la que se calcularon. Lo
+ * mismo pasa con los permisos del mapa de bits ("pbm"): se guardan sus IDs y
+ * se vuelven a traducir a códigos cuando cambia la versión del grafo.
+ */
+public final class VerifiedLocalToken {
+
+    /** Versión usada por los tokens que traen sus authorities completas */
+    public static final long SIN_VERSION = -1L;
+
+    private final String subject;
+    private final String perfil;
+    private final List<GrantedAuthority> authorities;
+    private final Instant expiresAt;
+    private final List<Long> perfilIds;
+    private final List<GrantedAuthority> rolesDelToken;
+    private final long[] permisoIds;
+    private final long versionPermisos;
+
+    public VerifiedLocalToken(String subject, String perfil, List<GrantedAuthority> authorities, Instant expiresAt) {
+        this(subject, perfil, authorities, expiresAt, null, SIN_VERSION);
+    }
+
+    public VerifiedLocalToken(String subject, String perfil, List<GrantedAuthority> authorities, Instant expiresAt,
+                              List<Long> perfilIds, long versionPermisos) {
+        this(subject, perfil, authorities, expiresAt, perfilIds, null, null, versionPermisos);
+    }
+
+    /**
+     * Token con mapa de bits: las authorities son los roles del claim hasta que se
+     * traducen los IDs de permiso con una versión del grafo
+     */
+    public VerifiedLocalToken(String subject, String perfil, List<GrantedAuthority> rolesDelToken, Instant expiresAt,
+                              long[] permisoIds) {
+        this(subject, perfil, rolesDelToken, expiresAt, null, List.copyOf(rolesDelToken), permisoIds.clone(), SIN_VERSION);
+    }
+
+    private VerifiedLocalToken(String subject, String perfil, List<GrantedAuthority> authorities, Instant expiresAt,
+                               List<Long> perfilIds, List<GrantedAuthority> rolesDelToken, long[] permisoIds,
+                               long versionPermisos) {
+        this.subject = subject;
+        this.perfil = perfil;
+        this.authorities = List.copyOf(authorities);
+        this.expiresAt = expiresAt;
+        this.perfilIds = perfilIds != null ? List.copyOf(perfilIds) : null;
+        this.rolesDelToken = rolesDelToken;
+        this.permisoIds = permisoIds;
+        this.versionPermisos = versionPermisos;
+    }
+
+    /**
+     * Copia de un token compacto o con mapa de bits con las authorities recalculadas
+     * para otra versión del grafo
+     */
+    public VerifiedLocalToken conAuthorities(List<GrantedAuthority> nuevas, long version) {
+        return new VerifiedLocalToken(subject, perfil, nuevas, expiresAt, perfilIds, rolesDelToken, permisoIds, version);
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getPerfil() {
+        return perfil;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * IDs de perfil del token compacto, o null si el token trae sus authorities
+     */
+    public List<Long> getPerfilIds() {
+        return perfilIds;
+    }
+
+    public long getVersionPermisos() {
+        return versionPermisos;
+    }
+
+    /**
+     * Roles que trae el claim "authorities" de un token con mapa de bits, o null
+     */
+    public List<GrantedAuthority> getRolesDelToken() {
+        return rolesDelToken;
+    }
+
+    /**
+     * IDs de permiso del mapa de bits (no modificar), o null si el token no lo trae
+     */
+    long[] getPermisoIds() {
+        return permisoIds;
+    }
+
+    public boolean isCompacto() {
+        return perfilIds != null;
+    }
+
+    /**
+     * Indica si las authorities se calcularon desde el grafo y deben recalcularse
+     * cuando cambie su versión
+     */
+    public boolean dependeDelGrafo() {
+        return perfilIds != null || permisoIds != null;
+    }
+
+    /**
+     * Indica si el token ya expiró en el instante dado
+     */
+    public boolean isExpired(Instant ahora) {
+        return expiresAt != null && !ahora.isBefore(expiresAt);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.apiprotegida.security.authz;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caché de authorities calculadas por combinación de grupos de Azure AD
+ *
+ * La clave es el conjunto ordenado y sin repetidos de IDs de grupo junto con
+ * la versión del grafo de permisos, de modo que todos los usuarios con los
+ * mismos grupos comparten una única colección inmutable de authorities.
+ * Los aciertos no toman ningún candado: las entradas viven en un
+ * ConcurrentHashMap y cada acierto solo anota su instante de acceso. Expulsa por
+ * antigüedad y, al superar el tamaño máximo, un único hilo recorta en lote las
+ * entradas usadas hace más tiempo (LRU aproximado) hasta quedar por debajo del
+ * límite. Cuando el grafo se recarga por un
+ * cambio de perfiles o permisos solo se expulsan las entradas de los grupos
+ * afectados; las demás pasan a la nueva versión. Las estadísticas se publican en Actuator como {@code cache.gets},
+ * {@code cache.evictions} y {@code cache.size} con la etiqueta {@code cache=authorities}.
+ */
+@Component
+@Slf4j
+public class AuthorityCache {
+
+    private static final String NOMBRE = "authorities";
+
+    @Value("${authz.authority-cache.max-size:10000}")
+    private int tamanoMaximo = 10_000;
+
+    @Value("${authz.authority-cache.ttl-seconds:300}")
+    private long ttlSegundos = 300;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+
+    /** Se incrementa en cada invalidación; un cálculo iniciado antes no se guarda */
+    private final AtomicLong generacion = new AtomicLong();
+
+    /** Solo un hilo recorta la caché a la vez; los demás siguen sin esperar */
+    private final AtomicBoolean recortando = new AtomicBoolean();
+
+    private final ConcurrentHashMap<Clave, Entrada> entradas = new ConcurrentHashMap<>();
+
+    public AuthorityCache() {
+    }
+
+    AuthorityCache(int tamanoMaximo, long ttlSegundos) {
+        this.tamanoMaximo = tamanoMaximo;
+        this.ttlSegundos = ttlSegundos;
+    }
+
+    @PostConstruct
+    public void registrarMetricas() {
+        if (meterRegistry == null) {
+            return;
+        }
+        FunctionCounter.builder("cache.gets", aciertos, AtomicLong::get)
+                .tag("cache", NOMBRE).tag("result", "hit")
+                .description("Consultas resueltas desde la caché de authorities")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", fallos, AtomicLong::get)
+                .tag("cache", NOMBRE).tag("result", "miss")
+                .description("Consultas que tuvieron que calcular las authorities")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", expulsiones, AtomicLong::get)
+                .tag("cache", NOMBRE)
+                .description("Entradas expulsadas por tamaño, antigüedad o invalidación")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, AuthorityCache::tamano)
+                .tag("cache", NOMBRE)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Obtiene las authorities de una combinación de grupos, calculándolas si no están en caché
+     * @param version Versión del grafo de permisos con la que se calculan
+     * @param grupos IDs de grupo del token (en cualquier orden, con posibles repetidos)
+     * @param calcular Función que recibe los grupos normalizados y construye las authorities
+     * @return Colección inmutable de authorities
+     */
+    public Collection<GrantedAuthority> obtener(long version, Collection<String> grupos,
+                                                Function<List<String>, Collection<GrantedAuthority>> calcular) {
+        Clave clave = new Clave(version, normalizar(grupos));
+        long ahora = System.nanoTime();
+        long generacionLeida = generacion.get();
+
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null) {
+            if (ahora - entrada.creadaEn < ttlNanos()) {
+                entrada.ultimoAcceso = ahora;
+                aciertos.incrementAndGet();
+                return entrada.authorities;
+            }
+            if (entradas.remove(clave, entrada)) {
+                expulsiones.incrementAndGet();
+            }
+        }
+
+        // Se calcula sin bloquear; si dos hilos calculan la misma clave, gana el último
+        fallos.incrementAndGet();
+        Collection<GrantedAuthority> authorities = List.copyOf(calcular.apply(clave.grupos()));
+
+        if (generacion.get() == generacionLeida) {
+            Entrada nueva = new Entrada(authorities, ahora);
+            entradas.put(clave, nueva);
+            // Una invalidación entre la comprobación y el put no debe dejar la entrada guardada
+            if (generacion.get() != generacionLeida) {
+                entradas.remove(clave, nueva);
+            } else if (entradas.size() > tamanoMaximo) {
+                recortar();
+            }
+        }
+        return authorities;
+    }
+
+    /**
+     * Vacía la caché (se invoca cuando cambian perfiles o permisos)
+     */
+    public void invalidar() {
+        generacion.incrementAndGet();
+        expulsiones.addAndGet(entradas.size());
+        entradas.clear();
+        log.debug("🧹 [AuthorityCache] Caché de authorities invalidada");
+    }
+
+    /**
+     * Aplica una recarga del grafo de permisos: en una recarga completa vacía la caché;
+     * si no, expulsa las entradas que incluyen algún grupo afectado y pasa las demás
+     * de la versión anterior a la nueva
+     */
+    @EventListener
+    public void alRecargarGrafo(PermissionGraphReloaded evento) {
+        if (evento.completo()) {
+            invalidar();
+            return;
+        }
+        generacion.incrementAndGet();
+        int expulsadas = 0;
+        for (Map.Entry<Clave, Entrada> actual : entradas.entrySet()) {
+            Clave clave = actual.getKey();
+            if (!Collections.disjoint(clave.grupos(), evento.gruposAfectados())) {
+                if (entradas.remove(clave, actual.getValue())) {
+                    expulsadas++;
+                }
+            } else if (clave.version() == evento.versionAnterior()
+                    && entradas.remove(clave, actual.getValue())) {
+                entradas.putIfAbsent(new Clave(evento.version(), clave.grupos()), actual.getValue());
+            }
+        }
+        expulsiones.addAndGet(expulsadas);
+        log.debug("🧹 [AuthorityCache] Versión {} -> {}: {} entradas expulsadas",
+                evento.versionAnterior(), evento.version(), expulsadas);
+    }
+
+    public int tamano() {
+        return entradas.size();
+    }
+
+    /**
+     * Descarta las entradas expiradas y, si la caché sigue por encima del máximo, las
+     * usadas hace más tiempo hasta dejar un 10 % de margen, para no recortar en cada inserción
+     */
+    private void recortar() {
+        if (!recortando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long ahora = System.nanoTime();
+            int expulsadas = 0;
+            List<Map.Entry<Clave, Entrada>> vigentes = new ArrayList<>(entradas.size());
+            for (Map.Entry<Clave, Entrada> actual : entradas.entrySet()) {
+                if (ahora - actual.getValue().creadaEn >= ttlNanos()) {
+                    if (entradas.remove(actual.getKey(), actual.getValue())) {
+                        expulsadas++;
+                    }
+                } else {
+                    vigentes.add(actual);
+                }
+            }
+            int objetivo = tamanoMaximo - Math.max(1, tamanoMaximo / 10);
+            if (vigentes.size() > objetivo) {
+                vigentes.sort(Comparator.comparingLong(actual -> actual.getValue().ultimoAcceso));
+                for (int i = 0; i < vigentes.size() - objetivo; i++) {
+                    Map.Entry<Clave, Entrada> menosUsada = vigentes.get(i);
+                    if (entradas.remove(menosUsada.getKey(), menosUsada.getValue())) {
+                        expulsadas++;
+                    }
+                }
+            }
+            expulsiones.addAndGet(expulsadas);
+        } finally {
+            recortando.set(false);
+        }
+    }
+
+    private long ttlNanos() {
+        return ttlSegundos * 1_000_000_000L;
+    }
+
+    private static List<String> normalizar(Collection<String> grupos) {
+        List<String> normalizados = new ArrayList<>(new TreeSet<>(grupos));
+        normalizados.replaceAll(String::intern);
+        return List.copyOf(normalizados);
+    }
+
+    private record Clave(long version, List<String> grupos) {
+    }
+
+    private static final class Entrada {
+
+        private final Collection<GrantedAuthority> authorities;
+        private final long creadaEn;
+        /** Último acierto (System.nanoTime); se escribe sin sincronizar, basta un valor aproximado */
+        private volatile long ultimoAcceso;
+
+        private Entrada(Collection<GrantedAuthority> authorities, long creadaEn) {
+            this.authorities = authorities;
+            this.creadaEn = creadaEn;
+            this.ultimoAcceso = creadaEn;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.security.GrantedAuthorities;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registro canónico de authorities compartido por Azure AD y JWT local
+ *
+ * Al cargar cada foto del grafo registra en {@link GrantedAuthorities} una única
+ * instancia por grupo, rol y permiso conocidos, y precalcula por grupo de Azure AD
+ * la lista inmutable de authorities de su perfil. Convertir un token con un solo
+ * grupo no crea objetos: devuelve la lista compartida. Los grupos sin perfil no se
+ * registran.
+ */
+@Component
+@Slf4j
+public class AuthorityRegistry {
+
+    public static final String PREFIJO_GRUPO = "GROUP_";
+    public static final String PREFIJO_ROL = "ROLE_";
+
+    /** Roles que asigna el JWT local según el nombre del perfil */
+    private static final List<String> ROLES_LOCALES = List.of("ROLE_USER", "ROLE_ADMIN", "ROLE_MANAGER");
+
+    @Autowired
+    private PermissionGraph permissionGraph;
+
+    private final AtomicReference<Tabla> tabla = new AtomicReference<>(new Tabla(-1L, Map.of()));
+
+    /**
+     * Precalcula las authorities de la nueva foto del grafo
+     */
+    @EventListener
+    public void alRecargarGrafo(PermissionGraphReloaded evento) {
+        PermissionSnapshot grafo = permissionGraph.snapshot();
+        if (grafo.getVersion() == evento.version()) {
+            compilar(grafo);
+        }
+    }
+
+    /**
+     * Authorities de una combinación de grupos de Azure AD: para cada grupo, el propio
+     * grupo y, si tiene perfil, su rol y sus permisos. Con la foto ya precalculada se usan
+     * sus listas; con otra foto (p. ej. la temporal leída de BD) se calculan igualmente
+     * con instancias compartidas.
+     * @return Lista inmutable (la misma instancia para todos los usuarios de un solo grupo)
+     */
+    public List<GrantedAuthority> deGrupos(PermissionSnapshot grafo, List<String> grupos) {
+        Map<String, List<GrantedAuthority>> porGrupo = porGrupo(grafo);
+        if (grupos.size() == 1) {
+            return listaDelGrupo(grafo, porGrupo, grupos.get(0));
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String grupo : grupos) {
+            authorities.addAll(listaDelGrupo(grafo, porGrupo, grupo));
+        }
+        return List.copyOf(authorities);
+    }
+
+    /**
+     * Solo las authorities de grupo, para cuando no se puede consultar el grafo
+     */
+    public List<GrantedAuthority> soloGrupos(List<String> grupos) {
+        List<GrantedAuthority> authorities = new ArrayList<>(grupos.size());
+        for (String grupo : grupos) {
+            authorities.add(GrantedAuthorities.of(PREFIJO_GRUPO + grupo));
+        }
+        return List.copyOf(authorities);
+    }
+
+    /**
+     * Nombre del rol asociado a un grupo de Azure AD ("Admin Group" → "ROLE_ADMIN_GROUP")
+     */
+    public static String nombreRol(String azureGroupName) {
+        return PREFIJO_ROL + azureGroupName.toUpperCase().replace(" ", "_");
+    }
+
+    private Map<String, List<GrantedAuthority>> porGrupo(PermissionSnapshot grafo) {
+        Tabla actual = tabla.get();
+        return actual.version() == grafo.getVersion() ? actual.porGrupo() : null;
+    }
+
+    private static List<GrantedAuthority> listaDelGrupo(PermissionSnapshot grafo, Map<String, List<GrantedAuthority>> porGrupo,
+                                                       String grupo) {
+        List<GrantedAuthority> precalculada = porGrupo != null ? porGrupo.get(grupo) : null;
+        if (precalculada != null) {
+            return precalculada;
+        }
+        int perfil = grafo.indicePerfilPorGrupo(grupo);
+        if (perfil < 0) {
+            return List.of(GrantedAuthorities.of(PREFIJO_GRUPO + grupo));
+        }
+        return authoritiesDelPerfil(grafo, perfil, grupo);
+    }
+
+    private Map<String, List<GrantedAuthority>> compilar(PermissionSnapshot grafo) {
+        GrantedAuthorities.registrar(nombresConocidos(grafo));
+        Map<String, List<GrantedAuthority>> porGrupo = new HashMap<>();
+        for (int indice = 0; indice < grafo.cantidadPerfiles(); indice++) {
+            String grupo = grafo.getPerfil(indice).getAzureGroupId();
+            if (grupo != null && grafo.indicePerfilPorGrupo(grupo) == indice) {
+                porGrupo.put(grupo, authoritiesDelPerfil(grafo, indice, grupo));
+            }
+        }
+        Map<String, List<GrantedAuthority>> inmutable = Map.copyOf(porGrupo);
+        tabla.set(new Tabla(grafo.getVersion(), inmutable));
+        log.debug("🧩 [AuthorityRegistry] Versión {}: {} grupos precalculados, {} authorities registradas",
+                grafo.getVersion(), inmutable.size(), GrantedAuthorities.size());
+        return inmutable;
+    }
+
+    /**
+     * Nombres de authority que puede producir la foto: grupos con perfil y sus roles,
+     * nombres y códigos de permiso (el JWT local usa los códigos) y los roles locales
+     */
+    private static Set<String> nombresConocidos(PermissionSnapshot grafo) {
+        Set<String> nombres = new HashSet<>(ROLES_LOCALES);
+        for (int indice = 0; indice < grafo.cantidadPerfiles(); indice++) {
+            Perfil perfil = grafo.getPerfil(indice);
+            if (perfil.getAzureGroupId() != null) {
+                nombres.add(PREFIJO_GRUPO + perfil.getAzureGroupId());
+            }
+            if (perfil.getAzureGroupName() != null) {
+                nombres.add(nombreRol(perfil.getAzureGroupName()));
+            }
+        }
+        for (int ordinal = 0; ordinal < grafo.cantidadPermisos(); ordinal++) {
+            Permiso permiso = grafo.getPermiso(ordinal);
+            nombres.add(permiso.getNombre());
+            nombres.add(permiso.getCodigo());
+        }
+        return nombres;
+    }
+
+    private static List<GrantedAuthority> authoritiesDelPerfil(PermissionSnapshot grafo, int indicePerfil, String grupo) {
+        Perfil perfil = grafo.getPerfil(indicePerfil);
+        int[] ordinales = grafo.ordinalesPermisos(indicePerfil);
+        List<GrantedAuthority> authorities = new ArrayList<>(ordinales.length + 2);
+        authorities.add(GrantedAuthorities.of(PREFIJO_GRUPO + grupo));
+        if (perfil.getAzureGroupName() != null) {
+            authorities.add(GrantedAuthorities.of(nombreRol(perfil.getAzureGroupName())));
+        }
+        for (int ordinal : ordinales) {
+            Permiso permiso = grafo.getPermiso(ordinal);
+            authorities.add(GrantedAuthorities.of(permiso.getNombre()));
+        }
+        return List.copyOf(authorities);
+    }
+
+    private record Tabla(long version, Map<String, List<GrantedAuthority>> porGrupo) {
+    }
+}
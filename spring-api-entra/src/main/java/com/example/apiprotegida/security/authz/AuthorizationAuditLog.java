@@ -0,0 +1,186 @@
+package com.example.apiprotegida.security.authz;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Auditoría asíncrona de decisiones de autorización
+ *
+ * Los hilos de petición solo reservan una posición en un buffer circular sin
+ * bloqueos (CAS sobre la secuencia de escritura) y siguen; un hilo de fondo vacía
+ * el buffer y escribe cada evento en el logger {@value #NOMBRE_LOGGER} como pares
+ * clave=valor. Si el buffer está lleno el evento se descarta y se cuenta. Las
+ * decisiones concedidas se muestrean con {@code authz.audit.sample-rate}; las
+ * denegadas se registran siempre. Desactivada (por propiedad o por nivel del
+ * logger) {@link #activa()} es una lectura de un campo final y quien llama no
+ * construye el evento.
+ */
+@Component
+@Slf4j
+public class AuthorizationAuditLog {
+
+    public static final String NOMBRE_LOGGER = "com.example.apiprotegida.audit";
+
+    private static final Logger AUDITORIA = LoggerFactory.getLogger(NOMBRE_LOGGER);
+
+    private final boolean activa;
+    private final double tasaMuestreo;
+    private final AtomicReferenceArray<Evento> posiciones;
+    private final int mascara;
+    private final AtomicLong escritura = new AtomicLong();
+    private final AtomicLong lectura = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final long esperaNanos;
+
+    private volatile Thread escritor;
+    private volatile boolean detenido;
+
+    public AuthorizationAuditLog(@Value("${authz.audit.enabled:false}") boolean habilitada,
+                                 @Value("${authz.audit.sample-rate:1.0}") double tasaMuestreo,
+                                 @Value("${authz.audit.buffer-size:8192}") int capacidad,
+                                 @Value("${authz.audit.flush-interval-ms:50}") long intervaloMs) {
+        this.activa = habilitada && AUDITORIA.isInfoEnabled();
+        this.tasaMuestreo = Math.max(0.0, Math.min(1.0, tasaMuestreo));
+        int tamano = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        this.posiciones = new AtomicReferenceArray<>(tamano);
+        this.mascara = tamano - 1;
+        this.esperaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervaloMs));
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        if (!activa) {
+            return;
+        }
+        Thread hilo = new Thread(this::escribirPendientes, "authz-audit-writer");
+        hilo.setDaemon(true);
+        escritor = hilo;
+        hilo.start();
+        log.info("📝 [AuthorizationAuditLog] Auditoría activa (muestreo {}, buffer {})", tasaMuestreo, posiciones.length());
+    }
+
+    @PreDestroy
+    public void detener() {
+        detenido = true;
+        Thread hilo = escritor;
+        if (hilo != null) {
+            LockSupport.unpark(hilo);
+            try {
+                hilo.join(TimeUnit.NANOSECONDS.toMillis(esperaNanos) * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Indica si hay que registrar eventos; los llamadores lo consultan antes de construir el detalle
+     */
+    public boolean activa() {
+        return activa;
+    }
+
+    /**
+     * Registra una decisión si la auditoría está activa y la muestra la incluye
+     * @param detalle Objeto inmutable; se convierte a texto en el hilo escritor
+     * @return false si el evento no se encoló (desactivada, fuera de muestra o buffer lleno)
+     */
+    public boolean registrar(String tipo, String sujeto, boolean concedido, Object detalle) {
+        if (!activa || (concedido && !enMuestra())) {
+            return false;
+        }
+        return encolar(new Evento(System.currentTimeMillis(), Thread.currentThread().getName(), tipo, sujeto, concedido, detalle));
+    }
+
+    public long descartados() {
+        return descartados.get();
+    }
+
+    /**
+     * Eventos encolados que el escritor aún no ha procesado
+     */
+    public long pendientes() {
+        return escritura.get() - lectura.get();
+    }
+
+    /**
+     * Escribe un evento ya desencolado; se ejecuta en el hilo escritor
+     */
+    protected void escribir(Evento evento) {
+        AUDITORIA.info("ts={} hilo={} tipo={} sujeto={} concedido={} detalle={}",
+                Instant.ofEpochMilli(evento.instante()), evento.hilo(), evento.tipo(), evento.sujeto(),
+                evento.concedido(), evento.detalle());
+    }
+
+    /**
+     * Vacía el buffer y devuelve cuántos eventos escribió
+     */
+    int vaciar() {
+        int escritos = 0;
+        long siguiente = lectura.get();
+        while (true) {
+            int indice = (int) siguiente & mascara;
+            Evento evento = posiciones.get(indice);
+            if (evento == null) {
+                // Vacío, o un productor reservó la posición y todavía no publicó el evento
+                return escritos;
+            }
+            posiciones.set(indice, null);
+            lectura.set(++siguiente);
+            try {
+                escribir(evento);
+            } catch (RuntimeException e) {
+                log.warn("⚠️ [AuthorizationAuditLog] No se pudo escribir el evento: {}", e.getMessage());
+            }
+            escritos++;
+        }
+    }
+
+    private boolean encolar(Evento evento) {
+        long secuencia;
+        do {
+            secuencia = escritura.get();
+            if (secuencia - lectura.get() >= posiciones.length()) {
+                descartados.incrementAndGet();
+                return false;
+            }
+        } while (!escritura.compareAndSet(secuencia, secuencia + 1));
+        posiciones.set((int) secuencia & mascara, evento);
+        return true;
+    }
+
+    private boolean enMuestra() {
+        return tasaMuestreo >= 1.0 || ThreadLocalRandom.current().nextDouble() < tasaMuestreo;
+    }
+
+    private void escribirPendientes() {
+        while (!detenido) {
+            if (vaciar() == 0) {
+                LockSupport.parkNanos(this, esperaNanos);
+            }
+        }
+        vaciar();
+        long perdidos = descartados.get();
+        if (perdidos > 0) {
+            log.warn("⚠️ [AuthorizationAuditLog] {} eventos descartados por buffer lleno", perdidos);
+        }
+    }
+
+    /**
+     * Decisión de autorización pendiente de escribir
+     */
+    public record Evento(long instante, String hilo, String tipo, String sujeto, boolean concedido, Object detalle) {
+    }
+}
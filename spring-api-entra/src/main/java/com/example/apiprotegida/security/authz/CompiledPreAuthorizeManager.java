@@ -0,0 +1,144 @@
+package com.example.apiprotegida.security.authz;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * AuthorizationManager de {@code @PreAuthorize} que evalúa predicados precompilados
+ *
+ * Al terminar de crear los beans recorre los controladores y compila, con
+ * {@link PreAuthorizeExpressionCompiler}, la expresión de cada método protegido
+ * (directa o heredada de las meta-anotaciones de {@code RoleAnnotations}). En cada
+ * llamada solo se busca la regla del método y se recorren las authorities, sin
+ * contexto de evaluación ni reflexión de SpEL. Las expresiones que no se pueden
+ * compilar se delegan en {@link PreAuthorizeAuthorizationManager}.
+ */
+@Slf4j
+public class CompiledPreAuthorizeManager implements AuthorizationManager<MethodInvocation>, SmartInitializingSingleton {
+
+    private static final AuthorizationDecision CONCEDIDO = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENEGADO = new AuthorizationDecision(false);
+
+    /** Métodos sin @PreAuthorize: el manager se abstiene, igual que el de Spring */
+    private static final Regla SIN_REGLA = (autenticacion, invocacion) -> null;
+
+    private final ApplicationContext applicationContext;
+    private final PreAuthorizeAuthorizationManager spel = new PreAuthorizeAuthorizationManager();
+    private final Map<MethodClassKey, Regla> reglasPorMetodo = new ConcurrentHashMap<>();
+    private final Map<String, Regla> reglasPorExpresion = new ConcurrentHashMap<>();
+
+    public CompiledPreAuthorizeManager(ApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+        DefaultMethodSecurityExpressionHandler expressionHandler = new DefaultMethodSecurityExpressionHandler();
+        if (applicationContext != null) {
+            expressionHandler.setApplicationContext(applicationContext);
+        }
+        spel.setExpressionHandler(expressionHandler);
+    }
+
+    /**
+     * Precompila las reglas de todos los controladores
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String nombre : applicationContext.getBeanNamesForAnnotation(RestController.class)) {
+            Class<?> tipo = applicationContext.getType(nombre);
+            if (tipo != null) {
+                precompilar(ClassUtils.getUserClass(tipo));
+            }
+        }
+        long conSpel = reglasPorExpresion.values().stream().filter(ReglaSpel.class::isInstance).count();
+        log.info("🧮 [CompiledPreAuthorizeManager] {} métodos protegidos, {} expresiones compiladas y {} evaluadas con SpEL",
+                reglasPorMetodo.values().stream().filter(regla -> regla != SIN_REGLA).count(),
+                reglasPorExpresion.size() - conSpel, conSpel);
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocacion) {
+        Class<?> clase = invocacion.getThis() != null
+                ? AopUtils.getTargetClass(invocacion.getThis())
+                : invocacion.getMethod().getDeclaringClass();
+        Regla regla = reglasPorMetodo.computeIfAbsent(new MethodClassKey(invocacion.getMethod(), clase),
+                clave -> resolver(invocacion.getMethod(), clase));
+        return regla.evaluar(authentication, invocacion);
+    }
+
+    /**
+     * Compila las reglas de los métodos públicos de una clase
+     */
+    void precompilar(Class<?> clase) {
+        for (Method metodo : ReflectionUtils.getUniqueDeclaredMethods(clase, ReflectionUtils.USER_DECLARED_METHODS)) {
+            reglasPorMetodo.computeIfAbsent(new MethodClassKey(metodo, clase), clave -> resolver(metodo, clase));
+        }
+    }
+
+    /**
+     * Indica si la expresión de un método se evalúa con un predicado compilado
+     */
+    boolean esCompilada(Method metodo, Class<?> clase) {
+        return reglasPorMetodo.computeIfAbsent(new MethodClassKey(metodo, clase),
+                clave -> resolver(metodo, clase)) instanceof ReglaCompilada;
+    }
+
+    private Regla resolver(Method metodo, Class<?> clase) {
+        Method especifico = AopUtils.getMostSpecificMethod(metodo, clase);
+        PreAuthorize anotacion = AnnotatedElementUtils.findMergedAnnotation(especifico, PreAuthorize.class);
+        if (anotacion == null) {
+            anotacion = AnnotatedElementUtils.findMergedAnnotation(clase, PreAuthorize.class);
+        }
+        if (anotacion == null) {
+            return SIN_REGLA;
+        }
+        return reglasPorExpresion.computeIfAbsent(anotacion.value(), this::compilar);
+    }
+
+    private Regla compilar(String expresion) {
+        Predicate<Authentication> predicado = PreAuthorizeExpressionCompiler.compilar(expresion);
+        if (predicado == null) {
+            log.debug("🧮 [CompiledPreAuthorizeManager] Expresión evaluada con SpEL: {}", expresion);
+            return new ReglaSpel(spel);
+        }
+        return new ReglaCompilada(predicado);
+    }
+
+    private interface Regla {
+
+        AuthorizationDecision evaluar(Supplier<Authentication> autenticacion, MethodInvocation invocacion);
+    }
+
+    private record ReglaCompilada(Predicate<Authentication> predicado) implements Regla {
+
+        @Override
+        public AuthorizationDecision evaluar(Supplier<Authentication> autenticacion, MethodInvocation invocacion) {
+            return predicado.test(autenticacion.get()) ? CONCEDIDO : DENEGADO;
+        }
+    }
+
+    private record ReglaSpel(PreAuthorizeAuthorizationManager spel) implements Regla {
+
+        @Override
+        public AuthorizationDecision evaluar(Supplier<Authentication> autenticacion, MethodInvocation invocacion) {
+            return spel.check(autenticacion, invocacion);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.security.RequierePermiso;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Evalúa {@link RequierePermiso} contra el principal resuelto desde el grafo de permisos
+ *
+ * El requisito de cada método se lee una sola vez; en la llamada se comprueban las
+ * authorities alternativas y después se intersecta el mapa de bits del principal
+ * (resuelto una vez por petición) con el conjunto precalculado del módulo y acción.
+ * Un principal que solo tiene el perfil por defecto nunca supera la verificación.
+ */
+public class PermissionAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+    /** Métodos anotados con {@link RequierePermiso}, directamente o como meta-anotación */
+    public static final Pointcut POINTCUT = new AnnotationMatchingPointcut(null, RequierePermiso.class, true);
+
+    private static final AuthorizationDecision CONCEDIDO = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENEGADO = new AuthorizationDecision(false);
+
+    private static final AuthenticationTrustResolver TRUST_RESOLVER = new AuthenticationTrustResolverImpl();
+
+    private final Function<Authentication, ResolvedPrincipal> resolvedor;
+    private final Map<MethodClassKey, Requisito> requisitos = new ConcurrentHashMap<>();
+
+    /**
+     * @param resolvedor Resuelve (y memoriza por petición) el principal de una autenticación
+     */
+    public PermissionAuthorizationManager(Function<Authentication, ResolvedPrincipal> resolvedor) {
+        this.resolvedor = resolvedor;
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocacion) {
+        Class<?> clase = invocacion.getThis() != null
+                ? AopUtils.getTargetClass(invocacion.getThis())
+                : invocacion.getMethod().getDeclaringClass();
+        Requisito requisito = requisitos.computeIfAbsent(new MethodClassKey(invocacion.getMethod(), clase),
+                clave -> leerRequisito(invocacion.getMethod(), clase));
+        if (requisito == null) {
+            return null;
+        }
+
+        Authentication autenticacion = authentication.get();
+        if (requisito.concedePorAuthority(autenticacion)) {
+            return CONCEDIDO;
+        }
+        if (TRUST_RESOLVER.isAnonymous(autenticacion) || !autenticacion.isAuthenticated()) {
+            return DENEGADO;
+        }
+        // El perfil por defecto no concede: solo cuentan los perfiles propios del usuario
+        ResolvedPrincipal principal = resolvedor.apply(autenticacion);
+        if (principal.isPerfilPorDefecto()) {
+            return DENEGADO;
+        }
+        return principal.tieneModuloYAccion(requisito.modulo(), requisito.accion()) ? CONCEDIDO : DENEGADO;
+    }
+
+    private static Requisito leerRequisito(Method metodo, Class<?> clase) {
+        RequierePermiso anotacion = AnnotatedElementUtils.findMergedAnnotation(
+                AopUtils.getMostSpecificMethod(metodo, clase), RequierePermiso.class);
+        if (anotacion == null) {
+            return null;
+        }
+        return new Requisito(anotacion.modulo(), anotacion.accion(), Set.copyOf(Arrays.asList(anotacion.oAuthority())));
+    }
+
+    private record Requisito(String modulo, String accion, Set<String> alternativas) {
+
+        boolean concedePorAuthority(Authentication autenticacion) {
+            if (alternativas.isEmpty()) {
+                return false;
+            }
+            for (GrantedAuthority authority : autenticacion.getAuthorities()) {
+                String nombre = authority.getAuthority();
+                if (nombre != null && alternativas.contains(nombre)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
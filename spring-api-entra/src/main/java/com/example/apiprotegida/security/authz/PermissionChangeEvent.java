@@ -0,0 +1,49 @@
+package com.example.apiprotegida.security.authz;
+
+/**
+ * Eventos de cambio en perfiles y permisos
+ *
+ * Los servicios los publican dentro de su transacción y {@link PermissionGraph}
+ * los procesa después del commit: recarga la foto y anuncia con
+ * {@link PermissionGraphReloaded} qué grupos de Azure AD se vieron afectados,
+ * para que cada caché de autorización expulse solo esas entradas.
+ */
+public sealed interface PermissionChangeEvent {
+
+    /** Cambio que afecta a los grupos de un perfil */
+    sealed interface DePerfil extends PermissionChangeEvent {
+        Long perfilId();
+    }
+
+    /** Cambio que afecta a los grupos de todos los perfiles que incluyen un permiso */
+    sealed interface DePermiso extends PermissionChangeEvent {
+        Long permisoId();
+    }
+
+    record PerfilCreated(Long perfilId) implements DePerfil {
+    }
+
+    /** Cambió el nombre, el grupo de Azure AD o el estado del perfil */
+    record PerfilChanged(Long perfilId) implements DePerfil {
+    }
+
+    /** Se asignaron, quitaron o reemplazaron permisos del perfil */
+    record PerfilPermisosChanged(Long perfilId) implements DePerfil {
+    }
+
+    /** El perfil se desactivó o se eliminó */
+    record PerfilRemoved(Long perfilId) implements DePerfil {
+    }
+
+    record PermisoCreated(Long permisoId) implements DePermiso {
+    }
+
+    record PermisoChanged(Long permisoId) implements DePermiso {
+    }
+
+    record PermisoDeactivated(Long permisoId) implements DePermiso {
+    }
+
+    record PermisoRemoved(Long permisoId) implements DePermiso {
+    }
+}
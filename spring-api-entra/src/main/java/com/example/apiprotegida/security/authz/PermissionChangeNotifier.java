@@ -0,0 +1,198 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Notifica por Server-Sent Events a los clientes conectados que sus permisos cambiaron
+ *
+ * Cada suscripción guarda sus grupos de Azure AD (los del token y los de los
+ * perfiles resueltos). Cuando {@link PermissionGraph} anuncia una recarga solo se
+ * avisa a las suscripciones cuyos grupos están afectados, con un evento
+ * {@code permisos-cambiados} que lleva la nueva versión del grafo; el cliente
+ * vuelve a pedir su información únicamente entonces. Las conexiones inactivas no
+ * ocupan hilos: el SseEmitter usa el procesamiento asíncrono del servlet.
+ *
+ * Los avisos y los latidos se escriben desde un pool propio de
+ * {@code authz.sse.hilos} hilos, así un cliente lento no bloquea al hilo que
+ * recargó el grafo (la petición del administrador) ni al planificador de Spring.
+ */
+@Component
+@Slf4j
+public class PermissionChangeNotifier {
+
+    public static final String EVENTO_CONECTADO = "conectado";
+    public static final String EVENTO_PERMISOS_CAMBIADOS = "permisos-cambiados";
+
+    @Autowired
+    private PermissionGraph permissionGraph;
+
+    @Value("${authz.sse.timeout-ms:1800000}")
+    private long timeoutMs = 1_800_000;
+
+    @Value("${authz.sse.heartbeat-ms:25000}")
+    private long latidoMs = 25_000;
+
+    @Value("${authz.sse.hilos:2}")
+    private int hilos = 2;
+
+    private final Set<Suscripcion> suscripciones = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService envios;
+
+    /**
+     * Crea el pool de envío y programa los latidos
+     */
+    @PostConstruct
+    public void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        envios = Executors.newScheduledThreadPool(Math.max(1, hilos), tarea -> {
+            Thread hilo = new Thread(tarea, "authz-sse-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        envios.scheduleWithFixedDelay(this::latido, latidoMs, latidoMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (envios != null) {
+            envios.shutdownNow();
+        }
+    }
+
+    /**
+     * Registra una conexión SSE para el principal indicado y le envía la versión actual del grafo
+     */
+    public SseEmitter suscribir(ResolvedPrincipal principal) {
+        SseEmitter emisor = crearEmisor(timeoutMs);
+        Suscripcion suscripcion = new Suscripcion(emisor, gruposDe(principal));
+        suscripciones.add(suscripcion);
+
+        emisor.onCompletion(() -> suscripciones.remove(suscripcion));
+        emisor.onTimeout(() -> {
+            suscripciones.remove(suscripcion);
+            emisor.complete();
+        });
+        emisor.onError(error -> suscripciones.remove(suscripcion));
+
+        enviar(suscripcion, EVENTO_CONECTADO, permissionGraph.snapshot().getVersion());
+        log.debug("📡 [PermissionChangeNotifier] Nueva suscripción ({} activas)", suscripciones.size());
+        return emisor;
+    }
+
+    /**
+     * Programa el aviso a las sesiones afectadas por la nueva foto del grafo; no
+     * escribe en las conexiones desde el hilo que publicó el evento
+     */
+    @EventListener
+    public void alRecargarGrafo(PermissionGraphReloaded evento) {
+        int afectadas = 0;
+        for (Suscripcion suscripcion : suscripciones) {
+            if (evento.completo() || !Collections.disjoint(suscripcion.grupos(), evento.gruposAfectados())) {
+                ejecutar(() -> enviar(suscripcion, EVENTO_PERMISOS_CAMBIADOS, evento.version()));
+                afectadas++;
+            }
+        }
+        log.info("📣 [PermissionChangeNotifier] Versión {} de permisos: avisando a {} de {} sesiones",
+                evento.version(), afectadas, suscripciones.size());
+    }
+
+    /**
+     * Comentario periódico para que proxies y balanceadores no cierren las conexiones
+     * inactivas y para detectar las que ya se cerraron en el cliente
+     */
+    public void latido() {
+        for (Suscripcion suscripcion : suscripciones) {
+            try {
+                suscripcion.emisor().send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                descartar(suscripcion);
+            }
+        }
+    }
+
+    public int suscripcionesActivas() {
+        return suscripciones.size();
+    }
+
+    protected SseEmitter crearEmisor(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    /**
+     * Ejecuta una escritura en el pool de envío
+     */
+    protected void ejecutar(Runnable envio) {
+        envios.execute(envio);
+    }
+
+    private boolean enviar(Suscripcion suscripcion, String nombre, long version) {
+        try {
+            suscripcion.emisor().send(SseEmitter.event()
+                    .name(nombre)
+                    .id(String.valueOf(version))
+                    .data(Map.of("version", version)));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("🔌 [PermissionChangeNotifier] Conexión cerrada, se descarta: {}", e.getMessage());
+            descartar(suscripcion);
+            return false;
+        }
+    }
+
+    private void descartar(Suscripcion suscripcion) {
+        suscripciones.remove(suscripcion);
+        suscripcion.emisor().complete();
+    }
+
+    private static Set<String> gruposDe(ResolvedPrincipal principal) {
+        Set<String> grupos = new HashSet<>(principal.getGrupos());
+        for (Perfil perfil : principal.getPerfiles()) {
+            if (perfil.getAzureGroupId() != null) {
+                grupos.add(perfil.getAzureGroupId());
+            }
+        }
+        return Set.copyOf(grupos);
+    }
+
+    /**
+     * Conexión abierta; la igualdad es por identidad para poder quitarla del registro
+     */
+    private static final class Suscripcion {
+
+        private final SseEmitter emisor;
+        private final Set<String> grupos;
+
+        Suscripcion(SseEmitter emisor, Set<String> grupos) {
+            this.emisor = emisor;
+            this.grupos = grupos;
+        }
+
+        SseEmitter emisor() {
+            return emisor;
+        }
+
+        Set<String> grupos() {
+            return grupos;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.PermisosVersion;
+import com.example.apiprotegida.repository.PerfilRepository;
+import com.example.apiprotegida.repository.PermisosVersionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Grafo de permisos compilado en memoria
+ *
+ * Carga perfiles y permisos con una única consulta (fetch join) y publica
+ * una {@link PermissionSnapshot} inmutable. Los lectores solo leen la referencia
+ * atómica, sin acceder a JPA. Cuando PerfilService o PermisoService publican un
+ * {@link PermissionChangeEvent}, la foto se reconstruye tras el commit y se anuncia
+ * con {@link PermissionGraphReloaded} qué grupos de Azure AD quedaron afectados.
+ *
+ * Cada uno de esos eventos incrementa además la versión global (tabla
+ * permisos_version) dentro de la misma transacción; todos los nodos sondean esa
+ * versión y recargan el grafo cuando cambia, así un cambio o revocación hecho en
+ * una réplica llega a las demás. Esa recarga anuncia solo los grupos que difieren
+ * entre la foto anterior y la nueva, no una recarga completa.
+ */
+@Component
+@Slf4j
+public class PermissionGraph {
+
+    @Autowired
+    private PerfilRepository perfilRepository;
+
+    @Autowired
+    private PermisosVersionRepository versionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final AtomicReference<PermissionSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versiones = new AtomicLong();
+    private final ReentrantLock recarga = new ReentrantLock();
+
+    /** Versión global (permisos_version) leída junto con la foto vigente */
+    private volatile long versionPermisos = -1;
+
+    /**
+     * Carga el grafo al terminar el arranque (después de ejecutar data.sql)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        recargar();
+    }
+
+    /**
+     * Obtiene la foto vigente del grafo, cargándola si aún no existe
+     */
+    public PermissionSnapshot snapshot() {
+        PermissionSnapshot actual = snapshot.get();
+        if (actual != null) {
+            return actual;
+        }
+        PermissionGraphReloaded evento;
+        recarga.lock();
+        try {
+            // Otro hilo pudo cargarla mientras se esperaba el lock
+            actual = snapshot.get();
+            if (actual != null) {
+                return actual;
+            }
+            actual = cargar();
+            evento = recargado(null, actual, Set.of(), true);
+        } finally {
+            recarga.unlock();
+        }
+        eventPublisher.publishEvent(evento);
+        return actual;
+    }
+
+    /**
+     * Reconstruye el grafo desde la base de datos y reemplaza la foto vigente.
+     * Se anuncia como recarga completa: las cachés descartan todas sus entradas.
+     * El anuncio se publica ya liberado el lock, para que los oyentes no retrasen otras recargas.
+     */
+    public PermissionSnapshot recargar() {
+        PermissionSnapshot nuevo;
+        PermissionGraphReloaded evento;
+        recarga.lock();
+        try {
+            PermissionSnapshot anterior = snapshot.get();
+            nuevo = cargar();
+            evento = recargado(anterior, nuevo, Set.of(), true);
+        } finally {
+            recarga.unlock();
+        }
+        eventPublisher.publishEvent(evento);
+        return nuevo;
+    }
+
+    /**
+     * Procesa un cambio de perfiles o permisos una vez confirmada la transacción
+     * (o de inmediato si se publicó fuera de una) y anuncia los grupos afectados,
+     * calculados sobre la foto anterior y la nueva
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alCambiarPermisos(PermissionChangeEvent evento) {
+        PermissionGraphReloaded recargado;
+        recarga.lock();
+        try {
+            PermissionSnapshot anterior = snapshot.get();
+            PermissionSnapshot nuevo = cargar();
+            if (anterior == null) {
+                recargado = recargado(null, nuevo, Set.of(), true);
+            } else {
+                Set<String> grupos = new HashSet<>();
+                grupos.addAll(gruposAfectados(anterior, evento));
+                grupos.addAll(gruposAfectados(nuevo, evento));
+                log.debug("📣 [PermissionGraph] {} afecta a {} grupos", evento, grupos.size());
+                recargado = recargado(anterior, nuevo, grupos, false);
+            }
+        } finally {
+            recarga.unlock();
+        }
+        eventPublisher.publishEvent(recargado);
+    }
+
+    /**
+     * Incrementa la versión global en la transacción del cambio, antes del commit
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void registrarCambio(PermissionChangeEvent evento) {
+        if (versionRepository.incrementar(PermisosVersion.ID_UNICO) == 0) {
+            versionRepository.save(new PermisosVersion(PermisosVersion.ID_UNICO, 1L));
+        }
+    }
+
+    /**
+     * Sondeo periódico de la versión global; recarga solo si otro nodo (o este) la cambió
+     */
+    @Scheduled(fixedDelayString = "${permisos.sync.poll-interval-ms:5000}",
+               initialDelayString = "${permisos.sync.poll-interval-ms:5000}")
+    public void sincronizarVersion() {
+        if (snapshot.get() == null) {
+            return;
+        }
+        try {
+            long version = versionActual();
+            if (version != versionPermisos) {
+                log.info("🔄 [PermissionGraph] Versión de permisos {} -> {}, recargando", versionPermisos, version);
+                recargarCambiosExternos();
+            }
+        } catch (DataAccessException e) {
+            log.warn("⚠️ [PermissionGraph] No se pudo sondear la versión de permisos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recarga tras un cambio confirmado en otro nodo. No se sabe qué evento lo causó,
+     * así que se comparan la foto anterior y la nueva y se anuncian solo los grupos
+     * cuyo perfil o permisos cambiaron, igual que con un cambio local.
+     */
+    private void recargarCambiosExternos() {
+        PermissionGraphReloaded evento;
+        recarga.lock();
+        try {
+            PermissionSnapshot anterior = snapshot.get();
+            PermissionSnapshot nuevo = cargar();
+            if (anterior == null) {
+                evento = recargado(null, nuevo, Set.of(), true);
+            } else {
+                Set<String> grupos = nuevo.gruposConCambiosDesde(anterior);
+                log.debug("📣 [PermissionGraph] Cambio de otro nodo: afecta a {} grupos", grupos.size());
+                evento = recargado(anterior, nuevo, grupos, false);
+            }
+        } finally {
+            recarga.unlock();
+        }
+        eventPublisher.publishEvent(evento);
+    }
+
+    private PermissionSnapshot cargar() {
+        // Transacción nueva: no reutilizar entidades del contexto de persistencia de la petición
+        TransactionTemplate lectura = new TransactionTemplate(transactionManager);
+        lectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        lectura.setReadOnly(true);
+        // La versión se lee antes que las filas: si entre ambas lecturas se confirma
+        // otro cambio, la foto queda con una versión anterior y el siguiente sondeo recarga
+        long[] version = new long[1];
+        List<Perfil> perfiles = lectura.execute(status -> {
+            version[0] = versionActual();
+            return perfilRepository.findAllWithPermisos();
+        });
+
+        PermissionSnapshot nuevo = PermissionSnapshot.compilar(versiones.incrementAndGet(), perfiles);
+        snapshot.set(nuevo);
+        versionPermisos = version[0];
+        log.info("🔄 [PermissionGraph] Grafo de permisos cargado (versión {}): {} perfiles, {} permisos activos",
+                nuevo.getVersion(), perfiles.size(), nuevo.cantidadPermisos());
+        return nuevo;
+    }
+
+    private long versionActual() {
+        Long version = versionRepository.versionActual();
+        return version != null ? version : 0L;
+    }
+
+    private static PermissionGraphReloaded recargado(PermissionSnapshot anterior, PermissionSnapshot nuevo,
+                                                     Set<String> grupos, boolean completo) {
+        long versionAnterior = anterior != null ? anterior.getVersion() : 0L;
+        return new PermissionGraphReloaded(versionAnterior, nuevo.getVersion(), grupos, completo);
+    }
+
+    private static Set<String> gruposAfectados(PermissionSnapshot grafo, PermissionChangeEvent evento) {
+        if (evento instanceof PermissionChangeEvent.DePerfil cambio) {
+            return grafo.gruposDelPerfil(cambio.perfilId());
+        }
+        if (evento instanceof PermissionChangeEvent.DePermiso cambio) {
+            return grafo.gruposConPermiso(cambio.permisoId());
+        }
+        return Set.of();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.apiprotegida.security.authz;
+
+import java.util.Set;
+
+/**
+ * Aviso de que {@link PermissionGraph} publicó una nueva foto
+ *
+ * @param versionAnterior Versión de la foto reemplazada (0 si no había)
+ * @param version Versión de la nueva foto
+ * @param gruposAfectados Grupos de Azure AD cuyas authorities pueden haber cambiado
+ * @param completo true si cualquier grupo puede haber cambiado (recarga completa)
+ */
+public record PermissionGraphReloaded(long versionAnterior, long version, Set<String> gruposAfectados, boolean completo) {
+
+    public PermissionGraphReloaded {
+        gruposAfectados = Set.copyOf(gruposAfectados);
+    }
+}
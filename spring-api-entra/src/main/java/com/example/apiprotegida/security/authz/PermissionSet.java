@@ -0,0 +1,166 @@
+package com.example.apiprotegida.security.authz;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto inmutable de permisos codificado como mapa de bits
+ *
+ * Cada bit corresponde al ordinal de un permiso activo dentro de una
+ * {@link PermissionSnapshot}, por lo que solo tiene sentido combinar conjuntos
+ * de la misma foto. Pertenencia, unión e intersección se resuelven palabra
+ * a palabra sobre un {@code long[]}.
+ */
+public final class PermissionSet {
+
+    public static final PermissionSet VACIO = new PermissionSet(new long[0]);
+
+    private final long[] palabras;
+
+    private PermissionSet(long[] palabras) {
+        this.palabras = palabras;
+    }
+
+    /**
+     * Crea un conjunto a partir de ordinales de permisos (se ignoran los negativos)
+     */
+    public static PermissionSet deOrdinales(int... ordinales) {
+        int maximo = -1;
+        for (int ordinal : ordinales) {
+            maximo = Math.max(maximo, ordinal);
+        }
+        if (maximo < 0) {
+            return VACIO;
+        }
+        long[] palabras = new long[indicePalabra(maximo) + 1];
+        for (int ordinal : ordinales) {
+            if (ordinal >= 0) {
+                palabras[indicePalabra(ordinal)] |= 1L << ordinal;
+            }
+        }
+        return new PermissionSet(palabras);
+    }
+
+    /**
+     * Unión de varios conjuntos (OR palabra a palabra)
+     */
+    public static PermissionSet union(PermissionSet... conjuntos) {
+        int longitud = 0;
+        for (PermissionSet conjunto : conjuntos) {
+            longitud = Math.max(longitud, conjunto.palabras.length);
+        }
+        if (longitud == 0) {
+            return VACIO;
+        }
+        long[] palabras = new long[longitud];
+        for (PermissionSet conjunto : conjuntos) {
+            for (int i = 0; i < conjunto.palabras.length; i++) {
+                palabras[i] |= conjunto.palabras[i];
+            }
+        }
+        return new PermissionSet(palabras);
+    }
+
+    public boolean contiene(int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        int indice = indicePalabra(ordinal);
+        return indice < palabras.length && (palabras[indice] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Indica si este conjunto incluye todos los permisos de {@code requeridos}
+     */
+    public boolean contieneTodos(PermissionSet requeridos) {
+        for (int i = 0; i < requeridos.palabras.length; i++) {
+            long propia = i < palabras.length ? palabras[i] : 0L;
+            if ((propia & requeridos.palabras[i]) != requeridos.palabras[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indica si este conjunto comparte al menos un permiso con {@code otro}
+     */
+    public boolean intersecta(PermissionSet otro) {
+        int longitud = Math.min(palabras.length, otro.palabras.length);
+        for (int i = 0; i < longitud; i++) {
+            if ((palabras[i] & otro.palabras[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int cantidad() {
+        int cantidad = 0;
+        for (long palabra : palabras) {
+            cantidad += Long.bitCount(palabra);
+        }
+        return cantidad;
+    }
+
+    public boolean estaVacio() {
+        for (long palabra : palabras) {
+            if (palabra != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ordinales contenidos en el conjunto, en orden ascendente
+     */
+    public int[] ordinales() {
+        int[] ordinales = new int[cantidad()];
+        int posicion = 0;
+        for (int i = 0; i < palabras.length; i++) {
+            long palabra = palabras[i];
+            while (palabra != 0) {
+                ordinales[posicion++] = (i << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+            }
+        }
+        return ordinales;
+    }
+
+    private static int indicePalabra(int ordinal) {
+        return ordinal >>> 6;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PermissionSet otro)) {
+            return false;
+        }
+        int longitud = Math.max(palabras.length, otro.palabras.length);
+        for (int i = 0; i < longitud; i++) {
+            long propia = i < palabras.length ? palabras[i] : 0L;
+            long ajena = i < otro.palabras.length ? otro.palabras[i] : 0L;
+            if (propia != ajena) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int longitud = palabras.length;
+        while (longitud > 0 && palabras[longitud - 1] == 0) {
+            longitud--;
+        }
+        return Arrays.hashCode(Arrays.copyOf(palabras, longitud));
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionSet" + Arrays.toString(ordinales());
+    }
+}
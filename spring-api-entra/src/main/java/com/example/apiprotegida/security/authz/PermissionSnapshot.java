@@ -0,0 +1,386 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Foto inmutable del grafo grupo de Azure AD → Perfil → Permisos activos
+ *
+ * Perfiles y permisos se identifican por su posición en arreglos internos
+ * (índice de perfil y ordinal de permiso). Los permisos de cada perfil, módulo
+ * y acción se precalculan como {@link PermissionSet}, de modo que resolver los
+ * permisos de un usuario es un OR de mapas de bits. Las entidades contenidas
+ * están desacopladas del contexto de persistencia y deben tratarse como
+ * de solo lectura.
+ */
+public final class PermissionSnapshot {
+
+    private static final int NO_ENCONTRADO = -1;
+
+    private final long version;
+    private final Perfil[] perfiles;
+    private final Permiso[] permisos;
+    private final PermissionSet[] permisosPorPerfil;
+    private final Map<String, Integer> perfilPorGrupo;
+    private final Map<Long, Integer> perfilPorId;
+    private final Map<String, Integer> ordinalPorCodigo;
+    private final Map<Long, Integer> ordinalPorId;
+    private final Map<String, PermissionSet> permisosPorModulo;
+    private final Map<String, PermissionSet> permisosPorAccion;
+    private final Map<String, Map<String, PermissionSet>> permisosPorModuloYAccion;
+
+    private PermissionSnapshot(long version, Perfil[] perfiles, Permiso[] permisos, PermissionSet[] permisosPorPerfil,
+                               Map<String, Integer> perfilPorGrupo, Map<Long, Integer> perfilPorId,
+                               Map<String, Integer> ordinalPorCodigo, Map<Long, Integer> ordinalPorId) {
+        this.version = version;
+        this.perfiles = perfiles;
+        this.permisos = permisos;
+        this.permisosPorPerfil = permisosPorPerfil;
+        this.perfilPorGrupo = perfilPorGrupo;
+        this.perfilPorId = perfilPorId;
+        this.ordinalPorCodigo = ordinalPorCodigo;
+        this.ordinalPorId = ordinalPorId;
+
+        Map<String, List<Integer>> ordinalesPorModulo = new HashMap<>();
+        Map<String, List<Integer>> ordinalesPorAccion = new HashMap<>();
+        Map<String, Map<String, List<Integer>>> ordinalesPorModuloYAccion = new HashMap<>();
+        for (int ordinal = 0; ordinal < permisos.length; ordinal++) {
+            String modulo = permisos[ordinal].getModulo();
+            String accion = permisos[ordinal].getAccion();
+            ordinalesPorModulo.computeIfAbsent(modulo, clave -> new ArrayList<>()).add(ordinal);
+            ordinalesPorAccion.computeIfAbsent(accion, clave -> new ArrayList<>()).add(ordinal);
+            if (modulo != null) {
+                ordinalesPorModuloYAccion.computeIfAbsent(modulo, clave -> new HashMap<>())
+                        .computeIfAbsent(accion, clave -> new ArrayList<>()).add(ordinal);
+            }
+        }
+        this.permisosPorModulo = agrupar(ordinalesPorModulo);
+        this.permisosPorAccion = agrupar(ordinalesPorAccion);
+        Map<String, Map<String, PermissionSet>> porModuloYAccion = new HashMap<>();
+        ordinalesPorModuloYAccion.forEach((modulo, porAccion) -> porModuloYAccion.put(modulo, agrupar(porAccion)));
+        this.permisosPorModuloYAccion = Map.copyOf(porModuloYAccion);
+    }
+
+    /**
+     * Compila la foto a partir de los perfiles activos con sus permisos ya cargados
+     * @param version Versión del grafo que representa esta foto
+     * @param perfilesConPermisos Perfiles activos con la colección de permisos inicializada
+     * @return Foto inmutable del grafo
+     */
+    public static PermissionSnapshot compilar(long version, List<Perfil> perfilesConPermisos) {
+        Perfil[] perfiles = perfilesConPermisos.toArray(new Perfil[0]);
+        List<Permiso> permisos = new ArrayList<>();
+        Map<String, Integer> ordinalPorCodigo = new HashMap<>();
+        Map<Long, Integer> ordinalPorId = new HashMap<>();
+        Map<String, Integer> perfilPorGrupo = new HashMap<>();
+        Map<Long, Integer> perfilPorId = new HashMap<>();
+        PermissionSet[] permisosPorPerfil = new PermissionSet[perfiles.length];
+
+        for (int indicePerfil = 0; indicePerfil < perfiles.length; indicePerfil++) {
+            Perfil perfil = perfiles[indicePerfil];
+            if (perfil.getAzureGroupId() != null) {
+                perfilPorGrupo.putIfAbsent(perfil.getAzureGroupId(), indicePerfil);
+            }
+            if (perfil.getId() != null) {
+                perfilPorId.putIfAbsent(perfil.getId(), indicePerfil);
+            }
+
+            int[] ordinales = new int[perfil.getPermisos().size()];
+            int cantidad = 0;
+            for (Permiso permiso : perfil.getPermisos()) {
+                if (!Boolean.TRUE.equals(permiso.getActivo())) {
+                    continue;
+                }
+                Integer ordinal = ordinalPorCodigo.get(permiso.getCodigo());
+                if (ordinal == null) {
+                    ordinal = permisos.size();
+                    permisos.add(permiso);
+                    ordinalPorCodigo.put(permiso.getCodigo(), ordinal);
+                    if (permiso.getId() != null) {
+                        ordinalPorId.putIfAbsent(permiso.getId(), ordinal);
+                    }
+                }
+                ordinales[cantidad++] = ordinal;
+            }
+            permisosPorPerfil[indicePerfil] = PermissionSet.deOrdinales(Arrays.copyOf(ordinales, cantidad));
+        }
+
+        return new PermissionSnapshot(version, perfiles, permisos.toArray(new Permiso[0]), permisosPorPerfil,
+                Map.copyOf(perfilPorGrupo), Map.copyOf(perfilPorId), Map.copyOf(ordinalPorCodigo),
+                Map.copyOf(ordinalPorId));
+    }
+
+    private static int[] indicesMarcados(boolean[] marcados, int cantidad) {
+        int[] indices = new int[cantidad];
+        int posicion = 0;
+        for (int indice = 0; indice < marcados.length; indice++) {
+            if (marcados[indice]) {
+                indices[posicion++] = indice;
+            }
+        }
+        return indices;
+    }
+
+    private static Map<String, PermissionSet> agrupar(Map<String, List<Integer>> ordinalesPorClave) {
+        Map<String, PermissionSet> conjuntos = new HashMap<>();
+        ordinalesPorClave.forEach((clave, ordinales) -> {
+            if (clave != null) {
+                conjuntos.put(clave, PermissionSet.deOrdinales(ordinales.stream().mapToInt(Integer::intValue).toArray()));
+            }
+        });
+        return Map.copyOf(conjuntos);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Índice del perfil asociado a un grupo de Azure AD, o -1 si no existe
+     */
+    public int indicePerfilPorGrupo(String azureGroupId) {
+        Integer indice = perfilPorGrupo.get(azureGroupId);
+        return indice != null ? indice : NO_ENCONTRADO;
+    }
+
+    /**
+     * Índices de los perfiles activos con los IDs dados, sin repetidos; los que ya no
+     * están en la foto (eliminados o desactivados) se ignoran
+     */
+    public int[] indicesPerfilesPorId(Collection<Long> perfilIds) {
+        boolean[] marcados = new boolean[perfiles.length];
+        int cantidad = 0;
+        for (Long perfilId : perfilIds) {
+            Integer indice = perfilPorId.get(perfilId);
+            if (indice != null && !marcados[indice]) {
+                marcados[indice] = true;
+                cantidad++;
+            }
+        }
+        return indicesMarcados(marcados, cantidad);
+    }
+
+    /**
+     * Índices de los perfiles asociados a los grupos dados, sin repetidos y en orden de carga
+     */
+    public int[] indicesPerfiles(Collection<String> azureGroupIds) {
+        boolean[] marcados = new boolean[perfiles.length];
+        int cantidad = 0;
+        for (String grupo : azureGroupIds) {
+            int indice = indicePerfilPorGrupo(grupo);
+            if (indice != NO_ENCONTRADO && !marcados[indice]) {
+                marcados[indice] = true;
+                cantidad++;
+            }
+        }
+        return indicesMarcados(marcados, cantidad);
+    }
+
+    public Perfil getPerfil(int indicePerfil) {
+        return perfiles[indicePerfil];
+    }
+
+    public int cantidadPerfiles() {
+        return perfiles.length;
+    }
+
+    /**
+     * Ordinales (ordenados) de los permisos activos de un perfil
+     */
+    public int[] ordinalesPermisos(int indicePerfil) {
+        return permisosPorPerfil[indicePerfil].ordinales();
+    }
+
+    /**
+     * Conjunto de permisos activos de un perfil
+     */
+    public PermissionSet permisosDePerfil(int indicePerfil) {
+        return permisosPorPerfil[indicePerfil];
+    }
+
+    /**
+     * Unión de los permisos activos de los perfiles dados (OR de sus mapas de bits)
+     */
+    public PermissionSet permisosDePerfiles(int[] indicesPerfiles) {
+        PermissionSet[] conjuntos = new PermissionSet[indicesPerfiles.length];
+        for (int i = 0; i < indicesPerfiles.length; i++) {
+            conjuntos[i] = permisosPorPerfil[indicesPerfiles[i]];
+        }
+        return PermissionSet.union(conjuntos);
+    }
+
+    /**
+     * Permisos activos de un módulo, o un conjunto vacío si no existe
+     */
+    public PermissionSet permisosDelModulo(String modulo) {
+        return modulo != null ? permisosPorModulo.getOrDefault(modulo, PermissionSet.VACIO) : PermissionSet.VACIO;
+    }
+
+    /**
+     * Permisos activos de una acción, o un conjunto vacío si no existe
+     */
+    public PermissionSet permisosDeLaAccion(String accion) {
+        return accion != null ? permisosPorAccion.getOrDefault(accion, PermissionSet.VACIO) : PermissionSet.VACIO;
+    }
+
+    /**
+     * Permisos activos de una acción dentro de un módulo, precalculados al compilar la foto
+     */
+    public PermissionSet permisosDelModuloYAccion(String modulo, String accion) {
+        Map<String, PermissionSet> porAccion = modulo != null ? permisosPorModuloYAccion.get(modulo) : null;
+        if (porAccion == null || accion == null) {
+            return PermissionSet.VACIO;
+        }
+        return porAccion.getOrDefault(accion, PermissionSet.VACIO);
+    }
+
+    /**
+     * Conjunto con los permisos activos cuyos códigos se indican; los códigos desconocidos se ignoran
+     */
+    public PermissionSet conjuntoPermisos(String... codigos) {
+        int[] ordinales = new int[codigos.length];
+        for (int i = 0; i < codigos.length; i++) {
+            ordinales[i] = ordinalPermiso(codigos[i]);
+        }
+        return PermissionSet.deOrdinales(ordinales);
+    }
+
+    /**
+     * Indica si todos los códigos corresponden a permisos activos del grafo
+     */
+    public boolean existenTodos(String... codigos) {
+        for (String codigo : codigos) {
+            if (ordinalPermiso(codigo) == NO_ENCONTRADO) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Permiso getPermiso(int ordinal) {
+        return permisos[ordinal];
+    }
+
+    /**
+     * Ordinal de un permiso activo por su código, o -1 si no existe
+     */
+    public int ordinalPermiso(String codigo) {
+        Integer ordinal = codigo != null ? ordinalPorCodigo.get(codigo) : null;
+        return ordinal != null ? ordinal : NO_ENCONTRADO;
+    }
+
+    /**
+     * Permiso activo con el ID dado, o null si no está en la foto
+     */
+    public Permiso getPermisoPorId(Long permisoId) {
+        Integer ordinal = ordinalPorId.get(permisoId);
+        return ordinal != null ? permisos[ordinal] : null;
+    }
+
+    public int cantidadPermisos() {
+        return permisos.length;
+    }
+
+    /**
+     * Grupos de Azure AD asociados al perfil con el ID dado (vacío si no está en la foto)
+     */
+    public Set<String> gruposDelPerfil(Long perfilId) {
+        Set<String> grupos = new HashSet<>();
+        for (Perfil perfil : perfiles) {
+            if (Objects.equals(perfil.getId(), perfilId) && perfil.getAzureGroupId() != null) {
+                grupos.add(perfil.getAzureGroupId());
+            }
+        }
+        return grupos;
+    }
+
+    /**
+     * Grupos de Azure AD de los perfiles que incluyen el permiso activo con el ID dado
+     */
+    public Set<String> gruposConPermiso(Long permisoId) {
+        Set<String> grupos = new HashSet<>();
+        for (int ordinal = 0; ordinal < permisos.length; ordinal++) {
+            if (!Objects.equals(permisos[ordinal].getId(), permisoId)) {
+                continue;
+            }
+            for (int indice = 0; indice < perfiles.length; indice++) {
+                if (permisosPorPerfil[indice].contiene(ordinal) && perfiles[indice].getAzureGroupId() != null) {
+                    grupos.add(perfiles[indice].getAzureGroupId());
+                }
+            }
+        }
+        return grupos;
+    }
+
+    /**
+     * Grupos de Azure AD cuyas authorities pueden diferir entre otra foto y esta: grupos
+     * que ganan o pierden perfil, o cuyo perfil cambia de nombre, rol o permisos activos
+     */
+    public Set<String> gruposConCambiosDesde(PermissionSnapshot anterior) {
+        Set<String> grupos = new HashSet<>(anterior.perfilPorGrupo.keySet());
+        grupos.addAll(perfilPorGrupo.keySet());
+        grupos.removeIf(grupo -> Objects.equals(anterior.huellaDelGrupo(grupo), huellaDelGrupo(grupo)));
+        return grupos;
+    }
+
+    private HuellaGrupo huellaDelGrupo(String grupo) {
+        Integer indice = perfilPorGrupo.get(grupo);
+        if (indice == null) {
+            return null;
+        }
+        Set<HuellaPermiso> permisosDelGrupo = new HashSet<>();
+        for (int ordinal : ordinalesPermisos(indice)) {
+            Permiso permiso = permisos[ordinal];
+            permisosDelGrupo.add(new HuellaPermiso(permiso.getId(), permiso.getCodigo(), permiso.getNombre(),
+                    permiso.getModulo(), permiso.getAccion()));
+        }
+        Perfil perfil = perfiles[indice];
+        return new HuellaGrupo(perfil.getId(), perfil.getNombre(), perfil.getAzureGroupName(), permisosDelGrupo);
+    }
+
+    /**
+     * Obtiene los perfiles correspondientes a los índices dados
+     */
+    public List<Perfil> perfiles(int[] indicesPerfiles) {
+        List<Perfil> resultado = new ArrayList<>(indicesPerfiles.length);
+        for (int indice : indicesPerfiles) {
+            resultado.add(perfiles[indice]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Obtiene la unión de los permisos activos de los perfiles dados, sin repetidos
+     */
+    public List<Permiso> permisosEfectivos(int[] indicesPerfiles) {
+        return permisos(permisosDePerfiles(indicesPerfiles));
+    }
+
+    /**
+     * Obtiene las entidades de los permisos contenidos en el conjunto, en orden de ordinal
+     */
+    public List<Permiso> permisos(PermissionSet conjunto) {
+        int[] ordinales = conjunto.ordinales();
+        List<Permiso> resultado = new ArrayList<>(ordinales.length);
+        for (int ordinal : ordinales) {
+            resultado.add(permisos[ordinal]);
+        }
+        return resultado;
+    }
+
+    private record HuellaGrupo(Long perfilId, String perfil, String azureGroupName, Set<HuellaPermiso> permisos) {
+    }
+
+    private record HuellaPermiso(Long id, String codigo, String nombre, String modulo, String accion) {
+    }
+}
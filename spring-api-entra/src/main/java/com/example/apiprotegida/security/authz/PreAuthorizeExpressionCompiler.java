@@ -0,0 +1,228 @@
+package com.example.apiprotegida.security.authz;
+
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compila expresiones de {@code @PreAuthorize} a predicados sobre la autenticación
+ *
+ * Reconoce el subconjunto que usan los controladores y {@code RoleAnnotations}:
+ * hasRole, hasAnyRole, hasAuthority, hasAnyAuthority, isAuthenticated(),
+ * isAnonymous(), permitAll y denyAll, combinados con and/or/not y paréntesis.
+ * Los predicados dan el mismo resultado que SpEL con el manejador por defecto
+ * (prefijo ROLE_, sin jerarquía de roles); isAuthenticated() exige además que la
+ * autenticación esté marcada como autenticada, como
+ * {@code AuthenticationTrustResolver#isAuthenticated}. Cualquier otra construcción
+ * (propiedades de la autenticación, argumentos del método, beans) no se compila.
+ */
+final class PreAuthorizeExpressionCompiler {
+
+    private static final String PREFIJO_ROL = "ROLE_";
+
+    private static final Pattern TOKEN = Pattern.compile(
+            "\\s*(?:'((?:[^']|'')*)'|(&&|\\|\\||[(),!])|([A-Za-z_][A-Za-z0-9_]*))");
+
+    private static final AuthenticationTrustResolver TRUST_RESOLVER = new AuthenticationTrustResolverImpl();
+
+    private final List<String> tokens;
+    private final List<Boolean> literales;
+    private int posicion;
+
+    private PreAuthorizeExpressionCompiler(List<String> tokens, List<Boolean> literales) {
+        this.tokens = tokens;
+        this.literales = literales;
+    }
+
+    /**
+     * @return Predicado equivalente a la expresión, o null si usa algo fuera del subconjunto reconocido
+     */
+    static Predicate<Authentication> compilar(String expresion) {
+        List<String> tokens = new ArrayList<>();
+        List<Boolean> literales = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(expresion);
+        int fin = 0;
+        while (fin < expresion.length() && matcher.find(fin) && matcher.start() == fin) {
+            if (matcher.group(1) != null) {
+                tokens.add(matcher.group(1).replace("''", "'"));
+                literales.add(true);
+            } else {
+                tokens.add(matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+                literales.add(false);
+            }
+            fin = matcher.end();
+        }
+        if (!expresion.substring(fin).isBlank()) {
+            return null;
+        }
+        try {
+            PreAuthorizeExpressionCompiler compilador = new PreAuthorizeExpressionCompiler(tokens, literales);
+            Predicate<Authentication> predicado = compilador.disyuncion();
+            return compilador.posicion == tokens.size() ? predicado : null;
+        } catch (NoCompilable e) {
+            return null;
+        }
+    }
+
+    private Predicate<Authentication> disyuncion() {
+        Predicate<Authentication> predicado = conjuncion();
+        while (consumirOperador("or", "||")) {
+            predicado = predicado.or(conjuncion());
+        }
+        return predicado;
+    }
+
+    private Predicate<Authentication> conjuncion() {
+        Predicate<Authentication> predicado = negacion();
+        while (consumirOperador("and", "&&")) {
+            predicado = predicado.and(negacion());
+        }
+        return predicado;
+    }
+
+    private Predicate<Authentication> negacion() {
+        if (consumirOperador("not", "!")) {
+            return negacion().negate();
+        }
+        if (consumir("(")) {
+            Predicate<Authentication> predicado = disyuncion();
+            esperar(")");
+            return predicado;
+        }
+        return llamada();
+    }
+
+    private Predicate<Authentication> llamada() {
+        String nombre = siguienteIdentificador();
+        switch (nombre) {
+            case "permitAll":
+                return autenticacion -> true;
+            case "denyAll":
+                return autenticacion -> false;
+            case "isAuthenticated":
+                argumentos(0);
+                return autenticacion -> autenticacion != null && autenticacion.isAuthenticated()
+                        && !TRUST_RESOLVER.isAnonymous(autenticacion);
+            case "isAnonymous":
+                argumentos(0);
+                return TRUST_RESOLVER::isAnonymous;
+            case "hasRole":
+            case "hasAnyRole":
+                return algunaAuthority(conPrefijoDeRol(argumentos(nombre.equals("hasRole") ? 1 : -1)));
+            case "hasAuthority":
+            case "hasAnyAuthority":
+                return algunaAuthority(argumentos(nombre.equals("hasAuthority") ? 1 : -1));
+            default:
+                throw new NoCompilable();
+        }
+    }
+
+    /**
+     * Lee la lista de argumentos literales entre paréntesis
+     * @param cantidad Número exacto de argumentos, o -1 para uno o más
+     */
+    private List<String> argumentos(int cantidad) {
+        esperar("(");
+        List<String> valores = new ArrayList<>();
+        if (!consumir(")")) {
+            do {
+                valores.add(siguienteLiteral());
+            } while (consumir(","));
+            esperar(")");
+        }
+        if (cantidad >= 0 ? valores.size() != cantidad : valores.isEmpty()) {
+            throw new NoCompilable();
+        }
+        return valores;
+    }
+
+    private static List<String> conPrefijoDeRol(List<String> roles) {
+        List<String> authorities = new ArrayList<>(roles.size());
+        for (String rol : roles) {
+            authorities.add(rol.startsWith(PREFIJO_ROL) ? rol : PREFIJO_ROL + rol);
+        }
+        return authorities;
+    }
+
+    private static Predicate<Authentication> algunaAuthority(List<String> nombres) {
+        if (nombres.size() == 1) {
+            String nombre = nombres.get(0);
+            return autenticacion -> {
+                for (GrantedAuthority authority : autenticacion.getAuthorities()) {
+                    if (nombre.equals(authority.getAuthority())) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        Set<String> buscadas = Set.copyOf(new LinkedHashSet<>(nombres));
+        return autenticacion -> {
+            for (GrantedAuthority authority : autenticacion.getAuthorities()) {
+                String nombre = authority.getAuthority();
+                if (nombre != null && buscadas.contains(nombre)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private boolean consumirOperador(String palabra, String simbolo) {
+        if (posicion < tokens.size() && !literales.get(posicion)) {
+            String token = tokens.get(posicion);
+            if (token.equals(simbolo) || token.equalsIgnoreCase(palabra)) {
+                posicion++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean consumir(String simbolo) {
+        if (posicion < tokens.size() && !literales.get(posicion) && tokens.get(posicion).equals(simbolo)) {
+            posicion++;
+            return true;
+        }
+        return false;
+    }
+
+    private void esperar(String simbolo) {
+        if (!consumir(simbolo)) {
+            throw new NoCompilable();
+        }
+    }
+
+    private String siguienteIdentificador() {
+        if (posicion >= tokens.size() || literales.get(posicion)) {
+            throw new NoCompilable();
+        }
+        return tokens.get(posicion++);
+    }
+
+    private String siguienteLiteral() {
+        if (posicion >= tokens.size() || !literales.get(posicion)) {
+            throw new NoCompilable();
+        }
+        return tokens.get(posicion++);
+    }
+
+    /**
+     * La expresión usa algo que solo SpEL sabe evaluar
+     */
+    private static final class NoCompilable extends RuntimeException {
+
+        NoCompilable() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import org.springframework.security.core.Authentication;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Principal resuelto: perfiles y permisos efectivos de un usuario autenticado
+ *
+ * Se construye una sola vez por petición a partir del {@link Authentication}
+ * y es inmutable. Los permisos efectivos se guardan como {@link PermissionSet}
+ * de la foto del grafo usada al resolverlo, por lo que las verificaciones por
+ * módulo o acción (las de {@code @RequierePermiso}) son operaciones sobre mapas de
+ * bits. Las verificaciones por código usan el conjunto de códigos: una búsqueda
+ * en el HashSet es más rápida que traducir cada código a su ordinal.
+ */
+public final class ResolvedPrincipal {
+
+    private final Authentication origen;
+    private final PermissionSnapshot grafo;
+    private final List<String> grupos;
+    private final List<Perfil> perfiles;
+    private final PermissionSet conjuntoPermisos;
+    private final List<Permiso> permisos;
+    private final Set<String> codigosPermisos;
+    private final boolean perfilPorDefecto;
+
+    public ResolvedPrincipal(Authentication origen, List<String> grupos, PermissionSnapshot grafo, int[] indicesPerfiles) {
+        this(origen, grupos, grafo, indicesPerfiles, false);
+    }
+
+    /**
+     * @param perfilPorDefecto Los perfiles son el perfil por defecto asignado por no
+     *                         tener ninguno propio, no perfiles del usuario
+     */
+    public ResolvedPrincipal(Authentication origen, List<String> grupos, PermissionSnapshot grafo, int[] indicesPerfiles,
+                             boolean perfilPorDefecto) {
+        this.origen = origen;
+        this.perfilPorDefecto = perfilPorDefecto;
+        this.grafo = grafo;
+        this.grupos = List.copyOf(grupos);
+        this.perfiles = List.copyOf(grafo.perfiles(indicesPerfiles));
+        this.conjuntoPermisos = grafo.permisosDePerfiles(indicesPerfiles);
+        this.permisos = List.copyOf(grafo.permisos(conjuntoPermisos));
+
+        Set<String> codigos = new LinkedHashSet<>();
+        for (Permiso permiso : this.permisos) {
+            codigos.add(permiso.getCodigo());
+        }
+        this.codigosPermisos = Collections.unmodifiableSet(codigos);
+    }
+
+    /**
+     * Indica si este principal fue resuelto para la autenticación dada
+     */
+    public boolean perteneceA(Authentication authentication) {
+        return origen == authentication;
+    }
+
+    /**
+     * Versión de la foto del grafo con la que se resolvió este principal
+     */
+    public long getVersionGrafo() {
+        return grafo.getVersion();
+    }
+
+    /**
+     * Indica si el principal solo tiene el perfil por defecto (ningún perfil propio)
+     */
+    public boolean isPerfilPorDefecto() {
+        return perfilPorDefecto;
+    }
+
+    public List<String> getGrupos() {
+        return grupos;
+    }
+
+    public List<Perfil> getPerfiles() {
+        return perfiles;
+    }
+
+    public List<Permiso> getPermisos() {
+        return permisos;
+    }
+
+    public Set<String> getCodigosPermisos() {
+        return codigosPermisos;
+    }
+
+    public PermissionSet getConjuntoPermisos() {
+        return conjuntoPermisos;
+    }
+
+    public boolean tienePermiso(String codigoPermiso) {
+        return codigosPermisos.contains(codigoPermiso);
+    }
+
+    public boolean tieneAlgunoDe(String... codigosPermisos) {
+        for (String codigo : codigosPermisos) {
+            if (this.codigosPermisos.contains(codigo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean tieneTodos(String... codigosPermisos) {
+        for (String codigo : codigosPermisos) {
+            if (!this.codigosPermisos.contains(codigo)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean tieneModulo(String modulo) {
+        return conjuntoPermisos.intersecta(grafo.permisosDelModulo(modulo));
+    }
+
+    public boolean tieneAccion(String accion) {
+        return conjuntoPermisos.intersecta(grafo.permisosDeLaAccion(accion));
+    }
+
+    public boolean tieneModuloYAccion(String modulo, String accion) {
+        return conjuntoPermisos.intersecta(grafo.permisosDelModuloYAccion(modulo, accion));
+    }
+}
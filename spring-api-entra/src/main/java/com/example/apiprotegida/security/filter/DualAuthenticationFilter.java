@@ -1,6 +1,8 @@
 package com.example.apiprotegida.security.filter;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.example.apiprotegida.security.JWTTokenProvider;
+import com.example.apiprotegida.security.VerifiedLocalToken;
 import com.example.apiprotegida.service.ConfiguracionService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -15,7 +17,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Base64;
 
 import static com.example.apiprotegida.security.SecurityConstant.TOKEN_PREFIX;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
@@ -38,7 +39,9 @@ public class DualAuthenticationFilter extends OncePerRequestFilter {
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
             throws ServletException, IOException {
         
-        log.debug("Procesando petición con filtro dual: {} {}", request.getMethod(), request.getRequestURI());
+        if (log.isDebugEnabled()) {
+            log.debug("Procesando petición con filtro dual: {} {}", request.getMethod(), request.getRequestURI());
+        }
         
         // Solo procesar si no hay autenticación previa
         if (SecurityContextHolder.getContext().getAuthentication() == null) {
@@ -79,7 +82,7 @@ public class DualAuthenticationFilter extends OncePerRequestFilter {
             } else {
                 log.debug("No se encontró token de autorización");
             }
-        } else {
+        } else if (log.isDebugEnabled()) {
             log.debug("Ya existe autenticación en el contexto: {}", 
                 SecurityContextHolder.getContext().getAuthentication().getName());
         }
@@ -90,41 +93,22 @@ public class DualAuthenticationFilter extends OncePerRequestFilter {
 
     /**
      * Determina si un token es JWT local o de Azure AD
-     * Decodifica el JWT sin validarlo para verificar el claim "iss" (issuer)
+     * Lee el claim "iss" (issuer) del payload sin validar el token ni crear Strings intermedios
      * @param token El token a analizar
      * @return true si es JWT local, false si es de Azure AD
      */
     private boolean isLocalJwtToken(String token) {
-        try {
-            // Decodificar el payload del JWT sin validar la firma
-            String[] parts = token.split("\\.");
-            if (parts.length < 2) {
-                log.debug("Token inválido: no tiene el formato correcto");
-                return false;
-            }
-            
-            // Decodificar el payload (segunda parte del JWT)
-            String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
-            
-            // Verificar si contiene el issuer de JWT local ("API_TYC")
-            if (payload.contains("\"iss\":\"API_TYC\"")) {
+        switch (TokenIssuerClassifier.classify(token)) {
+            case LOCAL:
                 log.debug("Token identificado como JWT local (issuer: API_TYC)");
                 return true;
-            }
-            
-            // Verificar si contiene el issuer de Azure AD (login.microsoftonline.com)
-            if (payload.contains("login.microsoftonline.com")) {
-                log.debug("Token identificado como Azure AD (issuer contiene login.microsoftonline.com)");
+            case AZURE_AD:
+                log.debug("Token identificado como Azure AD (issuer de login.microsoftonline.com)");
+                return false;
+            default:
+                // Si no se puede determinar, asumir que es de Azure AD para ser seguro
+                log.debug("No se pudo determinar el tipo de token, asumiendo Azure AD");
                 return false;
-            }
-            
-            // Si no se puede determinar, asumir que es de Azure AD para ser seguro
-            log.debug("No se pudo determinar el tipo de token, asumiendo Azure AD");
-            return false;
-            
-        } catch (Exception e) {
-            log.error("Hubo un error al verificar el token: {}", e.getMessage());
-            return false;
         }
     }
 
@@ -135,21 +119,21 @@ public class DualAuthenticationFilter extends OncePerRequestFilter {
      */
     private void processLocalJwtToken(String token, HttpServletRequest request) {
         try {
-            if (jwtTokenProvider.isTokenValid(token)) {
-                String subject = jwtTokenProvider.getSubject(token);
-                var authorities = jwtTokenProvider.getAuthorities(token);
-                
-                log.debug("Token JWT local válido para usuario: {}", subject);
-                log.debug("Autoridades encontradas: {}", authorities);
-                
-                Authentication authentication = jwtTokenProvider.getAuthentication(subject, authorities, request);
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-                
-                log.debug("Autenticación JWT local establecida en el contexto de seguridad");
-            } else {
-                log.debug("Token JWT local inválido");
-                SecurityContextHolder.clearContext();
-            }
+            // Una sola verificación por token (cacheada hasta su expiración)
+            VerifiedLocalToken verified = jwtTokenProvider.verify(token);
+            String subject = verified.getSubject();
+            var authorities = verified.getAuthorities();
+            
+            log.debug("Token JWT local válido para usuario: {}", subject);
+            log.debug("Autoridades encontradas: {}", authorities);
+            
+            Authentication authentication = jwtTokenProvider.getAuthentication(verified, request);
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+            
+            log.debug("Autenticación JWT local establecida en el contexto de seguridad");
+        } catch (JWTVerificationException e) {
+            log.debug("Token JWT local inválido: {}", e.getMessage());
+            SecurityContextHolder.clearContext();
         } catch (Exception e) {
             log.error("Error procesando token JWT local: {}", e.getMessage());
             SecurityContextHolder.clearContext();
@@ -0,0 +1,244 @@
+package com.example.apiprotegida.security.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static com.example.apiprotegida.security.SecurityConstant.API_TYC;
+
+/**
+ * Clasifica un JWT por su claim "iss" sin validarlo
+ *
+ * Localiza el payload por índices, lo decodifica de Base64URL con el decoder
+ * del JDK a un arreglo propio de la llamada (sin buffers por hilo, que con
+ * hilos virtuales se multiplicarían) y recorre el JSON del objeto raíz hasta
+ * "iss" sin crear Strings intermedios. Al comparar solo el valor de "iss" del
+ * objeto raíz, el resultado no depende del orden de los claims, de los espacios ni de que
+ * otro claim contenga el texto del issuer.
+ */
+final class TokenIssuerClassifier {
+
+    enum TokenType {
+        /** Emitido por este backend (iss = API_TYC) */
+        LOCAL,
+        /** Emitido por Microsoft Entra ID */
+        AZURE_AD,
+        /** Sin "iss" reconocible o con formato inválido */
+        UNKNOWN
+    }
+
+    private static final byte[] ISS = "iss".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOCAL_ISSUER = API_TYC.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] AZURE_ISSUER_HOSTS = {
+            "login.microsoftonline.com".getBytes(StandardCharsets.US_ASCII),
+            "sts.windows.net".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    private TokenIssuerClassifier() {
+    }
+
+    /**
+     * Clasifica el token según el "iss" de su payload
+     * @param token JWT sin el prefijo "Bearer "
+     * @return Tipo de token; UNKNOWN si no se puede determinar
+     */
+    @SuppressWarnings("deprecation")
+    static TokenType classify(String token) {
+        if (token == null) {
+            return TokenType.UNKNOWN;
+        }
+        int inicio = token.indexOf('.');
+        if (inicio < 0) {
+            return TokenType.UNKNOWN;
+        }
+        inicio++;
+        int fin = token.indexOf('.', inicio);
+        if (fin < 0) {
+            fin = token.length();
+        }
+
+        // Copia directa de los caracteres a bytes, sin el substring intermedio: el
+        // valor de una cabecera HTTP no trae caracteres fuera de ISO-8859-1
+        byte[] base64 = new byte[fin - inicio];
+        token.getBytes(inicio, fin, base64, 0);
+        byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(base64);
+        } catch (IllegalArgumentException e) {
+            return TokenType.UNKNOWN;
+        }
+        return new Scanner(payload).classifyRootObject();
+    }
+
+    /**
+     * Recorredor mínimo de JSON sobre bytes UTF-8: solo entiende lo necesario para
+     * saltar valores del objeto raíz y comparar el valor de "iss"
+     */
+    private static final class Scanner {
+
+        private final byte[] datos;
+        private final int longitud;
+        private int posicion;
+
+        Scanner(byte[] datos) {
+            this.datos = datos;
+            this.longitud = datos.length;
+        }
+
+        private boolean hayDatos() {
+            return posicion < longitud;
+        }
+
+        TokenType classifyRootObject() {
+            skipWhitespace();
+            if (!consume('{')) {
+                return TokenType.UNKNOWN;
+            }
+            while (true) {
+                skipWhitespace();
+                if (consume('}')) {
+                    return TokenType.UNKNOWN;
+                }
+                int inicioClave = posicion + 1;
+                if (!skipString()) {
+                    return TokenType.UNKNOWN;
+                }
+                boolean esIss = equalsRange(inicioClave, posicion - 1, ISS);
+                skipWhitespace();
+                if (!consume(':')) {
+                    return TokenType.UNKNOWN;
+                }
+                skipWhitespace();
+                if (esIss) {
+                    return classifyIssuerValue();
+                }
+                if (!skipValue()) {
+                    return TokenType.UNKNOWN;
+                }
+                skipWhitespace();
+                if (!consume(',')) {
+                    return TokenType.UNKNOWN;
+                }
+            }
+        }
+
+        private TokenType classifyIssuerValue() {
+            int inicioValor = posicion + 1;
+            if (!skipString()) {
+                return TokenType.UNKNOWN;
+            }
+            int finValor = posicion - 1;
+            if (equalsRange(inicioValor, finValor, LOCAL_ISSUER)) {
+                return TokenType.LOCAL;
+            }
+            for (byte[] host : AZURE_ISSUER_HOSTS) {
+                if (containsRange(inicioValor, finValor, host)) {
+                    return TokenType.AZURE_AD;
+                }
+            }
+            return TokenType.UNKNOWN;
+        }
+
+        /** Salta un string JSON; deja la posición después de la comilla de cierre */
+        private boolean skipString() {
+            if (!consume('"')) {
+                return false;
+            }
+            int i = posicion;
+            while (i < longitud) {
+                byte b = datos[i++];
+                if (b == '\\') {
+                    i++;
+                } else if (b == '"') {
+                    posicion = i;
+                    return true;
+                }
+            }
+            posicion = i;
+            return false;
+        }
+
+        /** Salta cualquier valor JSON (string, número, literal, objeto o arreglo) */
+        private boolean skipValue() {
+            if (!hayDatos()) {
+                return false;
+            }
+            byte b = datos[posicion];
+            if (b == '"') {
+                return skipString();
+            }
+            if (b == '{' || b == '[') {
+                int profundidad = 0;
+                while (hayDatos()) {
+                    byte actual = datos[posicion];
+                    if (actual == '"') {
+                        if (!skipString()) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    posicion++;
+                    if (actual == '{' || actual == '[') {
+                        profundidad++;
+                    } else if (actual == '}' || actual == ']') {
+                        if (--profundidad == 0) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+            int inicio = posicion;
+            while (hayDatos()) {
+                byte actual = datos[posicion];
+                if (actual == ',' || actual == '}' || isWhitespace(actual)) {
+                    break;
+                }
+                posicion++;
+            }
+            return posicion > inicio;
+        }
+
+        private void skipWhitespace() {
+            while (hayDatos() && isWhitespace(datos[posicion])) {
+                posicion++;
+            }
+        }
+
+        private boolean consume(char esperado) {
+            if (hayDatos() && datos[posicion] == esperado) {
+                posicion++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean equalsRange(int inicio, int fin, byte[] esperado) {
+            if (fin - inicio != esperado.length) {
+                return false;
+            }
+            for (int i = 0; i < esperado.length; i++) {
+                if (datos[inicio + i] != esperado[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean containsRange(int inicio, int fin, byte[] buscado) {
+            for (int i = inicio; i <= fin - buscado.length; i++) {
+                int j = 0;
+                while (j < buscado.length && datos[i + j] == buscado[j]) {
+                    j++;
+                }
+                if (j == buscado.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+        }
+    }
+}
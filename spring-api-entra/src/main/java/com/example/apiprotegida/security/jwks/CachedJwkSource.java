@@ -0,0 +1,219 @@
+package com.example.apiprotegida.security.jwks;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fuente de claves públicas (JWKS) de Microsoft Entra ID servida desde memoria
+ *
+ * - Con {@code azure.jwks.cache-file} (opcional, en un directorio que solo pueda
+ *   escribir la aplicación) al arrancar carga el último JWKS válido guardado en
+ *   disco, así un arranque en frío no depende de la red, y lo contrasta en
+ *   segundo plano con el endpoint de inmediato.
+ * - Se refresca en segundo plano de forma periódica y, cuando llega un token con
+ *   un "kid" desconocido (rotación de claves), con una única descarga compartida
+ *   por todos los hilos que esperan (single-flight) y como máximo una vez por
+ *   intervalo mínimo.
+ * - Con {@code azure.jwks.offline-file} las claves se leen solo de ese archivo
+ *   (emisor sustituto sin red, útil en desarrollo y pruebas).
+ */
+@Component
+@Slf4j
+public class CachedJwkSource implements JWKSource<SecurityContext> {
+
+    private static final int TIMEOUT_CONEXION_MS = 5_000;
+    private static final int TIMEOUT_LECTURA_MS = 5_000;
+    private static final int TAMANO_MAXIMO_BYTES = 512 * 1024;
+
+    @Value("${azure.jwks.uri:}")
+    private String jwksUri = "";
+
+    @Value("${azure.jwks.cache-file:}")
+    private String cacheFile = "";
+
+    @Value("${azure.jwks.offline-file:}")
+    private String offlineFile = "";
+
+    @Value("${azure.jwks.min-refresh-interval-ms:60000}")
+    private long minRefreshIntervalMs = 60_000;
+
+    private final AtomicReference<JWKSet> claves = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<CompletableFuture<JWKSet>> refrescoEnCurso = new AtomicReference<>();
+    private final AtomicLong ultimoRefresco = new AtomicLong();
+
+    /** Hilo para el refresco que contrasta la copia en disco al arrancar */
+    private Executor segundoPlano = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "jwks-refresh");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Carga las claves disponibles sin esperar a la red si hay una copia en disco
+     */
+    @PostConstruct
+    public void inicializar() {
+        if (isOffline()) {
+            refrescar();
+            return;
+        }
+        JWKSet enDisco = leerArchivo(cacheFile);
+        if (enDisco != null && !enDisco.getKeys().isEmpty()) {
+            claves.set(enDisco);
+            log.info("🔑 [CachedJwkSource] {} claves cargadas desde {}, verificando en segundo plano",
+                    enDisco.getKeys().size(), cacheFile);
+            segundoPlano.execute(this::refrescar);
+        } else {
+            refrescar();
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (segundoPlano instanceof ExecutorService servicio) {
+            servicio.shutdownNow();
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> encontradas = jwkSelector.select(claves.get());
+        if (!encontradas.isEmpty() || !pideKidConcreto(jwkSelector)) {
+            return encontradas;
+        }
+
+        // kid desconocido: posible rotación de claves, refrescar (limitado en frecuencia)
+        long ahora = System.nanoTime();
+        long ultimo = ultimoRefresco.get();
+        if (ultimo != 0 && ahora - ultimo < minRefreshIntervalMs * 1_000_000L) {
+            return encontradas;
+        }
+        log.info("🔄 [CachedJwkSource] kid desconocido {}, refrescando JWKS", jwkSelector.getMatcher().getKeyIDs());
+        return jwkSelector.select(refrescar());
+    }
+
+    /**
+     * Refresco periódico en segundo plano
+     */
+    @Scheduled(fixedDelayString = "${azure.jwks.refresh-interval-ms:3600000}",
+               initialDelayString = "${azure.jwks.refresh-interval-ms:3600000}")
+    public void refrescoProgramado() {
+        refrescar();
+    }
+
+    /**
+     * Descarga (o relee en modo offline) el JWKS. Si ya hay un refresco en curso,
+     * espera su resultado en lugar de lanzar otro.
+     * @return El JWKS vigente tras el refresco (el anterior si falló)
+     */
+    public JWKSet refrescar() {
+        CompletableFuture<JWKSet> propio = new CompletableFuture<>();
+        CompletableFuture<JWKSet> existente = refrescoEnCurso.compareAndExchange(null, propio);
+        if (existente != null) {
+            return existente.join();
+        }
+
+        try {
+            JWKSet nuevo = cargar();
+            if (nuevo != null && !nuevo.getKeys().isEmpty()) {
+                claves.set(nuevo);
+                if (!isOffline()) {
+                    guardarArchivo(nuevo);
+                }
+                log.info("✅ [CachedJwkSource] JWKS actualizado: {} claves", nuevo.getKeys().size());
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ [CachedJwkSource] No se pudo refrescar el JWKS, se mantienen las claves actuales: {}", e.getMessage());
+        } finally {
+            ultimoRefresco.set(System.nanoTime());
+            JWKSet vigente = claves.get();
+            refrescoEnCurso.set(null);
+            propio.complete(vigente);
+        }
+        return claves.get();
+    }
+
+    public JWKSet getClaves() {
+        return claves.get();
+    }
+
+    /**
+     * Obtiene el JWKS desde su origen (archivo offline o endpoint remoto)
+     */
+    protected JWKSet cargar() throws IOException, ParseException {
+        if (isOffline()) {
+            return JWKSet.load(Path.of(offlineFile).toFile());
+        }
+        if (jwksUri == null || jwksUri.isBlank()) {
+            throw new IOException("azure.jwks.uri no está configurado");
+        }
+        return JWKSet.load(new URL(jwksUri), TIMEOUT_CONEXION_MS, TIMEOUT_LECTURA_MS, TAMANO_MAXIMO_BYTES);
+    }
+
+    private boolean isOffline() {
+        return offlineFile != null && !offlineFile.isBlank();
+    }
+
+    private static boolean pideKidConcreto(JWKSelector selector) {
+        Set<String> kids = selector.getMatcher().getKeyIDs();
+        return kids != null && !kids.isEmpty();
+    }
+
+    private JWKSet leerArchivo(String ruta) {
+        if (ruta == null || ruta.isBlank() || !Files.isRegularFile(Path.of(ruta))) {
+            return null;
+        }
+        try {
+            return JWKSet.load(Path.of(ruta).toFile());
+        } catch (Exception e) {
+            log.warn("⚠️ [CachedJwkSource] Copia local del JWKS ilegible en {}: {}", ruta, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Guarda solo las claves públicas, escribiendo a un temporal y moviéndolo para no dejar archivos a medias
+     */
+    private void guardarArchivo(JWKSet jwkSet) {
+        if (cacheFile == null || cacheFile.isBlank()) {
+            return;
+        }
+        try {
+            Path destino = Path.of(cacheFile);
+            Path directorio = destino.toAbsolutePath().getParent();
+            if (directorio != null) {
+                Files.createDirectories(directorio);
+            }
+            Path temporal = Files.createTempFile(directorio, "jwks", ".tmp");
+            Files.writeString(temporal, jwkSet.toString(true), StandardCharsets.UTF_8);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ [CachedJwkSource] No se pudo guardar la copia local del JWKS en {}: {}", cacheFile, e.getMessage());
+        }
+    }
+}
@@ -3,14 +3,27 @@ package com.example.apiprotegida.service;
 import com.example.apiprotegida.model.Perfil;
 import com.example.apiprotegida.model.Permiso;
 import com.example.apiprotegida.repository.UsuarioRepository;
+import com.example.apiprotegida.security.LocalJwtAuthenticationToken;
+import com.example.apiprotegida.security.authz.AuthorizationAuditLog;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
+import com.example.apiprotegida.security.authz.ResolvedPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -20,127 +33,110 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class AuthorizationService {
 
-    @Autowired
-    private PerfilService perfilService;
+    /** Atributo de la petición donde se guarda el principal ya resuelto */
+    private static final String ATRIBUTO_PRINCIPAL_RESUELTO = ResolvedPrincipal.class.getName();
+
+    /** Grupo asignado a usuarios sin grupos de Azure AD o sin perfiles asociados */
+    private static final String PERFIL_POR_DEFECTO = "default-user";
 
     @Autowired
-    private PermisoService permisoService;
+    private PermissionGraph permissionGraph;
 
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    @Autowired
+    private AuthorizationAuditLog auditoria;
+
+    /** Tiempo máximo que se reutilizan los perfiles de un usuario local leídos de la base de datos */
+    @Value("${authz.local-profiles.ttl-seconds:300}")
+    private long ttlPerfilesLocalesSegundos = 300;
+
+    /** IDs de perfil de los usuarios locales con token completo, por email */
+    private final ConcurrentHashMap<String, PerfilesLocales> perfilesLocales = new ConcurrentHashMap<>();
+
     /**
-     * Obtiene los permisos del usuario autenticado basado en sus grupos de Azure AD
+     * Resuelve los perfiles y permisos efectivos del usuario autenticado.
+     * Dentro de una petición HTTP la resolución se hace una sola vez y se reutiliza
+     * en todas las verificaciones de esa petición.
      */
-    public List<Permiso> obtenerPermisosUsuario(Authentication authentication) {
-        List<String> azureGroupIds = extraerGruposAzureAD(authentication);
-        
-        List<Perfil> perfiles;
-        if (azureGroupIds.isEmpty()) {
-            System.out.println("⚠️ Usuario sin grupos de Azure AD, asignando perfil por defecto");
-            // Asignar perfil por defecto para usuarios sin grupos
-            perfiles = perfilService.obtenerPerfilesPorAzureGroupIds(List.of("default-user"));
-        } else {
-            perfiles = perfilService.obtenerPerfilesPorAzureGroupIds(azureGroupIds);
-            
-            // Si no se encontraron perfiles para los grupos, usar perfil por defecto
-            if (perfiles.isEmpty()) {
-                System.out.println("⚠️ No se encontraron perfiles para los grupos: " + azureGroupIds + ", asignando perfil por defecto");
-                perfiles = perfilService.obtenerPerfilesPorAzureGroupIds(List.of("default-user"));
+    public ResolvedPrincipal resolverPrincipal(Authentication authentication) {
+        RequestAttributes atributos = RequestContextHolder.getRequestAttributes();
+        if (atributos != null) {
+            Object resuelto = atributos.getAttribute(ATRIBUTO_PRINCIPAL_RESUELTO, RequestAttributes.SCOPE_REQUEST);
+            if (resuelto instanceof ResolvedPrincipal principal && principal.perteneceA(authentication)) {
+                return principal;
             }
         }
-        
-        System.out.println("✅ Perfiles asignados: " + perfiles.stream().map(Perfil::getNombre).collect(Collectors.toList()));
-        
-        return perfiles.stream()
-            .flatMap(perfil -> perfil.getPermisos().stream())
-            .filter(Permiso::getActivo)
-            .distinct()
-            .collect(Collectors.toList());
+
+        ResolvedPrincipal principal = construirPrincipal(authentication);
+        if (atributos != null) {
+            atributos.setAttribute(ATRIBUTO_PRINCIPAL_RESUELTO, principal, RequestAttributes.SCOPE_REQUEST);
+        }
+        return principal;
+    }
+
+    /**
+     * Obtiene los permisos del usuario autenticado basado en sus grupos de Azure AD
+     */
+    public List<Permiso> obtenerPermisosUsuario(Authentication authentication) {
+        return resolverPrincipal(authentication).getPermisos();
     }
 
     /**
      * Obtiene los códigos de permisos del usuario autenticado
      */
     public Set<String> obtenerCodigosPermisosUsuario(Authentication authentication) {
-        return obtenerPermisosUsuario(authentication).stream()
-            .map(Permiso::getCodigo)
-            .collect(Collectors.toSet());
+        return resolverPrincipal(authentication).getCodigosPermisos();
     }
 
     /**
      * Obtiene los perfiles del usuario autenticado basado en sus grupos de Azure AD
      */
     public List<Perfil> obtenerPerfilesUsuario(Authentication authentication) {
-        List<String> azureGroupIds = extraerGruposAzureAD(authentication);
-        
-        List<Perfil> perfiles;
-        if (azureGroupIds.isEmpty()) {
-            // Asignar perfil por defecto para usuarios sin grupos
-            perfiles = perfilService.obtenerPerfilesPorAzureGroupIds(List.of("default-user"));
-        } else {
-            perfiles = perfilService.obtenerPerfilesPorAzureGroupIds(azureGroupIds);
-            
-            // Si no se encontraron perfiles para los grupos, usar perfil por defecto
-            if (perfiles.isEmpty()) {
-                perfiles = perfilService.obtenerPerfilesPorAzureGroupIds(List.of("default-user"));
-            }
-        }
-
-        return perfiles;
+        return resolverPrincipal(authentication).getPerfiles();
     }
 
     /**
      * Verifica si el usuario tiene un permiso específico
      */
     public boolean tienePermiso(Authentication authentication, String codigoPermiso) {
-        Set<String> permisosUsuario = obtenerCodigosPermisosUsuario(authentication);
-        return permisosUsuario.contains(codigoPermiso);
+        return resolverPrincipal(authentication).tienePermiso(codigoPermiso);
     }
 
     /**
      * Verifica si el usuario tiene alguno de los permisos especificados
      */
     public boolean tieneAlgunoDeEstosPermisos(Authentication authentication, String... codigosPermisos) {
-        Set<String> permisosUsuario = obtenerCodigosPermisosUsuario(authentication);
-        return Arrays.stream(codigosPermisos)
-            .anyMatch(permisosUsuario::contains);
+        return resolverPrincipal(authentication).tieneAlgunoDe(codigosPermisos);
     }
 
     /**
      * Verifica si el usuario tiene todos los permisos especificados
      */
     public boolean tieneTodosLosPermisos(Authentication authentication, String... codigosPermisos) {
-        Set<String> permisosUsuario = obtenerCodigosPermisosUsuario(authentication);
-        return Arrays.stream(codigosPermisos)
-            .allMatch(permisosUsuario::contains);
+        return resolverPrincipal(authentication).tieneTodos(codigosPermisos);
     }
 
     /**
      * Verifica si el usuario tiene permisos para un módulo específico
      */
     public boolean tienePermisoEnModulo(Authentication authentication, String modulo) {
-        List<Permiso> permisosUsuario = obtenerPermisosUsuario(authentication);
-        return permisosUsuario.stream()
-            .anyMatch(permiso -> modulo.equals(permiso.getModulo()));
+        return resolverPrincipal(authentication).tieneModulo(modulo);
     }
 
     /**
      * Verifica si el usuario tiene permisos para una acción específica
      */
     public boolean tienePermisoParaAccion(Authentication authentication, String accion) {
-        List<Permiso> permisosUsuario = obtenerPermisosUsuario(authentication);
-        return permisosUsuario.stream()
-            .anyMatch(permiso -> accion.equals(permiso.getAccion()));
+        return resolverPrincipal(authentication).tieneAccion(accion);
     }
 
     /**
      * Verifica si el usuario tiene permisos para una acción en un módulo específico
      */
     public boolean tienePermisoEnModuloYAccion(Authentication authentication, String modulo, String accion) {
-        List<Permiso> permisosUsuario = obtenerPermisosUsuario(authentication);
-        return permisosUsuario.stream()
-            .anyMatch(permiso -> modulo.equals(permiso.getModulo()) && accion.equals(permiso.getAccion()));
+        return resolverPrincipal(authentication).tieneModuloYAccion(modulo, accion);
     }
 
     /**
@@ -152,11 +148,12 @@ public class AuthorizationService {
         // Información básica del usuario
         info.put("email", obtenerEmailUsuario(authentication));
         info.put("nombre", obtenerNombreUsuario(authentication));
-        info.put("grupos", extraerGruposAzureAD(authentication));
         
-        // Perfiles y permisos
-        List<Perfil> perfiles = obtenerPerfilesUsuario(authentication);
-        List<Permiso> permisos = obtenerPermisosUsuario(authentication);
+        // Perfiles y permisos (resueltos una sola vez)
+        ResolvedPrincipal principal = resolverPrincipal(authentication);
+        List<Perfil> perfiles = principal.getPerfiles();
+        List<Permiso> permisos = principal.getPermisos();
+        info.put("grupos", principal.getGrupos());
         
         info.put("perfiles", perfiles.stream()
             .map(perfil -> Map.of(
@@ -179,55 +176,152 @@ public class AuthorizationService {
             .collect(Collectors.toList()));
         
         // Códigos de permisos para validación rápida en el frontend
-        info.put("codigosPermisos", permisos.stream()
-            .map(Permiso::getCodigo)
-            .collect(Collectors.toSet()));
+        info.put("codigosPermisos", principal.getCodigosPermisos());
         
         return info;
     }
 
     /**
-     * Extrae los grupos de Azure AD del token JWT
+     * ETag fuerte de la respuesta de {@link #obtenerInformacionCompleteUsuario}: versión
+     * del grafo, permisos y perfiles efectivos, grupos e identidad del token. Se calcula
+     * en memoria y fuera de transacción, sin tocar la base de datos: los perfiles de un
+     * usuario local salen de su token compacto o de la caché por usuario. El nombre de un
+     * usuario local (guardado en BD) no forma parte del ETag.
      */
-    private List<String> extraerGruposAzureAD(Authentication authentication) {
-        System.out.println("🔍 Extrayendo grupos de Azure AD...");
-        System.out.println("Authentication type: " + authentication.getClass().getSimpleName());
-        System.out.println("Principal type: " + authentication.getPrincipal().getClass().getSimpleName());
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String calcularEtagInformacionUsuario(Authentication authentication) {
+        ResolvedPrincipal principal = resolverPrincipal(authentication);
+        StringBuilder huella = huellaPermisos("informacion-usuario", principal);
+        for (Perfil perfil : principal.getPerfiles()) {
+            huella.append(perfil.getId()).append(',');
+        }
+        huella.append('|').append(String.join(",", principal.getGrupos()));
+        huella.append('|').append(obtenerEmailUsuario(authentication));
+        if (authentication.getPrincipal() instanceof Jwt) {
+            huella.append('|').append(obtenerNombreUsuario(authentication));
+        }
+        return etag(huella);
+    }
+
+    /**
+     * ETag fuerte de los códigos de permisos del usuario (versión del grafo y conjunto efectivo)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String calcularEtagCodigosPermisos(Authentication authentication) {
+        return etag(huellaPermisos("codigos-permisos", resolverPrincipal(authentication)));
+    }
+
+    private static StringBuilder huellaPermisos(String recurso, ResolvedPrincipal principal) {
+        return new StringBuilder(recurso)
+            .append('|').append(principal.getVersionGrafo())
+            .append('|').append(Arrays.toString(principal.getConjuntoPermisos().ordinales()))
+            .append('|');
+    }
+
+    private static String etag(CharSequence huella) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(huella.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Construye el principal resuelto a partir del grafo de permisos en memoria
+     */
+    private ResolvedPrincipal construirPrincipal(Authentication authentication) {
+        List<String> azureGroupIds = extraerGruposAzureAD(authentication);
+        PermissionSnapshot grafo = permissionGraph.snapshot();
+        
+        // Azure AD: perfiles de sus grupos; JWT local: perfiles asignados al usuario en la base de datos
+        int[] perfiles;
+        if (authentication.getPrincipal() instanceof Jwt) {
+            perfiles = azureGroupIds.isEmpty() ? new int[0] : grafo.indicesPerfiles(azureGroupIds);
+        } else {
+            perfiles = grafo.indicesPerfilesPorId(perfilIdsUsuarioLocal(authentication));
+        }
+        
+        // Usuarios sin perfiles propios reciben el perfil por defecto (no concede @RequierePermiso)
+        boolean perfilPorDefecto = perfiles.length == 0;
+        if (perfilPorDefecto) {
+            perfiles = grafo.indicesPerfiles(List.of(PERFIL_POR_DEFECTO));
+        }
         
+        ResolvedPrincipal principal = new ResolvedPrincipal(authentication, azureGroupIds, grafo, perfiles, perfilPorDefecto);
+        if (auditoria.activa()) {
+            auditoria.registrar("RESOLUCION_PRINCIPAL", authentication.getName(), !perfilPorDefecto,
+                new DetalleResolucion(principal.getGrupos(), principal.getPerfiles().stream().map(Perfil::getNombre).toList(),
+                    perfilPorDefecto, principal.getVersionGrafo()));
+        }
+        return principal;
+    }
+
+    /**
+     * IDs de perfil de un usuario local. Los del token compacto ("prf") se usan tal cual;
+     * con un token completo se leen de la base de datos una vez y se reutilizan hasta
+     * que cambia la asignación de perfiles del usuario o vence el TTL (otros nodos)
+     */
+    private List<Long> perfilIdsUsuarioLocal(Authentication authentication) {
+        if (authentication instanceof LocalJwtAuthenticationToken local && local.getPerfilIds() != null) {
+            return local.getPerfilIds();
+        }
+        long ahora = System.currentTimeMillis();
+        PerfilesLocales cacheados = perfilesLocales.get(authentication.getName());
+        if (cacheados != null && ahora < cacheados.expiraEn()) {
+            return cacheados.ids();
+        }
+        // compute: una expulsión concurrente espera a la carga y no deja un valor anterior
+        return perfilesLocales.compute(authentication.getName(), (email, actuales) ->
+            actuales != null && ahora < actuales.expiraEn() ? actuales : new PerfilesLocales(
+                List.copyOf(usuarioRepository.findPerfilIdsByEmail(email)), ahora + ttlPerfilesLocalesSegundos * 1000)
+        ).ids();
+    }
+
+    /**
+     * Olvida los perfiles cacheados de un usuario local; se llama cuando cambia su
+     * asignación de perfiles, su email o se elimina
+     */
+    public void olvidarPerfilesUsuario(String email) {
+        if (email != null) {
+            perfilesLocales.remove(email);
+        }
+    }
+
+    /**
+     * Extrae los grupos de Azure AD del claim "groups" o, si no viene, de las authorities GROUP_
+     */
+    private List<String> extraerGruposAzureAD(Authentication authentication) {
         if (authentication.getPrincipal() instanceof Jwt jwt) {
-            System.out.println("📋 Claims del JWT:");
-            jwt.getClaims().forEach((key, value) -> 
-                System.out.println("  " + key + ": " + value));
-            
-            // Intentar obtener grupos del claim "groups"
             List<String> groups = jwt.getClaimAsStringList("groups");
-            System.out.println("🏷️ Grupos del claim 'groups': " + groups);
-            
             if (groups != null && !groups.isEmpty()) {
-                System.out.println("✅ Grupos encontrados en claim 'groups': " + groups);
                 return groups;
             }
             
-            // Si no hay grupos en el claim, intentar extraer de roles/authorities
-            System.out.println("🔍 Intentando extraer de authorities...");
             List<String> authGroups = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .filter(auth -> auth.startsWith("GROUP_"))
                 .map(auth -> auth.substring(6)) // Remover prefijo "GROUP_"
                 .collect(Collectors.toList());
-            
-            System.out.println("🏷️ Grupos de authorities: " + authGroups);
-            
             if (!authGroups.isEmpty()) {
-                System.out.println("✅ Grupos encontrados en authorities: " + authGroups);
                 return authGroups;
             }
         }
-        
-        System.out.println("❌ No se encontraron grupos en el token");
         return new ArrayList<>();
     }
 
+    /**
+     * Detalle de auditoría de una resolución de principal
+     */
+    private record DetalleResolucion(List<String> grupos, List<String> perfiles, boolean perfilPorDefecto, long versionGrafo) {
+    }
+
+    /**
+     * IDs de perfil de un usuario local leídos de la base de datos
+     */
+    private record PerfilesLocales(List<Long> ids, long expiraEn) {
+    }
+
     /**
      * Extrae el email del usuario del token JWT o autenticación local
      */
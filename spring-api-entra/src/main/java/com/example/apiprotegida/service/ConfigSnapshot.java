@@ -0,0 +1,87 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.model.ConfiguracionSistema;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Foto inmutable de las configuraciones activas del sistema
+ *
+ * Los flags de autenticación se precalculan al construirla, de modo que
+ * consultarlos es una simple lectura de campo.
+ */
+public final class ConfigSnapshot {
+
+    public static final ConfigSnapshot VACIO = new ConfigSnapshot(0L, Map.of());
+
+    private final long version;
+    private final Map<String, String> valores;
+    private final boolean azureAdHabilitado;
+    private final boolean jwtLocalHabilitado;
+
+    private ConfigSnapshot(long version, Map<String, String> valores) {
+        this.version = version;
+        this.valores = valores;
+        this.azureAdHabilitado = valorBoolean(ConfiguracionService.AUTH_AZURE_AD_ENABLED, true);
+        this.jwtLocalHabilitado = valorBoolean(ConfiguracionService.AUTH_JWT_LOCAL_ENABLED, true);
+    }
+
+    /**
+     * Construye la foto a partir de las configuraciones (se ignoran las inactivas)
+     * @param version Versión global de la configuración leída antes que las filas
+     */
+    public static ConfigSnapshot de(long version, Collection<ConfiguracionSistema> configuraciones) {
+        Map<String, String> valores = new HashMap<>();
+        for (ConfiguracionSistema config : configuraciones) {
+            if (Boolean.TRUE.equals(config.getActivo()) && config.getValor() != null) {
+                valores.put(config.getClave(), config.getValor());
+            }
+        }
+        return new ConfigSnapshot(version, Map.copyOf(valores));
+    }
+
+    /**
+     * Devuelve una nueva foto con la configuración indicada actualizada
+     * Conserva la versión: así el siguiente sondeo recarga la foto completa e
+     * incorpora también los cambios de otros nodos que aún no se hubieran visto.
+     */
+    public ConfigSnapshot con(ConfiguracionSistema config) {
+        Map<String, String> nuevos = new HashMap<>(valores);
+        if (Boolean.TRUE.equals(config.getActivo()) && config.getValor() != null) {
+            nuevos.put(config.getClave(), config.getValor());
+        } else {
+            nuevos.remove(config.getClave());
+        }
+        return new ConfigSnapshot(version, Map.copyOf(nuevos));
+    }
+
+    public String valor(String clave, String valorPorDefecto) {
+        return valores.getOrDefault(clave, valorPorDefecto);
+    }
+
+    /**
+     * Mismo criterio que {@link ConfiguracionSistema#getValorBoolean()}
+     */
+    public Boolean valorBoolean(String clave, Boolean valorPorDefecto) {
+        String valor = valores.get(clave);
+        return valor != null ? Boolean.parseBoolean(valor) : valorPorDefecto;
+    }
+
+    public boolean isAzureAdHabilitado() {
+        return azureAdHabilitado;
+    }
+
+    public boolean isJwtLocalHabilitado() {
+        return jwtLocalHabilitado;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return valores.size();
+    }
+}
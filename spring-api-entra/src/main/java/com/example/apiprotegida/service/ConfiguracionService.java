@@ -1,19 +1,38 @@
 package com.example.apiprotegida.service;
 
 import com.example.apiprotegida.model.ConfiguracionSistema;
+import com.example.apiprotegida.model.ConfiguracionVersion;
 import com.example.apiprotegida.repository.ConfiguracionSistemaRepository;
+import com.example.apiprotegida.repository.ConfiguracionVersionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Servicio para gestionar configuraciones del sistema
+ *
+ * Las configuraciones activas se mantienen en una {@link ConfigSnapshot} inmutable,
+ * de modo que los flags que se consultan en cada petición (filtro de autenticación)
+ * son una lectura de campo, sin caché, transacción ni logging.
+ *
+ * Cada cambio incrementa la versión global (tabla configuracion_version) en su
+ * misma transacción; todos los nodos sondean esa versión y recargan la foto solo
+ * cuando cambia, de modo que un cambio hecho en una réplica llega a las demás.
  */
 @Service
 @Slf4j
@@ -22,12 +41,80 @@ public class ConfiguracionService {
     @Autowired
     private ConfiguracionSistemaRepository configuracionRepository;
 
+    @Autowired
+    private ConfiguracionVersionRepository versionRepository;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
     // Claves de configuración
     public static final String AUTH_AZURE_AD_ENABLED = "auth.azure.enabled";
     public static final String AUTH_JWT_LOCAL_ENABLED = "auth.jwt.local.enabled";
     public static final String AUTH_REQUIRE_MFA = "auth.require.mfa";
     public static final String AUTH_SESSION_TIMEOUT = "auth.session.timeout";
 
+    /** Foto vigente; se reemplaza completa, nunca se modifica */
+    private volatile ConfigSnapshot snapshot;
+
+    /** Serializa recargas y cambios; es un lock y no synchronized porque la recarga consulta la BD (hilos virtuales) */
+    private final ReentrantLock recarga = new ReentrantLock();
+
+    /**
+     * Carga la foto al terminar el arranque (después de ejecutar data.sql)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        recargarSnapshot();
+    }
+
+    /**
+     * Obtiene la foto vigente, cargándola si aún no existe
+     */
+    public ConfigSnapshot snapshot() {
+        ConfigSnapshot actual = snapshot;
+        return actual != null ? actual : recargarSnapshot();
+    }
+
+    /**
+     * Relee todas las configuraciones activas y reemplaza la foto vigente
+     */
+    public ConfigSnapshot recargarSnapshot() {
+        recarga.lock();
+        try {
+            // La versión se lee antes que las filas: si entre ambas lecturas se confirma
+            // otro cambio, la foto queda con una versión anterior y el siguiente sondeo recarga
+            long version = versionActual();
+            ConfigSnapshot nuevo = ConfigSnapshot.de(version, configuracionRepository.findByActivoTrue());
+            snapshot = nuevo;
+            limpiarCacheConfiguracion();
+            log.info("⚙️ [ConfiguracionService] Configuración cargada (versión {}): {} claves activas", version, nuevo.size());
+            return nuevo;
+        } finally {
+            recarga.unlock();
+        }
+    }
+
+    /**
+     * Sondeo periódico de la versión global; recarga solo si otro nodo (o este) la cambió
+     */
+    @Scheduled(fixedDelayString = "${configuracion.sync.poll-interval-ms:5000}",
+               initialDelayString = "${configuracion.sync.poll-interval-ms:5000}")
+    public void sincronizarVersion() {
+        ConfigSnapshot actual = snapshot;
+        if (actual == null) {
+            return;
+        }
+        try {
+            long version = versionActual();
+            if (version != actual.getVersion()) {
+                log.info("🔄 [ConfiguracionService] Versión de configuración {} -> {}, recargando", actual.getVersion(), version);
+                recargarSnapshot();
+            }
+        } catch (DataAccessException e) {
+            log.warn("⚠️ [ConfiguracionService] No se pudo sondear la versión de configuración: {}", e.getMessage());
+        }
+    }
+
     /**
      * Obtiene una configuración por su clave (con caché)
      */
@@ -39,43 +126,31 @@ public class ConfiguracionService {
     }
 
     /**
-     * Obtiene el valor de una configuración como String
+     * Obtiene el valor de una configuración activa como String
      */
-    @Transactional(readOnly = true)
     public String obtenerValor(String clave, String valorPorDefecto) {
-        return obtenerPorClave(clave)
-                .map(ConfiguracionSistema::getValor)
-                .orElse(valorPorDefecto);
+        return snapshot().valor(clave, valorPorDefecto);
     }
 
     /**
-     * Obtiene el valor de una configuración como Boolean
+     * Obtiene el valor de una configuración activa como Boolean
      */
-    @Transactional(readOnly = true)
     public Boolean obtenerValorBoolean(String clave, Boolean valorPorDefecto) {
-        return obtenerPorClave(clave)
-                .map(ConfiguracionSistema::getValorBoolean)
-                .orElse(valorPorDefecto);
+        return snapshot().valorBoolean(clave, valorPorDefecto);
     }
 
     /**
      * Verifica si Azure AD está habilitado
      */
-    @Transactional(readOnly = true)
     public boolean esAzureAdHabilitado() {
-        Boolean habilitado = obtenerValorBoolean(AUTH_AZURE_AD_ENABLED, true);
-        log.debug("Azure AD habilitado: {}", habilitado);
-        return habilitado;
+        return snapshot().isAzureAdHabilitado();
     }
 
     /**
      * Verifica si JWT local está habilitado
      */
-    @Transactional(readOnly = true)
     public boolean esJwtLocalHabilitado() {
-        Boolean habilitado = obtenerValorBoolean(AUTH_JWT_LOCAL_ENABLED, true);
-        log.debug("JWT Local habilitado: {}", habilitado);
-        return habilitado;
+        return snapshot().isJwtLocalHabilitado();
     }
 
     /**
@@ -90,7 +165,60 @@ public class ConfiguracionService {
                 .orElseThrow(() -> new IllegalArgumentException("Configuración no encontrada: " + clave));
 
         config.setValor(nuevoValor);
-        return configuracionRepository.save(config);
+        incrementarVersion();
+        ConfiguracionSistema guardada = configuracionRepository.save(config);
+        publicarCambio(guardada);
+        return guardada;
+    }
+
+    /**
+     * Reemplaza la foto con el nuevo valor una vez confirmada la transacción,
+     * para que una escritura revertida nunca llegue a verse
+     */
+    private void publicarCambio(ConfiguracionSistema config) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicarCambio(config);
+                }
+            });
+        } else {
+            aplicarCambio(config);
+        }
+    }
+
+    private void aplicarCambio(ConfiguracionSistema config) {
+        recarga.lock();
+        try {
+            snapshot = snapshot().con(config);
+        } finally {
+            recarga.unlock();
+        }
+    }
+
+    private void incrementarVersion() {
+        if (versionRepository.incrementar(ConfiguracionVersion.ID_UNICO) == 0) {
+            versionRepository.save(new ConfiguracionVersion(ConfiguracionVersion.ID_UNICO, 1L));
+        }
+    }
+
+    private long versionActual() {
+        Long version = versionRepository.versionActual();
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * Vacía la caché de obtenerPorClave, que también puede haber quedado desactualizada
+     */
+    private void limpiarCacheConfiguracion() {
+        if (cacheManager == null) {
+            return;
+        }
+        Cache cache = cacheManager.getCache("configuracion");
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     /**
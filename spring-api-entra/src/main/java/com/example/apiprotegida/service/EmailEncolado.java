@@ -0,0 +1,10 @@
+package com.example.apiprotegida.service;
+
+/**
+ * Se publica al guardar un email en la bandeja de salida; el despachador lo
+ * escucha tras el commit para enviarlo sin esperar al siguiente sondeo
+ *
+ * @param id Id del EmailPendiente guardado
+ */
+public record EmailEncolado(Long id) {
+}
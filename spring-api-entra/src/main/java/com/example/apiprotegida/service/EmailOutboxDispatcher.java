@@ -0,0 +1,348 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.model.EmailPendiente;
+import com.example.apiprotegida.model.EmailPendiente.EstadoEmail;
+import com.example.apiprotegida.model.PasswordResetToken;
+import com.example.apiprotegida.repository.EmailPendienteRepository;
+import com.example.apiprotegida.repository.PasswordResetTokenRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envía en segundo plano los emails de la bandeja de salida
+ *
+ * Un único hilo coordinador toma lotes de {@code email.outbox.lote} emails listos,
+ * los reserva con una actualización condicionada a su versión (si hay varios nodos,
+ * cada email lo toma uno solo) y los reparte en a lo sumo {@code email.outbox.concurrencia}
+ * conexiones SMTP, enviando varios mensajes por conexión. Los fallos se reintentan
+ * con espera exponencial y jitter hasta {@code email.outbox.max-intentos}; después el
+ * email queda FALLIDO. Se despierta tras el commit de cada email encolado y, por si
+ * se pierde el aviso o hay reintentos vencidos, en cada sondeo periódico. Si el nodo
+ * cae durante un envío, el email se retoma al caducar su reserva (entrega al menos una vez).
+ * Un email de recuperación cuyo token ya se usó o expiró no se envía: queda FALLIDO.
+ * Los enviados y los fallidos se eliminan pasadas {@code email.outbox.retencion-horas}.
+ */
+@Service
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private static final Set<EstadoEmail> ESTADOS_REINTENTABLES = Set.of(EstadoEmail.PENDIENTE, EstadoEmail.EN_ENVIO);
+    private static final int LONGITUD_MAXIMA_ERROR = 500;
+    private static final String TOKEN_NO_VIGENTE = "Token de recuperación usado o expirado";
+
+    private final EmailPendienteRepository emailRepository;
+    private final PasswordResetTokenRepository tokenRepository;
+    private final JavaMailSender mailSender;
+    private final int lote;
+    private final int concurrencia;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaximaMs;
+    private final long reservaMs;
+    private final long retencionHoras;
+
+    private final ExecutorService coordinador;
+    private final ExecutorService conexiones;
+    private final AtomicBoolean programado = new AtomicBoolean();
+
+    public EmailOutboxDispatcher(EmailPendienteRepository emailRepository,
+                                 PasswordResetTokenRepository tokenRepository,
+                                 @Nullable JavaMailSender mailSender,
+                                 @Value("${email.outbox.lote:50}") int lote,
+                                 @Value("${email.outbox.concurrencia:2}") int concurrencia,
+                                 @Value("${email.outbox.max-intentos:6}") int maxIntentos,
+                                 @Value("${email.outbox.espera-base-ms:30000}") long esperaBaseMs,
+                                 @Value("${email.outbox.espera-maxima-ms:1800000}") long esperaMaximaMs,
+                                 @Value("${email.outbox.reserva-ms:300000}") long reservaMs,
+                                 @Value("${email.outbox.retencion-horas:24}") long retencionHoras) {
+        this.emailRepository = emailRepository;
+        this.tokenRepository = tokenRepository;
+        this.mailSender = mailSender;
+        this.lote = Math.max(1, lote);
+        this.concurrencia = Math.max(1, concurrencia);
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBaseMs = Math.max(1, esperaBaseMs);
+        this.esperaMaximaMs = Math.max(this.esperaBaseMs, esperaMaximaMs);
+        this.reservaMs = reservaMs;
+        this.retencionHoras = retencionHoras;
+        this.coordinador = Executors.newSingleThreadExecutor(fabricaDeHilos("email-outbox"));
+        this.conexiones = Executors.newFixedThreadPool(this.concurrencia, fabricaDeHilos("email-outbox-smtp-"));
+    }
+
+    @PreDestroy
+    public void detener() {
+        coordinador.shutdownNow();
+        conexiones.shutdownNow();
+    }
+
+    /**
+     * Despierta al coordinador cuando se confirma la transacción que encoló el email
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alEncolar(EmailEncolado evento) {
+        despertar();
+    }
+
+    /**
+     * Sondeo periódico: reintentos vencidos, reservas caducadas y limpieza de enviados y fallidos
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:10000}")
+    public void sondear() {
+        despertar();
+    }
+
+    /**
+     * Programa una pasada del coordinador; no bloquea a quien llama. Si ya hay una
+     * programada que aún no empezó, esa pasada verá también los emails nuevos
+     */
+    public void despertar() {
+        if (mailSender == null || !programado.compareAndSet(false, true)) {
+            return;
+        }
+        coordinador.execute(() -> {
+            programado.set(false);
+            try {
+                despachar();
+            } catch (RuntimeException e) {
+                log.error("❌ [EmailOutbox] Error al despachar la bandeja de salida: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Envía lotes de emails listos hasta vaciar los que vencieron
+     * @return Emails tomados por este nodo
+     */
+    int despachar() {
+        int tomados = 0;
+        List<EmailPendiente> listos;
+        do {
+            LocalDateTime ahora = LocalDateTime.now();
+            listos = emailRepository.buscarListos(ESTADOS_REINTENTABLES, ahora, PageRequest.of(0, lote));
+            List<EmailPendiente> reservados = new ArrayList<>(listos.size());
+            int descartados = 0;
+            for (EmailPendiente email : listos) {
+                if (!reservar(email, ahora.plus(reservaMs, ChronoUnit.MILLIS))) {
+                    continue;
+                }
+                if (sigueVigente(email)) {
+                    reservados.add(email);
+                } else {
+                    descartar(email, TOKEN_NO_VIGENTE);
+                    guardar(email);
+                    descartados++;
+                }
+            }
+            tomados += reservados.size() + descartados;
+            if (reservados.isEmpty()) {
+                if (descartados > 0) {
+                    continue;
+                }
+                break;
+            }
+            Map<EmailPendiente, String> errores = enviarLote(reservados);
+            LocalDateTime fin = LocalDateTime.now();
+            for (EmailPendiente email : reservados) {
+                registrarIntento(email, errores.get(email), fin);
+                guardar(email);
+            }
+            log.info("📤 [EmailOutbox] Lote de {} emails: {} enviados, {} con error, {} descartados",
+                    reservados.size() + descartados, reservados.size() - errores.size(), errores.size(), descartados);
+        } while (listos.size() == lote);
+
+        if (retencionHoras > 0) {
+            LocalDateTime limite = LocalDateTime.now().minusHours(retencionHoras);
+            emailRepository.eliminarEnviadosAntesDe(EstadoEmail.ENVIADO, limite);
+            emailRepository.eliminarFallidosAntesDe(EstadoEmail.FALLIDO, limite);
+        }
+        return tomados;
+    }
+
+    /**
+     * Reserva el email con la versión leída y refleja la reserva en la entidad, para
+     * que el guardado posterior lleve la versión que dejó la reserva
+     * @return false si otro nodo lo reservó o lo guardó después de leerlo
+     */
+    private boolean reservar(EmailPendiente email, LocalDateTime hasta) {
+        if (emailRepository.reservar(email.getId(), email.getVersion(), EstadoEmail.EN_ENVIO, hasta) != 1) {
+            return false;
+        }
+        email.setEstado(EstadoEmail.EN_ENVIO);
+        email.setProximoIntento(hasta);
+        email.setVersion(email.getVersion() + 1);
+        return true;
+    }
+
+    /**
+     * Guarda el resultado del email; si su reserva caducó y otro nodo lo retomó, la
+     * versión ya cambió y se deja el resultado de ese nodo
+     */
+    private void guardar(EmailPendiente email) {
+        try {
+            emailRepository.save(email);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("⚠️ [EmailOutbox] Email {} retomado por otro nodo al caducar la reserva; no se guarda este intento",
+                    email.getId());
+        }
+    }
+
+    /**
+     * Envía los emails repartidos en a lo sumo {@code concurrencia} conexiones SMTP
+     * @return Mensaje de error de cada email que no se pudo enviar
+     */
+    Map<EmailPendiente, String> enviarLote(List<EmailPendiente> emails) {
+        int grupos = Math.min(concurrencia, emails.size());
+        List<List<EmailPendiente>> porConexion = new ArrayList<>(grupos);
+        for (int i = 0; i < grupos; i++) {
+            porConexion.add(new ArrayList<>());
+        }
+        for (int i = 0; i < emails.size(); i++) {
+            porConexion.get(i % grupos).add(emails.get(i));
+        }
+
+        List<Future<Map<EmailPendiente, String>>> envios = new ArrayList<>(grupos);
+        for (List<EmailPendiente> grupo : porConexion) {
+            envios.add(conexiones.submit(() -> enviarPorUnaConexion(grupo)));
+        }
+        Map<EmailPendiente, String> errores = new IdentityHashMap<>();
+        for (int i = 0; i < grupos; i++) {
+            try {
+                errores.putAll(envios.get(i).get());
+            } catch (ExecutionException e) {
+                for (EmailPendiente email : porConexion.get(i)) {
+                    errores.put(email, String.valueOf(e.getCause()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (EmailPendiente email : porConexion.get(i)) {
+                    errores.putIfAbsent(email, "Envío interrumpido");
+                }
+            }
+        }
+        return errores;
+    }
+
+    /**
+     * Actualiza el email con el resultado del intento: enviado, reintento más tarde o fallido
+     * @param error null si el envío fue correcto
+     */
+    void registrarIntento(EmailPendiente email, String error, LocalDateTime ahora) {
+        email.setIntentos(email.getIntentos() + 1);
+        if (error == null) {
+            email.setEstado(EstadoEmail.ENVIADO);
+            email.setFechaEnvio(ahora);
+            email.setUltimoError(null);
+            return;
+        }
+        email.setUltimoError(error.length() > LONGITUD_MAXIMA_ERROR ? error.substring(0, LONGITUD_MAXIMA_ERROR) : error);
+        if (email.getIntentos() >= maxIntentos) {
+            email.setEstado(EstadoEmail.FALLIDO);
+            log.error("❌ [EmailOutbox] Email {} a {} descartado tras {} intentos: {}",
+                    email.getId(), email.getDestinatario(), email.getIntentos(), error);
+        } else {
+            email.setEstado(EstadoEmail.PENDIENTE);
+            email.setProximoIntento(ahora.plus(esperaMs(email.getIntentos()), ChronoUnit.MILLIS));
+            log.warn("⚠️ [EmailOutbox] Email {} a {} falló (intento {}), se reintenta el {}: {}",
+                    email.getId(), email.getDestinatario(), email.getIntentos(), email.getProximoIntento(), error);
+        }
+    }
+
+    /**
+     * Indica si el email todavía debe enviarse: uno de recuperación solo mientras su
+     * token exista, no se haya usado y no haya expirado
+     */
+    boolean sigueVigente(EmailPendiente email) {
+        if (email.getTokenRecuperacion() == null) {
+            return true;
+        }
+        return tokenRepository.findByToken(email.getTokenRecuperacion())
+                .map(PasswordResetToken::esValido)
+                .orElse(false);
+    }
+
+    /**
+     * Marca el email como FALLIDO sin enviarlo ni contar un intento
+     */
+    void descartar(EmailPendiente email, String motivo) {
+        email.setEstado(EstadoEmail.FALLIDO);
+        email.setUltimoError(motivo);
+        log.info("🗑️ [EmailOutbox] Email {} a {} descartado sin enviar: {}", email.getId(), email.getDestinatario(), motivo);
+    }
+
+    /**
+     * Espera antes del siguiente intento: exponencial desde {@code espera-base-ms}, con
+     * tope en {@code espera-maxima-ms} y jitter entre la mitad y el total
+     */
+    long esperaMs(int intentos) {
+        int exponente = Math.min(Math.max(0, intentos - 1), 20);
+        long espera = Math.min(esperaMaximaMs, esperaBaseMs << exponente);
+        return espera / 2 + ThreadLocalRandom.current().nextLong(espera / 2 + 1);
+    }
+
+    /**
+     * Envía los mensajes reutilizando una sola conexión SMTP
+     */
+    private Map<EmailPendiente, String> enviarPorUnaConexion(List<EmailPendiente> emails) {
+        Map<SimpleMailMessage, EmailPendiente> porMensaje = new IdentityHashMap<>();
+        for (EmailPendiente email : emails) {
+            SimpleMailMessage mensaje = new SimpleMailMessage();
+            mensaje.setFrom(email.getRemitente());
+            mensaje.setTo(email.getDestinatario());
+            mensaje.setSubject(email.getAsunto());
+            mensaje.setText(email.getCuerpo());
+            porMensaje.put(mensaje, email);
+        }
+
+        Map<EmailPendiente, String> errores = new IdentityHashMap<>();
+        try {
+            mailSender.send(porMensaje.keySet().toArray(SimpleMailMessage[]::new));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                emails.forEach(email -> errores.put(email, e.getMessage()));
+            }
+            e.getFailedMessages().forEach((mensaje, causa) ->
+                    errores.put(porMensaje.get(mensaje), causa.getMessage()));
+        } catch (MailException e) {
+            // Autenticación u otro fallo que afecta a toda la conexión
+            emails.forEach(email -> errores.put(email, e.getMessage()));
+        }
+        return errores;
+    }
+
+    private static ThreadFactory fabricaDeHilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, prefijo.endsWith("-") ? prefijo + contador.incrementAndGet() : prefijo);
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+}
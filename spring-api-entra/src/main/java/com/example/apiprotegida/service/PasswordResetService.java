@@ -83,8 +83,8 @@ public class PasswordResetService {
 
         log.info("✅ [PasswordReset] Token generado para: {} (expira en {} horas)", email, tokenExpirationHours);
 
-        // Enviar email
-        emailService.enviarEmailRecuperacion(email, token, usuario.getNombre());
+        // Encolar email (se envía tras el commit, fuera de esta transacción)
+        emailService.encolarEmailRecuperacion(email, token, usuario.getNombre());
 
         return true;
     }
@@ -4,10 +4,15 @@ import com.example.apiprotegida.model.Perfil;
 import com.example.apiprotegida.model.Permiso;
 import com.example.apiprotegida.repository.PerfilRepository;
 import com.example.apiprotegida.repository.PermisoRepository;
+import com.example.apiprotegida.security.authz.PermissionChangeEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -19,12 +24,21 @@ import java.util.Set;
 @Transactional
 public class PerfilService {
 
+    /**
+     * Máximo de parámetros por consulta IN. Es potencia de 2 para que, con
+     * hibernate.query.in_clause_parameter_padding, los lotes reutilicen el mismo plan.
+     */
+    static final int TAMANO_LOTE_GRUPOS = 128;
+
     @Autowired
     private PerfilRepository perfilRepository;
 
     @Autowired
     private PermisoRepository permisoRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Obtiene todos los perfiles activos
      */
@@ -81,6 +95,22 @@ public class PerfilService {
         return perfilRepository.findByAzureGroupIds(azureGroupIds);
     }
 
+    /**
+     * Busca perfiles con sus permisos cargados para múltiples grupos de Azure AD.
+     * Los grupos se consultan en lotes de {@link #TAMANO_LOTE_GRUPOS} con fetch join,
+     * evitando una consulta por grupo.
+     */
+    @Transactional(readOnly = true)
+    public List<Perfil> obtenerPerfilesPorAzureGroupIdsConPermisos(Collection<String> azureGroupIds) {
+        List<String> grupos = new ArrayList<>(new LinkedHashSet<>(azureGroupIds));
+        List<Perfil> perfiles = new ArrayList<>();
+        for (int inicio = 0; inicio < grupos.size(); inicio += TAMANO_LOTE_GRUPOS) {
+            List<String> lote = grupos.subList(inicio, Math.min(inicio + TAMANO_LOTE_GRUPOS, grupos.size()));
+            perfiles.addAll(perfilRepository.findByAzureGroupIdsWithPermisos(lote));
+        }
+        return perfiles;
+    }
+
     /**
      * Crea un nuevo perfil
      */
@@ -91,7 +121,9 @@ public class PerfilService {
         if (perfil.getAzureGroupId() != null && perfilRepository.existsByAzureGroupId(perfil.getAzureGroupId())) {
             throw new IllegalArgumentException("Ya existe un perfil asociado al grupo de Azure: " + perfil.getAzureGroupId());
         }
-        return perfilRepository.save(perfil);
+        Perfil guardado = perfilRepository.save(perfil);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilCreated(guardado.getId()));
+        return guardado;
     }
 
     /**
@@ -120,7 +152,9 @@ public class PerfilService {
         perfilExistente.setAzureGroupName(perfilActualizado.getAzureGroupName());
         perfilExistente.setActivo(perfilActualizado.getActivo());
 
-        return perfilRepository.save(perfilExistente);
+        Perfil guardado = perfilRepository.save(perfilExistente);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilChanged(id));
+        return guardado;
     }
 
     /**
@@ -131,6 +165,7 @@ public class PerfilService {
             .orElseThrow(() -> new IllegalArgumentException("Perfil no encontrado con ID: " + id));
         perfil.setActivo(false);
         perfilRepository.save(perfil);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilRemoved(id));
     }
 
     /**
@@ -141,6 +176,7 @@ public class PerfilService {
             throw new IllegalArgumentException("Perfil no encontrado con ID: " + id);
         }
         perfilRepository.deleteById(id);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilRemoved(id));
     }
 
     /**
@@ -154,7 +190,9 @@ public class PerfilService {
             .orElseThrow(() -> new IllegalArgumentException("Permiso no encontrado con ID: " + permisoId));
 
         perfil. addPermiso(permiso);
-        return perfilRepository.save(perfil);
+        Perfil guardado = perfilRepository.save(perfil);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilPermisosChanged(perfilId));
+        return guardado;
     }
 
     /**
@@ -168,7 +206,9 @@ public class PerfilService {
             .orElseThrow(() -> new IllegalArgumentException("Permiso no encontrado con ID: " + permisoId));
 
         perfil.removePermiso(permiso);
-        return perfilRepository.save(perfil);
+        Perfil guardado = perfilRepository.save(perfil);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilPermisosChanged(perfilId));
+        return guardado;
     }
 
     /**
@@ -187,7 +227,9 @@ public class PerfilService {
             perfil.addPermiso(permiso);
         }
 
-        return perfilRepository.save(perfil);
+        Perfil guardado = perfilRepository.save(perfil);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilPermisosChanged(perfilId));
+        return guardado;
     }
 
     /**
@@ -212,6 +254,8 @@ public class PerfilService {
             }
         }
 
-        return perfilRepository.save(perfil);
+        Perfil guardado = perfilRepository.save(perfil);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PerfilPermisosChanged(perfilId));
+        return guardado;
     }
 }
@@ -2,7 +2,9 @@ package com.example.apiprotegida.service;
 
 import com.example.apiprotegida.model.Permiso;
 import com.example.apiprotegida.repository.PermisoRepository;
+import com.example.apiprotegida.security.authz.PermissionChangeEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +22,9 @@ public class PermisoService {
     @Autowired
     private PermisoRepository permisoRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * Obtiene todos los permisos activos
      */
@@ -115,7 +120,9 @@ public class PermisoService {
         if (permisoRepository.existsByCodigo(permiso.getCodigo())) {
             throw new IllegalArgumentException("Ya existe un permiso con el código: " + permiso.getCodigo());
         }
-        return permisoRepository.save(permiso);
+        Permiso guardado = permisoRepository.save(permiso);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PermisoCreated(guardado.getId()));
+        return guardado;
     }
 
     /**
@@ -138,7 +145,9 @@ public class PermisoService {
         permisoExistente.setAccion(permisoActualizado.getAccion());
         permisoExistente.setActivo(permisoActualizado.getActivo());
 
-        return permisoRepository.save(permisoExistente);
+        Permiso guardado = permisoRepository.save(permisoExistente);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PermisoChanged(id));
+        return guardado;
     }
 
     /**
@@ -149,6 +158,7 @@ public class PermisoService {
             .orElseThrow(() -> new IllegalArgumentException("Permiso no encontrado con ID: " + id));
         permiso.setActivo(false);
         permisoRepository.save(permiso);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PermisoDeactivated(id));
     }
 
     /**
@@ -159,6 +169,7 @@ public class PermisoService {
             throw new IllegalArgumentException("Permiso no encontrado con ID: " + id);
         }
         permisoRepository.deleteById(id);
+        eventPublisher.publishEvent(new PermissionChangeEvent.PermisoRemoved(id));
     }
 
     /**
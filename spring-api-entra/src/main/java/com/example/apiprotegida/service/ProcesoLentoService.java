@@ -0,0 +1,270 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.exceptions.TrabajoRechazadoException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ejecuta en segundo plano el proceso lento de /data/proceso-lento
+ *
+ * Cada envío devuelve enseguida un {@link Trabajo} con su id; el trabajo corre en
+ * un pool acotado de hilos ({@code procesos.lento.hilos}) con una cola acotada
+ * ({@code procesos.lento.cola}), de modo que los hilos de Tomcat no quedan
+ * ocupados durante el proceso. Cada usuario puede tener como máximo
+ * {@code procesos.lento.max-por-usuario} trabajos sin terminar. Los trabajos
+ * terminados se conservan {@code procesos.lento.retencion-ms} para consultar su
+ * resultado y luego se purgan.
+ */
+@Service
+@Slf4j
+public class ProcesoLentoService {
+
+    private final ThreadPoolExecutor ejecutor;
+    private final int maxPorUsuario;
+    private final long duracionMs;
+    private final long retencionMs;
+
+    private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>();
+    private final Map<String, Integer> activosPorUsuario = new ConcurrentHashMap<>();
+
+    public ProcesoLentoService(@Value("${procesos.lento.hilos:4}") int hilos,
+                               @Value("${procesos.lento.cola:100}") int cola,
+                               @Value("${procesos.lento.max-por-usuario:2}") int maxPorUsuario,
+                               @Value("${procesos.lento.duracion-ms:2000}") long duracionMs,
+                               @Value("${procesos.lento.retencion-ms:600000}") long retencionMs) {
+        this.maxPorUsuario = Math.max(1, maxPorUsuario);
+        this.duracionMs = duracionMs;
+        this.retencionMs = retencionMs;
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, cola)), fabricaDeHilos(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Encola un proceso para el usuario y devuelve el trabajo sin esperar a que termine
+     * @throws TrabajoRechazadoException Si el usuario alcanzó su límite o la cola está llena
+     */
+    public Trabajo enviar(String usuario) {
+        if (!reservarCupo(usuario)) {
+            throw new TrabajoRechazadoException(
+                    "Ya tiene " + maxPorUsuario + " procesos en curso; espere a que termine alguno", true);
+        }
+        Trabajo trabajo = new Trabajo(UUID.randomUUID().toString(), usuario);
+        trabajos.put(trabajo.getId(), trabajo);
+        try {
+            trabajo.tarea = ejecutor.submit(() -> ejecutar(trabajo));
+        } catch (RejectedExecutionException e) {
+            trabajos.remove(trabajo.getId());
+            liberarCupo(usuario);
+            throw new TrabajoRechazadoException("El servidor tiene demasiados procesos en cola; reintente más tarde", false);
+        }
+        log.debug("⏳ [ProcesoLentoService] Trabajo {} encolado para {}", trabajo.getId(), usuario);
+        return trabajo;
+    }
+
+    /**
+     * Busca un trabajo del usuario; los de otros usuarios no se ven
+     */
+    public Optional<Trabajo> buscar(String id, String usuario) {
+        Trabajo trabajo = trabajos.get(id);
+        return trabajo != null && trabajo.getUsuario().equals(usuario) ? Optional.of(trabajo) : Optional.empty();
+    }
+
+    /**
+     * Cancela el trabajo, interrumpiéndolo si ya está en ejecución
+     * @return false si el trabajo ya había terminado
+     */
+    public boolean cancelar(Trabajo trabajo) {
+        if (!finalizar(trabajo, EstadoTrabajo.CANCELADO)) {
+            return false;
+        }
+        trabajo.resultado.cancel(false);
+        Future<?> tarea = trabajo.tarea;
+        if (tarea != null) {
+            tarea.cancel(true);
+        }
+        log.debug("🛑 [ProcesoLentoService] Trabajo {} cancelado", trabajo.getId());
+        return true;
+    }
+
+    /**
+     * Elimina los trabajos terminados hace más de la retención configurada
+     */
+    @Scheduled(fixedDelayString = "${procesos.lento.purga-ms:60000}")
+    public void purgar() {
+        Instant limite = Instant.now().minusMillis(retencionMs);
+        trabajos.values().removeIf(trabajo -> trabajo.getFinalizado() != null && trabajo.getFinalizado().isBefore(limite));
+    }
+
+    public int trabajosActivos(String usuario) {
+        return activosPorUsuario.getOrDefault(usuario, 0);
+    }
+
+    /**
+     * Trabajo de ejemplo; se ejecuta en un hilo del pool
+     */
+    protected Map<String, Object> procesar() throws InterruptedException {
+        // Simular procesamiento
+        Thread.sleep(duracionMs);
+
+        Map<String, Object> resultado = new HashMap<>();
+        resultado.put("message", "Proceso completado exitosamente");
+        resultado.put("duracion", duracionMs / 1000 + " segundos");
+        resultado.put("timestamp", LocalDateTime.now());
+        resultado.put("resultado", Map.of(
+            "procesados", 1000,
+            "exitosos", 987,
+            "errores", 13,
+            "porcentaje_exito", 98.7
+        ));
+        return resultado;
+    }
+
+    private void ejecutar(Trabajo trabajo) {
+        if (!trabajo.estado.compareAndSet(EstadoTrabajo.EN_COLA, EstadoTrabajo.EN_PROCESO)) {
+            // Cancelado mientras esperaba en la cola
+            return;
+        }
+        try {
+            Map<String, Object> resultado = procesar();
+            trabajo.valor = resultado;
+            if (finalizar(trabajo, EstadoTrabajo.COMPLETADO)) {
+                trabajo.resultado.complete(resultado);
+            }
+        } catch (InterruptedException e) {
+            // Solo se interrumpe al cancelar, que ya dejó el trabajo terminado
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("⚠️ [ProcesoLentoService] Trabajo {} fallido: {}", trabajo.getId(), e.getMessage());
+            if (finalizar(trabajo, EstadoTrabajo.FALLIDO)) {
+                trabajo.resultado.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Pasa el trabajo a un estado final una sola vez y libera el cupo del usuario
+     */
+    private boolean finalizar(Trabajo trabajo, EstadoTrabajo estadoFinal) {
+        EstadoTrabajo actual;
+        do {
+            actual = trabajo.estado.get();
+            if (actual.isTerminado()) {
+                return false;
+            }
+        } while (!trabajo.estado.compareAndSet(actual, estadoFinal));
+        trabajo.finalizado = Instant.now();
+        liberarCupo(trabajo.getUsuario());
+        return true;
+    }
+
+    private boolean reservarCupo(String usuario) {
+        boolean[] reservado = new boolean[1];
+        activosPorUsuario.compute(usuario, (clave, activos) -> {
+            int actuales = activos == null ? 0 : activos;
+            reservado[0] = actuales < maxPorUsuario;
+            return reservado[0] ? actuales + 1 : activos;
+        });
+        return reservado[0];
+    }
+
+    private void liberarCupo(String usuario) {
+        activosPorUsuario.computeIfPresent(usuario, (clave, activos) -> activos > 1 ? activos - 1 : null);
+    }
+
+    private static ThreadFactory fabricaDeHilos() {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> {
+            Thread hilo = new Thread(tarea, "proceso-lento-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    public enum EstadoTrabajo {
+        EN_COLA, EN_PROCESO, COMPLETADO, CANCELADO, FALLIDO;
+
+        public boolean isTerminado() {
+            return this == COMPLETADO || this == CANCELADO || this == FALLIDO;
+        }
+    }
+
+    /**
+     * Proceso enviado por un usuario; {@link #getResultado()} se completa al terminar
+     */
+    public static final class Trabajo {
+
+        private final String id;
+        private final String usuario;
+        private final Instant creado = Instant.now();
+        private final AtomicReference<EstadoTrabajo> estado = new AtomicReference<>(EstadoTrabajo.EN_COLA);
+        private final CompletableFuture<Map<String, Object>> resultado = new CompletableFuture<>();
+        private volatile Future<?> tarea;
+        private volatile Map<String, Object> valor;
+        private volatile Instant finalizado;
+
+        Trabajo(String id, String usuario) {
+            this.id = id;
+            this.usuario = usuario;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getUsuario() {
+            return usuario;
+        }
+
+        public Instant getCreado() {
+            return creado;
+        }
+
+        public Instant getFinalizado() {
+            return finalizado;
+        }
+
+        public EstadoTrabajo getEstado() {
+            return estado.get();
+        }
+
+        /**
+         * Futuro del resultado; se completa con error si el trabajo falla o se cancela.
+         * Es una vista de solo lectura: completarla desde fuera no afecta al trabajo
+         */
+        public CompletableFuture<Map<String, Object>> getResultado() {
+            return resultado.copy();
+        }
+
+        /**
+         * Resultado si el trabajo se completó, o null
+         */
+        public Map<String, Object> resultadoSiCompletado() {
+            return getEstado() == EstadoTrabajo.COMPLETADO ? valor : null;
+        }
+    }
+}
@@ -38,7 +38,7 @@ public class UsuarioService {
      */
     @Transactional(readOnly = true)
     public Usuario obtenerUsuarioPorEmailYPassword(String email, String password) {
-        log.info("🔍 [UsuarioService] Buscando usuario por email: {}", email);
+        log.debug("🔍 [UsuarioService] Buscando usuario por email: {}", email);
         
         Optional<Usuario> usuarioOpt = usuarioRepository.findByEmail(email);
         if (usuarioOpt.isEmpty()) {
@@ -47,7 +47,7 @@ public class UsuarioService {
         }
 
         Usuario usuario = usuarioOpt.get();
-        log.info("✅ [UsuarioService] Usuario encontrado: {} - Activo: {}", usuario.getEmail(), usuario.getActivo());
+        log.debug("✅ [UsuarioService] Usuario encontrado: {} - Activo: {}", usuario.getEmail(), usuario.getActivo());
         
         // Verificar que el usuario esté activo
         if (!usuario.getActivo()) {
@@ -62,7 +62,7 @@ public class UsuarioService {
         }
         
         boolean passwordMatches = passwordEncoder.matches(password, usuario.getPassword());
-        log.info("🔐 [UsuarioService] Verificación de contraseña para {}: {}", email, passwordMatches);
+        log.debug("🔐 [UsuarioService] Verificación de contraseña para {}: {}", email, passwordMatches);
         
         if (!passwordMatches) {
             log.warn("❌ [UsuarioService] Contraseña incorrecta para usuario: {}", email);
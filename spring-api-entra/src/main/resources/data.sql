@@ -186,6 +186,12 @@ VALUES ('sistema.nombre', 'API Protegida', 'Nombre del sistema', 'STRING', 'GENE
 INSERT INTO configuracion_sistema (clave, valor, descripcion, tipo, categoria, activo, fecha_creacion, fecha_actualizacion)
 VALUES ('sistema.version', '1.0.0', 'Versión del sistema', 'STRING', 'GENERAL', true, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
+-- Versión global de la configuración (la sondean todos los nodos para detectar cambios)
+INSERT INTO configuracion_version (id, version) VALUES (1, 0);
+
+-- Versión global de perfiles y permisos (la sondean todos los nodos para recargar el grafo)
+INSERT INTO permisos_version (id, version) VALUES (1, 0);
+
 -- ============================================
 -- USUARIOS LOCALES (para autenticación JWT)
 -- ============================================
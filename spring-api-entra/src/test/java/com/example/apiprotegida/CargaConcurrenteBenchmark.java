@@ -0,0 +1,111 @@
+package com.example.apiprotegida;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Prueba de carga con muchas conexiones simultáneas contra GET /data/proceso-lento
+ *
+ * Cada petición espera 2 s el resultado de un trabajo de ProcesoLentoService sin
+ * ocupar un hilo de Tomcat (DeferredResult), así que la latencia la marcan el pool
+ * y la cola del servicio, no los hilos del servidor. Todas las peticiones son del
+ * mismo usuario: hay que subir el límite por usuario y el tamaño del pool, p. ej.
+ *   mvn spring-boot:run "-Dspring-boot.run.arguments=--procesos.lento.max-por-usuario=20000
+ *       --procesos.lento.cola=20000 --procesos.lento.hilos=200"
+ * y repetir con {@code -Pjava21} para comparar con hilos virtuales.
+ *
+ * No es un test (no lo ejecuta surefire). Se lanza a mano desde el IDE o con
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.apiprotegida.CargaConcurrenteBenchmark
+ * -Dexec.args="http://localhost:8080/api 1000 5000 10000"}
+ * En Linux conviene subir antes el límite de descriptores ({@code ulimit -n 65536}).
+ */
+public class CargaConcurrenteBenchmark {
+
+    private static final String EMAIL = "admin@local.com";
+    private static final String PASSWORD = "admin123";
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"(?:Bearer )?([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080/api";
+        int[] niveles = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 5_000, 10_000};
+
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        String token = obtenerToken(cliente, baseUrl);
+
+        System.out.printf("%-12s %10s %10s %10s %10s %10s %8s%n",
+                "conexiones", "p50 ms", "p95 ms", "p99 ms", "máx ms", "pet/s", "errores");
+        for (int concurrencia : niveles) {
+            medir(cliente, URI.create(baseUrl + "/data/proceso-lento"), token, concurrencia);
+        }
+    }
+
+    /**
+     * Lanza todas las peticiones a la vez y espera a que terminen
+     */
+    private static void medir(HttpClient cliente, URI uri, String token, int concurrencia) {
+        HttpRequest peticion = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofMinutes(5))
+                .GET()
+                .build();
+        long[] tiempos = new long[concurrencia];
+        AtomicInteger errores = new AtomicInteger();
+        List<CompletableFuture<Void>> pendientes = new ArrayList<>(concurrencia);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < concurrencia; i++) {
+            int indice = i;
+            long enviada = System.nanoTime();
+            pendientes.add(cliente.sendAsync(peticion, HttpResponse.BodyHandlers.discarding())
+                    .handle((respuesta, error) -> {
+                        tiempos[indice] = System.nanoTime() - enviada;
+                        if (error != null || respuesta.statusCode() != 200) {
+                            errores.incrementAndGet();
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(pendientes.toArray(CompletableFuture[]::new)).join();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        Arrays.sort(tiempos);
+        System.out.printf("%-12d %10.0f %10.0f %10.0f %10.0f %10.1f %8d%n", concurrencia,
+                percentil(tiempos, 0.50), percentil(tiempos, 0.95), percentil(tiempos, 0.99),
+                tiempos[tiempos.length - 1] / 1e6, concurrencia / segundos, errores.get());
+    }
+
+    private static double percentil(long[] ordenados, double p) {
+        int indice = Math.min(ordenados.length - 1, (int) Math.ceil(p * ordenados.length) - 1);
+        return ordenados[Math.max(0, indice)] / 1e6;
+    }
+
+    private static String obtenerToken(HttpClient cliente, String baseUrl) throws Exception {
+        HttpRequest login = HttpRequest.newBuilder(URI.create(baseUrl + "/auth/local/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build();
+        String cuerpo = cliente.send(login, HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = TOKEN.matcher(cuerpo);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No se pudo iniciar sesión: " + cuerpo);
+        }
+        return matcher.group(1);
+    }
+}
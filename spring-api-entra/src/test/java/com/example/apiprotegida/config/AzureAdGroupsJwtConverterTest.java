@@ -2,20 +2,27 @@ package com.example.apiprotegida.config;
 
 import com.example.apiprotegida.model.Perfil;
 import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.security.authz.AuthorityCache;
+import com.example.apiprotegida.security.authz.AuthorityRegistry;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
 import com.example.apiprotegida.service.PerfilService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -29,11 +36,20 @@ import static org.mockito.Mockito.*;
 class AzureAdGroupsJwtConverterTest {
 
     @Mock
-    private PerfilService perfilService;
+    private PermissionGraph permissionGraph;
 
     @Mock
     private Jwt jwt;
 
+    @Mock
+    private PerfilService perfilService;
+
+    @Spy
+    private AuthorityCache authorityCache = new AuthorityCache();
+
+    @Spy
+    private AuthorityRegistry authorityRegistry = new AuthorityRegistry();
+
     @InjectMocks
     private AzureAdGroupsJwtConverter converter;
 
@@ -69,6 +85,10 @@ class AzureAdGroupsJwtConverterTest {
         mockPerfil.addPermiso(mockPermisoInactivo);
     }
 
+    private PermissionSnapshot grafo(Perfil... perfiles) {
+        return PermissionSnapshot.compilar(1L, Arrays.asList(perfiles));
+    }
+
     @Test
     void convert_ConGruposValidos_DeberiaRetornarAuthoritiesCompletas() {
         // Arrange
@@ -76,10 +96,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("groups")).thenReturn(grupos);
         when(jwt.getClaimAsString("email")).thenReturn("admin@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("admin-group-id"))
-                .thenReturn(Optional.of(mockPerfil));
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("user-group-id"))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo(mockPerfil));
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -102,7 +119,7 @@ class AzureAdGroupsJwtConverterTest {
         // Verificar que NO se agregó el permiso inactivo
         assertFalse(authorities.stream().anyMatch(auth -> "Eliminar Usuarios".equals(auth.getAuthority())));
         
-        verify(perfilService, times(2)).obtenerPerfilPorAzureGroupIdConPermisos(anyString());
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -112,8 +129,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("roles")).thenReturn(Arrays.asList("role-group-id"));
         when(jwt.getClaimAsString("email")).thenReturn("user@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("role-group-id"))
-                .thenReturn(Optional.of(mockPerfil));
+        when(permissionGraph.snapshot()).thenReturn(grafo(mockPerfil));
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -121,7 +137,7 @@ class AzureAdGroupsJwtConverterTest {
         // Assert
         assertNotNull(authorities);
         assertTrue(authorities.stream().anyMatch(auth -> "GROUP_role-group-id".equals(auth.getAuthority())));
-        verify(perfilService).obtenerPerfilPorAzureGroupIdConPermisos("role-group-id");
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -131,8 +147,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("roles")).thenReturn(Arrays.asList("role1"));
         when(jwt.getClaimAsString("email")).thenReturn("user@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos(anyString()))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo());
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -141,7 +156,7 @@ class AzureAdGroupsJwtConverterTest {
         assertNotNull(authorities);
         assertTrue(authorities.stream().anyMatch(auth -> "GROUP_group1".equals(auth.getAuthority())));
         assertTrue(authorities.stream().anyMatch(auth -> "GROUP_role1".equals(auth.getAuthority())));
-        verify(perfilService, times(2)).obtenerPerfilPorAzureGroupIdConPermisos(anyString());
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -157,7 +172,7 @@ class AzureAdGroupsJwtConverterTest {
         // Assert
         assertNotNull(authorities);
         assertTrue(authorities.isEmpty());
-        verify(perfilService, never()).obtenerPerfilPorAzureGroupIdConPermisos(anyString());
+        verify(permissionGraph, never()).snapshot();
     }
 
     @Test
@@ -167,8 +182,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("groups")).thenReturn(grupos);
         when(jwt.getClaimAsString("email")).thenReturn("user@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("unknown-group-id"))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo());
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -178,7 +192,7 @@ class AzureAdGroupsJwtConverterTest {
         // Solo debe tener el authority del grupo, sin rol ni permisos
         assertEquals(1, authorities.size());
         assertTrue(authorities.stream().anyMatch(auth -> "GROUP_unknown-group-id".equals(auth.getAuthority())));
-        verify(perfilService).obtenerPerfilPorAzureGroupIdConPermisos("unknown-group-id");
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -188,8 +202,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("groups")).thenReturn(grupos);
         when(jwt.getClaimAsString("email")).thenReturn("user@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("error-group-id"))
-                .thenThrow(new RuntimeException("Error de base de datos"));
+        when(permissionGraph.snapshot()).thenThrow(new RuntimeException("Error de base de datos"));
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -198,7 +211,7 @@ class AzureAdGroupsJwtConverterTest {
         assertNotNull(authorities);
         // Debe continuar y agregar al menos el authority del grupo
         assertTrue(authorities.stream().anyMatch(auth -> "GROUP_error-group-id".equals(auth.getAuthority())));
-        verify(perfilService).obtenerPerfilPorAzureGroupIdConPermisos("error-group-id");
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -214,7 +227,7 @@ class AzureAdGroupsJwtConverterTest {
         // Assert
         assertNotNull(authorities);
         assertTrue(authorities.isEmpty());
-        verify(perfilService, never()).obtenerPerfilPorAzureGroupIdConPermisos(anyString());
+        verify(permissionGraph, never()).snapshot();
     }
 
     @Test
@@ -226,8 +239,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("user-advanced-id"));
         when(jwt.getClaimAsString("email")).thenReturn("user@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("user-advanced-id"))
-                .thenReturn(Optional.of(perfilConEspacios));
+        when(permissionGraph.snapshot()).thenReturn(grafo(perfilConEspacios));
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -235,7 +247,7 @@ class AzureAdGroupsJwtConverterTest {
         // Assert
         assertNotNull(authorities);
         assertTrue(authorities.stream().anyMatch(auth -> "ROLE_USER_ADVANCED_GROUP".equals(auth.getAuthority())));
-        verify(perfilService).obtenerPerfilPorAzureGroupIdConPermisos("user-advanced-id");
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -244,8 +256,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
         when(jwt.getClaimAsString("email")).thenReturn("admin@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("admin-group-id"))
-                .thenReturn(Optional.of(mockPerfil));
+        when(permissionGraph.snapshot()).thenReturn(grafo(mockPerfil));
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -378,8 +389,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsString("email")).thenReturn(null);
         when(jwt.getClaimAsString("preferred_username")).thenReturn("user@example.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("test-group"))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo());
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -397,8 +407,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsString("preferred_username")).thenReturn(null);
         when(jwt.getClaimAsString("upn")).thenReturn("user@example.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("test-group"))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo());
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -415,8 +424,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsString("email")).thenReturn(null);
         when(jwt.getClaimAsString("preferred_username")).thenReturn(null);
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("test-group"))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo());
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -437,12 +445,7 @@ class AzureAdGroupsJwtConverterTest {
         when(jwt.getClaimAsStringList("groups")).thenReturn(grupos);
         when(jwt.getClaimAsString("email")).thenReturn("multi@test.com");
         
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("admin-group-id"))
-                .thenReturn(Optional.of(mockPerfil));
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("editor-group-id"))
-                .thenReturn(Optional.of(perfil2));
-        when(perfilService.obtenerPerfilPorAzureGroupIdConPermisos("unknown-group"))
-                .thenReturn(Optional.empty());
+        when(permissionGraph.snapshot()).thenReturn(grafo(mockPerfil, perfil2));
 
         // Act
         Collection<GrantedAuthority> authorities = converter.convert(jwt);
@@ -463,6 +466,64 @@ class AzureAdGroupsJwtConverterTest {
         assertTrue(authorities.stream().anyMatch(auth -> "Leer Usuarios".equals(auth.getAuthority())));
         assertTrue(authorities.stream().anyMatch(auth -> "Crear Usuarios".equals(auth.getAuthority())));
         
-        verify(perfilService, times(3)).obtenerPerfilPorAzureGroupIdConPermisos(anyString());
+        verify(permissionGraph).snapshot();
+    }
+
+    @Test
+    void convert_ConMismaCombinacionDeGrupos_DeberiaReutilizarAuthoritiesEnCache() {
+        // Arrange
+        Jwt otroJwt = mock(Jwt.class);
+        when(jwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id", "user-group-id"));
+        when(otroJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("user-group-id", "admin-group-id", "admin-group-id"));
+        when(permissionGraph.snapshot()).thenReturn(grafo(mockPerfil));
+
+        // Act
+        Collection<GrantedAuthority> primera = converter.convert(jwt);
+        Collection<GrantedAuthority> segunda = converter.convert(otroJwt);
+
+        // Assert
+        assertSame(primera, segunda);
+        assertEquals(1, authorityCache.tamano());
+        assertTrue(segunda.stream().anyMatch(auth -> "ROLE_ADMIN_GROUP".equals(auth.getAuthority())));
+    }
+
+    @Test
+    void convert_TrasRecargarGrafo_DeberiaRecalcularAuthorities() {
+        // Arrange
+        List<String> grupos = Arrays.asList("admin-group-id");
+        when(jwt.getClaimAsStringList("groups")).thenReturn(grupos);
+        when(permissionGraph.snapshot())
+                .thenReturn(grafo(mockPerfil))
+                .thenReturn(PermissionSnapshot.compilar(2L, List.of()));
+
+        // Act
+        Collection<GrantedAuthority> antes = converter.convert(jwt);
+        Collection<GrantedAuthority> despues = converter.convert(jwt);
+
+        // Assert
+        assertTrue(antes.stream().anyMatch(auth -> "ROLE_ADMIN_GROUP".equals(auth.getAuthority())));
+        assertEquals(1, despues.size());
+        assertTrue(despues.stream().anyMatch(auth -> "GROUP_admin-group-id".equals(auth.getAuthority())));
+    }
+
+    @Test
+    void convert_SinGrafoDePermisos_DeberiaConsultarTodosLosGruposEnUnLote() {
+        // Arrange
+        ReflectionTestUtils.setField(converter, "permissionGraphEnabled", false);
+        List<String> grupos = Arrays.asList("admin-group-id", "unknown-group");
+        when(jwt.getClaimAsStringList("groups")).thenReturn(grupos);
+        when(perfilService.obtenerPerfilesPorAzureGroupIdsConPermisos(Arrays.asList("admin-group-id", "unknown-group")))
+                .thenReturn(Arrays.asList(mockPerfil));
+
+        // Act
+        Collection<GrantedAuthority> authorities = converter.convert(jwt);
+
+        // Assert
+        assertTrue(authorities.stream().anyMatch(auth -> "ROLE_ADMIN_GROUP".equals(auth.getAuthority())));
+        assertTrue(authorities.stream().anyMatch(auth -> "Leer Usuarios".equals(auth.getAuthority())));
+        assertTrue(authorities.stream().anyMatch(auth -> "GROUP_unknown-group".equals(auth.getAuthority())));
+        assertFalse(authorities.stream().anyMatch(auth -> "Eliminar Usuarios".equals(auth.getAuthority())));
+        verify(perfilService, times(1)).obtenerPerfilesPorAzureGroupIdsConPermisos(anyList());
+        verify(permissionGraph, never()).snapshot();
     }
 }
@@ -0,0 +1,129 @@
+package com.example.apiprotegida.config;
+
+import com.example.apiprotegida.security.authz.CompiledPreAuthorizeManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PostAuthorize;
+import org.springframework.security.access.prepost.PostFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreFilter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de los interceptores de seguridad de métodos registrados en SecurityConfig
+ * sobre un bean que no es controlador
+ */
+class MethodSecurityAdvisorsTest {
+
+    private ServicioDePrueba servicio;
+
+    @BeforeEach
+    void setUp() {
+        GenericApplicationContext contexto = new GenericApplicationContext();
+        contexto.refresh();
+        ProxyFactory fabrica = new ProxyFactory(new ServicioDePrueba());
+        fabrica.setProxyTargetClass(true);
+        fabrica.addAdvisor(SecurityConfig.preFilterAdvisor(contexto));
+        fabrica.addAdvisor(SecurityConfig.preAuthorizeAdvisor(new CompiledPreAuthorizeManager(contexto)));
+        fabrica.addAdvisor(SecurityConfig.postAuthorizeAdvisor(contexto));
+        fabrica.addAdvisor(SecurityConfig.postFilterAdvisor(contexto));
+        servicio = (ServicioDePrueba) fabrica.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void preAuthorize_EnUnServicio_DeberiaAplicarLaRegla() {
+        // Arrange
+        autenticar(usuario("lector", "ROLE_USER"));
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class, () -> servicio.soloAdmin());
+        autenticar(usuario("admin", "ROLE_ADMIN"));
+        assertEquals("ok", servicio.soloAdmin());
+    }
+
+    @Test
+    void preAuthorize_IsAuthenticatedConTokenNoAutenticado_DeberiaDenegar() {
+        // Arrange
+        autenticar(new UsernamePasswordAuthenticationToken("usuario", "clave"));
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class, () -> servicio.autenticado());
+    }
+
+    @Test
+    void postAuthorize_ConResultadoDeOtroUsuario_DeberiaDenegar() {
+        // Arrange
+        autenticar(usuario("ana", "ROLE_USER"));
+
+        // Act & Assert
+        assertEquals("ana", servicio.propietario("ana"));
+        assertThrows(AccessDeniedException.class, () -> servicio.propietario("luis"));
+    }
+
+    @Test
+    void preFilterYPostFilter_DeberianQuitarLosElementosNoPermitidos() {
+        // Arrange
+        autenticar(usuario("ana", "ROLE_USER"));
+
+        // Act
+        List<String> recibidos = servicio.recibir(new ArrayList<>(List.of("a", "secreto", "b")));
+        List<String> devueltos = servicio.devolver();
+
+        // Assert
+        assertEquals(List.of("a", "b"), recibidos);
+        assertEquals(List.of("publico"), devueltos);
+    }
+
+    private static void autenticar(Authentication autenticacion) {
+        SecurityContextHolder.getContext().setAuthentication(autenticacion);
+    }
+
+    private static Authentication usuario(String nombre, String... authorities) {
+        return new UsernamePasswordAuthenticationToken(nombre, null, AuthorityUtils.createAuthorityList(authorities));
+    }
+
+    static class ServicioDePrueba {
+
+        @PreAuthorize("hasRole('ADMIN')")
+        public String soloAdmin() {
+            return "ok";
+        }
+
+        @PreAuthorize("isAuthenticated()")
+        public String autenticado() {
+            return "ok";
+        }
+
+        @PostAuthorize("returnObject == authentication.name")
+        public String propietario(String nombre) {
+            return nombre;
+        }
+
+        @PreFilter("filterObject != 'secreto'")
+        public List<String> recibir(List<String> elementos) {
+            return elementos;
+        }
+
+        @PostFilter("filterObject != 'secreto'")
+        public List<String> devolver() {
+            return new ArrayList<>(List.of("publico", "secreto"));
+        }
+    }
+}
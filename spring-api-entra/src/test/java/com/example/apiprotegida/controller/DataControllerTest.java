@@ -0,0 +1,87 @@
+package com.example.apiprotegida.controller;
+
+import com.example.apiprotegida.service.ProcesoLentoService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests del GET /data/proceso-lento: un trabajo abandonado por el cliente no debe
+ * seguir ocupando el cupo del usuario
+ */
+class DataControllerTest {
+
+    private final Authentication ana = new UsernamePasswordAuthenticationToken(
+            "ana", null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+    private ProcesoLentoService procesoLentoService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        // Un proceso que no termina durante el test
+        procesoLentoService = new ProcesoLentoService(2, 10, 2, 60_000, 600_000);
+        DataController controller = new DataController();
+        ReflectionTestUtils.setField(controller, "procesoLentoService", procesoLentoService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        procesoLentoService.detener();
+    }
+
+    @Test
+    void procesoLento_AlAgotarLaEspera_DeberiaCancelarElTrabajoYResponder503() throws Exception {
+        // Arrange
+        MvcResult resultado = mockMvc.perform(get("/data/proceso-lento").principal(ana))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(1, procesoLentoService.trabajosActivos("ana"));
+        MockAsyncContext contexto = (MockAsyncContext) resultado.getRequest().getAsyncContext();
+
+        // Act
+        for (AsyncListener listener : contexto.getListeners()) {
+            listener.onTimeout(new AsyncEvent(contexto));
+        }
+
+        // Assert
+        mockMvc.perform(asyncDispatch(resultado)).andExpect(status().isServiceUnavailable());
+        assertEquals(0, procesoLentoService.trabajosActivos("ana"));
+    }
+
+    @Test
+    void procesoLento_ConClienteDesconectado_DeberiaCancelarElTrabajo() throws Exception {
+        // Arrange
+        MvcResult resultado = mockMvc.perform(get("/data/proceso-lento").principal(ana))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockAsyncContext contexto = (MockAsyncContext) resultado.getRequest().getAsyncContext();
+
+        // Act
+        for (AsyncListener listener : contexto.getListeners()) {
+            listener.onError(new AsyncEvent(contexto, new IOException("Broken pipe")));
+        }
+
+        // Assert
+        assertEquals(0, procesoLentoService.trabajosActivos("ana"));
+    }
+}
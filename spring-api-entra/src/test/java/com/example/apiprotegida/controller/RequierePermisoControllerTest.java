@@ -0,0 +1,188 @@
+package com.example.apiprotegida.controller;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.repository.UsuarioRepository;
+import com.example.apiprotegida.security.authz.AuthorizationAuditLog;
+import com.example.apiprotegida.security.authz.PermissionAuthorizationManager;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
+import com.example.apiprotegida.service.AuthorizationService;
+import com.example.apiprotegida.service.ConfiguracionService;
+import com.example.apiprotegida.service.ProcesoLentoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests de los endpoints protegidos con @RequierePermiso: controladores reales detrás
+ * del mismo interceptor que registra SecurityConfig, con el grafo de data.sql reducido
+ */
+@ExtendWith(MockitoExtension.class)
+class RequierePermisoControllerTest {
+
+    private static final Long ID_PERFIL_LECTOR = 2L;
+
+    @Mock
+    private PermissionGraph permissionGraph;
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private AuthorizationAuditLog auditoria;
+
+    @Mock
+    private ConfiguracionService configuracionService;
+
+    @Mock
+    private ProcesoLentoService procesoLentoService;
+
+    @InjectMocks
+    private AuthorizationService authorizationService;
+
+    @InjectMocks
+    private UsuarioController usuarioController;
+
+    @InjectMocks
+    private ConfiguracionController configuracionController;
+
+    @InjectMocks
+    private DataController dataController;
+
+    private UsuarioController usuarios;
+    private ConfiguracionController configuraciones;
+    private DataController datos;
+
+    @BeforeEach
+    void setUp() {
+        Permiso leerUsuarios = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permiso para leer usuarios", "USUARIOS", "LEER");
+        leerUsuarios.setId(1L);
+        leerUsuarios.setActivo(true);
+        Permiso leerPerfiles = new Permiso("PERFILES_LEER", "Leer Perfiles", "Permiso para leer perfiles", "PERFILES", "LEER");
+        leerPerfiles.setId(2L);
+        leerPerfiles.setActivo(true);
+
+        Perfil perfilAdmin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        perfilAdmin.setId(1L);
+        perfilAdmin.addPermiso(leerUsuarios);
+        perfilAdmin.addPermiso(leerPerfiles);
+
+        Perfil perfilLector = new Perfil("Lector", "Perfil local sin grupo de Azure", null, null);
+        perfilLector.setId(ID_PERFIL_LECTOR);
+        perfilLector.addPermiso(leerUsuarios);
+
+        // Como en data.sql, el perfil por defecto tiene USUARIOS_LEER y PERFILES_LEER
+        Perfil perfilDefault = new Perfil("Usuario por defecto", "Perfil por defecto", "default-user", "Default User");
+        perfilDefault.setId(5L);
+        perfilDefault.addPermiso(leerUsuarios);
+        perfilDefault.addPermiso(leerPerfiles);
+
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, List.of(perfilAdmin, perfilLector, perfilDefault));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        AuthorizationManagerBeforeMethodInterceptor interceptor = new AuthorizationManagerBeforeMethodInterceptor(
+                PermissionAuthorizationManager.POINTCUT,
+                new PermissionAuthorizationManager(authorizationService::resolverPrincipal));
+        usuarios = proteger(usuarioController, interceptor);
+        configuraciones = proteger(configuracionController, interceptor);
+        datos = proteger(dataController, interceptor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void endpoints_UsuarioAzureSinPerfil_DeberianDenegarPeseAlPerfilPorDefecto() {
+        // Arrange
+        autenticar(usuarioAzure("grupo-sin-perfil"));
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class, () -> usuarios.getAllUsuarios());
+        assertThrows(AccessDeniedException.class, () -> configuraciones.obtenerTodasLasConfiguraciones());
+        assertThrows(AccessDeniedException.class, () -> configuraciones.obtenerConfiguracionesAutenticacion());
+        assertThrows(AccessDeniedException.class, () -> datos.getDashboardData());
+    }
+
+    @Test
+    void endpoints_UsuarioAzureConPerfil_DeberianConceder() {
+        // Arrange
+        autenticar(usuarioAzure("admin-group-id"));
+
+        // Act & Assert
+        assertEquals(HttpStatus.OK, usuarios.getAllUsuarios().getStatusCode());
+        assertEquals(HttpStatus.OK, configuraciones.obtenerTodasLasConfiguraciones().getStatusCode());
+        assertEquals(HttpStatus.OK, datos.getDashboardData().getStatusCode());
+    }
+
+    @Test
+    void endpoints_UsuarioLocal_DeberianEvaluarSusPropiosPerfiles() {
+        // Arrange
+        when(usuarioRepository.findPerfilIdsByEmail("lector@local.com")).thenReturn(List.of(ID_PERFIL_LECTOR));
+        autenticar(usuarioLocal("lector@local.com"));
+
+        // Act & Assert
+        assertEquals(HttpStatus.OK, usuarios.getAllUsuarios().getStatusCode());
+        assertEquals(HttpStatus.OK, configuraciones.obtenerConfiguracionesAutenticacion().getStatusCode());
+        // El perfil por defecto tiene PERFILES_LEER, pero el perfil propio no
+        assertThrows(AccessDeniedException.class, () -> datos.getDashboardData());
+    }
+
+    @Test
+    void endpoints_UsuarioLocalSinPerfiles_DeberianDenegar() {
+        // Arrange
+        when(usuarioRepository.findPerfilIdsByEmail("nuevo@local.com")).thenReturn(List.of());
+        autenticar(usuarioLocal("nuevo@local.com"));
+
+        // Act & Assert
+        assertThrows(AccessDeniedException.class, () -> usuarios.getAllUsuarios());
+        assertThrows(AccessDeniedException.class, () -> datos.getDashboardData());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proteger(T controlador, AuthorizationManagerBeforeMethodInterceptor interceptor) {
+        ProxyFactory fabrica = new ProxyFactory(controlador);
+        fabrica.setProxyTargetClass(true);
+        fabrica.addAdvisor(interceptor);
+        return (T) fabrica.getProxy();
+    }
+
+    private static void autenticar(Authentication autenticacion) {
+        SecurityContextHolder.getContext().setAuthentication(autenticacion);
+    }
+
+    private static Authentication usuarioAzure(String grupo) {
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("azure-user")
+                .claim("groups", List.of(grupo))
+                .build();
+        return new JwtAuthenticationToken(jwt, AuthorityUtils.createAuthorityList("GROUP_" + grupo));
+    }
+
+    private static Authentication usuarioLocal(String email) {
+        // Solo roles: la verificación no depende de que los códigos de permiso lleguen como authorities
+        return new UsernamePasswordAuthenticationToken(email, null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+}
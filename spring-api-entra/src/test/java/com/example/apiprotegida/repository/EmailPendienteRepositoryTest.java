@@ -0,0 +1,110 @@
+package com.example.apiprotegida.repository;
+
+import com.example.apiprotegida.model.EmailPendiente;
+import com.example.apiprotegida.model.EmailPendiente.EstadoEmail;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests de integración para EmailPendienteRepository: reserva de emails de la
+ * bandeja de salida entre varios nodos
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class EmailPendienteRepositoryTest {
+
+    private static final EnumSet<EstadoEmail> TOMABLES = EnumSet.of(EstadoEmail.PENDIENTE, EstadoEmail.EN_ENVIO);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EmailPendienteRepository emailRepository;
+
+    private LocalDateTime ahora;
+
+    @BeforeEach
+    void setUp() {
+        entityManager.getEntityManager().createQuery("DELETE FROM EmailPendiente").executeUpdate();
+        entityManager.flush();
+        entityManager.clear();
+        ahora = LocalDateTime.now();
+    }
+
+    @Test
+    void reservar_DosNodosConLaMismaVersion_SoloUnoDeberiaReservar() {
+        // Arrange
+        EmailPendiente email = persistir(EstadoEmail.PENDIENTE, ahora.minusSeconds(1));
+        Long versionLeida = email.getVersion();
+
+        // Act
+        int nodoA = emailRepository.reservar(email.getId(), versionLeida, EstadoEmail.EN_ENVIO, ahora.plusMinutes(5));
+        int nodoB = emailRepository.reservar(email.getId(), versionLeida, EstadoEmail.EN_ENVIO, ahora.plusMinutes(5));
+
+        // Assert
+        assertEquals(1, nodoA);
+        assertEquals(0, nodoB);
+        entityManager.clear();
+        EmailPendiente reservado = entityManager.find(EmailPendiente.class, email.getId());
+        assertEquals(EstadoEmail.EN_ENVIO, reservado.getEstado());
+        assertEquals(versionLeida + 1, reservado.getVersion());
+    }
+
+    @Test
+    void buscarListos_ConReservaEnEnvioCaducada_DeberiaDevolverlaYPermitirRetomarla() {
+        // Arrange
+        EmailPendiente caducado = persistir(EstadoEmail.EN_ENVIO, ahora.minusSeconds(1));
+        persistir(EstadoEmail.EN_ENVIO, ahora.plusMinutes(5));
+
+        // Act
+        List<EmailPendiente> listos = emailRepository.buscarListos(TOMABLES, ahora, PageRequest.of(0, 10));
+        int retomado = emailRepository.reservar(caducado.getId(), listos.get(0).getVersion(),
+                EstadoEmail.EN_ENVIO, ahora.plusMinutes(5));
+
+        // Assert
+        assertEquals(1, listos.size());
+        assertEquals(caducado.getId(), listos.get(0).getId());
+        assertEquals(1, retomado);
+        entityManager.clear();
+        assertTrue(emailRepository.buscarListos(TOMABLES, ahora, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void save_TrasRetomarOtroNodoLaReservaCaducada_DeberiaFallarPorVersion() {
+        // Arrange
+        EmailPendiente email = persistir(EstadoEmail.PENDIENTE, ahora.minusSeconds(1));
+        emailRepository.reservar(email.getId(), email.getVersion(), EstadoEmail.EN_ENVIO, ahora.minusSeconds(1));
+        EmailPendiente nodoLento = emailRepository.findById(email.getId()).orElseThrow();
+        entityManager.clear();
+        // La reserva del nodo lento caducó y otro nodo la retoma
+        emailRepository.reservar(email.getId(), nodoLento.getVersion(), EstadoEmail.EN_ENVIO, ahora.plusMinutes(5));
+        entityManager.clear();
+
+        // Act
+        nodoLento.setEstado(EstadoEmail.ENVIADO);
+
+        // Assert
+        assertThrows(OptimisticLockingFailureException.class, () -> emailRepository.saveAndFlush(nodoLento));
+    }
+
+    private EmailPendiente persistir(EstadoEmail estado, LocalDateTime proximoIntento) {
+        EmailPendiente email = new EmailPendiente("noreply@test.com", "ana@test.com", "Asunto", "Cuerpo");
+        email.setEstado(estado);
+        email.setProximoIntento(proximoIntento);
+        entityManager.persistAndFlush(email);
+        entityManager.clear();
+        return email;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.apiprotegida.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitarios para CachingJwtDecoder
+ */
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    private static final Instant AHORA = Instant.parse("2024-01-01T10:00:00Z");
+
+    @Mock
+    private JwtDecoder delegate;
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(AHORA);
+    }
+
+    @Test
+    void decode_ConMismoToken_DeberiaVerificarUnaSolaVez() {
+        // Arrange
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, 1_000_000, clock);
+        Jwt jwt = jwt("token-a", AHORA.plusSeconds(3600));
+        when(delegate.decode("token-a")).thenReturn(jwt);
+
+        // Act
+        Jwt primero = decoder.decode("token-a");
+        Jwt segundo = decoder.decode("token-a");
+
+        // Assert
+        assertSame(jwt, primero);
+        assertSame(jwt, segundo);
+        verify(delegate, times(1)).decode("token-a");
+        assertEquals(1, decoder.tamano());
+    }
+
+    @Test
+    void decode_TrasLaExpiracion_DeberiaDelegarDeNuevo() {
+        // Arrange
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, 1_000_000, clock);
+        when(delegate.decode("token-a")).thenReturn(jwt("token-a", AHORA.plusSeconds(60)));
+        decoder.decode("token-a");
+        clock.ahora = AHORA.plusSeconds(60);
+        when(delegate.decode("token-a")).thenThrow(new BadJwtException("Jwt expired"));
+
+        // Act & Assert
+        assertThrows(BadJwtException.class, () -> decoder.decode("token-a"));
+        assertEquals(0, decoder.tamano());
+    }
+
+    @Test
+    void decode_ConTokenInvalido_NoDeberiaGuardarNada() {
+        // Arrange
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, 1_000_000, clock);
+        when(delegate.decode(anyString())).thenThrow(new BadJwtException("firma inválida"));
+
+        // Act
+        assertThrows(BadJwtException.class, () -> decoder.decode("token-malo"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("token-malo"));
+
+        // Assert
+        verify(delegate, times(2)).decode("token-malo");
+        assertEquals(0, decoder.tamano());
+    }
+
+    @Test
+    void decode_AlSuperarMaximoDeEntradas_DeberiaExpulsarEnLoteLosMenosUsados() {
+        // Arrange
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 4, 1_000_000, clock);
+        when(delegate.decode(anyString())).thenAnswer(inv -> jwt(inv.getArgument(0), AHORA.plusSeconds(3600)));
+        decoder.decode("token-a");
+        decoder.decode("token-b");
+        decoder.decode("token-c");
+        decoder.decode("token-d");
+        decoder.decode("token-a");
+
+        // Act
+        decoder.decode("token-e");
+        int tamanoTrasRecortar = decoder.tamano();
+        decoder.decode("token-a");
+        decoder.decode("token-b");
+
+        // Assert
+        assertEquals(3, tamanoTrasRecortar);
+        verify(delegate, times(1)).decode("token-a");
+        verify(delegate, times(2)).decode("token-b");
+    }
+
+    @Test
+    void decode_AlSuperarMaximoDeBytes_DeberiaQuedarPorDebajoDelLimite() {
+        // Arrange
+        String tokenLargo = "x".repeat(100);
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 100, 700, clock);
+        when(delegate.decode(anyString())).thenAnswer(inv -> jwt(inv.getArgument(0), AHORA.plusSeconds(3600)));
+
+        // Act
+        decoder.decode(tokenLargo + "1");
+        decoder.decode(tokenLargo + "2");
+        decoder.decode(tokenLargo + "3");
+
+        // Assert
+        assertEquals(2, decoder.tamano());
+        assertTrue(decoder.bytes() <= 630);
+    }
+
+    @Test
+    void purgarExpirados_ConTokensExpirados_DeberiaDescartarSoloEsos() {
+        // Arrange
+        CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, 1_000_000, clock);
+        when(delegate.decode("token-corto")).thenReturn(jwt("token-corto", AHORA.plusSeconds(60)));
+        when(delegate.decode("token-largo")).thenReturn(jwt("token-largo", AHORA.plusSeconds(3600)));
+        decoder.decode("token-corto");
+        decoder.decode("token-largo");
+        long bytesAntes = decoder.bytes();
+        clock.ahora = AHORA.plusSeconds(60);
+
+        // Act
+        decoder.purgarExpirados();
+
+        // Assert
+        assertEquals(1, decoder.tamano());
+        assertTrue(decoder.bytes() < bytesAntes);
+    }
+
+    private static Jwt jwt(String token, Instant expira) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("usuario@example.com")
+                .issuedAt(expira.minusSeconds(3600))
+                .expiresAt(expira)
+                .build();
+    }
+
+    /**
+     * Reloj controlable desde el test
+     */
+    private static class MutableClock extends Clock {
+
+        private Instant ahora;
+
+        MutableClock(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
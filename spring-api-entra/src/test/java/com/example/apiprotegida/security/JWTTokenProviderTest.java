@@ -0,0 +1,266 @@
+package com.example.apiprotegida.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.model.Usuario;
+import com.example.apiprotegida.repository.UsuarioRepository;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.example.apiprotegida.security.SecurityConstant.TOKEN_PREFIX;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitarios para JWTTokenProvider
+ */
+@ExtendWith(MockitoExtension.class)
+class JWTTokenProviderTest {
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private PermissionGraph permissionGraph;
+
+    @InjectMocks
+    private JWTTokenProvider jwtTokenProvider;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtTokenProvider, "secret", "testSecretKeyForJWTTokenGeneration1234567890");
+        jwtTokenProvider.init();
+        Usuario usuario = new Usuario("Usuario Test", "test@example.com");
+        when(usuarioRepository.findByEmailWithPerfiles("test@example.com")).thenReturn(Optional.empty());
+        token = jwtTokenProvider.generateJwtToken(usuario).substring(TOKEN_PREFIX.length());
+    }
+
+    @Test
+    void verify_ConTokenValido_DeberiaRetornarDatosDelToken() {
+        // Act
+        VerifiedLocalToken verified = jwtTokenProvider.verify(token);
+
+        // Assert
+        assertEquals("test@example.com", verified.getSubject());
+        assertEquals("Usuario Básico", verified.getPerfil());
+        assertTrue(verified.getAuthorities().stream().anyMatch(auth -> "ROLE_USER".equals(auth.getAuthority())));
+        assertNotNull(verified.getExpiresAt());
+    }
+
+    @Test
+    void verify_ConMismoToken_DeberiaReutilizarLaVerificacion() {
+        // Act
+        VerifiedLocalToken primera = jwtTokenProvider.verify(token);
+        VerifiedLocalToken segunda = jwtTokenProvider.verify(token);
+
+        // Assert
+        assertSame(primera, segunda);
+        assertTrue(jwtTokenProvider.isTokenValid(token));
+        assertEquals("test@example.com", jwtTokenProvider.getSubject(token));
+    }
+
+    @Test
+    void verify_ConFirmaAlterada_DeberiaLanzarExcepcion() {
+        // Arrange
+        jwtTokenProvider.verify(token);
+        String alterado = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // Act & Assert
+        assertThrows(JWTVerificationException.class, () -> jwtTokenProvider.verify(alterado));
+        assertFalse(jwtTokenProvider.isTokenValid(alterado));
+    }
+
+    @Test
+    void verify_ConClaveAnteriorRegistrada_DeberiaAceptarTokensPorKid() {
+        // Arrange
+        String secretoAnterior = "previousSecretKeyForJWTTokenGeneration123456";
+        ReflectionTestUtils.setField(jwtTokenProvider, "previousKeys", "k-anterior:" + secretoAnterior);
+        jwtTokenProvider.init();
+        String tokenAnterior = JWT.create()
+                .withKeyId("k-anterior")
+                .withIssuer(SecurityConstant.API_TYC)
+                .withSubject("old@example.com")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC512(secretoAnterior));
+        String tokenKidDesconocido = JWT.create()
+                .withKeyId("k-desconocido")
+                .withIssuer(SecurityConstant.API_TYC)
+                .withSubject("old@example.com")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC512(secretoAnterior));
+
+        // Act & Assert
+        assertEquals("old@example.com", jwtTokenProvider.verify(tokenAnterior).getSubject());
+        assertEquals("test@example.com", jwtTokenProvider.verify(token).getSubject());
+        assertThrows(JWTVerificationException.class, () -> jwtTokenProvider.verify(tokenKidDesconocido));
+    }
+
+    @Test
+    void verify_ConCacheLlena_DeberiaExpulsarSoloLosQueExpiranAntes() {
+        // Arrange
+        ReflectionTestUtils.setField(jwtTokenProvider, "maxVerifiedTokens", 10);
+        long ahora = System.currentTimeMillis();
+        String tokenLargo = tokenFirmado("largo@example.com", ahora + 7_200_000);
+        VerifiedLocalToken largo = jwtTokenProvider.verify(tokenLargo);
+        String[] tokensCortos = new String[10];
+        VerifiedLocalToken[] cortos = new VerifiedLocalToken[10];
+        for (int i = 0; i < tokensCortos.length; i++) {
+            tokensCortos[i] = tokenFirmado("corto" + i + "@example.com", ahora + 3_600_000 + i * 1_000L);
+            cortos[i] = jwtTokenProvider.verify(tokensCortos[i]);
+        }
+
+        // Act & Assert
+        assertSame(largo, jwtTokenProvider.verify(tokenLargo));
+        assertSame(cortos[8], jwtTokenProvider.verify(tokensCortos[8]));
+        assertNotSame(cortos[0], jwtTokenProvider.verify(tokensCortos[0]));
+    }
+
+    @Test
+    void generateJwtToken_EnModoCompacto_DeberiaLlevarSoloPerfilesYVersion() {
+        // Arrange
+        Perfil admin = perfilAdmin();
+        Usuario usuario = usuarioConPerfil(admin);
+        ReflectionTestUtils.setField(jwtTokenProvider, "compactTokens", true);
+        when(usuarioRepository.findByEmailWithPerfiles("admin@example.com")).thenReturn(Optional.of(usuario));
+        when(permissionGraph.snapshot()).thenReturn(PermissionSnapshot.compilar(4L, List.of(admin)));
+
+        // Act
+        String compacto = jwtTokenProvider.generateJwtToken(usuario).substring(TOKEN_PREFIX.length());
+        DecodedJWT decoded = JWT.decode(compacto);
+
+        // Assert
+        assertTrue(decoded.getClaim(SecurityConstant.AUTHORITIES).isMissing());
+        assertEquals(List.of(10L), decoded.getClaim(SecurityConstant.PERFIL_IDS).asList(Long.class));
+        assertEquals(4L, decoded.getClaim(SecurityConstant.PERMISSIONS_VERSION).asLong());
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN", "USUARIOS_LEER"), codigos(jwtTokenProvider.verify(compacto)));
+    }
+
+    @Test
+    void verify_ConTokenCompactoYNuevaVersionDelGrafo_DeberiaRecalcularAuthorities() {
+        // Arrange
+        Perfil admin = perfilAdmin();
+        Usuario usuario = usuarioConPerfil(admin);
+        ReflectionTestUtils.setField(jwtTokenProvider, "compactTokens", true);
+        when(usuarioRepository.findByEmailWithPerfiles("admin@example.com")).thenReturn(Optional.of(usuario));
+        PermissionSnapshot inicial = PermissionSnapshot.compilar(1L, List.of(admin));
+        PermissionSnapshot sinPerfil = PermissionSnapshot.compilar(2L, List.of());
+        when(permissionGraph.snapshot()).thenReturn(inicial);
+        String compacto = jwtTokenProvider.generateJwtToken(usuario).substring(TOKEN_PREFIX.length());
+        VerifiedLocalToken primera = jwtTokenProvider.verify(compacto);
+
+        // Act
+        VerifiedLocalToken mismaVersion = jwtTokenProvider.verify(compacto);
+        when(permissionGraph.snapshot()).thenReturn(sinPerfil);
+        VerifiedLocalToken revocado = jwtTokenProvider.verify(compacto);
+
+        // Assert
+        assertSame(primera, mismaVersion);
+        assertTrue(codigos(primera).contains("USUARIOS_LEER"));
+        assertEquals(Set.of("ROLE_USER"), codigos(revocado));
+        assertEquals(2L, revocado.getVersionPermisos());
+    }
+
+    @Test
+    void generateJwtToken_ConMapaDeBits_DeberiaCodificarLosPermisosEnElClaimPbm() {
+        // Arrange
+        Perfil admin = perfilAdmin();
+        Usuario usuario = usuarioConPerfil(admin);
+        ReflectionTestUtils.setField(jwtTokenProvider, "authoritiesBitmap", true);
+        when(usuarioRepository.findByEmailWithPerfiles("admin@example.com")).thenReturn(Optional.of(usuario));
+        when(permissionGraph.snapshot()).thenReturn(PermissionSnapshot.compilar(1L, List.of(admin)));
+
+        // Act
+        String conMapa = jwtTokenProvider.generateJwtToken(usuario).substring(TOKEN_PREFIX.length());
+        DecodedJWT decoded = JWT.decode(conMapa);
+        VerifiedLocalToken verified = jwtTokenProvider.verify(conMapa);
+
+        // Assert
+        assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"), decoded.getClaim(SecurityConstant.AUTHORITIES).asList(String.class));
+        assertArrayEquals(new long[]{1L}, PermissionBitmap.decodificar(decoded.getClaim(SecurityConstant.PERMISSIONS_BITMAP).asString()));
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN", "USUARIOS_LEER"), codigos(verified));
+    }
+
+    @Test
+    void verify_ConMapaDeBitsYNuevaVersionDelGrafo_DeberiaVolverATraducirLosPermisos() {
+        // Arrange
+        Perfil admin = perfilAdmin();
+        Usuario usuario = usuarioConPerfil(admin);
+        ReflectionTestUtils.setField(jwtTokenProvider, "authoritiesBitmap", true);
+        when(usuarioRepository.findByEmailWithPerfiles("admin@example.com")).thenReturn(Optional.of(usuario));
+        PermissionSnapshot inicial = PermissionSnapshot.compilar(1L, List.of(admin));
+        PermissionSnapshot sinPermiso = PermissionSnapshot.compilar(2L, List.of());
+        when(permissionGraph.snapshot()).thenReturn(inicial);
+        String conMapa = jwtTokenProvider.generateJwtToken(usuario).substring(TOKEN_PREFIX.length());
+        VerifiedLocalToken primera = jwtTokenProvider.verify(conMapa);
+
+        // Act
+        VerifiedLocalToken mismaVersion = jwtTokenProvider.verify(conMapa);
+        when(permissionGraph.snapshot()).thenReturn(sinPermiso);
+        VerifiedLocalToken revocado = jwtTokenProvider.verify(conMapa);
+
+        // Assert
+        assertSame(primera, mismaVersion);
+        assertTrue(codigos(primera).contains("USUARIOS_LEER"));
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), codigos(revocado));
+        assertEquals(2L, revocado.getVersionPermisos());
+    }
+
+    @Test
+    void verify_DeberiaUsarInstanciasCompartidasDeAuthorities() {
+        // Arrange
+        GrantedAuthorities.registrar(List.of("ROLE_USER"));
+
+        // Act
+        VerifiedLocalToken verified = jwtTokenProvider.verify(token);
+
+        // Assert
+        assertSame(GrantedAuthorities.of("ROLE_USER"), verified.getAuthorities().get(0));
+    }
+
+    private static Perfil perfilAdmin() {
+        Permiso leer = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permiso para leer usuarios", "USUARIOS", "LEER");
+        leer.setId(1L);
+        leer.setActivo(true);
+        Perfil admin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        admin.setId(10L);
+        admin.addPermiso(leer);
+        return admin;
+    }
+
+    private static Usuario usuarioConPerfil(Perfil perfil) {
+        Usuario usuario = new Usuario("Admin Test", "admin@example.com");
+        usuario.setPerfiles(Set.of(perfil));
+        return usuario;
+    }
+
+    private static Set<String> codigos(VerifiedLocalToken verified) {
+        return verified.getAuthorities().stream().map(auth -> auth.getAuthority()).collect(Collectors.toSet());
+    }
+
+    private static String tokenFirmado(String email, long expiraEnMillis) {
+        return JWT.create()
+                .withIssuer(SecurityConstant.API_TYC)
+                .withSubject(email)
+                .withExpiresAt(new Date(expiraEnMillis))
+                .sign(Algorithm.HMAC512("testSecretKeyForJWTTokenGeneration1234567890"));
+    }
+}
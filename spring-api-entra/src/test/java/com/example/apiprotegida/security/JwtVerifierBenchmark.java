@@ -0,0 +1,103 @@
+package com.example.apiprotegida.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.apiprotegida.security.SecurityConstant.API_TYC;
+import static com.example.apiprotegida.security.SecurityConstant.AUTHORITIES;
+
+/**
+ * Micro-benchmark de la verificación de tokens locales con varios hilos: construir
+ * Algorithm y JWTVerifier en cada llamada (como se hacía antes) frente al registro
+ * compartido de verificadores por "kid" de JWTTokenProvider
+ *
+ * Mide solo la verificación HMAC; la caché de tokens ya verificados de
+ * JWTTokenProvider queda fuera para no medir un acierto de caché.
+ *
+ * No es un test (no lo ejecuta surefire). Se lanza a mano desde el IDE o con
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.apiprotegida.security.JwtVerifierBenchmark}
+ */
+public class JwtVerifierBenchmark {
+
+    private static final int HILOS = 4;
+    private static final int ITERACIONES = 200_000;
+
+    private static final String SECRETO = "defaultSecretKeyForJWTTokenGeneration123456789";
+    private static final String KID = "actual";
+
+    public static void main(String[] args) throws Exception {
+        Algorithm firma = Algorithm.HMAC512(SECRETO.getBytes(StandardCharsets.UTF_8));
+        String token = JWT.create()
+                .withKeyId(KID)
+                .withIssuer(API_TYC)
+                .withSubject("usuario@local.com")
+                .withClaim("perfil", "Administrador")
+                .withArrayClaim(AUTHORITIES, new String[]{"ROLE_USER", "ROLE_ADMIN", "USUARIOS_LEER", "PERFILES_LEER"})
+                .withIssuedAt(new Date())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 3_600_000))
+                .sign(firma);
+
+        Map<String, JWTVerifier> registro = Map.of(
+                KID, JWT.require(firma).withIssuer(API_TYC).build(),
+                "anterior-1", JWT.require(Algorithm.HMAC512("secreto-anterior-1")).withIssuer(API_TYC).build(),
+                "anterior-2", JWT.require(Algorithm.HMAC512("secreto-anterior-2")).withIssuer(API_TYC).build());
+
+        medir("clave por llamada (anterior)", () -> JWT.require(Algorithm.HMAC512(SECRETO))
+                .withIssuer(API_TYC).build().verify(token));
+        medir("registro por kid", () -> {
+            DecodedJWT decodificado = JWT.decode(token);
+            return registro.get(decodificado.getKeyId()).verify(decodificado);
+        });
+    }
+
+    private static void medir(String nombre, Verificacion verificacion) throws InterruptedException {
+        for (int i = 0; i < ITERACIONES / 10; i++) {
+            verificacion.verificar();
+        }
+        CountDownLatch inicio = new CountDownLatch(1);
+        CountDownLatch fin = new CountDownLatch(HILOS);
+        AtomicLong nanos = new AtomicLong();
+        AtomicLong sujetos = new AtomicLong();
+        for (int h = 0; h < HILOS; h++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    inicio.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long comienzo = System.nanoTime();
+                int longitud = 0;
+                for (int i = 0; i < ITERACIONES; i++) {
+                    longitud += verificacion.verificar().getSubject().length();
+                }
+                nanos.addAndGet(System.nanoTime() - comienzo);
+                sujetos.addAndGet(longitud);
+                fin.countDown();
+            });
+            hilo.start();
+        }
+        long muro = System.nanoTime();
+        inicio.countDown();
+        fin.await();
+        muro = System.nanoTime() - muro;
+        System.out.printf("%-30s %10.1f ns/op %12.0f verificaciones/s (%d hilos)%n", nombre,
+                (double) nanos.get() / HILOS / ITERACIONES, HILOS * ITERACIONES * 1e9 / muro, HILOS);
+        if (sujetos.get() < 0) {
+            System.out.println(sujetos.get());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Verificacion {
+        DecodedJWT verificar();
+    }
+}
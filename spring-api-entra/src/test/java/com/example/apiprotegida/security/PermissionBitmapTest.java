@@ -0,0 +1,51 @@
+package com.example.apiprotegida.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para PermissionBitmap
+ */
+class PermissionBitmapTest {
+
+    @Test
+    void codificar_YDecodificar_DeberiaConservarLosIds() {
+        // Arrange
+        List<Long> ids = List.of(1L, 2L, 9L, 64L, 300L);
+
+        // Act
+        String bitmap = PermissionBitmap.codificar(ids);
+        long[] decodificados = PermissionBitmap.decodificar(bitmap);
+
+        // Assert
+        assertArrayEquals(new long[]{1L, 2L, 9L, 64L, 300L}, decodificados);
+        assertTrue(bitmap.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void codificar_ConConjuntoVacio_DeberiaDecodificarVacio() {
+        // Act
+        String bitmap = PermissionBitmap.codificar(List.of());
+
+        // Assert
+        assertEquals("", bitmap);
+        assertEquals(0, PermissionBitmap.decodificar(bitmap).length);
+    }
+
+    @Test
+    void codificable_ConIdsFueraDeRango_DeberiaRetornarFalse() {
+        // Act & Assert
+        assertTrue(PermissionBitmap.codificable(List.of(0L, PermissionBitmap.MAX_ID)));
+        assertFalse(PermissionBitmap.codificable(List.of(1L, PermissionBitmap.MAX_ID + 1)));
+        assertFalse(PermissionBitmap.codificable(java.util.Arrays.asList(1L, null)));
+    }
+
+    @Test
+    void decodificar_ConValorInvalido_DeberiaLanzarExcepcion() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> PermissionBitmap.decodificar("no*es*base64"));
+    }
+}
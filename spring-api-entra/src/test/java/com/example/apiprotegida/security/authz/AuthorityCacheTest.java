@@ -0,0 +1,152 @@
+package com.example.apiprotegida.security.authz;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para AuthorityCache
+ */
+class AuthorityCacheTest {
+
+    private final AtomicInteger calculos = new AtomicInteger();
+
+    private final Function<List<String>, Collection<GrantedAuthority>> calcular = grupos -> {
+        calculos.incrementAndGet();
+        return List.of(new SimpleGrantedAuthority("GROUP_" + String.join(",", grupos)));
+    };
+
+    @Test
+    void obtener_ConGruposEnDistintoOrdenYRepetidos_DeberiaUsarLaMismaEntrada() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 300);
+
+        // Act
+        Collection<GrantedAuthority> primera = cache.obtener(1L, Arrays.asList("b", "a"), calcular);
+        Collection<GrantedAuthority> segunda = cache.obtener(1L, Arrays.asList("a", "b", "a"), calcular);
+
+        // Assert
+        assertSame(primera, segunda);
+        assertEquals(1, calculos.get());
+        assertEquals("GROUP_a,b", primera.iterator().next().getAuthority());
+    }
+
+    @Test
+    void obtener_ConOtraVersionDelGrafo_DeberiaRecalcular() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 300);
+
+        // Act
+        cache.obtener(1L, List.of("a"), calcular);
+        cache.obtener(2L, List.of("a"), calcular);
+
+        // Assert
+        assertEquals(2, calculos.get());
+    }
+
+    @Test
+    void obtener_AlSuperarTamanoMaximo_DeberiaExpulsarEnLoteLasMenosUsadas() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(4, 300);
+        cache.obtener(1L, List.of("a"), calcular);
+        cache.obtener(1L, List.of("b"), calcular);
+        cache.obtener(1L, List.of("c"), calcular);
+        cache.obtener(1L, List.of("d"), calcular);
+        cache.obtener(1L, List.of("a"), calcular);
+
+        // Act
+        cache.obtener(1L, List.of("e"), calcular);
+        int tamanoTrasRecortar = cache.tamano();
+        cache.obtener(1L, List.of("a"), calcular);
+        cache.obtener(1L, List.of("b"), calcular);
+
+        // Assert
+        assertEquals(3, tamanoTrasRecortar);
+        assertEquals(6, calculos.get());
+    }
+
+    @Test
+    void obtener_ConEntradaExpirada_DeberiaRecalcular() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 0);
+
+        // Act
+        cache.obtener(1L, List.of("a"), calcular);
+        cache.obtener(1L, List.of("a"), calcular);
+
+        // Assert
+        assertEquals(2, calculos.get());
+    }
+
+    @Test
+    void invalidar_DeberiaVaciarLaCache() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 300);
+        cache.obtener(1L, List.of("a"), calcular);
+
+        // Act
+        cache.invalidar();
+        cache.obtener(1L, List.of("a"), calcular);
+
+        // Assert
+        assertEquals(2, calculos.get());
+        assertEquals(1, cache.tamano());
+    }
+
+    @Test
+    void alRecargarGrafo_ConGruposAfectados_DeberiaExpulsarSoloEsasEntradas() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 300);
+        cache.obtener(1L, List.of("a"), calcular);
+        cache.obtener(1L, List.of("b", "c"), calcular);
+        cache.obtener(1L, List.of("d"), calcular);
+
+        // Act
+        cache.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of("c"), false));
+        cache.obtener(2L, List.of("a"), calcular);
+        cache.obtener(2L, List.of("b", "c"), calcular);
+        cache.obtener(2L, List.of("d"), calcular);
+
+        // Assert
+        assertEquals(4, calculos.get());
+        assertEquals(3, cache.tamano());
+    }
+
+    @Test
+    void alRecargarGrafo_Completo_DeberiaVaciarLaCache() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 300);
+        cache.obtener(1L, List.of("a"), calcular);
+
+        // Act
+        cache.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of(), true));
+
+        // Assert
+        assertEquals(0, cache.tamano());
+    }
+
+    @Test
+    void obtener_CalculoIniciadoAntesDeUnaRecarga_NoDeberiaGuardarse() {
+        // Arrange
+        AuthorityCache cache = new AuthorityCache(10, 300);
+        Function<List<String>, Collection<GrantedAuthority>> calculoConRecarga = grupos -> {
+            cache.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of("a"), false));
+            return calcular.apply(grupos);
+        };
+
+        // Act
+        cache.obtener(1L, List.of("a"), calculoConRecarga);
+
+        // Assert
+        assertEquals(0, cache.tamano());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.security.GrantedAuthorities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitarios para AuthorityRegistry
+ */
+@ExtendWith(MockitoExtension.class)
+class AuthorityRegistryTest {
+
+    @Mock
+    private PermissionGraph permissionGraph;
+
+    @InjectMocks
+    private AuthorityRegistry authorityRegistry;
+
+    private PermissionSnapshot grafo;
+
+    @BeforeEach
+    void setUp() {
+        Perfil perfilAdmin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        perfilAdmin.setId(1L);
+        Permiso leer = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permite leer usuarios", "USUARIOS", "LEER");
+        leer.setId(1L);
+        leer.setActivo(true);
+        perfilAdmin.setPermisos(new HashSet<>(Set.of(leer)));
+        grafo = PermissionSnapshot.compilar(1L, List.of(perfilAdmin));
+    }
+
+    @Test
+    void deGrupos_TrasRecargarGrafo_DeberiaDevolverLaMismaListaParaUnSoloGrupo() {
+        // Arrange
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+        authorityRegistry.alRecargarGrafo(new PermissionGraphReloaded(0L, 1L, Set.of("admin-group-id"), true));
+
+        // Act
+        List<GrantedAuthority> primera = authorityRegistry.deGrupos(grafo, List.of("admin-group-id"));
+        List<GrantedAuthority> segunda = authorityRegistry.deGrupos(grafo, List.of("admin-group-id"));
+
+        // Assert
+        assertSame(primera, segunda);
+        assertEquals(3, primera.size());
+        assertSame(GrantedAuthorities.of("GROUP_admin-group-id"), primera.get(0));
+        assertSame(GrantedAuthorities.of("ROLE_ADMIN_GROUP"), primera.get(1));
+        assertSame(GrantedAuthorities.of("Leer Usuarios"), primera.get(2));
+    }
+
+    @Test
+    void deGrupos_SinFotoPrecalculada_DeberiaCalcularLasAuthorities() {
+        // Act
+        List<GrantedAuthority> authorities = authorityRegistry.deGrupos(grafo, Arrays.asList("admin-group-id", "unknown-group"));
+
+        // Assert
+        assertEquals(4, authorities.size());
+        assertEquals("Leer Usuarios", authorities.get(2).getAuthority());
+        assertEquals("GROUP_unknown-group", authorities.get(3).getAuthority());
+    }
+
+    @Test
+    void alRecargarGrafo_DeberiaRegistrarSoloLasAuthoritiesDelGrafo() {
+        // Arrange
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        // Act
+        authorityRegistry.alRecargarGrafo(new PermissionGraphReloaded(0L, 1L, Set.of("admin-group-id"), true));
+        List<GrantedAuthority> desconocido = authorityRegistry.deGrupos(grafo, List.of("unknown-group"));
+
+        // Assert
+        assertSame(GrantedAuthorities.of("USUARIOS_LEER"), GrantedAuthorities.of("USUARIOS_LEER"));
+        assertSame(GrantedAuthorities.of("ROLE_USER"), GrantedAuthorities.of("ROLE_USER"));
+        assertNotSame(GrantedAuthorities.of("GROUP_unknown-group"), desconocido.get(0));
+        assertEquals("GROUP_unknown-group", desconocido.get(0).getAuthority());
+        assertEquals(7, GrantedAuthorities.size());
+    }
+
+    @Test
+    void alRecargarGrafo_ConVersionDistinta_NoDeberiaPrecalcular() {
+        // Arrange
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+        authorityRegistry.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of(), true));
+
+        // Act
+        List<GrantedAuthority> primera = authorityRegistry.deGrupos(grafo, List.of("admin-group-id"));
+        List<GrantedAuthority> segunda = authorityRegistry.deGrupos(grafo, List.of("admin-group-id"));
+
+        // Assert
+        assertNotSame(primera, segunda);
+        assertEquals(primera, segunda);
+    }
+
+    @Test
+    void soloGrupos_DeberiaDevolverUnaAuthorityPorGrupo() {
+        // Act
+        List<GrantedAuthority> authorities = authorityRegistry.soloGrupos(List.of("a", "b"));
+
+        // Assert
+        assertEquals(2, authorities.size());
+        assertEquals("GROUP_a", authorities.get(0).getAuthority());
+    }
+}
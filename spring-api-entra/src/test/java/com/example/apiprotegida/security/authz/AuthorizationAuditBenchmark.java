@@ -0,0 +1,84 @@
+package com.example.apiprotegida.security.authz;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micro-benchmark del coste por decisión en los hilos de petición: auditoría
+ * desactivada, muestreada y completa, frente a volcar los claims con un PrintStream
+ * sincronizado como hacía extraerGruposAzureAD
+ *
+ * No es un test (no lo ejecuta surefire). Se lanza a mano desde el IDE o con
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.apiprotegida.security.authz.AuthorizationAuditBenchmark}
+ */
+public class AuthorizationAuditBenchmark {
+
+    private static final int HILOS = 4;
+    private static final int ITERACIONES = 1_000_000;
+
+    private static final List<String> GRUPOS = List.of("admin-group-id", "user-group-id");
+
+    public static void main(String[] args) throws Exception {
+        PrintStream salida = new PrintStream(OutputStream.nullOutputStream(), true);
+
+        medir("println (anterior)", () -> {
+            salida.println("🔍 Extrayendo grupos de Azure AD...");
+            salida.println("  groups: " + GRUPOS);
+            salida.println("✅ Grupos encontrados en claim 'groups': " + GRUPOS);
+        });
+        medir("auditoría desactivada", decision(auditoria(false, 1.0)));
+        medir("auditoría al 1%", decision(auditoria(true, 0.01)));
+        medir("auditoría al 100%", decision(auditoria(true, 1.0)));
+    }
+
+    private static AuthorizationAuditLog auditoria(boolean activa, double tasa) {
+        AuthorizationAuditLog auditoria = new AuthorizationAuditLog(activa, tasa, 1 << 16, 1) {
+            @Override
+            protected void escribir(Evento evento) {
+                // Solo se mide el coste en el hilo de la petición
+            }
+        };
+        auditoria.iniciar();
+        return auditoria;
+    }
+
+    private static Runnable decision(AuthorizationAuditLog auditoria) {
+        return () -> {
+            if (auditoria.activa()) {
+                auditoria.registrar("RESOLUCION_PRINCIPAL", "usuario@test.com", true, GRUPOS);
+            }
+        };
+    }
+
+    private static void medir(String nombre, Runnable operacion) throws InterruptedException {
+        for (int i = 0; i < ITERACIONES / 10; i++) {
+            operacion.run();
+        }
+        CountDownLatch inicio = new CountDownLatch(1);
+        CountDownLatch fin = new CountDownLatch(HILOS);
+        AtomicLong nanos = new AtomicLong();
+        for (int h = 0; h < HILOS; h++) {
+            Thread hilo = new Thread(() -> {
+                try {
+                    inicio.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long comienzo = System.nanoTime();
+                for (int i = 0; i < ITERACIONES; i++) {
+                    operacion.run();
+                }
+                nanos.addAndGet(System.nanoTime() - comienzo);
+                fin.countDown();
+            });
+            hilo.start();
+        }
+        inicio.countDown();
+        fin.await();
+        System.out.printf("%-24s %10.1f ns/op (%d hilos)%n", nombre, (double) nanos.get() / HILOS / ITERACIONES, HILOS);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.apiprotegida.security.authz;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para AuthorizationAuditLog
+ */
+class AuthorizationAuditLogTest {
+
+    @Test
+    void registrar_Desactivada_NoDeberiaEncolar() {
+        // Arrange
+        AuditoriaDePrueba auditoria = new AuditoriaDePrueba(false, 1.0, 16);
+
+        // Act
+        boolean encolado = auditoria.registrar("PRUEBA", "usuario", false, "detalle");
+
+        // Assert
+        assertFalse(auditoria.activa());
+        assertFalse(encolado);
+        assertEquals(0, auditoria.pendientes());
+    }
+
+    @Test
+    void vaciar_DeberiaEscribirLosEventosEnOrden() {
+        // Arrange
+        AuditoriaDePrueba auditoria = new AuditoriaDePrueba(true, 1.0, 16);
+        auditoria.registrar("PRUEBA", "uno", true, null);
+        auditoria.registrar("PRUEBA", "dos", false, null);
+
+        // Act
+        int escritos = auditoria.vaciar();
+
+        // Assert
+        assertEquals(2, escritos);
+        assertEquals(List.of("uno", "dos"), auditoria.sujetos());
+        assertEquals(0, auditoria.pendientes());
+    }
+
+    @Test
+    void registrar_ConBufferLleno_DeberiaDescartarSinBloquear() {
+        // Arrange
+        AuditoriaDePrueba auditoria = new AuditoriaDePrueba(true, 1.0, 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(auditoria.registrar("PRUEBA", "usuario-" + i, false, null));
+        }
+
+        // Act
+        boolean encolado = auditoria.registrar("PRUEBA", "sobrante", false, null);
+
+        // Assert
+        assertFalse(encolado);
+        assertEquals(1, auditoria.descartados());
+        auditoria.vaciar();
+        assertTrue(auditoria.registrar("PRUEBA", "tras-vaciar", false, null));
+    }
+
+    @Test
+    void registrar_ConMuestreoCero_DeberiaRegistrarSoloDenegaciones() {
+        // Arrange
+        AuditoriaDePrueba auditoria = new AuditoriaDePrueba(true, 0.0, 16);
+
+        // Act
+        boolean concedida = auditoria.registrar("PRUEBA", "concedida", true, null);
+        boolean denegada = auditoria.registrar("PRUEBA", "denegada", false, null);
+
+        // Assert
+        assertFalse(concedida);
+        assertTrue(denegada);
+    }
+
+    @Test
+    void registrar_DesdeVariosHilos_NoDeberiaPerderEventos() throws Exception {
+        // Arrange
+        AuditoriaDePrueba auditoria = new AuditoriaDePrueba(true, 1.0, 1 << 14);
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        CountDownLatch fin = new CountDownLatch(8);
+
+        // Act
+        for (int h = 0; h < 8; h++) {
+            hilos.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    auditoria.registrar("PRUEBA", "usuario", false, null);
+                }
+                fin.countDown();
+            });
+        }
+        int escritos = 0;
+        while (!fin.await(1, TimeUnit.MILLISECONDS)) {
+            escritos += auditoria.vaciar();
+        }
+        escritos += auditoria.vaciar();
+        hilos.shutdown();
+
+        // Assert
+        assertEquals(8000, escritos);
+        assertEquals(0, auditoria.descartados());
+    }
+
+    /**
+     * Auditoría que guarda los sujetos escritos en lugar de enviarlos al logger
+     */
+    static class AuditoriaDePrueba extends AuthorizationAuditLog {
+
+        private final List<String> sujetos = new ArrayList<>();
+
+        AuditoriaDePrueba(boolean habilitada, double tasaMuestreo, int capacidad) {
+            super(habilitada, tasaMuestreo, capacidad, 10);
+        }
+
+        @Override
+        protected void escribir(Evento evento) {
+            sujetos.add(evento.sujeto());
+        }
+
+        List<String> sujetos() {
+            return sujetos;
+        }
+    }
+}
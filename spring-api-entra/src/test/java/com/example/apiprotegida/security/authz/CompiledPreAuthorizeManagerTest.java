@@ -0,0 +1,133 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.security.RoleAnnotations;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para CompiledPreAuthorizeManager
+ */
+class CompiledPreAuthorizeManagerTest {
+
+    private final CompiledPreAuthorizeManager manager = new CompiledPreAuthorizeManager(null);
+    private final PreAuthorizeAuthorizationManager spel = new PreAuthorizeAuthorizationManager();
+    private final ControladorDePrueba controlador = new ControladorDePrueba();
+
+    @Test
+    void check_DeberiaDecidirIgualQueSpelParaTodasLasReglas() throws Exception {
+        // Arrange
+        List<Authentication> autenticaciones = List.of(
+                usuario("admin", "ROLE_ADMIN"),
+                usuario("jefe-manager", "ROLE_MANAGER"),
+                usuario("jefe", "ROLE_MANAGER"),
+                usuario("lector", "ROLE_READER", "USUARIOS_LEER"),
+                usuario("azure", "SCOPE_access_as_user", "ROLE_USER"),
+                usuario("sin-roles"),
+                new AnonymousAuthenticationToken("clave", "anonimo", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        for (Method metodo : ControladorDePrueba.class.getDeclaredMethods()) {
+            for (Authentication autenticacion : autenticaciones) {
+                SimpleMethodInvocation invocacion = new SimpleMethodInvocation(controlador, metodo);
+
+                // Act
+                AuthorizationDecision compilada = manager.check(() -> autenticacion, invocacion);
+                AuthorizationDecision esperada = spel.check(() -> autenticacion, invocacion);
+
+                // Assert
+                assertEquals(esperada == null, compilada == null, metodo.getName());
+                if (esperada != null) {
+                    assertEquals(esperada.isGranted(), compilada.isGranted(),
+                            metodo.getName() + " con " + autenticacion.getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    void check_ConMetaAnotacion_DeberiaUsarElPredicadoCompilado() throws Exception {
+        // Act
+        manager.precompilar(ControladorDePrueba.class);
+
+        // Assert
+        assertTrue(manager.esCompilada(ControladorDePrueba.class.getMethod("soloAdmin"), ControladorDePrueba.class));
+        assertTrue(manager.esCompilada(ControladorDePrueba.class.getMethod("scopeYRol"), ControladorDePrueba.class));
+    }
+
+    @Test
+    void check_ConExpresionNoCompilable_DeberiaDelegarEnSpel() throws Exception {
+        // Arrange
+        Method metodo = ControladorDePrueba.class.getMethod("managerPorNombre");
+
+        // Act
+        AuthorizationDecision decision = manager.check(() -> usuario("jefe-manager", "ROLE_MANAGER"),
+                new SimpleMethodInvocation(controlador, metodo));
+
+        // Assert
+        assertFalse(manager.esCompilada(metodo, ControladorDePrueba.class));
+        assertTrue(decision.isGranted());
+    }
+
+    @Test
+    void check_SinAnotacion_DeberiaAbstenerse() throws Exception {
+        // Act
+        AuthorizationDecision decision = manager.check(() -> usuario("admin", "ROLE_ADMIN"),
+                new SimpleMethodInvocation(controlador, ControladorDePrueba.class.getMethod("publico")));
+
+        // Assert
+        assertNull(decision);
+    }
+
+    private static Authentication usuario(String nombre, String... authorities) {
+        return new UsernamePasswordAuthenticationToken(nombre, null, AuthorityUtils.createAuthorityList(authorities));
+    }
+
+    static class ControladorDePrueba {
+
+        @RoleAnnotations.AdminOnly
+        public void soloAdmin() {
+        }
+
+        @RoleAnnotations.AdminOrManager
+        public void adminOManager() {
+        }
+
+        @RoleAnnotations.ValidScope
+        public void autenticado() {
+        }
+
+        @RoleAnnotations.ValidScopeAndRole
+        public void scopeYRol() {
+        }
+
+        @PreAuthorize("hasAnyAuthority('SCOPE_access_as_user', 'ADMIN', 'USUARIOS_LEER')")
+        public void lectura() {
+        }
+
+        @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER')")
+        public void perfiles() {
+        }
+
+        @PreAuthorize("!hasRole('READER') && isAuthenticated()")
+        public void noLector() {
+        }
+
+        @PreAuthorize("hasRole('ADMIN') or (hasRole('MANAGER') and authentication.name.contains('manager'))")
+        public void managerPorNombre() {
+        }
+
+        public void publico() {
+        }
+    }
+}
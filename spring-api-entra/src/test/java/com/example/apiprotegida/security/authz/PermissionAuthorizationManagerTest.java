@@ -0,0 +1,125 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.security.RequierePermiso;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para PermissionAuthorizationManager
+ */
+class PermissionAuthorizationManagerTest {
+
+    private final ControladorDePrueba controlador = new ControladorDePrueba();
+    private final AtomicInteger resoluciones = new AtomicInteger();
+
+    private PermissionSnapshot grafo;
+    private PermissionAuthorizationManager manager;
+
+    @BeforeEach
+    void setUp() {
+        Permiso leerUsuarios = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permiso para leer usuarios", "USUARIOS", "LEER");
+        leerUsuarios.setActivo(true);
+        Permiso crearUsuarios = new Permiso("USUARIOS_CREAR", "Crear Usuarios", "Permiso para crear usuarios", "USUARIOS", "CREAR");
+        crearUsuarios.setActivo(true);
+
+        Perfil perfilAdmin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        perfilAdmin.addPermiso(leerUsuarios);
+        perfilAdmin.addPermiso(crearUsuarios);
+        Perfil perfilUsuario = new Perfil("Usuario", "Perfil de usuario", "user-group-id", "User Group");
+        perfilUsuario.addPermiso(leerUsuarios);
+        grafo = PermissionSnapshot.compilar(1L, List.of(perfilAdmin, perfilUsuario));
+
+        manager = new PermissionAuthorizationManager(autenticacion -> {
+            resoluciones.incrementAndGet();
+            List<String> grupos = List.of(autenticacion.getName());
+            return new ResolvedPrincipal(autenticacion, grupos, grafo, grafo.indicesPerfiles(grupos));
+        });
+    }
+
+    @Test
+    void check_ConPermisoDelModuloYAccion_DeberiaConceder() throws Exception {
+        // Act
+        AuthorizationDecision decision = verificar("crear", usuario("admin-group-id"));
+
+        // Assert
+        assertTrue(decision.isGranted());
+    }
+
+    @Test
+    void check_SinPermisoDelModuloYAccion_DeberiaDenegar() throws Exception {
+        // Act
+        AuthorizationDecision decision = verificar("crear", usuario("user-group-id"));
+
+        // Assert
+        assertFalse(decision.isGranted());
+    }
+
+    @Test
+    void check_ConAuthorityAlternativa_DeberiaConcederSinResolverPrincipal() throws Exception {
+        // Act
+        AuthorizationDecision decision = verificar("leer", usuario("sin-grupo", "SCOPE_access_as_user"));
+
+        // Assert
+        assertTrue(decision.isGranted());
+        assertEquals(0, resoluciones.get());
+    }
+
+    @Test
+    void check_ConUsuarioAnonimo_DeberiaDenegar() throws Exception {
+        // Arrange
+        Authentication anonimo = new AnonymousAuthenticationToken("clave", "anonimo",
+                AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+
+        // Act
+        AuthorizationDecision decision = verificar("leer", anonimo);
+
+        // Assert
+        assertFalse(decision.isGranted());
+        assertEquals(0, resoluciones.get());
+    }
+
+    @Test
+    void check_SinAnotacion_DeberiaAbstenerse() throws Exception {
+        // Act
+        AuthorizationDecision decision = verificar("publico", usuario("admin-group-id"));
+
+        // Assert
+        assertNull(decision);
+    }
+
+    private AuthorizationDecision verificar(String metodo, Authentication autenticacion) throws Exception {
+        return manager.check(() -> autenticacion,
+                new SimpleMethodInvocation(controlador, ControladorDePrueba.class.getMethod(metodo)));
+    }
+
+    private static Authentication usuario(String grupo, String... authorities) {
+        return new UsernamePasswordAuthenticationToken(grupo, null, AuthorityUtils.createAuthorityList(authorities));
+    }
+
+    static class ControladorDePrueba {
+
+        @RequierePermiso(modulo = "USUARIOS", accion = "LEER", oAuthority = "SCOPE_access_as_user")
+        public void leer() {
+        }
+
+        @RequierePermiso(modulo = "USUARIOS", accion = "CREAR")
+        public void crear() {
+        }
+
+        public void publico() {
+        }
+    }
+}
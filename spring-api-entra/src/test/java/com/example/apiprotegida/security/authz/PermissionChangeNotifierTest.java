@@ -0,0 +1,162 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitarios para PermissionChangeNotifier
+ */
+@ExtendWith(MockitoExtension.class)
+class PermissionChangeNotifierTest {
+
+    @Mock
+    private PermissionGraph permissionGraph;
+
+    @InjectMocks
+    private NotificadorDePrueba notificador;
+
+    private PermissionSnapshot grafo;
+
+    @BeforeEach
+    void setUp() {
+        Perfil perfilAdmin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        Perfil perfilUsuario = new Perfil("Usuario", "Perfil de usuario", "user-group-id", "User Group");
+        grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+    }
+
+    @Test
+    void suscribir_DeberiaEnviarLaVersionActual() {
+        // Act
+        EmisorDePrueba emisor = (EmisorDePrueba) notificador.suscribir(principal("admin-group-id"));
+
+        // Assert
+        assertEquals(1, emisor.eventos.size());
+        assertTrue(emisor.eventos.get(0).contains("event:conectado"));
+        assertTrue(emisor.eventos.get(0).contains("id:1"));
+        assertEquals(1, notificador.suscripcionesActivas());
+    }
+
+    @Test
+    void alRecargarGrafo_DeberiaAvisarSoloALasSesionesAfectadas() {
+        // Arrange
+        EmisorDePrueba admin = (EmisorDePrueba) notificador.suscribir(principal("admin-group-id"));
+        EmisorDePrueba usuario = (EmisorDePrueba) notificador.suscribir(principal("user-group-id"));
+
+        // Act
+        notificador.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of("admin-group-id"), false));
+        int enviadosDuranteLaPublicacion = admin.eventos.size();
+        notificador.ejecutarPendientes();
+
+        // Assert
+        assertEquals(1, enviadosDuranteLaPublicacion);
+        assertEquals(2, admin.eventos.size());
+        assertTrue(admin.eventos.get(1).contains("event:permisos-cambiados"));
+        assertTrue(admin.eventos.get(1).contains("id:2"));
+        assertEquals(1, usuario.eventos.size());
+    }
+
+    @Test
+    void alRecargarGrafo_ConRecargaCompleta_DeberiaAvisarATodas() {
+        // Arrange
+        EmisorDePrueba admin = (EmisorDePrueba) notificador.suscribir(principal("admin-group-id"));
+        EmisorDePrueba usuario = (EmisorDePrueba) notificador.suscribir(principal("user-group-id"));
+
+        // Act
+        notificador.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of(), true));
+        notificador.ejecutarPendientes();
+
+        // Assert
+        assertEquals(2, admin.eventos.size());
+        assertEquals(2, usuario.eventos.size());
+    }
+
+    @Test
+    void alRecargarGrafo_ConConexionCerrada_DeberiaDescartarLaSuscripcion() {
+        // Arrange
+        EmisorDePrueba admin = (EmisorDePrueba) notificador.suscribir(principal("admin-group-id"));
+        admin.cerrado = true;
+
+        // Act
+        notificador.alRecargarGrafo(new PermissionGraphReloaded(1L, 2L, Set.of("admin-group-id"), false));
+        notificador.ejecutarPendientes();
+
+        // Assert
+        assertEquals(0, notificador.suscripcionesActivas());
+    }
+
+    @Test
+    void latido_ConConexionCerrada_DeberiaDescartarLaSuscripcion() {
+        // Arrange
+        EmisorDePrueba admin = (EmisorDePrueba) notificador.suscribir(principal("admin-group-id"));
+        EmisorDePrueba usuario = (EmisorDePrueba) notificador.suscribir(principal("user-group-id"));
+        admin.cerrado = true;
+
+        // Act
+        notificador.latido();
+
+        // Assert
+        assertEquals(1, notificador.suscripcionesActivas());
+        assertEquals(2, usuario.eventos.size());
+    }
+
+    private ResolvedPrincipal principal(String grupo) {
+        return new ResolvedPrincipal(null, List.of(grupo), grafo, grafo.indicesPerfiles(List.of(grupo)));
+    }
+
+    /**
+     * Notificador que entrega emisores que registran lo enviado en lugar de escribir en una
+     * respuesta y que guarda los envíos programados para ejecutarlos desde el test
+     */
+    static class NotificadorDePrueba extends PermissionChangeNotifier {
+
+        private final List<Runnable> pendientes = new ArrayList<>();
+
+        @Override
+        protected SseEmitter crearEmisor(long timeout) {
+            return new EmisorDePrueba();
+        }
+
+        @Override
+        protected void ejecutar(Runnable envio) {
+            pendientes.add(envio);
+        }
+
+        void ejecutarPendientes() {
+            pendientes.forEach(Runnable::run);
+            pendientes.clear();
+        }
+    }
+
+    static class EmisorDePrueba extends SseEmitter {
+
+        private final List<String> eventos = new ArrayList<>();
+        private boolean cerrado;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (cerrado) {
+                throw new IOException("Broken pipe");
+            }
+            eventos.add(builder.build().stream()
+                    .map(dato -> String.valueOf(dato.getData()))
+                    .collect(Collectors.joining()));
+        }
+    }
+}
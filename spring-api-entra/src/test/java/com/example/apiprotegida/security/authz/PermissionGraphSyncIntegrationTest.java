@@ -0,0 +1,199 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.model.PermisosVersion;
+import com.example.apiprotegida.repository.PerfilRepository;
+import com.example.apiprotegida.repository.PermisoRepository;
+import com.example.apiprotegida.repository.PermisosVersionRepository;
+import com.example.apiprotegida.service.PerfilService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test de integración: dos nodos (contextos de Spring) comparten una base H2 en
+ * archivo y una revocación de permisos hecha en uno llega al grafo del otro por
+ * sondeo de versión, anunciando solo los grupos afectados
+ */
+class PermissionGraphSyncIntegrationTest {
+
+    private static final String GRUPO = "lectores-group-id";
+    private static final String OTRO_GRUPO = "auditores-group-id";
+
+    @TempDir
+    Path directorio;
+
+    private ConfigurableApplicationContext nodoA;
+    private ConfigurableApplicationContext nodoB;
+    private Long perfilId;
+    private Long permisoId;
+
+    @BeforeEach
+    void setUp() {
+        String url = "jdbc:h2:file:" + directorio.resolve("permisos").toAbsolutePath() + ";DB_CLOSE_DELAY=-1";
+        nodoA = iniciarNodo(url);
+        nodoB = iniciarNodo(url);
+
+        Permiso permiso = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permiso para leer usuarios", "USUARIOS", "LEER");
+        permiso.setActivo(true);
+        permiso = nodoA.getBean(PermisoRepository.class).save(permiso);
+        Perfil perfil = new Perfil("Lector", "Perfil de lectura", GRUPO, "Lectores");
+        perfil.addPermiso(permiso);
+        perfil = nodoA.getBean(PerfilRepository.class).save(perfil);
+        // Otro perfil con el mismo permiso: la revocación en "Lector" no lo afecta
+        Perfil auditor = new Perfil("Auditor", "Perfil de auditoría", OTRO_GRUPO, "Auditores");
+        auditor.addPermiso(permiso);
+        nodoA.getBean(PerfilRepository.class).save(auditor);
+        nodoA.getBean(PermisosVersionRepository.class).save(new PermisosVersion(PermisosVersion.ID_UNICO, 0L));
+        perfilId = perfil.getId();
+        permisoId = permiso.getId();
+
+        nodoA.getBean(PermissionGraph.class).recargar();
+        nodoB.getBean(PermissionGraph.class).recargar();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodoB.close();
+        nodoA.close();
+    }
+
+    @Test
+    void sincronizarVersion_TrasRevocarEnOtroNodo_DeberiaRecargarElGrafo() {
+        // Arrange
+        PermissionGraph grafoA = nodoA.getBean(PermissionGraph.class);
+        PermissionGraph grafoB = nodoB.getBean(PermissionGraph.class);
+        assertTrue(tieneLectura(grafoB));
+
+        // Act
+        nodoA.getBean(PerfilService.class).removerPermiso(perfilId, permisoId);
+        boolean antesDelSondeo = tieneLectura(grafoB);
+        grafoB.sincronizarVersion();
+
+        // Assert
+        assertFalse(tieneLectura(grafoA));
+        assertTrue(antesDelSondeo);
+        assertFalse(tieneLectura(grafoB));
+        assertEquals(1L, nodoB.getBean(PermisosVersionRepository.class).versionActual());
+    }
+
+    @Test
+    void sincronizarVersion_TrasRevocarEnOtroNodo_DeberiaAnunciarSoloLosGruposAfectados() {
+        // Arrange
+        RecargasRecibidas recargasB = nodoB.getBean(RecargasRecibidas.class);
+        recargasB.limpiar();
+
+        // Act
+        nodoA.getBean(PerfilService.class).removerPermiso(perfilId, permisoId);
+        nodoB.getBean(PermissionGraph.class).sincronizarVersion();
+
+        // Assert
+        assertEquals(1, recargasB.recibidas().size());
+        PermissionGraphReloaded recarga = recargasB.recibidas().get(0);
+        assertFalse(recarga.completo());
+        assertEquals(Set.of(GRUPO), recarga.gruposAfectados());
+        assertEquals(nodoB.getBean(PermissionGraph.class).snapshot().getVersion(), recarga.version());
+    }
+
+    @Test
+    void sincronizarVersion_SinCambios_DeberiaMantenerElGrafo() {
+        // Arrange
+        PermissionGraph grafoB = nodoB.getBean(PermissionGraph.class);
+        PermissionSnapshot anterior = grafoB.snapshot();
+
+        // Act
+        grafoB.sincronizarVersion();
+
+        // Assert
+        assertSame(anterior, grafoB.snapshot());
+    }
+
+    @Test
+    void sincronizarVersion_TrasCambioPropio_NoDeberiaVolverARecargar() {
+        // Arrange
+        PermissionGraph grafoA = nodoA.getBean(PermissionGraph.class);
+        nodoA.getBean(PerfilService.class).removerPermiso(perfilId, permisoId);
+        PermissionSnapshot trasElCambio = grafoA.snapshot();
+
+        // Act
+        grafoA.sincronizarVersion();
+
+        // Assert
+        assertSame(trasElCambio, grafoA.snapshot());
+    }
+
+    private static boolean tieneLectura(PermissionGraph grafo) {
+        PermissionSnapshot foto = grafo.snapshot();
+        return !foto.permisosEfectivos(foto.indicesPerfiles(List.of(GRUPO))).isEmpty();
+    }
+
+    private static ConfigurableApplicationContext iniciarNodo(String url) {
+        return new SpringApplicationBuilder(NodoPermisos.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "spring.sql.init.mode=never",
+                        "permisos.sync.poll-interval-ms=3600000")
+                .run();
+    }
+
+    /**
+     * Contexto mínimo de un nodo: JPA sobre la base compartida, PermissionGraph y PerfilService
+     */
+    @Configuration
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class
+    })
+    @EntityScan(basePackageClasses = Perfil.class)
+    @EnableJpaRepositories(basePackageClasses = PerfilRepository.class)
+    @Import({PermissionGraph.class, PerfilService.class, RecargasRecibidas.class})
+    static class NodoPermisos {
+    }
+
+    /**
+     * Recargas del grafo anunciadas en un nodo
+     */
+    static class RecargasRecibidas {
+
+        private final List<PermissionGraphReloaded> recibidas = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void alRecargarGrafo(PermissionGraphReloaded evento) {
+            recibidas.add(evento);
+        }
+
+        List<PermissionGraphReloaded> recibidas() {
+            return recibidas;
+        }
+
+        void limpiar() {
+            recibidas.clear();
+        }
+    }
+}
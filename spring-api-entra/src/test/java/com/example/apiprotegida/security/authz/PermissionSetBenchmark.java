@@ -0,0 +1,105 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Micro-benchmark de las verificaciones de ResolvedPrincipal frente a un HashSet de
+ * códigos y una lista de Permiso recorrida con streams (como se hacía antes), con
+ * 10, 100 y 1000 permisos en el grafo. Las verificaciones por módulo y acción usan
+ * los mapas de bits de PermissionSet; las de código, el conjunto de códigos del principal
+ *
+ * No es un test (no lo ejecuta surefire). Se lanza a mano desde el IDE o con
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.apiprotegida.security.authz.PermissionSetBenchmark}
+ */
+public class PermissionSetBenchmark {
+
+    private static final int CALENTAMIENTO = 200_000;
+    private static final int ITERACIONES = 2_000_000;
+    private static final String[] ACCIONES = {"LEER", "CREAR", "ACTUALIZAR", "ELIMINAR", "EXPORTAR"};
+
+    public static void main(String[] args) {
+        System.out.printf("%-8s %-20s %14s %24s%n", "códigos", "verificación", "HashSet ns/op", "ResolvedPrincipal ns/op");
+        for (int cantidad : new int[]{10, 100, 1000}) {
+            comparar(cantidad);
+        }
+    }
+
+    private static void comparar(int cantidad) {
+        // El usuario tiene los permisos de índice par; se pregunta por uno que tiene,
+        // por uno que no tiene y por el último módulo
+        List<Permiso> todos = new ArrayList<>();
+        Perfil perfil = new Perfil("Perfil", "Perfil de prueba", "grupo", "Grupo");
+        for (int i = 0; i < cantidad; i++) {
+            Permiso permiso = new Permiso("MODULO" + (i / ACCIONES.length) + "_" + ACCIONES[i % ACCIONES.length],
+                    "Permiso " + i, null, "MODULO" + (i / ACCIONES.length), ACCIONES[i % ACCIONES.length]);
+            permiso.setId((long) i);
+            permiso.setActivo(true);
+            todos.add(permiso);
+            if (i % 2 == 0) {
+                perfil.addPermiso(permiso);
+            }
+        }
+        Perfil resto = new Perfil("Resto", "Resto de permisos", "otro-grupo", "Otro");
+        todos.forEach(resto::addPermiso);
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, List.of(perfil, resto));
+        ResolvedPrincipal principal = new ResolvedPrincipal(null, List.of("grupo"), grafo,
+                grafo.indicesPerfiles(List.of("grupo")));
+
+        List<Permiso> permisos = new ArrayList<>(perfil.getPermisos());
+        Set<String> codigos = new HashSet<>();
+        permisos.forEach(permiso -> codigos.add(permiso.getCodigo()));
+
+        String tiene = todos.get(cantidad - 2).getCodigo();
+        String noTiene = todos.get(cantidad - 1).getCodigo();
+        String[] alguno = {noTiene, "INEXISTENTE_LEER", tiene};
+        String[] todosDe = {tiene, todos.get(0).getCodigo()};
+        String modulo = todos.get(cantidad - 1).getModulo();
+        String accion = todos.get(cantidad - 2).getAccion();
+
+        fila(cantidad, "tienePermiso",
+                () -> codigos.contains(tiene) && !codigos.contains(noTiene),
+                () -> principal.tienePermiso(tiene) && !principal.tienePermiso(noTiene));
+        fila(cantidad, "tieneAlgunoDe",
+                () -> Arrays.stream(alguno).anyMatch(codigos::contains),
+                () -> principal.tieneAlgunoDe(alguno));
+        fila(cantidad, "tieneTodos",
+                () -> codigos.containsAll(Arrays.asList(todosDe)),
+                () -> principal.tieneTodos(todosDe));
+        fila(cantidad, "tieneModuloYAccion",
+                () -> permisos.stream().anyMatch(permiso ->
+                        modulo.equals(permiso.getModulo()) && accion.equals(permiso.getAccion())),
+                () -> principal.tieneModuloYAccion(modulo, accion));
+    }
+
+    private static void fila(int cantidad, String verificacion, BooleanSupplier antes, BooleanSupplier despues) {
+        if (antes.getAsBoolean() != despues.getAsBoolean()) {
+            throw new IllegalStateException(verificacion + " da resultados distintos con " + cantidad + " códigos");
+        }
+        System.out.printf("%-8d %-20s %14.1f %24.1f%n", cantidad, verificacion, medir(antes), medir(despues));
+    }
+
+    private static double medir(BooleanSupplier verificacion) {
+        int verdaderas = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            verdaderas += verificacion.getAsBoolean() ? 1 : 0;
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < ITERACIONES; i++) {
+            verdaderas += verificacion.getAsBoolean() ? 1 : 0;
+        }
+        long total = System.nanoTime() - inicio;
+        if (verdaderas < 0) {
+            System.out.println(verdaderas);
+        }
+        return (double) total / ITERACIONES;
+    }
+}
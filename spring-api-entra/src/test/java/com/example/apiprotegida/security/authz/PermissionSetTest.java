@@ -0,0 +1,74 @@
+package com.example.apiprotegida.security.authz;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para PermissionSet
+ */
+class PermissionSetTest {
+
+    @Test
+    void contiene_ConOrdinalesEnVariasPalabras_DeberiaResolverPertenencia() {
+        // Arrange
+        PermissionSet conjunto = PermissionSet.deOrdinales(1, 64, 130);
+
+        // Act & Assert
+        assertTrue(conjunto.contiene(1));
+        assertTrue(conjunto.contiene(64));
+        assertTrue(conjunto.contiene(130));
+        assertFalse(conjunto.contiene(2));
+        assertFalse(conjunto.contiene(500));
+        assertFalse(conjunto.contiene(-1));
+        assertEquals(3, conjunto.cantidad());
+    }
+
+    @Test
+    void union_DeberiaCombinarConjuntosDeDistintoTamano() {
+        // Arrange
+        PermissionSet a = PermissionSet.deOrdinales(1, 64);
+        PermissionSet b = PermissionSet.deOrdinales(2, 200);
+
+        // Act
+        PermissionSet union = PermissionSet.union(a, b);
+
+        // Assert
+        assertArrayEquals(new int[]{1, 2, 64, 200}, union.ordinales());
+        assertEquals(PermissionSet.VACIO, PermissionSet.union());
+    }
+
+    @Test
+    void contieneTodos_DeberiaCompararPalabraAPalabra() {
+        // Arrange
+        PermissionSet usuario = PermissionSet.deOrdinales(1, 64, 130);
+
+        // Act & Assert
+        assertTrue(usuario.contieneTodos(PermissionSet.deOrdinales(1, 130)));
+        assertTrue(usuario.contieneTodos(PermissionSet.VACIO));
+        assertFalse(usuario.contieneTodos(PermissionSet.deOrdinales(1, 2)));
+        assertFalse(usuario.contieneTodos(PermissionSet.deOrdinales(300)));
+    }
+
+    @Test
+    void intersecta_DeberiaDetectarPermisosComunes() {
+        // Arrange
+        PermissionSet usuario = PermissionSet.deOrdinales(1, 64, 130);
+
+        // Act & Assert
+        assertTrue(usuario.intersecta(PermissionSet.deOrdinales(5, 64)));
+        assertFalse(usuario.intersecta(PermissionSet.deOrdinales(5, 300)));
+    }
+
+    @Test
+    void equals_ConPalabrasFinalesVacias_DeberiaSerIgual() {
+        // Arrange
+        PermissionSet a = PermissionSet.deOrdinales(5, -1);
+        PermissionSet b = PermissionSet.union(PermissionSet.deOrdinales(5), PermissionSet.VACIO);
+
+        // Act & Assert
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertTrue(PermissionSet.VACIO.estaVacio());
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.model.Perfil;
+import com.example.apiprotegida.model.Permiso;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para PermissionSnapshot
+ */
+class PermissionSnapshotTest {
+
+    private Permiso leerUsuarios;
+    private Permiso crearUsuarios;
+    private Permiso leerReportes;
+    private Perfil perfilAdmin;
+    private Perfil perfilUsuario;
+
+    @BeforeEach
+    void setUp() {
+        leerUsuarios = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permiso para leer usuarios", "USUARIOS", "LEER");
+        leerUsuarios.setActivo(true);
+
+        crearUsuarios = new Permiso("USUARIOS_CREAR", "Crear Usuarios", "Permiso para crear usuarios", "USUARIOS", "CREAR");
+        crearUsuarios.setActivo(true);
+
+        leerReportes = new Permiso("REPORTES_LEER", "Leer Reportes", "Permiso para leer reportes", "REPORTES", "LEER");
+        leerReportes.setActivo(false);
+
+        perfilAdmin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        perfilAdmin.addPermiso(leerUsuarios);
+        perfilAdmin.addPermiso(crearUsuarios);
+        perfilAdmin.addPermiso(leerReportes);
+
+        perfilUsuario = new Perfil("Usuario", "Perfil de usuario", "user-group-id", "User Group");
+        perfilUsuario.addPermiso(leerUsuarios);
+    }
+
+    @Test
+    void compilar_DeberiaAsignarOrdinalesSoloAPermisosActivos() {
+        // Act
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(7L, Arrays.asList(perfilAdmin, perfilUsuario));
+
+        // Assert
+        assertEquals(7L, grafo.getVersion());
+        assertEquals(2, grafo.cantidadPermisos());
+        assertSame(leerUsuarios, grafo.getPermiso(grafo.ordinalPermiso("USUARIOS_LEER")));
+        assertSame(crearUsuarios, grafo.getPermiso(grafo.ordinalPermiso("USUARIOS_CREAR")));
+        assertEquals(-1, grafo.ordinalPermiso("REPORTES_LEER"));
+    }
+
+    @Test
+    void indicePerfilPorGrupo_DeberiaResolverGruposConocidos() {
+        // Arrange
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+
+        // Act & Assert
+        assertSame(perfilAdmin, grafo.getPerfil(grafo.indicePerfilPorGrupo("admin-group-id")));
+        assertSame(perfilUsuario, grafo.getPerfil(grafo.indicePerfilPorGrupo("user-group-id")));
+        assertEquals(-1, grafo.indicePerfilPorGrupo("unknown-group-id"));
+    }
+
+    @Test
+    void indicesPerfiles_ConGruposRepetidosYDesconocidos_DeberiaRetornarIndicesUnicos() {
+        // Arrange
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+
+        // Act
+        int[] indices = grafo.indicesPerfiles(Arrays.asList("user-group-id", "unknown-group-id", "user-group-id"));
+
+        // Assert
+        assertEquals(1, indices.length);
+        assertEquals(List.of(perfilUsuario), grafo.perfiles(indices));
+    }
+
+    @Test
+    void permisosEfectivos_ConVariosPerfiles_DeberiaRetornarUnionSinRepetidos() {
+        // Arrange
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+        int[] indices = grafo.indicesPerfiles(Arrays.asList("admin-group-id", "user-group-id"));
+
+        // Act
+        List<Permiso> permisos = grafo.permisosEfectivos(indices);
+
+        // Assert
+        assertEquals(2, permisos.size());
+        assertTrue(permisos.contains(leerUsuarios));
+        assertTrue(permisos.contains(crearUsuarios));
+        assertFalse(permisos.contains(leerReportes));
+    }
+
+    @Test
+    void compilar_SinPerfiles_DeberiaRetornarGrafoVacio() {
+        // Act
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, List.of());
+
+        // Assert
+        assertEquals(0, grafo.cantidadPermisos());
+        assertEquals(0, grafo.indicesPerfiles(List.of("admin-group-id")).length);
+        assertTrue(grafo.permisosEfectivos(new int[0]).isEmpty());
+    }
+
+    @Test
+    void permisosDelModuloYAccion_DeberiaAgruparPermisosActivos() {
+        // Arrange
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+        PermissionSet usuario = grafo.permisosDePerfil(grafo.indicePerfilPorGrupo("user-group-id"));
+
+        // Act & Assert
+        assertEquals(2, grafo.permisosDelModulo("USUARIOS").cantidad());
+        assertTrue(grafo.permisosDelModulo("REPORTES").estaVacio());
+        assertTrue(usuario.intersecta(grafo.permisosDelModulo("USUARIOS")));
+        assertFalse(usuario.intersecta(grafo.permisosDeLaAccion("CREAR")));
+        assertTrue(grafo.existenTodos("USUARIOS_LEER", "USUARIOS_CREAR"));
+        assertFalse(grafo.existenTodos("USUARIOS_LEER", "REPORTES_LEER"));
+    }
+
+    @Test
+    void permisosDelModuloYAccion_DeberiaUsarElIndicePrecalculado() {
+        // Arrange
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+        PermissionSet usuario = grafo.permisosDePerfil(grafo.indicePerfilPorGrupo("user-group-id"));
+
+        // Act & Assert
+        assertEquals(PermissionSet.deOrdinales(grafo.ordinalPermiso("USUARIOS_LEER")),
+                grafo.permisosDelModuloYAccion("USUARIOS", "LEER"));
+        assertTrue(usuario.intersecta(grafo.permisosDelModuloYAccion("USUARIOS", "LEER")));
+        assertFalse(usuario.intersecta(grafo.permisosDelModuloYAccion("USUARIOS", "CREAR")));
+        assertTrue(grafo.permisosDelModuloYAccion("REPORTES", "LEER").estaVacio());
+        assertTrue(grafo.permisosDelModuloYAccion(null, "LEER").estaVacio());
+    }
+
+    @Test
+    void gruposAfectados_DeberiaResolverGruposPorPerfilYPorPermiso() {
+        // Arrange
+        perfilAdmin.setId(1L);
+        perfilUsuario.setId(2L);
+        leerUsuarios.setId(10L);
+        crearUsuarios.setId(11L);
+        PermissionSnapshot grafo = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+
+        // Act & Assert
+        assertEquals(Set.of("admin-group-id"), grafo.gruposDelPerfil(1L));
+        assertEquals(Set.of("admin-group-id", "user-group-id"), grafo.gruposConPermiso(10L));
+        assertEquals(Set.of("admin-group-id"), grafo.gruposConPermiso(11L));
+        assertTrue(grafo.gruposDelPerfil(99L).isEmpty());
+    }
+
+    @Test
+    void gruposConCambiosDesde_DeberiaIncluirSoloLosGruposQueCambiaron() {
+        // Arrange
+        perfilAdmin.setId(1L);
+        perfilUsuario.setId(2L);
+        PermissionSnapshot anterior = PermissionSnapshot.compilar(1L, Arrays.asList(perfilAdmin, perfilUsuario));
+        // Nueva carga: entidades nuevas, el administrador pierde USUARIOS_CREAR y aparece un grupo
+        Perfil admin = new Perfil("Administrador", "Perfil de administrador", "admin-group-id", "Admin Group");
+        admin.setId(1L);
+        admin.addPermiso(leerUsuarios);
+        Perfil usuario = new Perfil("Usuario", "Perfil de usuario", "user-group-id", "User Group");
+        usuario.setId(2L);
+        usuario.addPermiso(leerUsuarios);
+        Perfil lector = new Perfil("Lector", "Perfil de lectura", "lectores-group-id", "Lectores");
+        lector.setId(3L);
+        PermissionSnapshot nuevo = PermissionSnapshot.compilar(2L, Arrays.asList(admin, usuario, lector));
+
+        // Act
+        Set<String> grupos = nuevo.gruposConCambiosDesde(anterior);
+
+        // Assert
+        assertEquals(Set.of("admin-group-id", "lectores-group-id"), grupos);
+        assertTrue(nuevo.gruposConCambiosDesde(nuevo).isEmpty());
+        assertEquals(Set.of("admin-group-id", "lectores-group-id"), anterior.gruposConCambiosDesde(nuevo));
+    }
+}
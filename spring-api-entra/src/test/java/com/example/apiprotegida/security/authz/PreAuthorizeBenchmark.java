@@ -0,0 +1,84 @@
+package com.example.apiprotegida.security.authz;
+
+import com.example.apiprotegida.security.RoleAnnotations;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.method.PreAuthorizeAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Micro-benchmark del coste de @PreAuthorize: PreAuthorizeAuthorizationManager (SpEL)
+ * frente a CompiledPreAuthorizeManager, por decisión y sin el resto del interceptor
+ *
+ * No es un test (no lo ejecuta surefire). Se lanza a mano desde el IDE o con
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.apiprotegida.security.authz.PreAuthorizeBenchmark}
+ */
+public class PreAuthorizeBenchmark {
+
+    private static final int CALENTAMIENTO = 200_000;
+    private static final int ITERACIONES = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Authentication autenticacion = new UsernamePasswordAuthenticationToken("jefe", null,
+                AuthorityUtils.createAuthorityList("SCOPE_access_as_user", "GROUP_manager-group-id",
+                        "ROLE_MANAGER", "USUARIOS_LEER", "PERFILES_LEER", "DASHBOARD_LEER"));
+        Supplier<Authentication> proveedor = () -> autenticacion;
+        Controlador controlador = new Controlador();
+
+        PreAuthorizeAuthorizationManager spel = new PreAuthorizeAuthorizationManager();
+        CompiledPreAuthorizeManager compilado = new CompiledPreAuthorizeManager(null);
+        compilado.precompilar(Controlador.class);
+
+        System.out.printf("%-22s %12s %12s%n", "método", "SpEL ns/op", "compilado ns/op");
+        for (Method metodo : Controlador.class.getDeclaredMethods()) {
+            MethodInvocation invocacion = new SimpleMethodInvocation(controlador, metodo);
+            double antes = medir(spel, proveedor, invocacion);
+            double despues = medir(compilado, proveedor, invocacion);
+            System.out.printf("%-22s %12.1f %12.1f%n", metodo.getName(), antes, despues);
+        }
+    }
+
+    private static double medir(AuthorizationManager<MethodInvocation> manager, Supplier<Authentication> proveedor,
+                                MethodInvocation invocacion) {
+        int concedidas = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            concedidas += manager.check(proveedor, invocacion).isGranted() ? 1 : 0;
+        }
+        long inicio = System.nanoTime();
+        for (int i = 0; i < ITERACIONES; i++) {
+            concedidas += manager.check(proveedor, invocacion).isGranted() ? 1 : 0;
+        }
+        long total = System.nanoTime() - inicio;
+        if (concedidas < 0) {
+            System.out.println(concedidas);
+        }
+        return (double) total / ITERACIONES;
+    }
+
+    static class Controlador {
+
+        @RoleAnnotations.AdminOrManager
+        public void adminOrManager() {
+        }
+
+        @RoleAnnotations.ValidScopeAndRole
+        public void validScopeAndRole() {
+        }
+
+        @PreAuthorize("hasAnyAuthority('SCOPE_access_as_user', 'ADMIN', 'PERFILES_LEER')")
+        public void hasAnyAuthority() {
+        }
+
+        @PreAuthorize("hasRole('ADMIN') or (hasRole('MANAGER') and authentication.name.contains('manager'))")
+        public void spelFallback() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.apiprotegida.security.authz;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para PreAuthorizeExpressionCompiler
+ */
+class PreAuthorizeExpressionCompilerTest {
+
+    @Test
+    void compilar_ConRolesCombinados_DeberiaRespetarPrecedencia() {
+        // Act
+        Predicate<Authentication> predicado = PreAuthorizeExpressionCompiler.compilar(
+                "hasRole('ADMIN') or hasRole('MANAGER') and hasAuthority('USUARIOS_LEER')");
+
+        // Assert
+        assertNotNull(predicado);
+        assertTrue(predicado.test(usuario("ROLE_ADMIN")));
+        assertFalse(predicado.test(usuario("ROLE_MANAGER")));
+        assertTrue(predicado.test(usuario("ROLE_MANAGER", "USUARIOS_LEER")));
+    }
+
+    @Test
+    void compilar_ConRolConPrefijo_NoDeberiaDuplicarlo() {
+        // Act
+        Predicate<Authentication> predicado = PreAuthorizeExpressionCompiler.compilar("hasAnyRole('ROLE_ADMIN', 'USER')");
+
+        // Assert
+        assertTrue(predicado.test(usuario("ROLE_ADMIN")));
+        assertTrue(predicado.test(usuario("ROLE_USER")));
+        assertFalse(predicado.test(usuario("ADMIN")));
+    }
+
+    @Test
+    void compilar_ConNegacionYParentesis_DeberiaEvaluarCorrectamente() {
+        // Act
+        Predicate<Authentication> predicado = PreAuthorizeExpressionCompiler.compilar(
+                "not (hasAuthority('A') || hasAuthority('B'))");
+
+        // Assert
+        assertFalse(predicado.test(usuario("B")));
+        assertTrue(predicado.test(usuario("C")));
+    }
+
+    @Test
+    void compilar_IsAuthenticatedConTokenNoAutenticado_DeberiaDenegar() {
+        // Arrange
+        Predicate<Authentication> predicado = PreAuthorizeExpressionCompiler.compilar("isAuthenticated()");
+        Authentication sinAutenticar = new UsernamePasswordAuthenticationToken("usuario", "clave");
+
+        // Assert
+        assertFalse(sinAutenticar.isAuthenticated());
+        assertFalse(predicado.test(sinAutenticar));
+        assertTrue(predicado.test(usuario("ROLE_USER")));
+    }
+
+    @Test
+    void compilar_ConExpresionNoReconocida_DeberiaDevolverNull() {
+        // Assert
+        assertNull(PreAuthorizeExpressionCompiler.compilar("hasRole('MANAGER') and authentication.name.contains('manager')"));
+        assertNull(PreAuthorizeExpressionCompiler.compilar("@perfilService.esDueno(#id)"));
+        assertNull(PreAuthorizeExpressionCompiler.compilar("hasRole()"));
+        assertNull(PreAuthorizeExpressionCompiler.compilar("hasRole('ADMIN'"));
+        assertNull(PreAuthorizeExpressionCompiler.compilar("permitAll()"));
+    }
+
+    private static Authentication usuario(String... authorities) {
+        return new UsernamePasswordAuthenticationToken("usuario", null, AuthorityUtils.createAuthorityList(authorities));
+    }
+}
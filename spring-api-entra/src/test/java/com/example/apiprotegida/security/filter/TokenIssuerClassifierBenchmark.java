@@ -0,0 +1,116 @@
+package com.example.apiprotegida.security.filter;
+
+import com.example.apiprotegida.security.filter.TokenIssuerClassifier.TokenType;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.ToIntFunction;
+
+/**
+ * Micro-benchmark de la clasificación de tokens por issuer: TokenIssuerClassifier
+ * frente a dividir el token con split, decodificar el payload a String y buscar el
+ * issuer con contains (como hacía antes DualAuthenticationFilter). Mide tiempo y
+ * memoria reservada por clasificación
+ *
+ * No es un test (no lo ejecuta surefire). Se lanza a mano desde el IDE o con
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.example.apiprotegida.security.filter.TokenIssuerClassifierBenchmark}
+ */
+public class TokenIssuerClassifierBenchmark {
+
+    private static final int CALENTAMIENTO = 200_000;
+    private static final int ITERACIONES = 2_000_000;
+    /** Se queda con la mejor ronda para filtrar pausas de GC y ruido de la máquina */
+    private static final int RONDAS = 5;
+
+    public static void main(String[] args) {
+        String local = token("{\"sub\":\"admin@local.com\",\"perfil\":\"Administrador\",\"iss\":\"API_TYC\","
+                + "\"authorities\":[\"ROLE_USER\",\"ROLE_ADMIN\",\"USUARIOS_LEER\",\"PERFILES_LEER\"],"
+                + "\"iat\":1760000000,\"exp\":1760003600}");
+        // Los tokens de Entra ID traen el "iss" detrás de "aud" y con muchos más claims
+        String azure = token("{\"aud\":\"api://11111111-2222-3333-4444-555555555555\","
+                + "\"iss\":\"https://login.microsoftonline.com/66666666-7777-8888-9999-000000000000/v2.0\","
+                + "\"iat\":1760000000,\"nbf\":1760000000,\"exp\":1760003600,\"aio\":\"AWQAm/8YAAAAabcdefghijklmnop\","
+                + "\"azp\":\"aaaaaaaa-bbbb-cccc-dddd-eeeeeeeeeeee\",\"azpacr\":\"0\","
+                + "\"groups\":[\"admin-group-id\",\"user-group-id\",\"lectores-group-id\"],"
+                + "\"name\":\"Usuario Azure\",\"oid\":\"ffffffff-0000-1111-2222-333333333333\","
+                + "\"preferred_username\":\"usuario@empresa.com\",\"rh\":\"0.AAAA\",\"scp\":\"access_as_user\","
+                + "\"sub\":\"abcdefghijklmnopqrstuvwxyz0123456789\",\"tid\":\"66666666-7777-8888-9999-000000000000\","
+                + "\"uti\":\"abcdefghijklmn\",\"ver\":\"2.0\"}");
+
+        System.out.printf("%-8s %14s %12s %30s %12s%n", "token", "split ns/op", "B/op",
+                "TokenIssuerClassifier ns/op", "B/op");
+        fila("local", local, TokenType.LOCAL);
+        fila("azure", azure, TokenType.AZURE_AD);
+    }
+
+    private static void fila(String nombre, String token, TokenType esperado) {
+        if (TokenIssuerClassifier.classify(token) != esperado || clasificarConSplit(token) != esperado) {
+            throw new IllegalStateException("Clasificación inesperada del token " + nombre);
+        }
+        ToIntFunction<String> antes = t -> clasificarConSplit(t).ordinal();
+        ToIntFunction<String> despues = t -> TokenIssuerClassifier.classify(t).ordinal();
+        System.out.printf("%-8s %14.1f %12.1f %30.1f %12.1f%n", nombre,
+                medir(antes, token), bytesPorOperacion(antes, token),
+                medir(despues, token), bytesPorOperacion(despues, token));
+    }
+
+    /**
+     * Clasificación anterior: split, payload decodificado a String y búsqueda de texto
+     */
+    private static TokenType clasificarConSplit(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length < 2) {
+            return TokenType.UNKNOWN;
+        }
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
+        if (payload.contains("\"iss\":\"API_TYC\"")) {
+            return TokenType.LOCAL;
+        }
+        if (payload.contains("login.microsoftonline.com")) {
+            return TokenType.AZURE_AD;
+        }
+        return TokenType.UNKNOWN;
+    }
+
+    private static double medir(ToIntFunction<String> clasificacion, String token) {
+        int suma = 0;
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            suma += clasificacion.applyAsInt(token);
+        }
+        long mejor = Long.MAX_VALUE;
+        for (int ronda = 0; ronda < RONDAS; ronda++) {
+            long inicio = System.nanoTime();
+            for (int i = 0; i < ITERACIONES; i++) {
+                suma += clasificacion.applyAsInt(token);
+            }
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+        if (suma < 0) {
+            System.out.println(suma);
+        }
+        return (double) mejor / ITERACIONES;
+    }
+
+    private static double bytesPorOperacion(ToIntFunction<String> clasificacion, String token) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int suma = 0;
+        long inicio = hilos.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERACIONES; i++) {
+            suma += clasificacion.applyAsInt(token);
+        }
+        long reservados = hilos.getCurrentThreadAllocatedBytes() - inicio;
+        if (suma < 0) {
+            System.out.println(suma);
+        }
+        return (double) reservados / ITERACIONES;
+    }
+
+    private static String token(String payload) {
+        Base64.Encoder codificador = Base64.getUrlEncoder().withoutPadding();
+        return codificador.encodeToString("{\"alg\":\"HS512\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + codificador.encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + ".firma";
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.apiprotegida.security.filter;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.example.apiprotegida.security.filter.TokenIssuerClassifier.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios y de fuzzing para TokenIssuerClassifier
+ */
+class TokenIssuerClassifierTest {
+
+    private static final String AZURE_ISSUER = "https://login.microsoftonline.com/f128ae87-3797-42d7-8490-82c6b570f832/v2.0";
+
+    @Test
+    void classify_ConTokenLocalFirmado_DeberiaRetornarLocal() {
+        // Arrange
+        String token = JWT.create()
+                .withIssuer("API_TYC")
+                .withSubject("test@example.com")
+                .withArrayClaim("authorities", new String[]{"ROLE_USER"})
+                .sign(Algorithm.HMAC512("testSecretKeyForJWTTokenGeneration1234567890"));
+
+        // Act & Assert
+        assertEquals(TokenType.LOCAL, TokenIssuerClassifier.classify(token));
+    }
+
+    @Test
+    void classify_ConIssuerDeAzure_DeberiaRetornarAzureAd() {
+        assertEquals(TokenType.AZURE_AD, TokenIssuerClassifier.classify(token("{\"iss\":\"" + AZURE_ISSUER + "\"}")));
+        assertEquals(TokenType.AZURE_AD, TokenIssuerClassifier.classify(token("{\"iss\":\"https://sts.windows.net/tenant/\"}")));
+    }
+
+    @Test
+    void classify_ConEspaciosYOrdenDistinto_DeberiaLeerIss() {
+        // Arrange
+        String payload = "{\n  \"sub\" : \"x\",\n  \"groups\" : [\"a\", {\"b\": 1}],\n  \"exp\" : 123 ,\n  \"iss\" :\t\"API_TYC\"\n}";
+
+        // Act & Assert
+        assertEquals(TokenType.LOCAL, TokenIssuerClassifier.classify(token(payload)));
+    }
+
+    @Test
+    void classify_ConIssEnClaimAnidado_DeberiaUsarSoloElIssRaiz() {
+        // Arrange
+        String payload = "{\"extra\":{\"iss\":\"API_TYC\"},\"note\":\"\\\"iss\\\":\\\"API_TYC\\\"\",\"iss\":\"" + AZURE_ISSUER + "\"}";
+
+        // Act & Assert
+        assertEquals(TokenType.AZURE_AD, TokenIssuerClassifier.classify(token(payload)));
+    }
+
+    @Test
+    void classify_ConTokensMalformados_DeberiaRetornarUnknown() {
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify(null));
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify("sin-puntos"));
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify("a.@@@@.c"));
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify(token("{\"iss\":\"API_TYC")));
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify(token("{\"sub\":\"x\"}")));
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify(token("[\"iss\",\"API_TYC\"]")));
+        assertEquals(TokenType.UNKNOWN, TokenIssuerClassifier.classify(token("{\"iss\":\"API_TYC_2\"}")));
+    }
+
+    @Test
+    void classify_ConPayloadGrande_DeberiaLeerElIssDelFinal() {
+        // Arrange
+        StringBuilder grupos = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            grupos.append(i == 0 ? "" : ",").append("\"group-").append(i).append('"');
+        }
+        String payload = "{\"groups\":[" + grupos + "],\"iss\":\"API_TYC\"}";
+
+        // Act & Assert
+        assertEquals(TokenType.LOCAL, TokenIssuerClassifier.classify(token(payload)));
+    }
+
+    @Test
+    void classify_FuzzingDeClaimsAleatorios_DeberiaCoincidirConElIssGenerado() {
+        Random random = new Random(20241017L);
+        String[] issuers = {"API_TYC", AZURE_ISSUER, "https://otro-issuer.example.com"};
+        TokenType[] esperados = {TokenType.LOCAL, TokenType.AZURE_AD, TokenType.UNKNOWN};
+
+        for (int iteracion = 0; iteracion < 5000; iteracion++) {
+            int elegido = random.nextInt(issuers.length);
+            List<String> claims = new ArrayList<>();
+            claims.add("\"iss\"" + espacios(random) + ":" + espacios(random) + "\"" + issuers[elegido] + "\"");
+            int extras = random.nextInt(6);
+            for (int i = 0; i < extras; i++) {
+                claims.add("\"c" + i + "\"" + espacios(random) + ":" + espacios(random) + valorAleatorio(random, 0));
+            }
+            Collections.shuffle(claims, random);
+            String payload = "{" + espacios(random) + String.join(espacios(random) + "," + espacios(random), claims) + espacios(random) + "}";
+
+            assertEquals(esperados[elegido], TokenIssuerClassifier.classify(token(payload)), payload);
+        }
+    }
+
+    @Test
+    void classify_FuzzingDeBytesAleatorios_NoDeberiaLanzarExcepciones() {
+        Random random = new Random(7L);
+        byte[] base = "{\"sub\":\"x\",\"groups\":[\"a\",\"b\"],\"iss\":\"API_TYC\"}".getBytes(StandardCharsets.UTF_8);
+
+        for (int iteracion = 0; iteracion < 5000; iteracion++) {
+            byte[] mutado = base.clone();
+            int mutaciones = 1 + random.nextInt(4);
+            for (int i = 0; i < mutaciones; i++) {
+                mutado[random.nextInt(mutado.length)] = (byte) random.nextInt(256);
+            }
+            int longitud = random.nextInt(mutado.length + 1);
+            String token = "h." + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(mutado, longitud)) + ".s";
+
+            assertDoesNotThrow(() -> TokenIssuerClassifier.classify(token));
+        }
+    }
+
+    private static String token(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".firma";
+    }
+
+    private static String espacios(Random random) {
+        String[] opciones = {"", "", " ", "\n", "\t ", "\r\n  "};
+        return opciones[random.nextInt(opciones.length)];
+    }
+
+    private static String valorAleatorio(Random random, int profundidad) {
+        switch (profundidad > 2 ? random.nextInt(4) : random.nextInt(6)) {
+            case 0:
+                return "\"iss\\\":\\\"API_TYC ñ " + random.nextInt(1000) + "\"";
+            case 1:
+                return Integer.toString(random.nextInt(100000) - 50000);
+            case 2:
+                return random.nextBoolean() ? "true" : "null";
+            case 3:
+                return "\"{[\\\\\"";
+            case 4:
+                return "{\"iss\":\"API_TYC\",\"n\":" + valorAleatorio(random, profundidad + 1) + "}";
+            default:
+                return "[" + valorAleatorio(random, profundidad + 1) + "," + valorAleatorio(random, profundidad + 1) + "]";
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.apiprotegida.security.jwks;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para CachedJwkSource usando un emisor sustituto sin red
+ */
+class CachedJwkSourceTest {
+
+    private static final String ISSUER = "https://login.microsoftonline.com/test-tenant/v2.0";
+
+    @TempDir
+    Path directorio;
+
+    private RSAKey claveActual;
+    private RSAKey claveRotada;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        claveActual = new RSAKeyGenerator(2048).keyID("kid-actual").generate();
+        claveRotada = new RSAKeyGenerator(2048).keyID("kid-rotada").generate();
+    }
+
+    @Test
+    void decode_ConJwksOffline_DeberiaValidarTokenSinRed() throws Exception {
+        // Arrange
+        Path offline = escribirJwks("offline.json", new JWKSet(claveActual));
+        CachedJwkSource fuente = new CachedJwkSource();
+        ReflectionTestUtils.setField(fuente, "offlineFile", offline.toString());
+        fuente.inicializar();
+
+        // Act
+        Jwt jwt = decoder(fuente).decode(firmar(claveActual));
+
+        // Assert
+        assertEquals("usuario@example.com", jwt.getSubject());
+    }
+
+    @Test
+    void inicializar_ConCopiaEnDisco_NoDeberiaEsperarLaDescargaYDeberiaVerificarlaEnSegundoPlano() throws Exception {
+        // Arrange
+        Path copia = escribirJwks("cache.json", new JWKSet(claveActual));
+        FuenteContada fuente = new FuenteContada(new JWKSet(claveRotada.toPublicJWK()));
+        ReflectionTestUtils.setField(fuente, "cacheFile", copia.toString());
+
+        // Act
+        fuente.inicializar();
+        Jwt jwt = decoder(fuente).decode(firmar(claveActual));
+
+        // Assert
+        assertEquals(0, fuente.descargas.get());
+        assertEquals("usuario@example.com", jwt.getSubject());
+        assertEquals(1, fuente.pendientes.size());
+
+        fuente.pendientes.remove(0).run();
+        assertEquals(1, fuente.descargas.get());
+        assertNull(fuente.getClaves().getKeyByKeyId("kid-actual"));
+        assertNotNull(fuente.getClaves().getKeyByKeyId("kid-rotada"));
+    }
+
+    @Test
+    void inicializar_SinCopiaEnDisco_DeberiaDescargarAlArrancar() {
+        // Arrange
+        FuenteContada fuente = new FuenteContada(new JWKSet(claveActual.toPublicJWK()));
+
+        // Act
+        fuente.inicializar();
+
+        // Assert
+        assertEquals(1, fuente.descargas.get());
+        assertTrue(fuente.pendientes.isEmpty());
+        assertNotNull(fuente.getClaves().getKeyByKeyId("kid-actual"));
+    }
+
+    @Test
+    void get_ConKidDesconocido_DeberiaRefrescarUnaSolaVezYGuardarCopia() throws Exception {
+        // Arrange
+        Path copia = escribirJwks("cache.json", new JWKSet(claveActual));
+        FuenteContada fuente = new FuenteContada(new JWKSet(claveRotada.toPublicJWK()));
+        ReflectionTestUtils.setField(fuente, "cacheFile", copia.toString());
+        fuente.inicializar();
+        NimbusJwtDecoder decoder = decoder(fuente);
+
+        // Act
+        Jwt jwt = decoder.decode(firmar(claveRotada));
+        decoder.decode(firmar(claveRotada));
+
+        // Assert
+        assertEquals("usuario@example.com", jwt.getSubject());
+        assertEquals(1, fuente.descargas.get());
+        assertNotNull(JWKSet.load(copia.toFile()).getKeyByKeyId("kid-rotada"));
+        assertFalse(JWKSet.load(copia.toFile()).getKeyByKeyId("kid-rotada").isPrivate());
+    }
+
+    @Test
+    void get_ConKidDesconocidoDentroDelIntervaloMinimo_NoDeberiaVolverADescargar() throws Exception {
+        // Arrange
+        Path copia = escribirJwks("cache.json", new JWKSet(claveActual));
+        FuenteContada fuente = new FuenteContada(new JWKSet(claveActual.toPublicJWK()));
+        ReflectionTestUtils.setField(fuente, "cacheFile", copia.toString());
+        fuente.inicializar();
+        NimbusJwtDecoder decoder = decoder(fuente);
+
+        // Act
+        assertThrows(JwtException.class, () -> decoder.decode(firmar(claveRotada)));
+        assertThrows(JwtException.class, () -> decoder.decode(firmar(claveRotada)));
+
+        // Assert
+        assertEquals(1, fuente.descargas.get());
+    }
+
+    @Test
+    void refrescar_SiFallaLaDescarga_DeberiaConservarLasClavesActuales() throws Exception {
+        // Arrange
+        Path copia = escribirJwks("cache.json", new JWKSet(claveActual));
+        CachedJwkSource fuente = new CachedJwkSource() {
+            @Override
+            protected JWKSet cargar() throws java.io.IOException {
+                throw new java.io.IOException("sin red");
+            }
+        };
+        ReflectionTestUtils.setField(fuente, "cacheFile", copia.toString());
+        ReflectionTestUtils.setField(fuente, "segundoPlano", (Executor) tarea -> { });
+        fuente.inicializar();
+
+        // Act
+        JWKSet vigente = fuente.refrescar();
+
+        // Assert
+        assertNotNull(vigente.getKeyByKeyId("kid-actual"));
+    }
+
+    private Path escribirJwks(String nombre, JWKSet jwkSet) throws Exception {
+        Path archivo = directorio.resolve(nombre);
+        Files.writeString(archivo, jwkSet.toString(true));
+        return archivo;
+    }
+
+    private static NimbusJwtDecoder decoder(CachedJwkSource fuente) {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, fuente));
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        return decoder;
+    }
+
+    private static String firmar(RSAKey clave) throws Exception {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("usuario@example.com")
+                .issueTime(new Date())
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(clave.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims);
+        jwt.sign(new RSASSASigner(clave));
+        return jwt.serialize();
+    }
+
+    /**
+     * Fuente que simula el endpoint remoto y cuenta las descargas; el refresco en
+     * segundo plano queda pendiente hasta que el test lo ejecuta
+     */
+    private static class FuenteContada extends CachedJwkSource {
+
+        private final AtomicInteger descargas = new AtomicInteger();
+        private final List<Runnable> pendientes = new ArrayList<>();
+        private final JWKSet remoto;
+
+        FuenteContada(JWKSet remoto) {
+            this.remoto = remoto;
+            ReflectionTestUtils.setField(this, "segundoPlano", (Executor) pendientes::add);
+        }
+
+        @Override
+        protected JWKSet cargar() {
+            descargas.incrementAndGet();
+            return remoto;
+        }
+    }
+}
@@ -2,15 +2,27 @@ package com.example.apiprotegida.service;
 
 import com.example.apiprotegida.model.Perfil;
 import com.example.apiprotegida.model.Permiso;
+import com.example.apiprotegida.repository.UsuarioRepository;
+import com.example.apiprotegida.security.LocalJwtAuthenticationToken;
+import com.example.apiprotegida.security.authz.AuthorizationAuditLog;
+import com.example.apiprotegida.security.authz.PermissionGraph;
+import com.example.apiprotegida.security.authz.PermissionSnapshot;
+import com.example.apiprotegida.security.authz.ResolvedPrincipal;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.util.*;
 import java.util.Collection;
@@ -27,10 +39,13 @@ import static org.mockito.Mockito.*;
 class AuthorizationServiceTest {
 
     @Mock
-    private PerfilService perfilService;
+    private PermissionGraph permissionGraph;
 
     @Mock
-    private PermisoService permisoService;
+    private AuthorizationAuditLog auditoria;
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
 
     @InjectMocks
     private AuthorizationService authorizationService;
@@ -38,6 +53,7 @@ class AuthorizationServiceTest {
     private Authentication mockAuthentication;
     private Jwt mockJwt;
     private List<Perfil> mockPerfiles;
+    private PermissionSnapshot grafo;
 
     @BeforeEach
     void setUp() {
@@ -49,6 +65,11 @@ class AuthorizationServiceTest {
         setupTestData();
     }
 
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
     private void setupTestData() {
         // Crear permisos de prueba
         Permiso permiso1 = new Permiso("USUARIOS_LEER", "Leer Usuarios", "Permiso para leer usuarios", "USUARIOS", "LEER");
@@ -79,6 +100,7 @@ class AuthorizationServiceTest {
         perfilDefault.addPermiso(permiso1);
 
         mockPerfiles = Arrays.asList(perfilAdmin, perfilUsuario, perfilDefault);
+        grafo = PermissionSnapshot.compilar(1L, mockPerfiles);
     }
 
     @Test
@@ -86,8 +108,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Permiso> resultado = authorizationService.obtenerPermisosUsuario(mockAuthentication);
@@ -97,7 +118,7 @@ class AuthorizationServiceTest {
         assertEquals(2, resultado.size());
         assertTrue(resultado.stream().anyMatch(p -> "USUARIOS_LEER".equals(p.getCodigo())));
         assertTrue(resultado.stream().anyMatch(p -> "USUARIOS_CREAR".equals(p.getCodigo())));
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -105,8 +126,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Collections.emptyList());
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(2)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Permiso> resultado = authorizationService.obtenerPermisosUsuario(mockAuthentication);
@@ -115,7 +135,7 @@ class AuthorizationServiceTest {
         assertNotNull(resultado);
         assertEquals(1, resultado.size());
         assertEquals("USUARIOS_LEER", resultado.get(0).getCodigo());
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -123,10 +143,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("unknown-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("unknown-group-id")))
-                .thenReturn(Collections.emptyList());
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(2)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Permiso> resultado = authorizationService.obtenerPermisosUsuario(mockAuthentication);
@@ -135,8 +152,7 @@ class AuthorizationServiceTest {
         assertNotNull(resultado);
         assertEquals(1, resultado.size());
         assertEquals("USUARIOS_LEER", resultado.get(0).getCodigo());
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("unknown-group-id"));
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -144,8 +160,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Permiso> resultado = authorizationService.obtenerPermisosUsuario(mockAuthentication);
@@ -153,7 +168,7 @@ class AuthorizationServiceTest {
         // Assert
         assertNotNull(resultado);
         assertTrue(resultado.stream().allMatch(Permiso::getActivo));
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -161,8 +176,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Set<String> resultado = authorizationService.obtenerCodigosPermisosUsuario(mockAuthentication);
@@ -179,8 +193,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Perfil> resultado = authorizationService.obtenerPerfilesUsuario(mockAuthentication);
@@ -196,8 +209,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermiso(mockAuthentication, "USUARIOS_LEER");
@@ -211,8 +223,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermiso(mockAuthentication, "PERMISO_INEXISTENTE");
@@ -226,8 +237,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tieneAlgunoDeEstosPermisos(mockAuthentication, 
@@ -242,8 +252,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tieneAlgunoDeEstosPermisos(mockAuthentication, 
@@ -258,8 +267,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tieneTodosLosPermisos(mockAuthentication, 
@@ -274,8 +282,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tieneTodosLosPermisos(mockAuthentication, 
@@ -290,8 +297,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermisoEnModulo(mockAuthentication, "USUARIOS");
@@ -305,8 +311,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermisoEnModulo(mockAuthentication, "MODULO_INEXISTENTE");
@@ -320,8 +325,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermisoParaAccion(mockAuthentication, "LEER");
@@ -335,8 +339,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermisoParaAccion(mockAuthentication, "ACCION_INEXISTENTE");
@@ -350,8 +353,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermisoEnModuloYAccion(mockAuthentication, "USUARIOS", "LEER");
@@ -365,8 +367,7 @@ class AuthorizationServiceTest {
         // Arrange
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         boolean resultado = authorizationService.tienePermisoEnModuloYAccion(mockAuthentication, "USUARIOS", "ACCION_INEXISTENTE");
@@ -382,8 +383,7 @@ class AuthorizationServiceTest {
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
         when(mockJwt.getClaimAsString("email")).thenReturn("admin@test.com");
         when(mockJwt.getClaimAsString("name")).thenReturn("Admin User");
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Map<String, Object> resultado = authorizationService.obtenerInformacionCompleteUsuario(mockAuthentication);
@@ -423,7 +423,7 @@ class AuthorizationServiceTest {
         authorizationService.obtenerPermisosUsuario(mockAuthentication);
 
         // Assert
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("group1", "group2"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -432,15 +432,14 @@ class AuthorizationServiceTest {
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(null);
         when(mockAuthentication.getAuthorities()).thenReturn(Collections.emptyList());
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(2)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Permiso> resultado = authorizationService.obtenerPermisosUsuario(mockAuthentication);
 
         // Assert
         assertNotNull(resultado);
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -449,15 +448,14 @@ class AuthorizationServiceTest {
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(null);
         when(mockAuthentication.getAuthorities()).thenReturn(Collections.emptyList());
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(2)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         List<Permiso> resultado = authorizationService.obtenerPermisosUsuario(mockAuthentication);
 
         // Assert
         assertNotNull(resultado);
-        verify(perfilService).obtenerPerfilesPorAzureGroupIds(Arrays.asList("default-user"));
+        verify(permissionGraph).snapshot();
     }
 
     @Test
@@ -466,8 +464,7 @@ class AuthorizationServiceTest {
         when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
         when(mockJwt.getClaimAsString("email")).thenReturn("test@example.com");
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Map<String, Object> resultado = authorizationService.obtenerInformacionCompleteUsuario(mockAuthentication);
@@ -483,8 +480,7 @@ class AuthorizationServiceTest {
         when(mockJwt.getClaimAsString("email")).thenReturn(null);
         when(mockJwt.getClaimAsString("preferred_username")).thenReturn("test@example.com");
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Map<String, Object> resultado = authorizationService.obtenerInformacionCompleteUsuario(mockAuthentication);
@@ -500,8 +496,7 @@ class AuthorizationServiceTest {
         when(mockJwt.getClaimAsString("email")).thenReturn("test@example.com");
         when(mockJwt.getClaimAsString("name")).thenReturn("John Doe");
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Map<String, Object> resultado = authorizationService.obtenerInformacionCompleteUsuario(mockAuthentication);
@@ -518,8 +513,7 @@ class AuthorizationServiceTest {
         when(mockJwt.getClaimAsString("name")).thenReturn(null);
         when(mockJwt.getClaimAsString("given_name")).thenReturn("John");
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Map<String, Object> resultado = authorizationService.obtenerInformacionCompleteUsuario(mockAuthentication);
@@ -537,8 +531,7 @@ class AuthorizationServiceTest {
         when(mockJwt.getClaimAsString("given_name")).thenReturn(null);
         when(mockJwt.getClaimAsString("family_name")).thenReturn(null);
         when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
-        when(perfilService.obtenerPerfilesPorAzureGroupIds(Arrays.asList("admin-group-id")))
-                .thenReturn(Arrays.asList(mockPerfiles.get(0)));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
 
         // Act
         Map<String, Object> resultado = authorizationService.obtenerInformacionCompleteUsuario(mockAuthentication);
@@ -546,4 +539,147 @@ class AuthorizationServiceTest {
         // Assert
         assertEquals("Usuario", resultado.get("nombre"));
     }
+
+    @Test
+    void resolverPrincipal_DentroDeUnaPeticion_DeberiaResolverUnaSolaVez() {
+        // Arrange
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
+        when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        // Act
+        boolean tieneLeer = authorizationService.tienePermiso(mockAuthentication, "USUARIOS_LEER");
+        boolean tieneModulo = authorizationService.tienePermisoEnModulo(mockAuthentication, "USUARIOS");
+        boolean tieneAccion = authorizationService.tienePermisoParaAccion(mockAuthentication, "CREAR");
+        boolean tieneModuloAccion = authorizationService.tienePermisoEnModuloYAccion(mockAuthentication, "REPORTES", "LEER");
+        List<Perfil> perfiles = authorizationService.obtenerPerfilesUsuario(mockAuthentication);
+
+        // Assert
+        assertTrue(tieneLeer);
+        assertTrue(tieneModulo);
+        assertTrue(tieneAccion);
+        assertFalse(tieneModuloAccion);
+        assertEquals(1, perfiles.size());
+        verify(permissionGraph, times(1)).snapshot();
+    }
+
+    @Test
+    void resolverPrincipal_SinPeticionActiva_DeberiaResolverEnCadaLlamada() {
+        // Arrange
+        when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
+        when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        // Act
+        authorizationService.tienePermiso(mockAuthentication, "USUARIOS_LEER");
+        authorizationService.tienePermiso(mockAuthentication, "USUARIOS_CREAR");
+
+        // Assert
+        verify(permissionGraph, times(2)).snapshot();
+    }
+
+    @Test
+    void calcularEtagInformacionUsuario_SinCambios_DeberiaSerEstable() {
+        // Arrange
+        when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
+        when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
+        when(mockJwt.getClaimAsString("email")).thenReturn("admin@example.com");
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        // Act
+        String primero = authorizationService.calcularEtagInformacionUsuario(mockAuthentication);
+        String segundo = authorizationService.calcularEtagInformacionUsuario(mockAuthentication);
+
+        // Assert
+        assertEquals(primero, segundo);
+        assertTrue(primero.matches("\"[0-9a-f]{32}\""));
+        assertNotEquals(primero, authorizationService.calcularEtagCodigosPermisos(mockAuthentication));
+    }
+
+    @Test
+    void calcularEtagCodigosPermisos_ConOtrosPermisos_DeberiaCambiar() {
+        // Arrange
+        when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
+        when(mockJwt.getClaimAsStringList("groups"))
+            .thenReturn(Arrays.asList("admin-group-id"), Arrays.asList("user-group-id"));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        // Act
+        String admin = authorizationService.calcularEtagCodigosPermisos(mockAuthentication);
+        String usuario = authorizationService.calcularEtagCodigosPermisos(mockAuthentication);
+
+        // Assert
+        assertNotEquals(admin, usuario);
+    }
+
+    @Test
+    void calcularEtagCodigosPermisos_ConNuevaVersionDelGrafo_DeberiaCambiar() {
+        // Arrange
+        when(mockAuthentication.getPrincipal()).thenReturn(mockJwt);
+        when(mockJwt.getClaimAsStringList("groups")).thenReturn(Arrays.asList("admin-group-id"));
+        when(permissionGraph.snapshot()).thenReturn(grafo, PermissionSnapshot.compilar(2L, mockPerfiles));
+
+        // Act
+        String antes = authorizationService.calcularEtagCodigosPermisos(mockAuthentication);
+        String despues = authorizationService.calcularEtagCodigosPermisos(mockAuthentication);
+
+        // Assert
+        assertNotEquals(antes, despues);
+    }
+
+    @Test
+    void calcularEtagInformacionUsuario_UsuarioLocalConTokenCompacto_NoDeberiaConsultarLaBaseDeDatos() {
+        // Arrange
+        Authentication local = new LocalJwtAuthenticationToken("admin@local.com",
+            AuthorityUtils.createAuthorityList("ROLE_USER"), List.of(1L));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+
+        // Act: primera petición (200) y revalidación con If-None-Match (304)
+        String primero = authorizationService.calcularEtagInformacionUsuario(local);
+        String revalidacion = authorizationService.calcularEtagInformacionUsuario(local);
+        List<Perfil> perfiles = authorizationService.obtenerPerfilesUsuario(local);
+
+        // Assert
+        assertEquals(primero, revalidacion);
+        assertEquals(List.of("Administrador"), perfiles.stream().map(Perfil::getNombre).toList());
+        verifyNoInteractions(usuarioRepository);
+    }
+
+    @Test
+    void calcularEtagInformacionUsuario_UsuarioLocalConTokenCompleto_DeberiaLeerSusPerfilesUnaSolaVez() {
+        // Arrange
+        Authentication local = new UsernamePasswordAuthenticationToken("usuario@local.com", null,
+            AuthorityUtils.createAuthorityList("ROLE_USER"));
+        when(usuarioRepository.findPerfilIdsByEmail("usuario@local.com")).thenReturn(List.of(2L));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+        String primero = authorizationService.calcularEtagInformacionUsuario(local);
+        clearInvocations(usuarioRepository);
+
+        // Act: revalidación con If-None-Match (304)
+        String revalidacion = authorizationService.calcularEtagInformacionUsuario(local);
+
+        // Assert
+        assertEquals(primero, revalidacion);
+        verifyNoInteractions(usuarioRepository);
+    }
+
+    @Test
+    void olvidarPerfilesUsuario_AlCambiarSuAsignacion_DeberiaVolverALeerLosPerfiles() {
+        // Arrange
+        Authentication local = new UsernamePasswordAuthenticationToken("usuario@local.com", null,
+            AuthorityUtils.createAuthorityList("ROLE_USER"));
+        when(usuarioRepository.findPerfilIdsByEmail("usuario@local.com")).thenReturn(List.of(2L), List.of(1L));
+        when(permissionGraph.snapshot()).thenReturn(grafo);
+        List<Perfil> antes = authorizationService.obtenerPerfilesUsuario(local);
+
+        // Act
+        authorizationService.olvidarPerfilesUsuario("usuario@local.com");
+        List<Perfil> despues = authorizationService.obtenerPerfilesUsuario(local);
+
+        // Assert
+        assertEquals("Usuario", antes.get(0).getNombre());
+        assertEquals("Administrador", despues.get(0).getNombre());
+        verify(usuarioRepository, times(2)).findPerfilIdsByEmail("usuario@local.com");
+    }
 }
@@ -0,0 +1,168 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.model.ConfiguracionSistema;
+import com.example.apiprotegida.repository.ConfiguracionSistemaRepository;
+import com.example.apiprotegida.repository.ConfiguracionVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitarios para ConfiguracionService
+ */
+@ExtendWith(MockitoExtension.class)
+class ConfiguracionServiceTest {
+
+    @Mock
+    private ConfiguracionSistemaRepository configuracionRepository;
+
+    @Mock
+    private ConfiguracionVersionRepository versionRepository;
+
+    @InjectMocks
+    private ConfiguracionService configuracionService;
+
+    private ConfiguracionSistema azure;
+    private ConfiguracionSistema jwtLocal;
+
+    @BeforeEach
+    void setUp() {
+        azure = configuracion(ConfiguracionService.AUTH_AZURE_AD_ENABLED, "false", true);
+        jwtLocal = configuracion(ConfiguracionService.AUTH_JWT_LOCAL_ENABLED, "true", true);
+    }
+
+    @Test
+    void esAzureAdHabilitado_DeberiaLeerLaFotoSinConsultarDeNuevo() {
+        // Arrange
+        when(configuracionRepository.findByActivoTrue()).thenReturn(Arrays.asList(azure, jwtLocal));
+        configuracionService.inicializar();
+
+        // Act
+        boolean azureHabilitado = configuracionService.esAzureAdHabilitado();
+        boolean jwtHabilitado = configuracionService.esJwtLocalHabilitado();
+        configuracionService.esAzureAdHabilitado();
+
+        // Assert
+        assertFalse(azureHabilitado);
+        assertTrue(jwtHabilitado);
+        verify(configuracionRepository, times(1)).findByActivoTrue();
+    }
+
+    @Test
+    void esJwtLocalHabilitado_SinConfiguracion_DeberiaRetornarValorPorDefecto() {
+        // Arrange
+        when(configuracionRepository.findByActivoTrue()).thenReturn(List.of());
+
+        // Act & Assert
+        assertTrue(configuracionService.esJwtLocalHabilitado());
+        assertTrue(configuracionService.esAzureAdHabilitado());
+    }
+
+    @Test
+    void obtenerValor_ConConfiguracionInactiva_DeberiaRetornarValorPorDefecto() {
+        // Arrange
+        ConfiguracionSistema inactiva = configuracion(ConfiguracionService.AUTH_SESSION_TIMEOUT, "30", false);
+        when(configuracionRepository.findByActivoTrue()).thenReturn(List.of(inactiva));
+
+        // Act
+        String valor = configuracionService.obtenerValor(ConfiguracionService.AUTH_SESSION_TIMEOUT, "60");
+
+        // Assert
+        assertEquals("60", valor);
+    }
+
+    @Test
+    void actualizarValor_DeberiaReemplazarLaFoto() {
+        // Arrange
+        when(configuracionRepository.findByActivoTrue()).thenReturn(Arrays.asList(azure, jwtLocal));
+        configuracionService.inicializar();
+        when(configuracionRepository.findByClave(ConfiguracionService.AUTH_AZURE_AD_ENABLED)).thenReturn(Optional.of(azure));
+        when(configuracionRepository.save(any(ConfiguracionSistema.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(versionRepository.incrementar(1L)).thenReturn(1);
+        ConfigSnapshot anterior = configuracionService.snapshot();
+
+        // Act
+        configuracionService.actualizarValor(ConfiguracionService.AUTH_AZURE_AD_ENABLED, "true");
+
+        // Assert
+        assertTrue(configuracionService.esAzureAdHabilitado());
+        assertFalse(anterior.isAzureAdHabilitado());
+        verify(configuracionRepository, times(1)).findByActivoTrue();
+        verify(versionRepository).incrementar(1L);
+    }
+
+    @Test
+    void sincronizarVersion_SinCambios_NoDeberiaRecargar() {
+        // Arrange
+        when(versionRepository.versionActual()).thenReturn(3L);
+        when(configuracionRepository.findByActivoTrue()).thenReturn(Arrays.asList(azure, jwtLocal));
+        configuracionService.inicializar();
+
+        // Act
+        configuracionService.sincronizarVersion();
+
+        // Assert
+        verify(configuracionRepository, times(1)).findByActivoTrue();
+        assertEquals(3L, configuracionService.snapshot().getVersion());
+    }
+
+    @Test
+    void sincronizarVersion_ConVersionNueva_DeberiaRecargarLaFoto() {
+        // Arrange
+        when(versionRepository.versionActual()).thenReturn(3L, 4L, 4L);
+        when(configuracionRepository.findByActivoTrue()).thenReturn(Arrays.asList(azure, jwtLocal));
+        configuracionService.inicializar();
+        azure.setValor("true");
+
+        // Act
+        configuracionService.sincronizarVersion();
+
+        // Assert
+        assertTrue(configuracionService.esAzureAdHabilitado());
+        assertEquals(4L, configuracionService.snapshot().getVersion());
+        verify(configuracionRepository, times(2)).findByActivoTrue();
+    }
+
+    @Test
+    void actualizarValor_ConClaveInexistente_DeberiaLanzarExcepcion() {
+        // Arrange
+        when(configuracionRepository.findByClave("no.existe")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> configuracionService.actualizarValor("no.existe", "valor"));
+    }
+
+    @Test
+    void establecerAzureAdHabilitado_SinMetodosActivos_DeberiaLanzarExcepcion() {
+        // Arrange
+        jwtLocal.setValor("false");
+        when(configuracionRepository.findByActivoTrue()).thenReturn(Arrays.asList(azure, jwtLocal));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> configuracionService.establecerAzureAdHabilitado(false, null));
+        verify(configuracionRepository, never()).save(any());
+    }
+
+    private static ConfiguracionSistema configuracion(String clave, String valor, boolean activo) {
+        ConfiguracionSistema config = new ConfiguracionSistema();
+        config.setClave(clave);
+        config.setValor(valor);
+        config.setCategoria("AUTENTICACION");
+        config.setTipo("BOOLEAN");
+        config.setActivo(activo);
+        return config;
+    }
+}
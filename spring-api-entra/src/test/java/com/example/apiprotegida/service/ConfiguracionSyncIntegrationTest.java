@@ -0,0 +1,151 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.model.ConfiguracionSistema;
+import com.example.apiprotegida.model.ConfiguracionVersion;
+import com.example.apiprotegida.repository.ConfiguracionSistemaRepository;
+import com.example.apiprotegida.repository.ConfiguracionVersionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test de integración: dos nodos (contextos de Spring) comparten una base H2 en
+ * archivo y un cambio de configuración hecho en uno llega al otro por sondeo de versión
+ */
+class ConfiguracionSyncIntegrationTest {
+
+    @TempDir
+    Path directorio;
+
+    private ConfigurableApplicationContext nodoA;
+    private ConfigurableApplicationContext nodoB;
+
+    @BeforeEach
+    void setUp() {
+        String url = "jdbc:h2:file:" + directorio.resolve("config").toAbsolutePath() + ";DB_CLOSE_DELAY=-1";
+        nodoA = iniciarNodo(url);
+        nodoB = iniciarNodo(url);
+
+        ConfiguracionSistemaRepository repositorio = nodoA.getBean(ConfiguracionSistemaRepository.class);
+        repositorio.save(configuracion(ConfiguracionService.AUTH_AZURE_AD_ENABLED, "false"));
+        repositorio.save(configuracion(ConfiguracionService.AUTH_JWT_LOCAL_ENABLED, "true"));
+        nodoA.getBean(ConfiguracionVersionRepository.class)
+                .save(new ConfiguracionVersion(ConfiguracionVersion.ID_UNICO, 0L));
+
+        nodoA.getBean(ConfiguracionService.class).recargarSnapshot();
+        nodoB.getBean(ConfiguracionService.class).recargarSnapshot();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodoB.close();
+        nodoA.close();
+    }
+
+    @Test
+    void sincronizarVersion_TrasCambioEnOtroNodo_DeberiaRecargarLaFoto() {
+        // Arrange
+        ConfiguracionService servicioA = nodoA.getBean(ConfiguracionService.class);
+        ConfiguracionService servicioB = nodoB.getBean(ConfiguracionService.class);
+        assertFalse(servicioB.esAzureAdHabilitado());
+
+        // Act
+        servicioA.establecerAzureAdHabilitado(true, null);
+        boolean antesDelSondeo = servicioB.esAzureAdHabilitado();
+        servicioB.sincronizarVersion();
+
+        // Assert
+        assertTrue(servicioA.esAzureAdHabilitado());
+        assertFalse(antesDelSondeo);
+        assertTrue(servicioB.esAzureAdHabilitado());
+        assertEquals(1L, servicioB.snapshot().getVersion());
+    }
+
+    @Test
+    void sincronizarVersion_SinCambios_DeberiaMantenerLaFoto() {
+        // Arrange
+        ConfiguracionService servicioB = nodoB.getBean(ConfiguracionService.class);
+        ConfigSnapshot anterior = servicioB.snapshot();
+
+        // Act
+        servicioB.sincronizarVersion();
+
+        // Assert
+        assertSame(anterior, servicioB.snapshot());
+    }
+
+    @Test
+    void actualizarValor_EnAmbosNodos_DeberiaIncrementarLaVersionDeFormaMonotona() {
+        // Arrange
+        ConfiguracionService servicioA = nodoA.getBean(ConfiguracionService.class);
+        ConfiguracionService servicioB = nodoB.getBean(ConfiguracionService.class);
+
+        // Act
+        servicioA.actualizarValor(ConfiguracionService.AUTH_AZURE_AD_ENABLED, "true");
+        servicioB.actualizarValor(ConfiguracionService.AUTH_JWT_LOCAL_ENABLED, "false");
+        servicioA.sincronizarVersion();
+        servicioB.sincronizarVersion();
+
+        // Assert
+        assertEquals(2L, servicioA.snapshot().getVersion());
+        assertEquals(2L, servicioB.snapshot().getVersion());
+        assertTrue(servicioA.esAzureAdHabilitado());
+        assertFalse(servicioA.esJwtLocalHabilitado());
+        assertTrue(servicioB.esAzureAdHabilitado());
+        assertFalse(servicioB.esJwtLocalHabilitado());
+    }
+
+    private static ConfigurableApplicationContext iniciarNodo(String url) {
+        return new SpringApplicationBuilder(NodoConfiguracion.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "spring.sql.init.mode=never",
+                        "configuracion.sync.poll-interval-ms=3600000")
+                .run();
+    }
+
+    private static ConfiguracionSistema configuracion(String clave, String valor) {
+        ConfiguracionSistema config = new ConfiguracionSistema();
+        config.setClave(clave);
+        config.setValor(valor);
+        config.setTipo("BOOLEAN");
+        config.setCategoria("AUTENTICACION");
+        config.setActivo(true);
+        return config;
+    }
+
+    /**
+     * Contexto mínimo de un nodo: JPA sobre la base compartida y ConfiguracionService
+     */
+    @Configuration
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class
+    })
+    @EntityScan(basePackageClasses = ConfiguracionSistema.class)
+    @EnableJpaRepositories(basePackageClasses = ConfiguracionSistemaRepository.class)
+    @Import(ConfiguracionService.class)
+    static class NodoConfiguracion {
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.model.EmailPendiente;
+import com.example.apiprotegida.model.EmailPendiente.EstadoEmail;
+import com.example.apiprotegida.model.PasswordResetToken;
+import com.example.apiprotegida.model.Usuario;
+import com.example.apiprotegida.repository.PasswordResetTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitarios para EmailOutboxDispatcher contra un servidor SMTP en memoria
+ */
+class EmailOutboxDispatcherTest {
+
+    private final PasswordResetTokenRepository tokenRepository = mock(PasswordResetTokenRepository.class);
+    private ServidorSmtpDePrueba smtp;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new ServidorSmtpDePrueba();
+        dispatcher = crearDispatcher(smtp.puerto(), 2, 3);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        dispatcher.detener();
+        smtp.close();
+    }
+
+    @Test
+    void enviarLote_DeberiaEnviarTodosReutilizandoUnaConexionPorHilo() {
+        // Arrange
+        List<EmailPendiente> emails = emails(5);
+
+        // Act
+        Map<EmailPendiente, String> errores = dispatcher.enviarLote(emails);
+
+        // Assert
+        assertTrue(errores.isEmpty());
+        assertEquals(5, smtp.mensajes().size());
+        assertEquals(2, smtp.conexiones());
+        assertTrue(smtp.mensajes().stream().anyMatch(mensaje -> mensaje.contains("Cuerpo 3")));
+    }
+
+    @Test
+    void enviarLote_DestinatarioRechazado_DeberiaFallarSoloEseEmail() {
+        // Arrange
+        List<EmailPendiente> emails = emails(4);
+        smtp.rechazar("usuario2@local.com");
+
+        // Act
+        Map<EmailPendiente, String> errores = dispatcher.enviarLote(emails);
+
+        // Assert
+        assertEquals(1, errores.size());
+        assertTrue(errores.containsKey(emails.get(2)));
+        assertEquals(3, smtp.mensajes().size());
+    }
+
+    @Test
+    void enviarLote_ServidorCaido_DeberiaFallarTodos() throws IOException {
+        // Arrange
+        int puertoLibre;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            puertoLibre = socket.getLocalPort();
+        }
+        EmailOutboxDispatcher sinServidor = crearDispatcher(puertoLibre, 2, 3);
+        List<EmailPendiente> emails = emails(3);
+
+        // Act
+        Map<EmailPendiente, String> errores = sinServidor.enviarLote(emails);
+        sinServidor.detener();
+
+        // Assert
+        assertEquals(3, errores.size());
+    }
+
+    @Test
+    void registrarIntento_Exito_DeberiaMarcarEnviado() {
+        // Arrange
+        EmailPendiente email = emails(1).get(0);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        // Act
+        dispatcher.registrarIntento(email, null, ahora);
+
+        // Assert
+        assertEquals(EstadoEmail.ENVIADO, email.getEstado());
+        assertEquals(1, email.getIntentos());
+        assertEquals(ahora, email.getFechaEnvio());
+    }
+
+    @Test
+    void registrarIntento_Fallo_DeberiaReprogramarConEsperaYFallarAlAgotarIntentos() {
+        // Arrange
+        EmailPendiente email = emails(1).get(0);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        // Act
+        dispatcher.registrarIntento(email, "timeout", ahora);
+
+        // Assert
+        assertEquals(EstadoEmail.PENDIENTE, email.getEstado());
+        assertEquals("timeout", email.getUltimoError());
+        assertTrue(email.getProximoIntento().isAfter(ahora.plusNanos(499_000_000)));
+        assertFalse(email.getProximoIntento().isAfter(ahora.plusSeconds(1)));
+
+        dispatcher.registrarIntento(email, "timeout", ahora);
+        dispatcher.registrarIntento(email, "timeout", ahora);
+        assertEquals(EstadoEmail.FALLIDO, email.getEstado());
+        assertEquals(3, email.getIntentos());
+    }
+
+    @Test
+    void sigueVigente_SinTokenDeRecuperacion_DeberiaEnviarse() {
+        // Arrange
+        EmailPendiente email = emails(1).get(0);
+
+        // Act & Assert
+        assertTrue(dispatcher.sigueVigente(email));
+        verifyNoInteractions(tokenRepository);
+    }
+
+    @Test
+    void sigueVigente_ConTokenValido_DeberiaEnviarse() {
+        // Arrange
+        EmailPendiente email = emailDeRecuperacion("valido");
+        when(tokenRepository.findByToken("valido")).thenReturn(Optional.of(
+                new PasswordResetToken("valido", new Usuario(), LocalDateTime.now().plusHours(1))));
+
+        // Act & Assert
+        assertTrue(dispatcher.sigueVigente(email));
+    }
+
+    @Test
+    void sigueVigente_ConTokenUsadoExpiradoOInexistente_NoDeberiaEnviarse() {
+        // Arrange
+        PasswordResetToken usado = new PasswordResetToken("usado", new Usuario(), LocalDateTime.now().plusHours(1));
+        usado.setUsado(true);
+        when(tokenRepository.findByToken("usado")).thenReturn(Optional.of(usado));
+        when(tokenRepository.findByToken("expirado")).thenReturn(Optional.of(
+                new PasswordResetToken("expirado", new Usuario(), LocalDateTime.now().minusMinutes(1))));
+        when(tokenRepository.findByToken("borrado")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(dispatcher.sigueVigente(emailDeRecuperacion("usado")));
+        assertFalse(dispatcher.sigueVigente(emailDeRecuperacion("expirado")));
+        assertFalse(dispatcher.sigueVigente(emailDeRecuperacion("borrado")));
+    }
+
+    @Test
+    void descartar_DeberiaMarcarFallidoSinContarUnIntento() {
+        // Arrange
+        EmailPendiente email = emailDeRecuperacion("usado");
+
+        // Act
+        dispatcher.descartar(email, "Token de recuperación usado o expirado");
+
+        // Assert
+        assertEquals(EstadoEmail.FALLIDO, email.getEstado());
+        assertEquals(0, email.getIntentos());
+        assertEquals("Token de recuperación usado o expirado", email.getUltimoError());
+        assertNull(email.getFechaEnvio());
+    }
+
+    @Test
+    void esperaMs_DeberiaCrecerExponencialmenteConTopeYJitter() {
+        for (int intento = 1; intento <= 40; intento++) {
+            long esperada = Math.min(8_000, 1_000L << Math.min(intento - 1, 20));
+
+            // Act
+            long espera = dispatcher.esperaMs(intento);
+
+            // Assert
+            assertTrue(espera >= esperada / 2 && espera <= esperada, "intento " + intento + ": " + espera);
+        }
+    }
+
+    private EmailOutboxDispatcher crearDispatcher(int puerto, int concurrencia, int maxIntentos) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(puerto);
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+        return new EmailOutboxDispatcher(null, tokenRepository, mailSender, 10, concurrencia, maxIntentos,
+                1_000, 8_000, 60_000, 24);
+    }
+
+    private static EmailPendiente emailDeRecuperacion(String token) {
+        EmailPendiente email = emails(1).get(0);
+        email.setTokenRecuperacion(token);
+        return email;
+    }
+
+    private static List<EmailPendiente> emails(int cantidad) {
+        List<EmailPendiente> emails = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            emails.add(new EmailPendiente("noreply@local.com", "usuario" + i + "@local.com", "Asunto " + i, "Cuerpo " + i));
+        }
+        return emails;
+    }
+}
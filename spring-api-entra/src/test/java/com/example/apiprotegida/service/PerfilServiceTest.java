@@ -4,17 +4,21 @@ import com.example.apiprotegida.model.Perfil;
 import com.example.apiprotegida.model.Permiso;
 import com.example.apiprotegida.repository.PerfilRepository;
 import com.example.apiprotegida.repository.PermisoRepository;
+import com.example.apiprotegida.security.authz.PermissionChangeEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 /**
@@ -29,6 +33,9 @@ class PerfilServiceTest {
     @Mock
     private PermisoRepository permisoRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private PerfilService perfilService;
 
@@ -459,6 +466,7 @@ class PerfilServiceTest {
         verify(perfilRepository).findById(perfilId);
         verify(permisoRepository).findById(permisoId);
         verify(perfilRepository).save(perfilTest);
+        verify(eventPublisher).publishEvent(new PermissionChangeEvent.PerfilPermisosChanged(perfilId));
     }
 
     @Test
@@ -617,4 +625,25 @@ class PerfilServiceTest {
         verify(permisoRepository, never()).findAllById(any());
         verify(perfilRepository).save(perfilTest);
     }
+
+    @Test
+    void obtenerPerfilesPorAzureGroupIdsConPermisos_ConMuchosGrupos_DeberiaConsultarEnLotes() {
+        // Arrange
+        List<String> grupos = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            grupos.add("group-" + i);
+        }
+        grupos.add("group-0");
+        when(perfilRepository.findByAzureGroupIdsWithPermisos(anyList()))
+                .thenReturn(Arrays.asList(perfilTest))
+                .thenReturn(Collections.emptyList());
+
+        // Act
+        List<Perfil> resultado = perfilService.obtenerPerfilesPorAzureGroupIdsConPermisos(grupos);
+
+        // Assert
+        assertEquals(1, resultado.size());
+        verify(perfilRepository, times(3)).findByAzureGroupIdsWithPermisos(anyList());
+        verify(perfilRepository).findByAzureGroupIdsWithPermisos(argThat(lote -> lote.size() == 44));
+    }
 }
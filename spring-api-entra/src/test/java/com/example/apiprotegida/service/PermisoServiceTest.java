@@ -2,12 +2,14 @@ package com.example.apiprotegida.service;
 
 import com.example.apiprotegida.model.Permiso;
 import com.example.apiprotegida.repository.PermisoRepository;
+import com.example.apiprotegida.security.authz.PermissionChangeEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.*;
 
@@ -24,6 +26,9 @@ class PermisoServiceTest {
     @Mock
     private PermisoRepository permisoRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private PermisoService permisoService;
 
@@ -375,6 +380,7 @@ class PermisoServiceTest {
         assertFalse(permisoTest.getActivo());
         verify(permisoRepository).findById(id);
         verify(permisoRepository).save(permisoTest);
+        verify(eventPublisher).publishEvent(new PermissionChangeEvent.PermisoDeactivated(id));
     }
 
     @Test
@@ -0,0 +1,196 @@
+package com.example.apiprotegida.service;
+
+import com.example.apiprotegida.exceptions.TrabajoRechazadoException;
+import com.example.apiprotegida.service.ProcesoLentoService.EstadoTrabajo;
+import com.example.apiprotegida.service.ProcesoLentoService.Trabajo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests unitarios para ProcesoLentoService
+ */
+class ProcesoLentoServiceTest {
+
+    private ServicioDePrueba servicio;
+
+    @AfterEach
+    void tearDown() {
+        if (servicio != null) {
+            servicio.liberar.countDown();
+            servicio.detener();
+        }
+    }
+
+    @Test
+    void enviar_DeberiaDevolverElTrabajoSinEsperarYCompletarElResultado() throws Exception {
+        // Arrange
+        servicio = new ServicioDePrueba(2, 10, 2, 0);
+
+        // Act
+        Trabajo trabajo = servicio.enviar("ana");
+
+        // Assert
+        assertNotNull(trabajo.getId());
+        assertFalse(trabajo.getEstado().isTerminado());
+        servicio.liberar.countDown();
+        Map<String, Object> resultado = trabajo.getResultado().get(5, TimeUnit.SECONDS);
+        assertEquals("ok", resultado.get("message"));
+        assertEquals(EstadoTrabajo.COMPLETADO, trabajo.getEstado());
+        assertEquals(resultado, trabajo.resultadoSiCompletado());
+        assertNotNull(trabajo.getFinalizado());
+        assertEquals(0, servicio.trabajosActivos("ana"));
+    }
+
+    @Test
+    void enviar_LimitePorUsuarioAlcanzado_DeberiaRechazarSoloAEseUsuario() {
+        // Arrange
+        servicio = new ServicioDePrueba(4, 10, 2, 0);
+        servicio.enviar("ana");
+        servicio.enviar("ana");
+
+        // Act
+        TrabajoRechazadoException error = assertThrows(TrabajoRechazadoException.class, () -> servicio.enviar("ana"));
+        Trabajo otro = servicio.enviar("luis");
+
+        // Assert
+        assertTrue(error.isLimiteUsuario());
+        assertEquals(2, servicio.trabajosActivos("ana"));
+        assertNotNull(otro);
+    }
+
+    @Test
+    void enviar_ColaLlena_DeberiaRechazarPorSaturacionYNoConsumirCupo() throws Exception {
+        // Arrange
+        servicio = new ServicioDePrueba(1, 1, 5, 0);
+        servicio.enviar("ana");
+        assertTrue(servicio.iniciado.await(5, TimeUnit.SECONDS));
+        servicio.enviar("ana");
+
+        // Act
+        TrabajoRechazadoException error = assertThrows(TrabajoRechazadoException.class, () -> servicio.enviar("ana"));
+
+        // Assert
+        assertFalse(error.isLimiteUsuario());
+        assertEquals(2, servicio.trabajosActivos("ana"));
+    }
+
+    @Test
+    void cancelar_TrabajoEnEjecucion_DeberiaInterrumpirloYLiberarElCupo() throws Exception {
+        // Arrange
+        servicio = new ServicioDePrueba(1, 10, 1, 0);
+        Trabajo trabajo = servicio.enviar("ana");
+        assertTrue(servicio.iniciado.await(5, TimeUnit.SECONDS));
+
+        // Act
+        boolean cancelado = servicio.cancelar(trabajo);
+
+        // Assert
+        assertTrue(cancelado);
+        assertEquals(EstadoTrabajo.CANCELADO, trabajo.getEstado());
+        assertTrue(servicio.interrumpido.await(5, TimeUnit.SECONDS));
+        assertTrue(trabajo.getResultado().isCompletedExceptionally());
+        assertEquals(0, servicio.trabajosActivos("ana"));
+        assertNotNull(servicio.enviar("ana"));
+    }
+
+    @Test
+    void cancelar_TrabajoTerminado_DeberiaDevolverFalse() throws Exception {
+        // Arrange
+        servicio = new ServicioDePrueba(1, 10, 1, 0);
+        servicio.liberar.countDown();
+        Trabajo trabajo = servicio.enviar("ana");
+        trabajo.getResultado().get(5, TimeUnit.SECONDS);
+
+        // Act
+        boolean cancelado = servicio.cancelar(trabajo);
+
+        // Assert
+        assertFalse(cancelado);
+        assertEquals(EstadoTrabajo.COMPLETADO, trabajo.getEstado());
+    }
+
+    @Test
+    void procesar_ConError_DeberiaMarcarElTrabajoComoFallido() throws Exception {
+        // Arrange
+        servicio = new ServicioDePrueba(1, 10, 1, 0);
+        servicio.fallar = true;
+        servicio.liberar.countDown();
+
+        // Act
+        Trabajo trabajo = servicio.enviar("ana");
+
+        // Assert
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> trabajo.getResultado().get(5, TimeUnit.SECONDS));
+        assertEquals("fallo simulado", error.getCause().getMessage());
+        assertEquals(EstadoTrabajo.FALLIDO, trabajo.getEstado());
+        assertNull(trabajo.resultadoSiCompletado());
+        assertEquals(0, servicio.trabajosActivos("ana"));
+    }
+
+    @Test
+    void buscar_TrabajoDeOtroUsuario_DeberiaEstarVacio() {
+        // Arrange
+        servicio = new ServicioDePrueba(1, 10, 1, 0);
+        Trabajo trabajo = servicio.enviar("ana");
+
+        // Act & Assert
+        assertTrue(servicio.buscar(trabajo.getId(), "ana").isPresent());
+        assertTrue(servicio.buscar(trabajo.getId(), "luis").isEmpty());
+        assertTrue(servicio.buscar("no-existe", "ana").isEmpty());
+    }
+
+    @Test
+    void purgar_DeberiaQuitarSoloLosTrabajosTerminadosFueraDeRetencion() throws Exception {
+        // Arrange
+        servicio = new ServicioDePrueba(2, 10, 2, 0);
+        Trabajo terminado = servicio.enviar("ana");
+        Trabajo enCurso = servicio.enviar("luis");
+        servicio.cancelar(terminado);
+        Thread.sleep(5);
+
+        // Act
+        servicio.purgar();
+
+        // Assert
+        assertTrue(servicio.buscar(terminado.getId(), "ana").isEmpty());
+        assertTrue(servicio.buscar(enCurso.getId(), "luis").isPresent());
+    }
+
+    /**
+     * Servicio cuyo proceso espera a que el test lo libere
+     */
+    private static class ServicioDePrueba extends ProcesoLentoService {
+
+        final CountDownLatch iniciado = new CountDownLatch(1);
+        final CountDownLatch interrumpido = new CountDownLatch(1);
+        final CountDownLatch liberar = new CountDownLatch(1);
+        volatile boolean fallar;
+
+        ServicioDePrueba(int hilos, int cola, int maxPorUsuario, long retencionMs) {
+            super(hilos, cola, maxPorUsuario, 0, retencionMs);
+        }
+
+        @Override
+        protected Map<String, Object> procesar() throws InterruptedException {
+            iniciado.countDown();
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                interrumpido.countDown();
+                throw e;
+            }
+            if (fallar) {
+                throw new IllegalStateException("fallo simulado");
+            }
+            return Map.of("message", "ok");
+        }
+    }
+}
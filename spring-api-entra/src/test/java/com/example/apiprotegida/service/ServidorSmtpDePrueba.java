@@ -0,0 +1,114 @@
+package com.example.apiprotegida.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor SMTP mínimo en memoria para tests
+ *
+ * Atiende en un puerto libre de localhost los comandos que usa JavaMail
+ * (EHLO, MAIL, RCPT, DATA, RSET, NOOP, QUIT), guarda cada mensaje recibido y
+ * cuenta las conexiones. Los destinatarios de {@link #rechazar(String)} se
+ * responden con 550.
+ */
+class ServidorSmtpDePrueba implements AutoCloseable {
+
+    private final ServerSocket servidor;
+    private final List<String> mensajes = new CopyOnWriteArrayList<>();
+    private final Set<String> rechazados = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger conexiones = new AtomicInteger();
+
+    ServidorSmtpDePrueba() throws IOException {
+        servidor = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread aceptador = new Thread(this::aceptar, "smtp-de-prueba");
+        aceptador.setDaemon(true);
+        aceptador.start();
+    }
+
+    int puerto() {
+        return servidor.getLocalPort();
+    }
+
+    List<String> mensajes() {
+        return mensajes;
+    }
+
+    int conexiones() {
+        return conexiones.get();
+    }
+
+    void rechazar(String destinatario) {
+        rechazados.add(destinatario.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public void close() throws IOException {
+        servidor.close();
+    }
+
+    private void aceptar() {
+        while (!servidor.isClosed()) {
+            try {
+                Socket socket = servidor.accept();
+                conexiones.incrementAndGet();
+                Thread sesion = new Thread(() -> atender(socket), "smtp-de-prueba-sesion");
+                sesion.setDaemon(true);
+                sesion.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void atender(Socket socket) {
+        try (socket;
+             BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer salida = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            responder(salida, "220 localhost SMTP de prueba");
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                String comando = linea.toUpperCase(Locale.ROOT);
+                if (comando.startsWith("EHLO") || comando.startsWith("HELO")) {
+                    responder(salida, "250 localhost");
+                } else if (comando.startsWith("RCPT TO:")) {
+                    String destinatario = linea.substring(8).replaceAll("[<>\\s]", "").toLowerCase(Locale.ROOT);
+                    responder(salida, rechazados.contains(destinatario) ? "550 Buzón inexistente" : "250 OK");
+                } else if (comando.startsWith("DATA")) {
+                    responder(salida, "354 Fin con <CRLF>.<CRLF>");
+                    StringBuilder mensaje = new StringBuilder();
+                    while ((linea = entrada.readLine()) != null && !linea.equals(".")) {
+                        mensaje.append(linea).append('\n');
+                    }
+                    mensajes.add(mensaje.toString());
+                    responder(salida, "250 OK");
+                } else if (comando.startsWith("QUIT")) {
+                    responder(salida, "221 Adiós");
+                    return;
+                } else {
+                    // MAIL FROM, RSET, NOOP
+                    responder(salida, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // El cliente cerró la conexión
+        }
+    }
+
+    private static void responder(Writer salida, String respuesta) throws IOException {
+        salida.write(respuesta + "\r\n");
+        salida.flush();
+    }
+}
@@ -0,0 +1,105 @@
+# =============================================================================
+# PRUEBA DE CARGA: LATENCIA p50/p95/p99 DE LOGIN LOCAL Y /autorizacion/*
+# =============================================================================
+# Requiere PowerShell 7+ (ForEach-Object -Parallel) y la API levantada con JWT local.
+#
+# Para comparar el coste del logging, ejecutar dos veces con el backend arrancado:
+#   DEBUG activo:
+#     mvn spring-boot:run
+#   DEBUG desactivado:
+#     mvn spring-boot:run "-Dspring-boot.run.arguments=--logging.level.com.example.apiprotegida=INFO --logging.level.org.springframework.security=INFO --logging.level.org.springframework.web=INFO"
+# y lanzar en cada caso:
+#   .\test-carga-latencia.ps1 -Etiqueta DEBUG
+#   .\test-carga-latencia.ps1 -Etiqueta INFO
+# =============================================================================
+
+param(
+    [string]$BaseUrl = "http://localhost:8080/api",
+    [string]$Email = "admin@local.com",
+    [string]$Password = "admin123",
+    [int]$Peticiones = 2000,
+    [int]$Concurrencia = 32,
+    [int]$Calentamiento = 200,
+    [string]$Etiqueta = "ejecucion"
+)
+
+if ($PSVersionTable.PSVersion.Major -lt 7) {
+    Write-Host "❌ Se requiere PowerShell 7 o superior (pwsh)" -ForegroundColor Red
+    exit 1
+}
+
+Write-Host "🚀 Prueba de carga '$Etiqueta': $Peticiones peticiones por endpoint, concurrencia $Concurrencia" -ForegroundColor Green
+
+$cliente = [System.Net.Http.HttpClient]::new()
+$cliente.Timeout = [TimeSpan]::FromSeconds(30)
+$cuerpoLogin = @{ email = $Email; password = $Password } | ConvertTo-Json -Compress
+
+# =============================================================================
+# 1. OBTENER TOKEN
+# =============================================================================
+try {
+    $login = Invoke-RestMethod -Uri "$BaseUrl/auth/local/login" -Method POST -Body $cuerpoLogin -ContentType "application/json"
+    $token = $login.token -replace '^Bearer ', ''
+    Write-Host "✅ Token obtenido para $Email" -ForegroundColor Green
+} catch {
+    Write-Host "❌ No se pudo iniciar sesión: $($_.Exception.Message)" -ForegroundColor Red
+    exit 1
+}
+
+# =============================================================================
+# 2. MEDICIÓN
+# =============================================================================
+function Medir-Endpoint {
+    param([string]$Nombre, [string]$Metodo, [string]$Ruta, [string]$Cuerpo, [bool]$ConToken)
+
+    $url = "$BaseUrl$Ruta"
+    $bloque = {
+        $peticion = [System.Net.Http.HttpRequestMessage]::new([System.Net.Http.HttpMethod]::new($using:Metodo), $using:url)
+        if ($using:ConToken) {
+            $peticion.Headers.Authorization = [System.Net.Http.Headers.AuthenticationHeaderValue]::new("Bearer", $using:token)
+        }
+        if ($using:Cuerpo) {
+            $peticion.Content = [System.Net.Http.StringContent]::new($using:Cuerpo, [Text.Encoding]::UTF8, "application/json")
+        }
+        $reloj = [System.Diagnostics.Stopwatch]::StartNew()
+        $respuesta = ($using:cliente).SendAsync($peticion).GetAwaiter().GetResult()
+        $null = $respuesta.Content.ReadAsStringAsync().GetAwaiter().GetResult()
+        $reloj.Stop()
+        [pscustomobject]@{ Ms = $reloj.Elapsed.TotalMilliseconds; Ok = $respuesta.IsSuccessStatusCode }
+    }
+
+    # Calentamiento (JIT, cachés de tokens y de authorities)
+    $null = 1..$Calentamiento | ForEach-Object -Parallel $bloque -ThrottleLimit $Concurrencia
+    $resultados = 1..$Peticiones | ForEach-Object -Parallel $bloque -ThrottleLimit $Concurrencia
+
+    $tiempos = $resultados | ForEach-Object { $_.Ms } | Sort-Object
+    $errores = ($resultados | Where-Object { -not $_.Ok }).Count
+    $percentil = { param($p) $tiempos[[Math]::Min($tiempos.Count - 1, [Math]::Ceiling($p * $tiempos.Count) - 1)] }
+
+    [pscustomobject]@{
+        Etiqueta = $Etiqueta
+        Endpoint = $Nombre
+        p50      = [Math]::Round((& $percentil 0.50), 2)
+        p95      = [Math]::Round((& $percentil 0.95), 2)
+        p99      = [Math]::Round((& $percentil 0.99), 2)
+        Max      = [Math]::Round($tiempos[-1], 2)
+        Errores  = $errores
+    }
+}
+
+$resumen = @(
+    Medir-Endpoint -Nombre "POST /auth/local/login" -Metodo "POST" -Ruta "/auth/local/login" -Cuerpo $cuerpoLogin -ConToken $false
+    Medir-Endpoint -Nombre "GET /autorizacion/informacion-usuario" -Metodo "GET" -Ruta "/autorizacion/informacion-usuario" -Cuerpo $null -ConToken $true
+    Medir-Endpoint -Nombre "GET /autorizacion/codigos-permisos" -Metodo "GET" -Ruta "/autorizacion/codigos-permisos" -Cuerpo $null -ConToken $true
+    Medir-Endpoint -Nombre "GET /autorizacion/tiene-permiso-modulo-accion" -Metodo "GET" -Ruta "/autorizacion/tiene-permiso-modulo-accion/USUARIOS/LEER" -Cuerpo $null -ConToken $true
+)
+
+Write-Host "`n📊 Latencias en ms ($Etiqueta)" -ForegroundColor Yellow
+$resumen | Format-Table -AutoSize
+
+# Se acumula en CSV para comparar ejecuciones (DEBUG vs INFO)
+$archivo = Join-Path $PSScriptRoot "resultados-carga.csv"
+$resumen | Export-Csv -Path $archivo -Append -NoTypeInformation -Encoding UTF8
+Write-Host "💾 Resultados añadidos a $archivo" -ForegroundColor Cyan
+
+$cliente.Dispose()
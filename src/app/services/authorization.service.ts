@@ -6,9 +6,11 @@
  * Este servicio maneja toda la lógica de autorización del frontend:
  * ✅ Obtención de permisos del usuario desde el backend
  * ✅ Almacenamiento en sessionStorage para acceso rápido
+ * ✅ Peticiones condicionales (ETag / 304) para no descargar permisos sin cambios
  * ✅ Validación de permisos para componentes y rutas
  * ✅ Gestión del estado de autorización
  * ✅ Integración con MSAL para tokens de acceso
+ * ✅ Aviso en tiempo real (SSE) cuando cambian los permisos del usuario
  * 
  * @author Sistema de Autorización Angular-Entra
  * @version 1.0.0
@@ -16,10 +18,13 @@
  */
 
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpHeaders } from '@angular/common/http';
 import { BehaviorSubject, Observable, of, throwError } from 'rxjs';
 import { catchError, map, tap } from 'rxjs/operators';
 import { MsalService } from '@azure/msal-angular';
+import { LocalAuthService } from './local-auth.service';
+import { AuthConfigService } from './auth-config.service';
+import { API_CONFIG } from '../config/api.config';
 
 // Interfaces para tipado
 export interface UserPermission {
@@ -54,6 +59,9 @@ export class AuthorizationService {
   private readonly baseUrl = 'http://localhost:8080/api/autorizacion';
   private readonly storageKey = 'permisos_usuario';
   private readonly userInfoKey = 'informacion_usuario';
+  private readonly userInfoEtagKey = 'informacion_usuario_etag';
+  private readonly permissionCodesKey = 'codigos_permisos';
+  private readonly permissionCodesEtagKey = 'codigos_permisos_etag';
 
   // Estado reactivo de los permisos
   private permissionsSubject = new BehaviorSubject<string[]>([]);
@@ -64,9 +72,16 @@ export class AuthorizationService {
   public userInfo$ = this.userInfoSubject.asObservable();
   public loading$ = this.loadingSubject.asObservable();
 
+  // Suscripción SSE a cambios de permisos
+  private eventsController: AbortController | null = null;
+  private eventsRetryDelay = 1000;
+  private readonly eventsMaxRetryDelay = 60000;
+
   constructor(
     private http: HttpClient,
-    private msalService: MsalService
+    private msalService: MsalService,
+    private localAuthService: LocalAuthService,
+    private authConfigService: AuthConfigService
   ) {
     console.log('🔧 [AuthorizationService] Inicializando servicio de autorización...');
     this.loadPermissionsFromStorage();
@@ -87,10 +102,29 @@ export class AuthorizationService {
     console.log('📡 [AuthorizationService] Creando petición HTTP GET...');
     this.loadingSubject.next(true);
     
-    const observable = this.http.get<UserInfo>(`${this.baseUrl}/informacion-usuario`);
+    // Si ya hay información en caché se envía su ETag: el backend responde 304 si no cambió
+    const cachedUserInfo = this.userInfoSubject.value;
+    const etag = cachedUserInfo ? sessionStorage.getItem(this.userInfoEtagKey) : null;
+    const headers = etag ? new HttpHeaders({ 'If-None-Match': etag }) : undefined;
+    
+    const observable = this.http.get<UserInfo>(`${this.baseUrl}/informacion-usuario`, { headers, observe: 'response' });
     console.log('📦 [AuthorizationService] Observable creado, agregando pipe...');
     
     return observable.pipe(
+      map(response => {
+        const newEtag = response.headers.get('ETag');
+        if (newEtag) {
+          sessionStorage.setItem(this.userInfoEtagKey, newEtag);
+        }
+        return response.body as UserInfo;
+      }),
+      catchError(error => {
+        if (error.status === 304 && cachedUserInfo) {
+          console.log('♻️ [AuthorizationService] Permisos sin cambios (304), se usa la información en caché');
+          return of(cachedUserInfo);
+        }
+        return throwError(() => error);
+      }),
       tap(userInfo => {
         console.log('✅ [AuthorizationService] Información del usuario obtenida del backend:', userInfo);
         console.log('📊 [AuthorizationService] Detalles del usuario:');
@@ -104,6 +138,7 @@ export class AuthorizationService {
         this.storeUserInfo(userInfo);
         this.updatePermissionsState(userInfo.codigosPermisos);
         this.loadingSubject.next(false);
+        this.subscribeToPermissionChanges();
       }),
       catchError(error => {
         console.error('❌ [AuthorizationService] Error al obtener información del usuario:', error);
@@ -255,7 +290,27 @@ export class AuthorizationService {
    * Obtiene solo los códigos de permisos del usuario
    */
   getPermissionCodes(): Observable<string[]> {
-    return this.http.get<string[]>(`${this.baseUrl}/codigos-permisos`);
+    const cachedCodes = sessionStorage.getItem(this.permissionCodesKey);
+    const etag = cachedCodes ? sessionStorage.getItem(this.permissionCodesEtagKey) : null;
+    const headers = etag ? new HttpHeaders({ 'If-None-Match': etag }) : undefined;
+    
+    return this.http.get<string[]>(`${this.baseUrl}/codigos-permisos`, { headers, observe: 'response' }).pipe(
+      map(response => {
+        const codes = response.body || [];
+        const newEtag = response.headers.get('ETag');
+        if (newEtag) {
+          sessionStorage.setItem(this.permissionCodesKey, JSON.stringify(codes));
+          sessionStorage.setItem(this.permissionCodesEtagKey, newEtag);
+        }
+        return codes;
+      }),
+      catchError(error => {
+        if (error.status === 304 && cachedCodes) {
+          return of(JSON.parse(cachedCodes) as string[]);
+        }
+        return throwError(() => error);
+      })
+    );
   }
 
   /**
@@ -362,6 +417,9 @@ export class AuthorizationService {
     try {
       sessionStorage.removeItem(this.storageKey);
       sessionStorage.removeItem(this.userInfoKey);
+      sessionStorage.removeItem(this.userInfoEtagKey);
+      sessionStorage.removeItem(this.permissionCodesKey);
+      sessionStorage.removeItem(this.permissionCodesEtagKey);
       this.permissionsSubject.next([]);
       this.userInfoSubject.next(null);
       console.log('🧹 Datos de autorización limpiados');
@@ -375,9 +433,137 @@ export class AuthorizationService {
    */
   logout(): void {
     console.log('👋 Cerrando sesión y limpiando permisos...');
+    this.unsubscribeFromPermissionChanges();
     this.clearStoredData();
   }
 
+  /**
+   * =============================================================================
+   * 📡 NOTIFICACIÓN DE CAMBIOS DE PERMISOS (SERVER-SENT EVENTS)
+   * =============================================================================
+   */
+
+  /**
+   * Abre el flujo SSE de /autorizacion/eventos y refresca los permisos solo cuando
+   * el backend avisa de que cambiaron. Se usa fetch en lugar de EventSource porque
+   * EventSource no permite enviar el header Authorization.
+   */
+  subscribeToPermissionChanges(): void {
+    if (this.eventsController) {
+      return;
+    }
+    const controller = new AbortController();
+    this.eventsController = controller;
+    this.listenPermissionChanges(controller, false);
+  }
+
+  /**
+   * Cierra el flujo SSE de cambios de permisos
+   */
+  unsubscribeFromPermissionChanges(): void {
+    if (this.eventsController) {
+      console.log('🔌 [AuthorizationService] Cerrando suscripción a cambios de permisos');
+      this.eventsController.abort();
+      this.eventsController = null;
+    }
+  }
+
+  private async listenPermissionChanges(controller: AbortController, reconnecting: boolean): Promise<void> {
+    try {
+      const token = await this.getEventsToken();
+      if (!token) {
+        console.warn('⚠️ [AuthorizationService] Sin token para la suscripción a cambios de permisos');
+        this.eventsController = null;
+        return;
+      }
+
+      const response = await fetch(`${this.baseUrl}/eventos`, {
+        headers: { Authorization: token, Accept: 'text/event-stream' },
+        signal: controller.signal
+      });
+      if (response.status === 401 || response.status === 403) {
+        console.warn('⚠️ [AuthorizationService] Suscripción a cambios de permisos rechazada:', response.status);
+        this.eventsController = null;
+        return;
+      }
+      if (!response.ok || !response.body) {
+        throw new Error(`HTTP ${response.status}`);
+      }
+
+      console.log('📡 [AuthorizationService] Suscrito a cambios de permisos');
+      this.eventsRetryDelay = 1000;
+      const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+      let buffer = '';
+      while (true) {
+        const { value, done } = await reader.read();
+        if (done) {
+          break;
+        }
+        buffer += value.replace(/\r\n/g, '\n');
+        let separator = buffer.indexOf('\n\n');
+        while (separator >= 0) {
+          const eventName = this.parseEventName(buffer.substring(0, separator));
+          buffer = buffer.substring(separator + 2);
+          // Tras una reconexión se pudo perder algún aviso: se refresca al conectar
+          if (eventName === 'permisos-cambiados' || (eventName === 'conectado' && reconnecting)) {
+            console.log('🔔 [AuthorizationService] Los permisos cambiaron, refrescando...');
+            this.refreshPermissions().subscribe({ error: () => {} });
+          }
+          separator = buffer.indexOf('\n\n');
+        }
+      }
+    } catch (error) {
+      if (controller.signal.aborted) {
+        return;
+      }
+      console.warn('⚠️ [AuthorizationService] Suscripción a cambios de permisos interrumpida:', error);
+    }
+
+    if (this.eventsController !== controller || controller.signal.aborted) {
+      return;
+    }
+    // El servidor cierra el flujo al expirar: se reconecta con espera exponencial
+    const delay = this.eventsRetryDelay;
+    this.eventsRetryDelay = Math.min(this.eventsRetryDelay * 2, this.eventsMaxRetryDelay);
+    setTimeout(() => {
+      if (this.eventsController === controller && !controller.signal.aborted) {
+        this.listenPermissionChanges(controller, true);
+      }
+    }, delay);
+  }
+
+  private parseEventName(rawEvent: string): string | null {
+    for (const line of rawEvent.split('\n')) {
+      if (line.startsWith('event:')) {
+        return line.substring(6).trim();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Token para el flujo SSE (valor completo del header Authorization).
+   * Solo se obtiene en silencio: una reconexión en segundo plano no debe abrir popups.
+   */
+  private async getEventsToken(): Promise<string | null> {
+    const authMethod = this.authConfigService.getActiveAuthMethod();
+    if (authMethod === 'local') {
+      return this.localAuthService.getToken(); // Ya viene en formato "Bearer xxx"
+    }
+    if (authMethod === 'azure') {
+      const accounts = this.msalService.instance.getAllAccounts();
+      if (accounts.length === 0) {
+        return null;
+      }
+      const response = await this.msalService.instance.acquireTokenSilent({
+        scopes: API_CONFIG.scopes,
+        account: accounts[0]
+      });
+      return `Bearer ${response.accessToken}`;
+    }
+    return null;
+  }
+
   /**
    * Verifica si el token de MSAL es válido
    */